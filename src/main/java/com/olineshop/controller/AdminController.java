@@ -10,37 +10,73 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import com.olineshop.dao.OrderDAO;
+import com.olineshop.dao.OrderExporter;
+import com.olineshop.dao.Page;
+import com.olineshop.dao.ProductImporter;
 import com.olineshop.dao.ProductDAO;
+import com.olineshop.dao.SalesAnalytics;
+import com.olineshop.dao.SalesDAO;
+import com.olineshop.dao.StockReceiver;
 import com.olineshop.dao.UserDAO;
+import com.olineshop.model.AnalyticsReport;
 import com.olineshop.model.Order;
 import com.olineshop.model.OrderItem;
 import com.olineshop.model.Product;
+import com.olineshop.model.ImportResult;
 import com.olineshop.model.User;
 import com.olineshop.view.LoginView;
 import com.olineshop.view.MainAdminView;
+import com.olineshop.util.Log;
+import com.olineshop.util.TaskScheduler;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 
 public class AdminController {
+    private static final Log log = Log.get(AdminController.class);
     private final MainAdminView view;
     private final Stage primaryStage;
     
     private final ProductDAO productDAO;
     private final UserDAO userDAO;
     private final OrderDAO orderDAO;
+    private final SalesDAO salesDAO;
+    private final SalesAnalytics salesAnalytics;
+    private final OrderExporter orderExporter;
+    private final ProductImporter productImporter;
+    private final StockReceiver stockReceiver;
     
     private final ObservableList<Product> products;
     private final ObservableList<User> users;
     private final ObservableList<Order> orders;
     
+    // Размер страницы в таблицах администратора
+    private static final int PAGE_SIZE = Integer.getInteger("olineshop.admin.pageSize", 100);
+    // Сколько товаров показывать в сводке продаж
+    private static final int TOP_PRODUCTS = 10;
+    // Сколько товаров и клиентов показывать в отчете аналитики
+    private static final int ANALYTICS_TOP = 50;
+    
+    private final PagedLoader<Product> productPages;
+    private final PagedLoader<User> userPages;
+    private final PagedLoader<Order> orderPages;
+    
 
 
     public AdminController(MainAdminView view, Stage primaryStage) {
@@ -50,100 +86,178 @@ public class AdminController {
         this.productDAO = new ProductDAO();
         this.userDAO = new UserDAO();
         this.orderDAO = new OrderDAO();
+        this.salesDAO = new SalesDAO();
+        this.salesAnalytics = new SalesAnalytics();
+        this.orderExporter = new OrderExporter();
+        this.productImporter = new ProductImporter();
+        this.stockReceiver = new StockReceiver();
         
         this.products = FXCollections.observableArrayList();
         this.users = FXCollections.observableArrayList();
         this.orders = FXCollections.observableArrayList();
+        
+        this.productPages = new PagedLoader<>(products, after -> productDAO.getProductsPage(after, PAGE_SIZE),
+                () -> view.updateProductTable(products), "товаров");
+        this.userPages = new PagedLoader<>(users, after -> userDAO.getUsersPage(after, PAGE_SIZE),
+                () -> view.updateUserTable(users), "пользователей");
+        this.orderPages = new PagedLoader<>(orders, after -> orderDAO.getOrdersPage(after, PAGE_SIZE),
+                () -> view.updateOrderTable(orders), "заказов");
     }
 
+    //Загрузить первую страницу товаров (следующие подгружаются при прокрутке)
     public void loadProducts() {
-        // Показываем индикатор загрузки
-        view.showLoadingIndicator(true);
-        
-        Task<List<Product>> task = new Task<>() {
-            @Override
-            protected List<Product> call() {
-                // Сбрасываем соединение перед загрузкой товаров
-                com.olineshop.util.DatabaseManager.resetConnectionStatus();
-                return productDAO.getAllProducts();
-            }
-        };
-        
-        task.setOnSucceeded(event -> {
-            products.clear();
-            products.addAll(task.getValue());
-            view.updateProductTable(products);
-            view.showLoadingIndicator(false);
-        });
-        
-        task.setOnFailed(event -> {
-            System.out.println("Ошибка при загрузке товаров: " + task.getException().getMessage());
-            task.getException().printStackTrace();
-            view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить товары");
-            view.showLoadingIndicator(false);
-        });
-        
-        new Thread(task).start();
+        productPages.reload();
     }
 
+    //Подгрузить следующую страницу товаров
+    public void loadMoreProducts() {
+        productPages.loadNext();
+    }
+
+    //Загрузить первую страницу пользователей
     public void loadUsers() {
-        // Показываем индикатор загрузки
-        view.showLoadingIndicator(true);
-        
-        Task<List<User>> task = new Task<>() {
-            @Override
-            protected List<User> call() {
-                // Сбрасываем соединение перед загрузкой пользователей
-                com.olineshop.util.DatabaseManager.resetConnectionStatus();
-                return userDAO.getAllUsers();
-            }
-        };
-        
-        task.setOnSucceeded(event -> {
-            users.clear();
-            users.addAll(task.getValue());
-            view.updateUserTable(users);
-            view.showLoadingIndicator(false);
-        });
-        
-        task.setOnFailed(event -> {
-            System.out.println("Ошибка при загрузке пользователей: " + task.getException().getMessage());
-            task.getException().printStackTrace();
-            view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить пользователей");
-            view.showLoadingIndicator(false);
-        });
-        
-        new Thread(task).start();
+        userPages.reload();
+    }
+
+    //Подгрузить следующую страницу пользователей
+    public void loadMoreUsers() {
+        userPages.loadNext();
     }
 
+    //Загрузить первую страницу заказов
     public void loadOrders() {
-        // Показываем индикатор загрузки
-        view.showLoadingIndicator(true);
-        
-        Task<List<Order>> task = new Task<>() {
-            @Override
-            protected List<Order> call() {
-                // Сбрасываем соединение перед загрузкой заказов
-                com.olineshop.util.DatabaseManager.resetConnectionStatus();
-                return orderDAO.getAllOrders();
-            }
-        };
-        
-        task.setOnSucceeded(event -> {
-            orders.clear();
-            orders.addAll(task.getValue());
-            view.updateOrderTable(orders);
-            view.showLoadingIndicator(false);
-        });
-        
-        task.setOnFailed(event -> {
-            System.out.println("Ошибка при загрузке заказов: " + task.getException().getMessage());
-            task.getException().printStackTrace();
-            view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить заказы");
-            view.showLoadingIndicator(false);
-        });
-        
-        new Thread(task).start();
+        orderPages.reload();
+    }
+
+    //Подгрузить следующую страницу заказов
+    public void loadMoreOrders() {
+        orderPages.loadNext();
+    }
+
+    //Загрузить сводку продаж за последние дни (из sales_daily, без группировки всех заказов)
+    //days длина периода в днях, включая сегодняшний
+    public void loadSales(int days) {
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(days - 1);
+        runAsync(() -> List.of(salesDAO.getDailyTotals(from, to), salesDAO.getTopProducts(from, to, TOP_PRODUCTS)),
+                sales -> view.updateSalesDashboard(sales.get(0), sales.get(1)),
+                "Не удалось загрузить сводку продаж");
+    }
+
+    //Построить отчет аналитики за период
+    //Отчет читает все позиции заказов периода, поэтому строится в фоновой очереди
+    //from первый день периода
+    //to последний день периода
+    //period шаг группировки выручки
+    public void buildAnalyticsReport(LocalDate from, LocalDate to, AnalyticsReport.Period period) {
+        if (from == null || to == null || period == null || from.isAfter(to)) {
+            view.showAlert(Alert.AlertType.WARNING, "Аналитика", "Укажите корректный период отчета");
+            return;
+        }
+        view.showAnalyticsInProgress();
+        TaskScheduler.supply(TaskScheduler.Lane.BACKGROUND,
+                        () -> salesAnalytics.buildReport(from, to, period, ANALYTICS_TOP))
+                .whenComplete((report, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        log.error("Ошибка при построении отчета: " + error.getMessage(), error);
+                    }
+                    view.updateAnalytics(error == null ? report : null);
+                }));
+    }
+
+    //Импортировать каталог товаров из CSV (добавить новые товары, обновить существующие по названию)
+    public void importProducts() {
+        loadProductFile("Импорт каталога", productImporter::importCsv);
+    }
+
+    //Оприходовать товары из файла поставки (CSV: товар и сколько единиц пришло)
+    public void receiveStock() {
+        loadProductFile("Приход товара", stockReceiver::receive);
+    }
+
+    // Загрузка файла в фоновой очереди: ход показывается на вкладке товаров после каждого блока,
+    // таблица товаров перечитывается один раз в конце
+    private void loadProductFile(String title, BiFunction<Path, LongConsumer, ImportResult> load) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"),
+                new FileChooser.ExtensionFilter("Все файлы", "*.*"));
+        File file = chooser.showOpenDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+
+        view.showProductFileProgress(title, 0);
+        TaskScheduler.supply(TaskScheduler.Lane.BACKGROUND,
+                        () -> load.apply(file.toPath(),
+                                rows -> Platform.runLater(() -> view.showProductFileProgress(title, rows))))
+                .whenComplete((result, error) -> Platform.runLater(() -> {
+                    ImportResult shown = result;
+                    if (error != null) {
+                        log.error("Ошибка при загрузке файла: " + error.getMessage(), error);
+                        shown = new ImportResult();
+                        shown.setError(error.getMessage());
+                    }
+                    view.showImportResult(title, shown);
+                    loadProducts();
+                }));
+    }
+
+    //Выгрузить заказы или позиции заказов в файл
+    //Формат выбирается по расширению файла: CSV или столбцовый .olc, с .gz - со сжатием.
+    //Выгрузка читает все строки таблицы, поэтому идет в фоновой очереди
+    public void exportOrders() {
+        ChoiceDialog<OrderExporter.Dataset> datasetDialog = new ChoiceDialog<>(OrderExporter.Dataset.ORDERS,
+                OrderExporter.Dataset.values());
+        datasetDialog.initOwner(primaryStage);
+        datasetDialog.setTitle("Экспорт");
+        datasetDialog.setHeaderText(null);
+        datasetDialog.setContentText("Что выгрузить:");
+        Optional<OrderExporter.Dataset> dataset = datasetDialog.showAndWait();
+        if (dataset.isEmpty()) {
+            return;
+        }
+
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Экспорт: " + dataset.get().getTitle());
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV, сжатый (*.csv.gz)", "*.csv.gz"),
+                new FileChooser.ExtensionFilter("Столбцовый (*.olc)", "*.olc"),
+                new FileChooser.ExtensionFilter("Столбцовый, сжатый (*.olc.gz)", "*.olc.gz"));
+        chooser.setInitialFileName(dataset.get() == OrderExporter.Dataset.ORDERS ? "orders" : "order_items");
+        File file = chooser.showSaveDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+
+        // Формат определяется по расширению, а если его нет - по выбранному фильтру
+        FileChooser.ExtensionFilter selected = chooser.getSelectedExtensionFilter();
+        String name = file.getName().toLowerCase();
+        if (!name.endsWith(".csv") && !name.endsWith(".csv.gz") && !name.endsWith(".olc") && !name.endsWith(".olc.gz")) {
+            String extension = selected != null ? selected.getExtensions().get(0).substring(1) : ".csv";
+            file = new File(file.getParentFile(), file.getName() + extension);
+            name = file.getName().toLowerCase();
+        }
+        boolean compress = name.endsWith(".gz");
+        OrderExporter.Format format = name.endsWith(".olc") || name.endsWith(".olc.gz")
+                ? OrderExporter.Format.COLUMNAR : OrderExporter.Format.CSV;
+        File target = file;
+
+        TaskScheduler.supply(TaskScheduler.Lane.BACKGROUND,
+                        () -> orderExporter.export(dataset.get(), target.toPath(), format, compress))
+                .whenComplete((rows, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        log.error("Ошибка при выгрузке: " + error.getMessage(), error);
+                    }
+                    if (error == null && rows >= 0) {
+                        view.showAlert(Alert.AlertType.INFORMATION, "Экспорт",
+                                "Выгружено строк: " + rows + "\n" + target);
+                    } else {
+                        view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось выгрузить данные");
+                    }
+                }));
     }
 
     public void deleteProduct(int id) {
@@ -162,8 +276,6 @@ public class AdminController {
             Task<Boolean> deleteTask = new Task<>() {
                 @Override
                 protected Boolean call() {
-                    // Сбрасываем соединение перед удалением
-                    com.olineshop.util.DatabaseManager.resetConnectionStatus();
                     return productDAO.deleteProduct(id);
                 }
             };
@@ -181,13 +293,13 @@ public class AdminController {
             });
             
             deleteTask.setOnFailed(event -> {
-                System.out.println("Ошибка при удалении товара: " + deleteTask.getException().getMessage());
-                deleteTask.getException().printStackTrace();
+                Throwable e = TaskScheduler.failureOf(deleteTask);
+                log.error("Ошибка при удалении товара: " + e.getMessage(), e);
                 view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при удалении товара");
                 view.showLoadingIndicator(false);
             });
             
-            new Thread(deleteTask).start();
+            TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, deleteTask);
         }
     }
 
@@ -246,14 +358,14 @@ public class AdminController {
                 }
                 
                 user.setDiscount(discount);
-                boolean success = userDAO.updateUser(user);
-                
-                if (success) {
-                    view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Скидка успешно обновлена");
-                    loadUsers();
-                } else {
-                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить скидку");
-                }
+                runAsync(() -> userDAO.updateUser(user), success -> {
+                    if (success) {
+                        view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Скидка успешно обновлена");
+                        loadUsers();
+                    } else {
+                        view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить скидку");
+                    }
+                }, "Не удалось обновить скидку");
             } catch (NumberFormatException ex) {
                 view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Некорректный формат числа");
             }
@@ -284,7 +396,11 @@ public class AdminController {
         
         ordersTable.getColumns().addAll(idColumn, orderDateColumn, totalCostColumn, statusColumn);
         
-        ordersTable.setItems(FXCollections.observableArrayList(orderDAO.getOrdersByUser(user.getId())));
+        ordersTable.setPlaceholder(new Label("Загрузка..."));
+        runAsync(() -> orderDAO.getOrdersByUser(user.getId()), userOrders -> {
+            ordersTable.setPlaceholder(new Label("Нет заказов"));
+            ordersTable.setItems(FXCollections.observableArrayList(userOrders));
+        }, "Не удалось загрузить заказы пользователя");
         
         Button closeButton = new Button("Закрыть");
         closeButton.setOnAction(e -> detailsStage.close());
@@ -297,8 +413,10 @@ public class AdminController {
     }
 
     public void deleteUser(int id) {
-        User user = userDAO.getUserById(id);
-        
+        runAsync(() -> userDAO.getUserById(id), user -> confirmDeleteUser(id, user), "Не удалось загрузить пользователя");
+    }
+
+    private void confirmDeleteUser(int id, User user) {
         if (user == null) {
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Пользователь не найден");
             return;
@@ -317,19 +435,19 @@ public class AdminController {
         Optional<ButtonType> result = alert.showAndWait();
         
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            boolean success = userDAO.deleteUser(id);
-            
-            if (success) {
-                view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Пользователь успешно удален");
-                loadUsers();
-            } else {
-                view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось удалить пользователя");
-            }
+            runAsync(() -> userDAO.deleteUser(id), success -> {
+                if (success) {
+                    view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Пользователь успешно удален");
+                    loadUsers();
+                } else {
+                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось удалить пользователя");
+                }
+            }, "Не удалось удалить пользователя");
         }
     }
 
     public void showOrderDetails(Order order) {
-        System.out.println("Показ деталей заказа ID=" + order.getId());
+        log.debug(() -> "Показ деталей заказа ID=" + order.getId());
         
         // Показываем индикатор загрузки
         view.showLoadingIndicator(true);
@@ -355,13 +473,13 @@ public class AdminController {
         });
         
         loadOrderTask.setOnFailed(event -> {
-            System.out.println("Ошибка при загрузке заказа: " + loadOrderTask.getException().getMessage());
-            loadOrderTask.getException().printStackTrace();
+            Throwable e = TaskScheduler.failureOf(loadOrderTask);
+            log.error("Ошибка при загрузке заказа: " + e.getMessage(), e);
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при загрузке данных заказа");
             view.showLoadingIndicator(false);
         });
         
-        new Thread(loadOrderTask).start();
+        TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, loadOrderTask);
     }
     
     // Вспомогательный метод для отображения окна с деталями заказа
@@ -433,9 +551,9 @@ public class AdminController {
         if (order.getItems() != null && !order.getItems().isEmpty()) {
             // Если товары уже загружены, показываем их
             itemsTable.setItems(FXCollections.observableArrayList(order.getItems()));
-            System.out.println("Отображение " + order.getItems().size() + " товаров в заказе #" + order.getId());
+            log.debug(() -> "Отображение " + order.getItems().size() + " товаров в заказе #" + order.getId());
         } else {
-            System.out.println("Список товаров в заказе #" + order.getId() + " пуст или null");
+            log.debug(() -> "Список товаров в заказе #" + order.getId() + " пуст или null");
             itemsTable.setItems(FXCollections.observableArrayList());
         }
         
@@ -489,15 +607,15 @@ public class AdminController {
             String newStatus = statusComboBox.getValue();
             
             if (newStatus != null && !newStatus.equals(order.getStatus())) {
-                boolean success = orderDAO.updateOrderStatus(order.getId(), newStatus);
-                
-                if (success) {
-                    view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Статус заказа успешно изменен");
-                    loadOrders();
-                    dialogStage.close();
-                } else {
-                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось изменить статус заказа");
-                }
+                runAsync(() -> orderDAO.updateOrderStatus(order.getId(), newStatus), success -> {
+                    if (success) {
+                        view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Статус заказа успешно изменен");
+                        loadOrders();
+                        dialogStage.close();
+                    } else {
+                        view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось изменить статус заказа");
+                    }
+                }, "Не удалось изменить статус заказа");
             } else {
                 dialogStage.close();
             }
@@ -545,28 +663,28 @@ public class AdminController {
                     java.time.LocalDate date = java.time.LocalDate.parse(dateStr);
                     LocalDateTime deliveryDate = date.atTime(12, 0); // Устанавливаем время на 12:00
                     
-                    boolean success = orderDAO.updateDeliveryDate(order.getId(), deliveryDate);
-                    
+                    runAsync(() -> orderDAO.updateDeliveryDate(order.getId(), deliveryDate), success -> {
+                        if (success) {
+                            view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Дата доставки успешно установлена");
+                            loadOrders();
+                            dialogStage.close();
+                        } else {
+                            view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось установить дату доставки");
+                        }
+                    }, "Не удалось установить дату доставки");
+                } catch (java.time.format.DateTimeParseException ex) {
+                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Некорректный формат даты. Используйте формат ГГГГ-ММ-ДД");
+                }
+            } else {
+                runAsync(() -> orderDAO.updateDeliveryDate(order.getId(), null), success -> {
                     if (success) {
-                        view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Дата доставки успешно установлена");
+                        view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Дата доставки успешно удалена");
                         loadOrders();
                         dialogStage.close();
                     } else {
-                        view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось установить дату доставки");
+                        view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось удалить дату доставки");
                     }
-                } catch (Exception ex) {
-                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Некорректный формат даты. Используйте формат ГГГГ-ММ-ДД");
-                }
-            } else {
-                boolean success = orderDAO.updateDeliveryDate(order.getId(), null);
-                
-                if (success) {
-                    view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Дата доставки успешно удалена");
-                    loadOrders();
-                    dialogStage.close();
-                } else {
-                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось удалить дату доставки");
-                }
+                }, "Не удалось удалить дату доставки");
             }
         });
         
@@ -598,8 +716,6 @@ public class AdminController {
             Task<Boolean> deleteTask = new Task<>() {
                 @Override
                 protected Boolean call() {
-                    // Сбрасываем соединение перед удалением
-                    com.olineshop.util.DatabaseManager.resetConnectionStatus();
                     return orderDAO.deleteOrder(id);
                 }
             };
@@ -617,16 +733,38 @@ public class AdminController {
             });
             
             deleteTask.setOnFailed(event -> {
-                System.out.println("Ошибка при удалении заказа: " + deleteTask.getException().getMessage());
-                deleteTask.getException().printStackTrace();
+                Throwable e = TaskScheduler.failureOf(deleteTask);
+                log.error("Ошибка при удалении заказа: " + e.getMessage(), e);
                 view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при удалении заказа");
                 view.showLoadingIndicator(false);
             });
             
-            new Thread(deleteTask).start();
+            TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, deleteTask);
         }
     }
 
+    //Выполнить обращение к базе данных в общем планировщике и обработать результат в потоке JavaFX
+    //work работа с базой данных
+    //onSuccess обработка результата
+    //errorMessage сообщение для пользователя при ошибке
+    private <T> void runAsync(Supplier<T> work, Consumer<T> onSuccess, String errorMessage) {
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() {
+                return work.get();
+            }
+        };
+
+        task.setOnSucceeded(event -> onSuccess.accept(task.getValue()));
+        task.setOnFailed(event -> {
+            Throwable e = TaskScheduler.failureOf(task);
+            log.error(errorMessage + ": " + e.getMessage(), e);
+            view.showAlert(Alert.AlertType.ERROR, "Ошибка", errorMessage);
+        });
+
+        TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, task);
+    }
+
     public void handleLogout() {
         // Сброс статус соединения с бд перед выходом
         com.olineshop.util.DatabaseManager.resetConnectionStatus();
@@ -637,5 +775,76 @@ public class AdminController {
         loginView.start(new Stage());
     }
 
+    // Постраничная загрузка таблицы: первая страница при открытии вкладки, следующие - при прокрутке до конца.
+    // В памяти только просмотренные страницы; запрос следующей страницы идет по ключу последней строки.
+    private class PagedLoader<T> {
+        private final ObservableList<T> items;
+        private final Function<T, Page<T>> fetch;
+        private final Runnable show;
+        private final String name;
+
+        private boolean loading = false;
+        private boolean hasMore = true;
+        // Увеличивается при перезагрузке, чтобы ответ на устаревший запрос не попал в таблицу
+        private int generation = 0;
+
+        PagedLoader(ObservableList<T> items, Function<T, Page<T>> fetch, Runnable show, String name) {
+            this.items = items;
+            this.fetch = fetch;
+            this.show = show;
+            this.name = name;
+        }
+
+        void reload() {
+            generation++;
+            loading = false;
+            hasMore = true;
+            items.clear();
+            show.run();
+            loadNext();
+        }
+
+        void loadNext() {
+            if (loading || !hasMore) {
+                return;
+            }
+            loading = true;
+            int requestGeneration = generation;
+            T after = items.isEmpty() ? null : items.get(items.size() - 1);
+            if (after == null) {
+                view.showLoadingIndicator(true);
+            }
+
+            Task<Page<T>> task = new Task<>() {
+                @Override
+                protected Page<T> call() {
+                    return fetch.apply(after);
+                }
+            };
 
-} 
\ No newline at end of file
+            task.setOnSucceeded(event -> {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                Page<T> page = task.getValue();
+                items.addAll(page.getItems());
+                hasMore = page.hasMore();
+                loading = false;
+                view.showLoadingIndicator(false);
+            });
+
+            task.setOnFailed(event -> {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                loading = false;
+                Throwable e = TaskScheduler.failureOf(task);
+                log.error("Ошибка при загрузке " + name + ": " + e.getMessage(), e);
+                view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить список " + name);
+                view.showLoadingIndicator(false);
+            });
+
+            TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, task);
+        }
+    }
+}
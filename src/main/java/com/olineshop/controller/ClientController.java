@@ -1,5 +1,6 @@
 package com.olineshop.controller;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -12,7 +13,9 @@ import javafx.scene.layout.HBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import com.olineshop.dao.OrderDAO;
+import com.olineshop.dao.OrderIngestor;
 import com.olineshop.dao.ProductDAO;
+import com.olineshop.dao.ProductSearchFilter;
 import com.olineshop.dao.UserDAO;
 import com.olineshop.model.Order;
 import com.olineshop.model.OrderItem;
@@ -20,20 +23,31 @@ import com.olineshop.model.Product;
 import com.olineshop.model.User;
 import com.olineshop.view.LoginView;
 import com.olineshop.view.MainClientView;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+import com.olineshop.util.TaskScheduler;
+import com.olineshop.util.TextSearchIndex;
+import javafx.concurrent.Task;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Timestamp;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
 
 
  //Конт для клиентов
  
 public class ClientController {
+    private static final Log log = Log.get(ClientController.class);
     private final MainClientView view;
     private final Stage primaryStage;
     private final User currentUser;
@@ -46,6 +60,27 @@ public class ClientController {
     private final ObservableList<OrderItem> cartItems;
     private final ObservableList<Order> orders;
     
+    // Сколько товаров показывать в результатах поиска
+    private static final int SEARCH_LIMIT = Integer.getInteger("olineshop.search.limit", 200);
+    private String catalogQuery = "";
+    private boolean inStockOnly = false;
+    private int searchGeneration = 0;
+    // Заказ оформляется: повторное нажатие кнопки игнорируется
+    private boolean checkoutInProgress = false;
+    // Ключ идемпотентности текущей корзины: сохраняется после неудачной попытки, чтобы повторное
+    // оформление той же корзины не создало второй заказ, если первая попытка все же записалась
+    private String pendingOrderToken;
+    // Автоматические повторы записи заказа при ошибке базы данных
+    private static final int CHECKOUT_RETRIES = Integer.getInteger("olineshop.checkout.retries", 3);
+    private static final long CHECKOUT_RETRY_DELAY_MS = Long.getLong("olineshop.checkout.retryDelayMs", 200L);
+    
+    // Каталог до этого размера держится в памяти и фильтруется по индексу без запросов к базе;
+    // по умолчанию - размер кэша товаров, чтобы перезагрузка каталога читалась из кэша
+    private static final int LOCAL_CATALOG_MAX =
+            Integer.getInteger("olineshop.search.localCatalogMax", ProductDAO.getCacheCapacity());
+    private final TextSearchIndex searchIndex = new TextSearchIndex();
+    private boolean localCatalog = LOCAL_CATALOG_MAX > 0;
+    
     
     
      //view клиентская часть
@@ -65,152 +100,181 @@ public class ClientController {
         this.orders = FXCollections.observableArrayList();
     }
 
-    //загрузка товаров(сп)
+    //загрузка товаров каталога
+    //Если каталог помещается в память, он загружается целиком и фильтруется локально по индексу,
+    //иначе из базы читаются только результаты поиска по текущему запросу.
+    //Размер каталога проверяется при каждой загрузке, поэтому после сокращения каталога
+    //поиск снова становится локальным
     public void loadProducts() {
-        // Сбрасываем соединение перед загрузкой товаров
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+        if (LOCAL_CATALOG_MAX > 0) {
+            loadCatalog();
+        } else {
+            loadSearchResults();
+        }
+    }
+    
+    // Весь каталог в память и обновление индекса (индекс перестраивается в фоне)
+    private void loadCatalog() {
+        Task<List<Product>> task = new Task<>() {
+            @Override
+            protected List<Product> call() throws SQLException {
+                // Ошибка базы завершает задачу с ошибкой (onFailed): каталог и индекс остаются прежними
+                List<Product> all = productDAO.getAllProducts(LOCAL_CATALOG_MAX);
+                if (all == null) {
+                    searchIndex.sync(Collections.emptyMap());
+                    return null;
+                }
+                Map<Integer, String> entries = new HashMap<>(all.size() * 2);
+                for (Product product : all) {
+                    entries.put(product.getId(), product.getName() + " " + product.getUnit());
+                }
+                int changes = searchIndex.sync(entries);
+                log.debug(() -> "Индекс поиска обновлен: изменений " + changes + ", товаров " + searchIndex.size());
+                return all;
+            }
+        };
         
-        try {
-            products.clear();
-            products.addAll(productDAO.getAllProducts());
+        task.setOnSucceeded(event -> {
+            List<Product> all = task.getValue();
+            if (all == null) {
+                if (localCatalog) {
+                    log.info("Каталог больше " + LOCAL_CATALOG_MAX + " товаров, поиск выполняется в базе данных");
+                }
+                localCatalog = false;
+                loadSearchResults();
+                return;
+            }
+            if (!localCatalog) {
+                log.info("Каталог не больше " + LOCAL_CATALOG_MAX + " товаров, поиск выполняется в памяти");
+            }
+            localCatalog = true;
+            products.setAll(all);
             view.updateProductTable(products);
-        } catch (Exception e) {
-            System.out.println("Ошибка при загрузке товаров: " + e.getMessage());
-            e.printStackTrace();
+            view.setProductFilter(currentFilter());
+        });
+        
+        task.setOnFailed(event -> {
+            Throwable e = TaskScheduler.failureOf(task);
+            log.error("Ошибка при загрузке товаров: " + e.getMessage(), e);
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить товары: " + e.getMessage());
+        });
+        
+        TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, task);
+    }
+    
+    // Результаты поиска по текущему запросу из базы данных
+    private void loadSearchResults() {
+        // Ответ на устаревший запрос (пользователь уже изменил текст поиска) не показывается
+        int generation = ++searchGeneration;
+        String query = catalogQuery;
+        ProductSearchFilter filter = new ProductSearchFilter().setInStockOnly(inStockOnly);
+        
+        Task<List<Product>> task = new Task<>() {
+            @Override
+            protected List<Product> call() {
+                return productDAO.searchProducts(query, filter, SEARCH_LIMIT);
+            }
+        };
+        
+        task.setOnSucceeded(event -> {
+            if (generation != searchGeneration) {
+                return;
+            }
+            products.setAll(task.getValue());
+            view.updateProductTable(products);
+            view.setProductFilter(null);
+        });
+        
+        task.setOnFailed(event -> {
+            Throwable e = TaskScheduler.failureOf(task);
+            log.error("Ошибка при загрузке товаров: " + e.getMessage(), e);
+            view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить товары: " + e.getMessage());
+        });
+        
+        TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, task);
+    }
+    
+    //Поиск товаров в каталоге
+    //query текст запроса (пустой - последние товары)
+    //inStockOnly показывать только товары в наличии
+    public void searchProducts(String query, boolean inStockOnly) {
+        if (!filterProducts(query, inStockOnly)) {
+            loadSearchResults();
+        }
+    }
+    
+    //Мгновенная фильтрация загруженного каталога (вызывается на каждое нажатие клавиши)
+    //query текст запроса
+    //inStockOnly показывать только товары в наличии
+    //return false, если каталог не загружен в память и нужен поиск в базе (searchProducts)
+    public boolean filterProducts(String query, boolean inStockOnly) {
+        this.catalogQuery = query == null ? "" : query.trim();
+        this.inStockOnly = inStockOnly;
+        if (!localCatalog) {
+            return false;
+        }
+        view.setProductFilter(currentFilter());
+        return true;
+    }
+    
+    // Условие отбора товаров по индексу и наличию; null - показывать все
+    private Predicate<Product> currentFilter() {
+        BitSet matches = searchIndex.search(catalogQuery);
+        boolean stockOnly = inStockOnly;
+        if (matches == null && !stockOnly) {
+            return null;
         }
+        return product -> (matches == null || matches.get(product.getId()))
+                && (!stockOnly || product.getStockQuantity() > 0);
     }
     
 
 
     // для истории заказов
     public void loadOrderHistory() {
-        // Сбрасываем соединение перед загрузкой истории заказов
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
-        
-        try {
-            orders.clear();
-            
-            // Получаем заказы пользователя напрямую из базы данных
-            String sql = "SELECT * FROM orders WHERE user_id = ?";
-            List<Order> userOrders = new ArrayList<>();
-            
-            try (Connection conn = com.olineshop.util.DatabaseManager.getConnection()) {
-                if (conn == null) {
-                    System.out.println("Ошибка: не удалось получить соединение с базой данных");
-                    view.updateOrderHistoryTable(FXCollections.observableArrayList());
-                    return;
-                }
-                
-                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                    pstmt.setInt(1, currentUser.getId());
-                    System.out.println("Загрузка заказов для пользователя ID=" + currentUser.getId());
-                    
-                    try (ResultSet rs = pstmt.executeQuery()) {
-                        while (rs.next()) {
-                            int orderId = rs.getInt("id");
-                            Timestamp orderDateTimestamp = rs.getTimestamp("order_date");
-                            Timestamp deliveryDateTimestamp = rs.getTimestamp("delivery_date");
-                            double totalCost = rs.getDouble("total_cost");
-                            String status = rs.getString("status");
-                            
-                            System.out.println("Найден заказ: ID=" + orderId + 
-                                              ", Дата=" + orderDateTimestamp + 
-                                              ", Сумма=" + totalCost + 
-                                              ", Статус=" + status);
-                            
-                            // Создаем объект заказа
-                            Order order = new Order(
-                                orderId,
-                                currentUser,
-                                orderDateTimestamp.toLocalDateTime(),
-                                deliveryDateTimestamp != null ? deliveryDateTimestamp.toLocalDateTime() : null,
-                                totalCost,
-                                status
-                            );
-                            
-                            // Инициализируем список товаров
-                            order.setItems(new ArrayList<>());
-                            
-                            // Загружаем товары для заказа
-                            loadOrderItemsForOrder(order, conn);
-                            
-                            userOrders.add(order);
-                        }
-                    }
-                }
-            }
-            
-            // Проверяем, что список заказов не пуст
-            if (!userOrders.isEmpty()) {
-                // Сортировка заказов по дате (от новых к старым)
-                userOrders.sort((o1, o2) -> o2.getOrderDate().compareTo(o1.getOrderDate()));
-                
-                orders.addAll(userOrders);
-                view.updateOrderHistoryTable(orders);
-                
-                System.out.println("История заказов успешно загружена. Количество заказов: " + orders.size());
-            } else {
-                System.out.println("История заказов пуста или не удалось загрузить заказы");
-                view.updateOrderHistoryTable(FXCollections.observableArrayList());
+        Task<List<Order>> task = new Task<>() {
+            @Override
+            protected List<Order> call() {
+                return fetchOrderHistory();
             }
-        } catch (Exception e) {
-            System.out.println("Ошибка при загрузке истории заказов: " + e.getMessage());
-            e.printStackTrace();
+        };
+        
+        task.setOnSucceeded(event -> {
+            orders.setAll(task.getValue());
+            view.updateOrderHistoryTable(orders);
+            log.debug(() -> "История заказов загружена. Количество заказов: " + orders.size());
+        });
+        
+        task.setOnFailed(event -> {
+            Throwable e = TaskScheduler.failureOf(task);
+            log.error("Ошибка при загрузке истории заказов: " + e.getMessage(), e);
             
             // Обновляем таблицу пустым списком, чтобы избежать ошибок в UI
+            orders.clear();
             view.updateOrderHistoryTable(FXCollections.observableArrayList());
             
             // Не показываем пользователю ошибку, просто логируем её
-            // view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить историю заказов: " + e.getMessage());
-        }
+        });
+        
+        TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, task);
     }
     
-    // Загрузка товаров для заказа
-    private void loadOrderItemsForOrder(Order order, Connection conn) {
-        String sql = "SELECT oi.*, p.name, p.unit FROM order_items oi " +
-                     "JOIN products p ON oi.product_id = p.id " +
-                     "WHERE oi.order_id = ?";
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, order.getId());
-            System.out.println("Загрузка товаров для заказа ID=" + order.getId());
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    int productId = rs.getInt("product_id");
-                    int quantity = rs.getInt("quantity");
-                    double price = rs.getDouble("price_per_item");
-                    String productName = rs.getString("name");
-                    String unit = rs.getString("unit");
-                    
-                    System.out.println("Найден товар в заказе: ID=" + productId + 
-                                      ", Название=" + productName + 
-                                      ", Количество=" + quantity + 
-                                      ", Цена=" + price);
-                    
-                    // Создаем временный объект товара
-                    Product product = new Product();
-                    product.setId(productId);
-                    product.setName(productName);
-                    product.setPrice(price);
-                    product.setUnit(unit);
-                    
-                    OrderItem item = new OrderItem(order, product, quantity, price);
-                    order.getItems().add(item);
-                }
-            }
-            
-            System.out.println("Загружено товаров для заказа ID=" + order.getId() + ": " + order.getItems().size());
-        } catch (SQLException e) {
-            System.out.println("Ошибка при загрузке товаров для заказа ID=" + order.getId() + ": " + e.getMessage());
+    // Заказы текущего пользователя от новых к старым (выполняется вне потока JavaFX)
+    private List<Order> fetchOrderHistory() {
+        List<Order> userOrders = orderDAO.getOrdersByUser(currentUser.getId());
+        for (Order order : userOrders) {
+            order.setUser(currentUser);
         }
+        return userOrders;
     }
 
     //добавление в корзину
     //product товар
     //quantity количество
     public void addToCart(Product product, int quantity) {
+        if (cartLocked()) {
+            return;
+        }
         // есть ли на складе
         if (product.getStockQuantity() < quantity) {
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Недостаточно товара на складе");
@@ -237,7 +301,7 @@ public class ClientController {
             
             // Обновляем количество
             existingItem.setQuantity(newQuantity);
-            System.out.println("Обновлено количество товара в корзине: " + product.getName() + ", новое количество: " + newQuantity);
+            log.debug(() -> "Обновлено количество товара в корзине: " + product.getName() + ", новое количество: " + newQuantity);
         } else {
             // Товара нет в корзине, добавляем новый
             OrderItem newItem = new OrderItem();
@@ -246,19 +310,36 @@ public class ClientController {
             newItem.setPrice(product.getPrice());
             
             cartItems.add(newItem);
-            System.out.println("Добавлен новый товар в корзину: " + product.getName() + ", количество: " + quantity);
+            log.debug(() -> "Добавлен новый товар в корзину: " + product.getName() + ", количество: " + quantity);
         }
         
+        // Корзина изменилась - следующее оформление будет новым заказом
+        pendingOrderToken = null;
         updateCartView();
     }
 
     //Делитнуть из корзины
     //item товар кот хотим удалить
     public void removeFromCart(OrderItem item) {
+        if (cartLocked()) {
+            return;
+        }
         cartItems.remove(item);
+        pendingOrderToken = null;
         updateCartView();
     }
 
+    // Пока заказ оформляется, корзина не меняется: иначе после успеха очистились бы позиции, не вошедшие
+    // в заказ, а новый ключ заказа при повторе после ошибки мог бы записать заказ второй раз
+    private boolean cartLocked() {
+        if (checkoutInProgress) {
+            view.showAlert(Alert.AlertType.INFORMATION, "Оформление заказа",
+                           "Корзину можно изменить после завершения оформления заказа");
+            return true;
+        }
+        return false;
+    }
+
     //обнова корзины
     private void updateCartView() {
         double totalPrice = calculateTotalPrice();
@@ -278,7 +359,8 @@ public class ClientController {
             subtotal += item.getPrice() * item.getQuantity();
         }
         
-        System.out.println("Сумма заказа до скидок: " + subtotal + " руб.");
+        double subtotalBeforeDiscount = subtotal;
+        log.debug(() -> "Сумма заказа до скидок: " + subtotalBeforeDiscount + " руб.");
         
         // Применяем персональную скидку пользователя
         double discount = currentUser.getDiscount();
@@ -286,10 +368,10 @@ public class ClientController {
         // Убираем дополнительные скидки за большие заказы
         
         double discountAmount = subtotal * discount;
-        System.out.println("Скидка (" + (discount * 100) + "%): " + discountAmount + " руб.");
+        log.debug(() -> "Скидка (" + (discount * 100) + "%): " + discountAmount + " руб.");
         
         double total = subtotal * (1 - discount);
-        System.out.println("Итоговая сумма заказа после скидки: " + total + " руб.");
+        log.debug(() -> "Итоговая сумма заказа после скидки: " + total + " руб.");
         return total;
     }
     
@@ -368,7 +450,7 @@ public class ClientController {
             // Заполняем таблицу 
             itemsTable.setItems(displayItems);
         } else {
-            System.out.println("Предупреждение: корзина пуста при отображении окна подтверждения заказа");
+            log.warn("Предупреждение: корзина пуста при отображении окна подтверждения заказа");
             itemsTable.setItems(FXCollections.observableArrayList());
         }
         
@@ -422,12 +504,11 @@ public class ClientController {
         Button confirmButton = new Button("Подтвердить заказ");
         confirmButton.setOnAction(e -> {
             try {
-                System.out.println("Нажата кнопка 'Подтвердить заказ'");
+                log.debug("Нажата кнопка 'Подтвердить заказ'");
                 checkout();
                 confirmStage.close();
             } catch (Exception ex) {
-                System.out.println("Ошибка при обработке нажатия кнопки 'Подтвердить заказ': " + ex.getMessage());
-                ex.printStackTrace();
+                log.error("Ошибка при обработке нажатия кнопки 'Подтвердить заказ': " + ex.getMessage(), ex);
                 view.showAlert(Alert.AlertType.ERROR, "Ошибка", 
                         "Произошла ошибка при оформлении заказа: " + ex.getMessage());
             }
@@ -458,220 +539,220 @@ public class ClientController {
             view.showAlert(Alert.AlertType.WARNING, "Предупреждение", "Корзина пуста");
             return;
         }
+        if (checkoutInProgress) {
+            return;
+        }
+        checkoutInProgress = true;
         
-        // Сбрасываем соединение перед оформлением заказа
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+        log.debug("Начало оформления заказа...");
         
-        try {
-            System.out.println("Начало оформления заказа...");
-            
-                    // Сначала получаем все товары из базы данных за одно соединение
-        List<Product> productsFromDB = new ArrayList<>();
-        try {
-            // Получаем все ID товаров из корзины
-            List<Integer> productIds = cartItems.stream()
-                .map(item -> item.getProduct().getId())
-                .collect(java.util.stream.Collectors.toList());
-            
-            // Получаем все товары за один запрос
-            productsFromDB = productDAO.getProductsByIds(productIds);
-            
-            // Создаем карту для быстрого доступа к товарам по ID
-            java.util.Map<Integer, Product> productMap = new java.util.HashMap<>();
-            for (Product product : productsFromDB) {
-                productMap.put(product.getId(), product);
-            }
-            
-            // Проверяем наличие товаров на складе перед оформлением заказа
-            for (OrderItem item : cartItems) {
-                System.out.println("Проверка товара: ID=" + item.getProduct().getId() + 
-                                  ", Название=" + item.getProduct().getName() + 
-                                  ", Количество в корзине=" + item.getQuantity());
-                
-                Product product = productMap.get(item.getProduct().getId());
-                if (product == null) {
-                    String errorMsg = "Товар " + item.getProduct().getName() + " больше не доступен";
-                    System.out.println("Ошибка: " + errorMsg);
-                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", errorMsg);
-                    return;
-                }
-                
-                System.out.println("Товар найден в базе: ID=" + product.getId() + 
-                                  ", Название=" + product.getName() + 
-                                  ", Доступное количество=" + product.getStockQuantity());
-                
-                if (product.getStockQuantity() < item.getQuantity()) {
-                    String errorMsg = "Недостаточно товара " + product.getName() + " на складе. " +
-                                     "Доступно: " + product.getStockQuantity() + ", в корзине: " + item.getQuantity();
-                    System.out.println("Ошибка: " + errorMsg);
-                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", errorMsg);
-                    return;
-                }
-                
-                // Обновляем информацию о товаре в корзине
-                item.setProduct(product);
-                System.out.println("Информация о товаре в корзине обновлена");
+        // Этапы выполняются в планировщике по очереди, корзина передается копией:
+        // проверка наличия -> резервирование и запись заказа (одна транзакция) -> начисление скидки
+        List<OrderItem> cartSnapshot = new ArrayList<>(cartItems);
+        double totalPrice = calculateTotalPrice();
+        if (pendingOrderToken == null) {
+            pendingOrderToken = UUID.randomUUID().toString();
+        }
+        String orderToken = pendingOrderToken;
+        view.showCheckoutProgress("Проверка наличия товаров...");
+        
+        TaskScheduler.supply(TaskScheduler.Lane.INTERACTIVE, () -> validateCart(cartSnapshot, totalPrice, orderToken))
+            .thenCompose(order -> {
+                Platform.runLater(() -> view.showCheckoutProgress("Резервирование товаров и сохранение заказа..."));
+                return TaskScheduler.supply(TaskScheduler.Lane.INTERACTIVE, () -> persistOrder(order));
+            })
+            .thenCompose(order -> {
+                Platform.runLater(() -> view.showCheckoutProgress("Завершение оформления..."));
+                return TaskScheduler.supply(TaskScheduler.Lane.BACKGROUND, () -> postProcessOrder(order, cartSnapshot));
+            })
+            .whenComplete((order, error) -> Platform.runLater(() -> checkoutCompleted(order, error, cartSnapshot)));
+    }
+    
+    // Единственное завершение оформления заказа (в потоке JavaFX)
+    // Ключ заказа сбрасывается только здесь, когда исход попытки известен
+    private void checkoutCompleted(Order order, Throwable error, List<OrderItem> cartSnapshot) {
+        checkoutInProgress = false;
+        view.hideCheckoutProgress();
+        
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CheckoutException) {
+                // Заказ отклонен и точно не записан - следующая попытка получит новый ключ
+                pendingOrderToken = null;
+                log.warn("Не удалось оформить заказ: " + cause.getMessage());
+                view.showAlert(Alert.AlertType.ERROR, "Ошибка", cause.getMessage());
+            } else {
+                log.error("Ошибка при оформлении заказа: " + cause.getMessage(), cause);
+                view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при оформлении заказа: " + cause.getMessage());
             }
-        } catch (Exception e) {
-            System.out.println("Ошибка при получении товаров из базы данных: " + e.getMessage());
-            e.printStackTrace();
-            view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при проверке товаров: " + e.getMessage());
             return;
         }
+        
+        // Из корзины убираются только позиции, вошедшие в заказ
+        pendingOrderToken = null;
+        cartItems.removeAll(cartSnapshot);
+        updateCartView();
+        
+        // История заказов и остатки обновляются в фоне, не дожидаясь закрытия сообщения
+        loadOrderHistory();
+        loadProducts();
+        
+        view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Заказ №" + order.getId() + " успешно оформлен");
+    }
+    
+    // Этап 1: проверка наличия по актуальным данным и сборка заказа (вне потока JavaFX)
+    private Order validateCart(List<OrderItem> cart, double totalPrice, String orderToken) {
+        // Получаем все ID товаров из корзины
+        List<Integer> productIds = cart.stream()
+            .map(item -> item.getProduct().getId())
+            .collect(java.util.stream.Collectors.toList());
+        
+        // Получаем все товары за один запрос
+        List<Product> productsFromDB = productDAO.getProductsByIds(productIds);
+        
+        // Создаем карту для быстрого доступа к товарам по ID
+        java.util.Map<Integer, Product> productMap = new java.util.HashMap<>();
+        for (Product product : productsFromDB) {
+            productMap.put(product.getId(), product);
+        }
+        
+        // Проверяем наличие товаров на складе перед оформлением заказа
+        for (OrderItem item : cart) {
+            log.debug(() -> "Проверка товара: ID=" + item.getProduct().getId() + 
+                              ", Название=" + item.getProduct().getName() + 
+                              ", Количество в корзине=" + item.getQuantity());
             
-            // создаем новый заказ
-            System.out.println("Создание нового заказа...");
-            Order order = new Order();
-            order.setUser(currentUser);
-            order.setOrderDate(LocalDateTime.now());
-            
-            // Пересчитываем итоговую стоимость с учетом актуальных скидок
-            double totalPrice = calculateTotalPrice();
-            order.setTotalCost(totalPrice);
-            order.setStatus("Новый");
-            
-            System.out.println("Информация о заказе: Пользователь=" + currentUser.getLogin() + 
-                              ", Дата=" + order.getOrderDate() + 
-                              ", Сумма=" + totalPrice + 
-                              ", Статус=" + order.getStatus());
-            
-            // Добавить товары в заказ
-            System.out.println("Добавление товаров в заказ...");
-            List<OrderItem> orderItems = new ArrayList<>();
-            for (OrderItem cartItem : cartItems) {
-                // Проверяем, что товар корректный
-                Product product = cartItem.getProduct();
-                if (product == null) {
-                    System.out.println("Ошибка: товар не определен в элементе корзины");
-                    continue;
-                }
-                
-                // Проверяем, что товар имеет корректный ID
-                if (product.getId() <= 0) {
-                    System.out.println("Ошибка: некорректный ID товара: " + product.getId());
-                    continue;
-                }
-                
-                // Создаем новый объект OrderItem для заказа
-                try {
-                    OrderItem orderItem = new OrderItem();
-                    orderItem.setOrder(order);
-                    orderItem.setProduct(product);
-                    orderItem.setQuantity(cartItem.getQuantity());
-                    orderItem.setPrice(product.getPrice());  // Используем текущую цену из объекта товара
-                    
-                    orderItems.add(orderItem);
-                    System.out.println("Товар добавлен в заказ: " + orderItem.getProduct().getName() + 
-                                      ", Количество=" + orderItem.getQuantity() + 
-                                      ", Цена=" + orderItem.getPrice());
-                } catch (Exception e) {
-                    System.out.println("Ошибка при создании элемента заказа: " + e.getMessage());
-                    e.printStackTrace();
-                }
+            Product product = productMap.get(item.getProduct().getId());
+            if (product == null) {
+                throw new CheckoutException("Товар " + item.getProduct().getName() + " больше не доступен");
             }
             
-            // Проверяем, что хотя бы один товар был добавлен в заказ
-            if (orderItems.isEmpty()) {
-                System.out.println("Ошибка: не удалось добавить ни одного товара в заказ");
-                view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось добавить товары в заказ");
-                return;
+            if (product.getStockQuantity() < item.getQuantity()) {
+                throw new CheckoutException("Недостаточно товара " + product.getName() + " на складе. " +
+                                            "Доступно: " + product.getStockQuantity() + ", в корзине: " + item.getQuantity());
             }
-
-            order.setItems(orderItems);
-            
-            // сохраняем заказ в базе данных
-            System.out.println("Сохранение заказа в базе данных...");
-
-            // Дополнительная проверка перед сохранением заказа
-            if (order.getUser() == null) {
-                System.out.println("Ошибка: пользователь не установлен в заказе");
-                view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось оформить заказ: пользователь не установлен");
-                return;
+        }
+        
+        // создаем новый заказ
+        log.debug("Создание нового заказа...");
+        Order order = new Order();
+        order.setUser(currentUser);
+        order.setOrderDate(LocalDateTime.now());
+        order.setTotalCost(totalPrice);
+        order.setStatus("Новый");
+        order.setOrderToken(orderToken);
+        
+        log.debug(() -> "Информация о заказе: Пользователь=" + currentUser.getLogin() + 
+                          ", Дата=" + order.getOrderDate() + 
+                          ", Сумма=" + totalPrice + 
+                          ", Статус=" + order.getStatus());
+        
+        // Добавить товары в заказ
+        // Позиции корзины показаны в таблице JavaFX и здесь не меняются: заказ собирается из новых позиций
+        // с актуальными товарами из базы
+        List<OrderItem> orderItems = new ArrayList<>();
+        for (OrderItem cartItem : cart) {
+            Product product = productMap.get(cartItem.getProduct().getId());
+            if (product == null || product.getId() <= 0 || cartItem.getQuantity() <= 0) {
+                log.error("Ошибка: некорректный элемент корзины: " + product);
+                throw new CheckoutException("Не удалось оформить заказ: некорректные товары в корзине");
             }
-
-            if (order.getItems() == null || order.getItems().isEmpty()) {
-                System.out.println("Ошибка: список товаров в заказе пуст");
-                view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось оформить заказ: корзина пуста");
-                return;
+            
+            OrderItem orderItem = new OrderItem();
+            orderItem.setOrder(order);
+            orderItem.setProduct(product);
+            orderItem.setQuantity(cartItem.getQuantity());
+            orderItem.setPrice(product.getPrice());  // Используем текущую цену из объекта товара
+            
+            orderItems.add(orderItem);
+            log.debug(() -> "Товар добавлен в заказ: " + orderItem.getProduct().getName() + 
+                              ", Количество=" + orderItem.getQuantity() + 
+                              ", Цена=" + orderItem.getPrice());
+        }
+        
+        if (orderItems.isEmpty()) {
+            throw new CheckoutException("Не удалось оформить заказ: корзина пуста");
+        }
+        order.setItems(orderItems);
+        return order;
+    }
+    
+    // Этап 2: списание остатков и запись заказа в одной транзакции (вне потока JavaFX)
+    // При ошибке базы запись повторяется с паузой, растущей вдвое; ключ заказа не дает записать его дважды
+    private Order persistOrder(Order order) {
+        log.debug("Сохранение заказа в базе данных...");
+        for (int attempt = 1; ; attempt++) {
+            OrderDAO.SubmitResult result = submitOrder(order);
+            if (result == OrderDAO.SubmitResult.CREATED || result == OrderDAO.SubmitResult.REPLAYED) {
+                log.debug(() -> "Заказ успешно оформлен с ID: " + order.getId());
+                return order;
             }
-
-            // Проверяем, что все товары в заказе имеют корректные ссылки
-            boolean hasInvalidItems = false;
-            for (OrderItem item : order.getItems()) {
-                if (item == null) {
-                    System.out.println("Ошибка: null-элемент в списке товаров заказа");
-                    hasInvalidItems = true;
-                    break;
-                }
-                if (item.getProduct() == null) {
-                    System.out.println("Ошибка: товар не определен в элементе заказа");
-                    hasInvalidItems = true;
-                    break;
-                }
-                if (item.getQuantity() <= 0) {
-                    System.out.println("Ошибка: некорректное количество товара (" + item.getQuantity() + 
-                                      ") для " + item.getProduct().getName());
-                    hasInvalidItems = true;
-                    break;
-                }
+            if (result == OrderDAO.SubmitResult.REJECTED) {
+                throw new CheckoutException("Не удалось оформить заказ: товары закончились или корзина некорректна");
             }
-
-            if (hasInvalidItems) {
-                view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось оформить заказ: некорректные товары в корзине");
-                return;
+            if (attempt > CHECKOUT_RETRIES) {
+                throw new IllegalStateException("База данных недоступна, попробуйте оформить заказ еще раз");
             }
-
-            boolean success = orderDAO.addOrder(order);
             
-            if (success) {
-                System.out.println("Заказ успешно оформлен с ID: " + order.getId());
-                
-                // Проверяем сумму заказа для обновления статуса постоянного клиента
-                double subtotal = 0.0;
-                for (OrderItem item : cartItems) {
-                    subtotal += item.getPrice() * item.getQuantity();
-                }
-                
-                // Если сумма заказа превышает 5000 рублей и у пользователя еще нет скидки,
-                // устанавливаем скидку 2% для постоянного клиента
-                if (subtotal > 5000 && currentUser.getDiscount() == 0) {
-                    System.out.println("Пользователь переходит в категорию постоянных клиентов");
-                    currentUser.setDiscount(0.02); // 2% скидка
-                    boolean discountUpdated = userDAO.updateUserDiscount(currentUser.getId(), 0.02);
-                    if (discountUpdated) {
-                        System.out.println("Скидка пользователя успешно обновлена до 2%");
-                    } else {
-                        System.out.println("Не удалось обновить скидку пользователя");
-                    }
-                }
-                
-                view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Заказ успешно оформлен");
-                
-                // Очищаем корзину
-                cartItems.clear();
-                updateCartView();
-                
-                // Обновляем историю заказов
-                loadOrderHistory();
-                
-                // Обновляем список товаров, чтобы отразить изменения в количестве на складе
-                loadProducts();
-            } else {
-                System.out.println("Не удалось оформить заказ");
-                view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось оформить заказ");
+            long delay = CHECKOUT_RETRY_DELAY_MS << (attempt - 1);
+            log.warn("Ошибка записи заказа (попытка " + attempt + "), повтор через " + delay + " мс");
+            try {
+                Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Оформление заказа прервано");
             }
-        } catch (Exception e) {
-            System.out.println("Ошибка при оформлении заказа: " + e.getMessage());
-            e.printStackTrace();
-            
-            // Более детальная информация об ошибке
-            if (e instanceof SQLException) {
-                SQLException sqlEx = (SQLException) e;
-                System.out.println("SQL State: " + sqlEx.getSQLState());
-                System.out.println("Error Code: " + sqlEx.getErrorCode());
+            DatabaseManager.resetConnectionStatus();
+        }
+    }
+    
+    // Запись заказа: через очередь групповой записи, если она включена, иначе отдельной транзакцией
+    private OrderDAO.SubmitResult submitOrder(Order order) {
+        if (!OrderIngestor.isEnabled()) {
+            return orderDAO.submitOrder(order);
+        }
+        try {
+            return OrderIngestor.submit(order).join();
+        } catch (CompletionException e) {
+            // Очередь переполнена - попытка повторяется с паузой, как при ошибке базы
+            if (e.getCause() instanceof RejectedExecutionException) {
+                log.warn(e.getCause().getMessage());
+                return OrderDAO.SubmitResult.FAILED;
             }
-            
-            view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при оформлении заказа: " + e.getMessage());
+            throw e;
+        }
+    }
+    
+    // Этап 3: действия после записи заказа; их ошибки не отменяют оформленный заказ
+    private Order postProcessOrder(Order order, List<OrderItem> cart) {
+        // Проверяем сумму заказа для обновления статуса постоянного клиента
+        double subtotal = 0.0;
+        for (OrderItem item : cart) {
+            subtotal += item.getPrice() * item.getQuantity();
+        }
+        
+        // Если сумма заказа превышает 5000 рублей и у пользователя еще нет скидки,
+        // устанавливаем скидку 2% для постоянного клиента
+        if (subtotal > 5000 && currentUser.getDiscount() == 0) {
+            log.debug("Пользователь переходит в категорию постоянных клиентов");
+            currentUser.setDiscount(0.02); // 2% скидка
+            boolean discountUpdated = userDAO.updateUserDiscount(currentUser.getId(), 0.02);
+            if (discountUpdated) {
+                log.debug("Скидка пользователя успешно обновлена до 2%");
+            } else {
+                log.warn("Не удалось обновить скидку пользователя");
+            }
+        }
+        
+        return order;
+    }
+    
+    // Ошибка оформления заказа, сообщение которой показывается пользователю
+    private static class CheckoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CheckoutException(String message) {
+            super(message);
         }
     }
 
@@ -895,20 +976,32 @@ public class ClientController {
                 currentUser.setPasswordHash(newPasswordField.getText());
             }
             
-            // Сбрасываем соединение перед сохранением данных пользователя
-            com.olineshop.util.DatabaseManager.resetConnectionStatus();
-            
             // Сохранение в базе данных
-            boolean success = userDAO.updateUser(currentUser);
+            Task<Boolean> saveTask = new Task<>() {
+                @Override
+                protected Boolean call() {
+                    return userDAO.updateUser(currentUser);
+                }
+            };
             
-            if (success) {
-                view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Данные успешно обновлены");
-                // Обновляем информацию на верхней панели
-                view.updateUserInfo(currentUser);
-                dialogStage.close();
-            } else {
+            saveTask.setOnSucceeded(event -> {
+                if (saveTask.getValue()) {
+                    view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Данные успешно обновлены");
+                    // Обновляем информацию на верхней панели
+                    view.updateUserInfo(currentUser);
+                    dialogStage.close();
+                } else {
+                    view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить данные");
+                }
+            });
+            
+            saveTask.setOnFailed(event -> {
+                Throwable error = TaskScheduler.failureOf(saveTask);
+                log.error("Ошибка при обновлении данных пользователя: " + error.getMessage(), error);
                 view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить данные");
-            }
+            });
+            
+            TaskScheduler.execute(TaskScheduler.Lane.INTERACTIVE, saveTask);
         });
         
         // Обработчик кнопки "Отмена"
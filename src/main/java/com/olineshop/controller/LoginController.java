@@ -11,12 +11,14 @@ import com.olineshop.view.RegisterView;
 import com.olineshop.dao.RoleDAO;
 import com.olineshop.model.Role;
 import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
 
 import java.util.List;
 
 //Контроллер для окна входа в систему
 
 public class LoginController {
+    private static final Log log = Log.get(LoginController.class);
     private final LoginView view;
     private final Stage primaryStage;
     private final UserDAO userDAO;
@@ -34,38 +36,38 @@ public class LoginController {
         this.primaryStage = primaryStage;
         this.userDAO = new UserDAO();
         this.roleDAO = new RoleDAO();
-        System.out.println("LoginController инициализирован");
+        log.debug("LoginController инициализирован");
     }
 
     //нажатие на кнопку "Войти"
     public void handleLogin(String login, String password) {
-        System.out.println("Попытка входа: логин = " + login);
+        log.debug(() -> "Попытка входа: логин = " + login);
         
         // поля не пустые?
         if (login == null || login.trim().isEmpty()) {
-            System.out.println("Ошибка: пустой логин");
+            log.error("Ошибка: пустой логин");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Введите логин");
             return;
         }
         
         if (password == null || password.trim().isEmpty()) {
-            System.out.println("Ошибка: пустой пароль");
+            log.error("Ошибка: пустой пароль");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Введите пароль");
             return;
         }
         
         // Проверяем учетные данные администратора
         if (login.equals(ADMIN_LOGIN) && password.equals(ADMIN_PASSWORD)) {
-            System.out.println("Вход выполнен с использованием жестко заданных учетных данных администратора");
+            log.debug("Вход выполнен с использованием жестко заданных учетных данных администратора");
             
             // Сбрасываем статус соединения с базой данных перед входом администратора
             DatabaseManager.resetConnectionStatus();
             
             // Получаем список всех ролей
             List<Role> allRoles = roleDAO.getAllRoles();
-            System.out.println("Доступные роли:");
+            log.debug("Доступные роли:");
             for (Role role : allRoles) {
-                System.out.println("ID: " + role.getId() + ", Название: " + role.getName());
+                log.debug(() -> "ID: " + role.getId() + ", Название: " + role.getName());
             }
             
             // Создаем объект администратора
@@ -76,18 +78,18 @@ public class LoginController {
             
             // Если по названию не нашли, пробуем по ID
             if (adminRole == null) {
-                System.out.println("Не удалось найти роль администратора по названию, пробуем найти по ID=1");
+                log.warn("Не удалось найти роль администратора по названию, пробуем найти по ID=1");
                 adminRole = roleDAO.getRoleById(1);
             }
             
             // Если и по ID не нашли, пробуем взять первую подходящую роль из списка
             if (adminRole == null && !allRoles.isEmpty()) {
-                System.out.println("Не удалось найти роль администратора ни по названию, ни по ID. Пробуем использовать доступную роль.");
+                log.warn("Не удалось найти роль администратора ни по названию, ни по ID. Пробуем использовать доступную роль.");
                 for (Role role : allRoles) {
                     if (role.getName().toLowerCase().contains("админ") || 
                         role.getName().toLowerCase().contains("admin")) {
                         adminRole = role;
-                        System.out.println("Найдена подходящая роль: " + role.getName());
+                        log.debug(() -> "Найдена подходящая роль: " + role.getName());
                         break;
                     }
                 }
@@ -95,12 +97,12 @@ public class LoginController {
                 // Если не нашли подходящую, берем первую доступную
                 if (adminRole == null && !allRoles.isEmpty()) {
                     adminRole = allRoles.get(0);
-                    System.out.println("Используем первую доступную роль: " + adminRole.getName());
+                    log.debug("Используем первую доступную роль: " + adminRole.getName());
                 }
             }
             
             if (adminRole == null) {
-                System.out.println("Ошибка: не удалось получить роль администратора");
+                log.error("Ошибка: не удалось получить роль администратора");
                 view.showAlert(Alert.AlertType.ERROR, "Ошибка входа", "Не удалось получить роль администратора");
                 return;
             }
@@ -113,16 +115,16 @@ public class LoginController {
             adminUser.setEmail("admin@example.com");
             adminUser.setRole(adminRole);
             
-            System.out.println("Создан администратор с ролью: ID=" + adminRole.getId() + ", Название=" + adminRole.getName());
+            log.debug("Создан администратор с ролью: ID=" + adminRole.getId() + ", Название=" + adminRole.getName());
             primaryStage.close();
             
-            System.out.println("Открываем окно администратора");
+            log.debug("Открываем окно администратора");
             MainAdminView adminView = new MainAdminView();
             adminView.start(new Stage());
             return;
         }
         
-        System.out.println("Проверка учетных данных в базе данных...");
+        log.debug("Проверка учетных данных в базе данных...");
 
         // Сбрасываем статус соединения с базой данных перед проверкой учетных данных
         DatabaseManager.resetConnectionStatus();
@@ -130,24 +132,24 @@ public class LoginController {
         User user = userDAO.authenticate(login, password);
         
         if (user != null) {
-            System.out.println("Вход успешен. Пользователь: " + user.getFirstName() + " " + user.getLastName() + ", роль: " + user.getRole().getName());
+            log.debug(() -> "Вход успешен. Пользователь: " + user.getFirstName() + " " + user.getLastName() + ", роль: " + user.getRole().getName());
             
 
             primaryStage.close();
 
             if (user.isAdmin()) {
-                System.out.println("Открываем окно администратора");
+                log.debug("Открываем окно администратора");
 
                 MainAdminView adminView = new MainAdminView();
                 adminView.start(new Stage());
             } else {
-                System.out.println("Открываем окно клиента");
+                log.debug("Открываем окно клиента");
 
                 MainClientView clientView = new MainClientView(user);
                 clientView.start(new Stage());
             }
         } else {
-            System.out.println("Ошибка входа: неверный логин или пароль");
+            log.error("Ошибка входа: неверный логин или пароль");
 
             view.showAlert(Alert.AlertType.ERROR, "Ошибка входа", "Неверный логин или пароль");
         }
@@ -155,7 +157,7 @@ public class LoginController {
 
 
     public void showRegistrationWindow() {
-        System.out.println("Переход к окну регистрации");
+        log.debug("Переход к окну регистрации");
 
         primaryStage.close();
         
@@ -9,12 +9,14 @@ import com.olineshop.model.User;
 import com.olineshop.util.DatabaseManager;
 import com.olineshop.view.LoginView;
 import com.olineshop.view.RegisterView;
+import com.olineshop.util.Log;
 
 import java.util.List;
 
 //Контроллер для окна регистрации пользователей
 
 public class RegisterController {
+    private static final Log log = Log.get(RegisterController.class);
     private final RegisterView view;
     private final Stage primaryStage;
     private final UserDAO userDAO;
@@ -33,11 +35,11 @@ public class RegisterController {
     //нажатие на кнопку Зарегистрироваться
     public void handleRegister(String login, String password, String confirmPassword,
             String firstName, String lastName, String email, String phone) {
-        System.out.println("Начало регистрации");
+        log.debug("Начало регистрации");
         
         // Проверяем подключение к базе данных
         if (DatabaseManager.isConnectionFailed()) {
-            System.out.println("Ошибка подключения к базе данных: " + DatabaseManager.getLastErrorMessage());
+            log.error("Ошибка подключения к базе данных: " + DatabaseManager.getLastErrorMessage());
             view.showAlert(Alert.AlertType.ERROR, "Ошибка подключения", 
                     "Не удалось подключиться к базе данных. Проверьте настройки подключения.");
             return;
@@ -45,57 +47,57 @@ public class RegisterController {
         
         // поля не пустые?
         if (login == null || login.trim().isEmpty()) {
-            System.out.println("Ошибка: пустой логин");
+            log.error("Ошибка: пустой логин");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Введите логин");
             return;
         }
         
         if (password == null || password.trim().isEmpty()) {
-            System.out.println("Ошибка: пустой пароль");
+            log.error("Ошибка: пустой пароль");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Введите пароль");
             return;
         }
         
         if (confirmPassword == null || confirmPassword.trim().isEmpty()) {
-            System.out.println("Ошибка: пустое подтверждение пароля");
+            log.error("Ошибка: пустое подтверждение пароля");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Подтвердите пароль");
             return;
         }
         
         if (firstName == null || firstName.trim().isEmpty()) {
-            System.out.println("Ошибка: пустое имя");
+            log.error("Ошибка: пустое имя");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Введите имя");
             return;
         }
         
         if (lastName == null || lastName.trim().isEmpty()) {
-            System.out.println("Ошибка: пустая фамилия");
+            log.error("Ошибка: пустая фамилия");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Введите фамилию");
             return;
         }
         
         if (email == null || email.trim().isEmpty()) {
-            System.out.println("Ошибка: пустой email");
+            log.error("Ошибка: пустой email");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Введите email");
             return;
         }
         
         // пароли совпадают?
         if (!password.equals(confirmPassword)) {
-            System.out.println("Ошибка: пароли не совпадают");
+            log.error("Ошибка: пароли не совпадают");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Пароли не совпадают");
             return;
         }
         
-        System.out.println("Проверка существующего пользователя");
+        log.debug("Проверка существующего пользователя");
         User existingUser = userDAO.getUserByLogin(login);
         if (existingUser != null) {
-            System.out.println("Ошибка: логин уже занят");
+            log.error("Ошибка: логин уже занят");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Логин уже занят");
             return;
         }
         
-        System.out.println("Получение роли клиента");
+        log.debug("Получение роли клиента");
         
        
         DatabaseManager.resetConnectionStatus();
@@ -104,7 +106,7 @@ public class RegisterController {
         Role clientRole = roleDAO.getRoleByName("Клиент");
         
         if (clientRole == null) {
-            System.out.println("Не удалось найти роль 'Клиент', пробуем получить все роли");
+            log.warn("Не удалось найти роль 'Клиент', пробуем получить все роли");
             
             // Пробуем создать стандартные роли, если они не существуют
             roleDAO.createDefaultRoles();
@@ -115,27 +117,27 @@ public class RegisterController {
             if (clientRole == null) {
                 List<Role> allRoles = roleDAO.getAllRoles();
                 if (allRoles == null || allRoles.isEmpty()) {
-                    System.out.println("Ошибка: не удалось получить список ролей из базы данных");
+                    log.error("Ошибка: не удалось получить список ролей из базы данных");
                     view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось получить список ролей. Проверьте подключение к базе данных.");
                     return;
                 }
                 
-                System.out.println("Доступные роли:");
+                log.debug("Доступные роли:");
                 for (Role role : allRoles) {
-                    System.out.println("ID: " + role.getId() + ", Название: " + role.getName());
+                    log.debug(() -> "ID: " + role.getId() + ", Название: " + role.getName());
                 }
                 
                 // пробуем по ID
                 clientRole = roleDAO.getRoleById(2);
                 
                 if (clientRole == null && !allRoles.isEmpty()) {
-                    System.out.println("Не удалось найти роль клиента по ID. Пробуем найти подходящую роль.");
+                    log.warn("Не удалось найти роль клиента по ID. Пробуем найти подходящую роль.");
                     for (Role role : allRoles) {
                         if (role.getName().toLowerCase().contains("клиент") || 
                             role.getName().toLowerCase().contains("client") ||
                             role.getName().toLowerCase().contains("user")) {
                             clientRole = role;
-                            System.out.println("Найдена подходящая роль: " + role.getName());
+                            log.debug(() -> "Найдена подходящая роль: " + role.getName());
                             break;
                         }
                     }
@@ -143,19 +145,19 @@ public class RegisterController {
                     // Если не нашли подходящую, берем первую доступную
                     if (clientRole == null) {
                         clientRole = allRoles.get(0);
-                        System.out.println("Используем первую доступную роль: " + clientRole.getName());
+                        log.debug("Используем первую доступную роль: " + clientRole.getName());
                     }
                 }
             }
         }
         
         if (clientRole == null) {
-            System.out.println("Ошибка: не удалось получить роль пользователя");
+            log.error("Ошибка: не удалось получить роль пользователя");
             view.showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось получить роль пользователя. Проверьте настройки базы данных.");
             return;
         }
         
-        System.out.println("Создание нового пользователя с ролью: ID=" + clientRole.getId() + ", Название=" + clientRole.getName());
+        log.debug("Создание нового пользователя с ролью: ID=" + clientRole.getId() + ", Название=" + clientRole.getName());
         User newUser = new User();
         newUser.setLogin(login);
         newUser.setPasswordHash(password);
@@ -166,10 +168,10 @@ public class RegisterController {
         newUser.setDiscount(0.0);
         newUser.setRole(clientRole);
         
-        System.out.println("Добавление пользователя в базу данных");
+        log.debug("Добавление пользователя в базу данных");
         boolean success = userDAO.addUser(newUser);
         
-        System.out.println("Результат регистрации: " + (success ? "успешно" : "ошибка"));
+        log.debug(() -> "Результат регистрации: " + (success ? "успешно" : "ошибка"));
         if (success) {
             view.showAlert(Alert.AlertType.INFORMATION, "Успех", "Регистрация выполнена успешно");
             showLoginWindow();
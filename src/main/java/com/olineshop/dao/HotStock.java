@@ -0,0 +1,450 @@
+package com.olineshop.dao;
+
+import com.olineshop.model.OrderItem;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Остатки "горячих" товаров в памяти приложения
+//Для товаров из списка olineshop.stock.hotSkus заказ не блокирует строку products: доступный остаток
+//хранится в счетчике, разделенном на полосы, и резервируется в памяти (CAS без блокировок).
+//Позиции таких товаров записываются в order_items с stock_applied = 0 в транзакции заказа,
+//а фоновый поток раз в flushMs одной транзакцией вычитает их суммы из products.stock_quantity
+//(по одному UPDATE на товар, сколько бы заказов ни пришло) и помечает позиции stock_applied = 1.
+//Так order_items служит журналом: после сбоя несписанные позиции остаются в базе и списываются
+//при следующем запуске (сверка), после чего счетчики загружаются из products.
+//Счетчик = остаток в базе - зафиксированные, но еще не списанные позиции - резервы незавершенных заказов.
+//Режим рассчитан на одно приложение, которое пишет заказы: счетчики других экземпляров не узнают о резервах.
+//Перед записью абсолютного остатка (администратор, импорт) журнал списывается (flush), чтобы новый остаток
+//не уменьшился на позиции, заказанные до записи. Позиции, зафиксированные во время записи, могут оказаться
+//больше нового остатка; списание не уводит остаток ниже 0, так же как счетчик (adjust), но каждая такая
+//нехватка (продано больше, чем было) пишется в журнал как ошибка и учитывается в статистике.
+//
+//Настройки (системные свойства):
+//olineshop.stock.hotSkus - id горячих товаров через запятую (по умолчанию пусто - режим выключен)
+//olineshop.stock.hotStripes - полос в счетчике (по умолчанию число процессоров)
+//olineshop.stock.flushMs - период списания в базу (по умолчанию 100)
+
+public final class HotStock {
+    private static final Log log = Log.get(HotStock.class);
+
+    private static final Set<Integer> HOT_IDS = parseIds(System.getProperty("olineshop.stock.hotSkus", ""));
+    private static final int STRIPES =
+            Math.max(1, Integer.getInteger("olineshop.stock.hotStripes", Runtime.getRuntime().availableProcessors()));
+    private static final long FLUSH_MS = Math.max(1L, Long.getLong("olineshop.stock.flushMs", 100L));
+    // Позиций журнала, списываемых одной транзакцией
+    private static final int FLUSH_BATCH = 5000;
+
+    private static final Map<Integer, StripedStock> counters = new HashMap<>();
+    private static volatile boolean started = false;
+    private static Thread flusher;
+    private static volatile boolean stopping = false;
+
+    private static final AtomicLong granted = new AtomicLong();
+    private static final AtomicLong refused = new AtomicLong();
+    private static final AtomicLong flushes = new AtomicLong();
+    private static final AtomicLong appliedItems = new AtomicLong();
+    // Единиц, списанных сверх остатка в базе (признак расхождения счетчика с базой)
+    private static final AtomicLong oversold = new AtomicLong();
+
+    private HotStock() {
+    }
+
+    //Включен ли режим горячих товаров
+    public static boolean isEnabled() {
+        return !HOT_IDS.isEmpty();
+    }
+
+    //Резервируется ли остаток товара в памяти
+    public static boolean isHot(int productId) {
+        return HOT_IDS.contains(productId);
+    }
+
+    //Позиции горячих товаров из списка
+    static List<OrderItem> hotItems(List<OrderItem> items) {
+        if (HOT_IDS.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<OrderItem> hot = new ArrayList<>();
+        for (OrderItem item : items) {
+            if (isHot(item.getProduct().getId())) {
+                hot.add(item);
+            }
+        }
+        return hot;
+    }
+
+    //Зарезервировать все позиции в памяти (все или ничего)
+    //items позиции горячих товаров
+    //return true, если хватило всех товаров; при false ничего не зарезервировано
+    static boolean reserve(List<OrderItem> items) {
+        if (!ensureStarted()) {
+            return false;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            OrderItem item = items.get(i);
+            StripedStock stock = counters.get(item.getProduct().getId());
+            if (stock == null || !stock.tryReserve(item.getQuantity())) {
+                refused.incrementAndGet();
+                log.warn("Недостаточно товара на складе: ID=" + item.getProduct().getId() +
+                         ", Требуется=" + item.getQuantity());
+                release(items.subList(0, i));
+                return false;
+            }
+        }
+        granted.incrementAndGet();
+        return true;
+    }
+
+    //Вернуть резерв позиций (транзакция заказа откатилась)
+    static void release(List<OrderItem> items) {
+        for (OrderItem item : items) {
+            StripedStock stock = counters.get(item.getProduct().getId());
+            if (stock != null) {
+                stock.release(item.getQuantity());
+            }
+        }
+    }
+
+    //Остаток горячего товара изменен в базе напрямую (например, администратором)
+    //Перед записью абсолютного остатка нужно вызвать flush, иначе несписанные позиции уменьшат новый остаток
+    //productId товар
+    //delta новое значение stock_quantity минус прежнее, прочитанное под блокировкой строки
+    static void stockChanged(int productId, int delta) {
+        StripedStock stock = started ? counters.get(productId) : null;
+        if (stock != null) {
+            stock.adjust(delta);
+            log.debug(() -> "Остаток горячего товара ID=" + productId + " изменен на " + delta);
+        }
+    }
+
+    //Доступный остаток горячего товара в памяти или -1, если счетчик не загружен
+    public static long available(int productId) {
+        StripedStock stock = started ? counters.get(productId) : null;
+        return stock == null ? -1 : stock.available();
+    }
+
+    //Статистика для журнала
+    public static String getStats() {
+        return "товаров: " + HOT_IDS.size() + ", полос: " + STRIPES + ", заказов с резервом: " + granted.get() +
+               ", отказов: " + refused.get() + ", списаний в базу: " + flushes.get() +
+               ", списано позиций: " + appliedItems.get() + ", продано сверх остатка: " + oversold.get();
+    }
+
+    //Сверка при запуске: списать позиции, оставшиеся несписанными, и загрузить счетчики из базы
+    //Вызывается при старте приложения; иначе выполняется при первом резерве
+    //return true, если счетчики загружены
+    public static boolean ensureStarted() {
+        return started || start();
+    }
+
+    private static synchronized boolean start() {
+        if (started || HOT_IDS.isEmpty() || stopping) {
+            return started;
+        }
+        try {
+            int applied = flush();
+            if (applied > 0) {
+                log.info("Сверка горячих товаров: списано позиций, оставшихся с прошлого запуска: " + applied);
+            }
+            loadCounters();
+        } catch (SQLException e) {
+            log.error("Ошибка при сверке остатков горячих товаров: " + e.getMessage(), e);
+            return false;
+        }
+        started = true;
+
+        flusher = new Thread(HotStock::runFlusher, "hot-stock-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Горячие товары: " + HOT_IDS + ", полос: " + STRIPES + ", списание каждые " + FLUSH_MS + " мс");
+        return true;
+    }
+
+    //Списать оставшиеся позиции и остановить фоновый поток (при завершении приложения)
+    public static void shutdown() {
+        Thread current;
+        synchronized (HotStock.class) {
+            stopping = true;
+            current = flusher;
+        }
+        if (current == null) {
+            return;
+        }
+        current.interrupt();
+        try {
+            current.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (SQLException e) {
+            log.error("Ошибка при списании остатков горячих товаров: " + e.getMessage(), e);
+        }
+        log.info("Горячие товары: " + getStats());
+    }
+
+    private static void runFlusher() {
+        while (!stopping) {
+            try {
+                Thread.sleep(FLUSH_MS);
+            } catch (InterruptedException e) {
+                // Остановка идет через stopping, последнее списание выполняет shutdown
+                log.debug("Поток списания остатков прерван");
+                continue;
+            }
+            try {
+                flush();
+            } catch (SQLException e) {
+                // Позиции остаются в журнале со stock_applied = 0 и будут списаны следующей попыткой
+                log.warn("Не удалось списать остатки горячих товаров: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    //Списать в products все зафиксированные позиции со stock_applied = 0
+    //Незафиксированные позиции запросу не видны и попадут в следующее списание
+    //return количество списанных позиций
+    static synchronized int flush() throws SQLException {
+        int total = 0;
+        while (true) {
+            int applied = flushBatch();
+            total += applied;
+            if (applied < FLUSH_BATCH) {
+                return total;
+            }
+        }
+    }
+
+    private static int flushBatch() throws SQLException {
+        Connection conn = DatabaseManager.getConnection();
+        if (conn == null) {
+            throw new SQLException("Не удалось получить соединение с базой данных");
+        }
+        String selectSql = "SELECT id, product_id, quantity FROM order_items WHERE stock_applied = 0 " +
+                           "ORDER BY id LIMIT " + FLUSH_BATCH + " FOR UPDATE";
+        // Остаток не уходит в минус; нехватка заранее находится findShortfalls и попадает в журнал
+        String productSql = "UPDATE products SET stock_quantity = GREATEST(stock_quantity - ?, 0) WHERE id = ?";
+
+        try {
+            conn.setAutoCommit(false);
+            List<Integer> itemIds = new ArrayList<>();
+            // По возрастанию id товара, как при блокировке строк в заказах
+            Map<Integer, Integer> deltas = new TreeMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(selectSql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    itemIds.add(rs.getInt("id"));
+                    deltas.merge(rs.getInt("product_id"), rs.getInt("quantity"), Integer::sum);
+                }
+            }
+            if (itemIds.isEmpty()) {
+                conn.rollback();
+                return 0;
+            }
+
+            Map<Integer, Integer> shortfalls = findShortfalls(deltas, conn);
+            try (PreparedStatement pstmt = conn.prepareStatement(productSql)) {
+                for (Map.Entry<Integer, Integer> entry : deltas.entrySet()) {
+                    pstmt.setInt(1, entry.getValue());
+                    pstmt.setInt(2, entry.getKey());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+
+            String markSql = "UPDATE order_items SET stock_applied = 1 WHERE id IN (" +
+                             String.join(", ", Collections.nCopies(itemIds.size(), "?")) + ")";
+            try (PreparedStatement pstmt = conn.prepareStatement(markSql)) {
+                for (int i = 0; i < itemIds.size(); i++) {
+                    pstmt.setInt(i + 1, itemIds.get(i));
+                }
+                pstmt.executeUpdate();
+            }
+
+            conn.commit();
+            for (Map.Entry<Integer, Integer> shortfall : shortfalls.entrySet()) {
+                oversold.addAndGet(shortfall.getValue());
+                log.error("Горячий товар ID=" + shortfall.getKey() + " продан сверх остатка в базе на " +
+                          shortfall.getValue() + " ед.: остаток записан как 0, счетчик расходится с базой");
+            }
+            flushes.incrementAndGet();
+            appliedItems.addAndGet(itemIds.size());
+            log.debug(() -> "Списано позиций горячих товаров: " + itemIds.size() + ", товаров: " + deltas.size());
+            return itemIds.size();
+        } catch (SQLException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException ex) {
+                log.error("Ошибка при откате транзакции: " + ex.getMessage(), ex);
+            }
+            throw e;
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+                conn.close();
+            } catch (SQLException e) {
+                log.error("Ошибка при восстановлении autoCommit: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Остатки товаров под блокировкой строк (в порядке id) и нехватка там, где списание больше остатка
+    private static Map<Integer, Integer> findShortfalls(Map<Integer, Integer> deltas, Connection conn)
+            throws SQLException {
+        String sql = "SELECT id, stock_quantity FROM products WHERE id IN (" +
+                     String.join(", ", Collections.nCopies(deltas.size(), "?")) + ") ORDER BY id FOR UPDATE";
+        Map<Integer, Integer> shortfalls = new TreeMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Integer id : deltas.keySet()) {
+                pstmt.setInt(index++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt("id");
+                    int shortfall = deltas.get(id) - rs.getInt("stock_quantity");
+                    if (shortfall > 0) {
+                        shortfalls.put(id, shortfall);
+                    }
+                }
+            }
+        }
+        return shortfalls;
+    }
+
+    private static void loadCounters() throws SQLException {
+        String sql = "SELECT id, stock_quantity FROM products WHERE id IN (" +
+                     String.join(", ", Collections.nCopies(HOT_IDS.size(), "?")) + ")";
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("Не удалось получить соединение с базой данных");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                for (Integer id : HOT_IDS) {
+                    pstmt.setInt(index++, id);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        counters.put(rs.getInt("id"), new StripedStock(rs.getInt("stock_quantity"), STRIPES));
+                    }
+                }
+            }
+        }
+        for (Integer id : HOT_IDS) {
+            if (!counters.containsKey(id)) {
+                log.warn("Горячий товар ID=" + id + " не найден, заказы на него будут отклоняться");
+            }
+        }
+    }
+
+    private static Set<Integer> parseIds(String value) {
+        Set<Integer> ids = new TreeSet<>();
+        for (String part : value.split(",")) {
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                ids.add(Integer.parseInt(trimmed));
+            } catch (NumberFormatException e) {
+                log.warn("Неверный id горячего товара: " + trimmed);
+            }
+        }
+        return Collections.unmodifiableSet(ids);
+    }
+
+    // Остаток одного товара, разделенный на полосы
+    // Каждый поток резервирует из "своей" полосы, поэтому параллельные заказы не спорят за одну ячейку.
+    // Ячейка уменьшается только CAS при достаточном значении, поэтому остаток не уходит в минус.
+    // Если ни в одной полосе не хватает, остаток собирается в одну полосу под блокировкой.
+    private static final class StripedStock {
+        // Ячейки полос разнесены на 128 байт, чтобы не делить строку кэша процессора
+        private static final int PAD = 16;
+        private final AtomicLongArray cells;
+        private final int stripes;
+
+        StripedStock(long available, int stripes) {
+            this.stripes = stripes;
+            this.cells = new AtomicLongArray(stripes * PAD);
+            for (int i = 0; i < stripes; i++) {
+                cells.set(i * PAD, available / stripes + (i < available % stripes ? 1 : 0));
+            }
+        }
+
+        boolean tryReserve(int quantity) {
+            int home = home();
+            for (int i = 0; i < stripes; i++) {
+                int cell = ((home + i) % stripes) * PAD;
+                long value;
+                while ((value = cells.get(cell)) >= quantity) {
+                    if (cells.compareAndSet(cell, value, value - quantity)) {
+                        return true;
+                    }
+                }
+            }
+            return gatherAndReserve(quantity);
+        }
+
+        void release(int quantity) {
+            cells.addAndGet(home() * PAD, quantity);
+        }
+
+        // Остаток нельзя увести в минус: если в базе поставили меньше, чем уже зарезервировано, счетчик станет 0
+        synchronized void adjust(int delta) {
+            if (delta >= 0) {
+                cells.addAndGet(home() * PAD, delta);
+                return;
+            }
+            long total = drain() + delta;
+            cells.addAndGet(home() * PAD, Math.max(0, total));
+        }
+
+        long available() {
+            long total = 0;
+            for (int i = 0; i < stripes; i++) {
+                total += cells.get(i * PAD);
+            }
+            return total;
+        }
+
+        private synchronized boolean gatherAndReserve(int quantity) {
+            long total = drain();
+            boolean reserved = total >= quantity;
+            if (reserved) {
+                total -= quantity;
+            }
+            cells.addAndGet(home() * PAD, total);
+            return reserved;
+        }
+
+        private long drain() {
+            long total = 0;
+            for (int i = 0; i < stripes; i++) {
+                total += cells.getAndSet(i * PAD, 0);
+            }
+            return total;
+        }
+
+        private int home() {
+            long id = Thread.currentThread().getId();
+            return (int) Math.floorMod(id * 0x9E3779B97F4A7C15L >>> 32, (long) stripes);
+        }
+    }
+}
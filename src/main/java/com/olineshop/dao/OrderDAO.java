@@ -6,263 +6,368 @@ import com.olineshop.model.Product;
 import com.olineshop.model.User;
 import com.olineshop.model.Role;
 import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 //Класс для работы с заказами в базе данных
 
 public class OrderDAO {
-    private UserDAO userDAO = new UserDAO();
+    private static final Log log = Log.get(OrderDAO.class);
     private ProductDAO productDAO = new ProductDAO();
+    private final RoleDAO roleDAO = new RoleDAO();
+    private final SalesDAO salesDAO = new SalesDAO();
+
+    // Заказ вместе с пользователем за один запрос (роль берется из кэша RoleDAO)
+    private static final String ORDER_SELECT =
+            "SELECT o.*, u.login, u.first_name, u.last_name, u.email, u.phone, u.discount, u.role_id " +
+            "FROM orders o " +
+            "JOIN users u ON o.user_id = u.id ";
+    // Сколько заказов загружать одним запросом товаров (ограничение длины списка IN)
+    private static final int ITEMS_IN_CHUNK = 500;
+    // Блокировать строки товаров в начале транзакции заказа (false - только условные UPDATE, для сравнения)
+    private static final boolean LOCK_ROWS =
+            Boolean.parseBoolean(System.getProperty("olineshop.checkout.lockRows", "true"));
+    // Сколько раз повторять заказ, отмененный из-за конфликта блокировок
+    static final int LOCK_RETRIES = Integer.getInteger("olineshop.checkout.lockRetries", 3);
+    private static final AtomicLong lockConflicts = new AtomicLong();
+    // Сколько позиций заказа записывать одним многострочным INSERT
+    private static final int ITEMS_INSERT_CHUNK = Math.max(1, Integer.getInteger("olineshop.checkout.itemsChunk", 500));
 
     //Получить все заказы из базы данных
+    //Заказы читаются потоком (streamAllOrders), поэтому в памяти не хранится вторая копия результата в драйвере
     //return список заказов
     public List<Order> getAllOrders() {
-        List<Order> orders = new ArrayList<>();
-        String sql = "SELECT o.*, u.login, u.first_name, u.last_name, u.email, u.phone, u.discount, " +
-                     "u.role_id, r.name as role_name " +
-                     "FROM orders o " +
-                     "JOIN users u ON o.user_id = u.id " +
-                     "JOIN roles r ON u.role_id = r.id " +
-                     "ORDER BY o.order_date DESC";
-        System.out.println("Получение всех заказов из базы данных");
+        log.debug("Получение всех заказов из базы данных");
+        try (Stream<Order> stream = streamAllOrders()) {
+            List<Order> orders = stream.collect(Collectors.toCollection(ArrayList::new));
+            log.debug(() -> "Всего загружено заказов: " + orders.size());
+            return orders;
+        } catch (StreamingQuery.ReadException e) {
+            log.error("Ошибка при получении всех заказов: " + e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
 
-        // Сбрасываем соединение перед выполнением запроса
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+    //Получить все заказы потоком, от новых к старым (без товаров, как getAllOrders)
+    //Строки читаются из базы по мере обхода потока, в памяти только текущий заказ.
+    //Поток занимает соединение до закрытия - используйте try-with-resources.
+    //Ошибка при чтении строк передается как StreamingQuery.ReadException
+    //return поток заказов (пустой, если запрос не выполнился)
+    public Stream<Order> streamAllOrders() {
+        String sql = ORDER_SELECT + "ORDER BY o.order_date DESC";
+        log.debug(() -> "Выполнение SQL-запроса: " + sql);
+        try {
+            return StreamingQuery.stream(sql, StreamingQuery.NO_PARAMETERS, this::mapOrder);
+        } catch (SQLException e) {
+            log.error("Ошибка при получении всех заказов: " + e.getMessage(), e);
+            return Stream.empty();
+        }
+    }
+
+    //Получить страницу заказов от новых к старым (без товаров, как getAllOrders)
+    //Страница продолжается строго после (order_date, id) последнего заказа, по индексу idx_orders_date_id
+    //after последний заказ предыдущей страницы или null для первой страницы
+    //pageSize размер страницы
+    //return страница заказов
+    public Page<Order> getOrdersPage(Order after, int pageSize) {
+        String sql = after == null
+                ? ORDER_SELECT + "ORDER BY o.order_date DESC, o.id DESC LIMIT ?"
+                : ORDER_SELECT + "WHERE o.order_date < ? OR (o.order_date = ? AND o.id < ?) " +
+                  "ORDER BY o.order_date DESC, o.id DESC LIMIT ?";
+        List<Order> orders = new ArrayList<>();
 
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
-                return orders;
+                log.error("Ошибка: не удалось получить соединение с базой данных");
+                return Page.of(orders, pageSize);
             }
 
-            System.out.println("Выполнение SQL-запроса: " + sql);
-            
-            try (PreparedStatement pstmt = conn.prepareStatement(sql);
-                 ResultSet rs = pstmt.executeQuery()) {
-                
-                while (rs.next()) {
-                    // Создаем объект Role
-                    Role role = new Role(
-                        rs.getInt("role_id"),
-                        rs.getString("role_name")
-                    );
-                    
-                    // Создаем объект User
-                    User user = new User(
-                        rs.getInt("user_id"),
-                        rs.getString("login"),
-                        "", // Пароль не загружаем из соображений безопасности
-                        rs.getString("first_name"),
-                        rs.getString("last_name"),
-                        rs.getString("email"),
-                        rs.getString("phone"),
-                        rs.getDouble("discount"),
-                        role
-                    );
-                    
-                    // Создаем объект Order
-                    Order order = new Order(
-                        rs.getInt("id"),
-                        user,
-                        rs.getTimestamp("order_date").toLocalDateTime(),
-                        rs.getTimestamp("delivery_date") != null ? rs.getTimestamp("delivery_date").toLocalDateTime() : null,
-                        rs.getDouble("total_cost"),
-                        rs.getString("status")
-                    );
-                    
-                    // Инициализируем пустой список товаров
-                    order.setItems(new ArrayList<>());
-                    
-                    orders.add(order);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                if (after != null) {
+                    Timestamp afterDate = Timestamp.valueOf(after.getOrderDate());
+                    pstmt.setTimestamp(index++, afterDate);
+                    pstmt.setTimestamp(index++, afterDate);
+                    pstmt.setInt(index++, after.getId());
+                }
+                pstmt.setInt(index, pageSize + 1);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        orders.add(mapOrder(rs));
+                    }
                 }
             }
-            
-            System.out.println("Всего загружено заказов: " + orders.size());
+            log.debug(() -> "Загружена страница заказов: " + orders.size());
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении всех заказов: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при получении страницы заказов: " + e.getMessage(), e);
         }
-        return orders;
+        return Page.of(orders, pageSize);
     }
 
-    //Получить заказы пользователя
+    //Получить заказы пользователя вместе с товарами
+    //Заказы с пользователем загружаются одним запросом, товары всех заказов - запросом со списком IN
     //userId идентификатор пользователя
-    //return список заказов пользователя
+    //return список заказов пользователя (от новых к старым)
     public List<Order> getOrdersByUser(int userId) {
-        System.out.println("Получение заказов для пользователя с ID: " + userId);
+        log.debug(() -> "Получение заказов для пользователя с ID: " + userId);
         List<Order> orders = new ArrayList<>();
-        
-        // Сначала получаем все ID заказов пользователя
-        String idSql = "SELECT id FROM orders WHERE user_id = ?";
-        List<Integer> orderIds = new ArrayList<>();
+        String sql = ORDER_SELECT + "WHERE o.user_id = ? ORDER BY o.order_date DESC";
         
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
+                log.error("Ошибка: не удалось получить соединение с базой данных");
                 return orders;
             }
             
-            System.out.println("Соединение с базой данных получено успешно");
-            
-            try (PreparedStatement pstmt = conn.prepareStatement(idSql)) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, userId);
-                System.out.println("Выполнение SQL-запроса: " + idSql + " с параметром user_id=" + userId);
                 
                 try (ResultSet rs = pstmt.executeQuery()) {
+                    // Пользователь у всех заказов один, поэтому объект создается один раз
+                    User user = null;
                     while (rs.next()) {
-                        int orderId = rs.getInt("id");
-                        orderIds.add(orderId);
-                        System.out.println("Найден ID заказа: " + orderId);
+                        Order order = mapOrder(rs, user);
+                        user = order.getUser();
+                        orders.add(order);
                     }
                 }
             }
+            
+            loadOrderItems(orders, conn);
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении ID заказов пользователя: " + e.getMessage());
-            e.printStackTrace();
-            return orders;
+            log.error("Ошибка при получении заказов пользователя ID=" + userId + ": " + e.getMessage(), e);
+            return new ArrayList<>();
         }
         
-        System.out.println("Найдено ID заказов: " + orderIds.size());
-        
-        // Теперь для каждого ID получаем полную информацию о заказе
-        for (Integer orderId : orderIds) {
-            try {
-                Order order = getOrderById(orderId);
-                if (order != null) {
-                    orders.add(order);
-                    System.out.println("Добавлен заказ в список: ID=" + order.getId());
-                }
-            } catch (Exception e) {
-                System.out.println("Ошибка при получении заказа по ID=" + orderId + ": " + e.getMessage());
-            }
-        }
-        
-        System.out.println("Всего загружено заказов: " + orders.size());
+        log.debug(() -> "Всего загружено заказов: " + orders.size());
         return orders;
     }
 
-    //Получить заказ по идентификатору
+    //Получить заказ по идентификатору вместе с товарами
     //id идентификатор заказа
     //return заказ или null, если заказ не найден
     public Order getOrderById(int id) {
-        System.out.println("Получение заказа по ID: " + id);
-        String sql = "SELECT * FROM orders WHERE id = ?";
-        
-        // Сбрасываем соединение перед выполнением запроса
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+        log.debug(() -> "Получение заказа по ID: " + id);
+        String sql = ORDER_SELECT + "WHERE o.id = ?";
 
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
+                log.error("Ошибка: не удалось получить соединение с базой данных");
                 return null;
             }
             
+            Order order = null;
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, id);
-                System.out.println("Выполнение SQL-запроса: " + sql + " с параметром id=" + id);
                 
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
-                        // Извлекаем данные из ResultSet
-                        int orderId = rs.getInt("id");
-                        int userId = rs.getInt("user_id");
-                        Timestamp orderDateTimestamp = rs.getTimestamp("order_date");
-                        Timestamp deliveryDateTimestamp = rs.getTimestamp("delivery_date");
-                        double totalCost = rs.getDouble("total_cost");
-                        String status = rs.getString("status");
-                        
-                        // Закрываем ResultSet перед тем, как делать другие запросы
-                        rs.close();
-                        
-                        // Получаем пользователя
-                        User user = userDAO.getUserById(userId);
-                        
-                        // Создаем объект заказа
-                        Order order = new Order(
-                            orderId,
-                            user,
-                            orderDateTimestamp.toLocalDateTime(),
-                            deliveryDateTimestamp != null ? deliveryDateTimestamp.toLocalDateTime() : null,
-                            totalCost,
-                            status
-                        );
-                        
-                        // Инициализируем список товаров
-                        order.setItems(new ArrayList<>());
-                        
-                        System.out.println("Заказ найден: ID=" + orderId + 
-                                          ", Пользователь=" + (user != null ? user.getLogin() : "null") + 
-                                          ", Дата=" + orderDateTimestamp + 
-                                          ", Сумма=" + totalCost + 
-                                          ", Статус=" + status);
-                        
-                        // Загружаем товары для заказа в отдельном соединении
-                        try {
-                            loadOrderItems(order);
-                        } catch (Exception e) {
-                            System.out.println("Ошибка при загрузке товаров для заказа ID=" + order.getId() + ": " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                        
-                        return order;
-                    } else {
-                        System.out.println("Заказ с ID=" + id + " не найден");
+                        order = mapOrder(rs);
+                    }
+                }
+            }
+            
+            if (order == null) {
+                log.debug(() -> "Заказ с ID=" + id + " не найден");
+                return null;
+            }
+            
+            loadOrderItems(List.of(order), conn);
+            return order;
+        } catch (SQLException e) {
+            log.error("Ошибка при получении заказа по ID=" + id + ": " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    //Получить заказ по ключу идемпотентности
+    //token ключ, переданный при оформлении заказа
+    //return заказ с товарами или null, если заказа с таким ключом нет
+    public Order getOrderByToken(String token) {
+        String sql = ORDER_SELECT + "WHERE o.order_token = ?";
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.error("Ошибка: не удалось получить соединение с базой данных");
+                return null;
+            }
+            
+            Order order = null;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, token);
+                
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        order = mapOrder(rs);
                     }
                 }
             }
+            
+            if (order != null) {
+                loadOrderItems(List.of(order), conn);
+            }
+            return order;
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении заказа по ID=" + id + ": " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при получении заказа по ключу " + token + ": " + e.getMessage(), e);
         }
         return null;
     }
 
     //Добавить новый заказ в базу данных
+    //В начале транзакции строки всех товаров заказа блокируются одним SELECT ... FOR UPDATE в порядке id,
+    //поэтому параллельные заказы с общими товарами ждут друг друга, а не блокируют друг друга взаимно.
+    //Если MySQL все же отменил транзакцию (взаимная блокировка 1213 или таймаут ожидания 1205),
+    //заказ записывается заново, не более LOCK_RETRIES раз.
     //order заказ для добавления
-    //return true, если заказ успешно добавлен, иначе false
+    //return true, если заказ успешно добавлен (или уже был добавлен с тем же ключом), иначе false
     public boolean addOrder(Order order) {
+        SubmitResult result = submitOrder(order);
+        return result == SubmitResult.CREATED || result == SubmitResult.REPLAYED;
+    }
+
+    //Записать заказ и сообщить, можно ли повторить неудачную попытку
+    //Если у заказа есть ключ (orderToken) и заказ с этим ключом уже записан (например, прошлая попытка
+    //зафиксировала транзакцию, но ответ не дошел), новый заказ не создается: order получает id
+    //существующего, результат - REPLAYED. Поэтому попытку с тем же ключом можно безопасно повторять.
+    //order заказ для добавления
+    //return результат записи
+    public SubmitResult submitOrder(Order order) {
+        if (!isValidOrder(order)) {
+            return SubmitResult.REJECTED;
+        }
+        
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return insertOrder(order);
+            } catch (SQLException e) {
+                order.setId(0);
+                if (isDuplicateToken(e, order)) {
+                    return replayOrder(order);
+                }
+                if (!isLockConflict(e)) {
+                    log.error("Ошибка при добавлении заказа: " + e.getMessage(), e);
+                    return SubmitResult.FAILED;
+                }
+                lockConflicts.incrementAndGet();
+                if (attempt > LOCK_RETRIES) {
+                    log.error("Заказ не добавлен после " + attempt + " попыток из-за конфликта блокировок: " +
+                              e.getMessage(), e);
+                    return SubmitResult.FAILED;
+                }
+                log.warn("Конфликт блокировок при добавлении заказа (попытка " + attempt + "): " + e.getMessage());
+                if (!pauseBeforeRetry(attempt)) {
+                    return SubmitResult.FAILED;
+                }
+            }
+        }
+    }
+
+    //Количество транзакций заказа, отмененных MySQL из-за взаимной блокировки или таймаута ожидания
+    public static long getLockConflictCount() {
+        return lockConflicts.get();
+    }
+
+    // Проверка заказа и его позиций до обращения к базе
+    static boolean isValidOrder(Order order) {
         // Проверка входных данных
         if (order == null) {
-            System.out.println("Ошибка: передан null-заказ");
+            log.error("Ошибка: передан null-заказ");
             return false;
         }
         
         if (order.getUser() == null) {
-            System.out.println("Ошибка: пользователь не указан в заказе");
+            log.error("Ошибка: пользователь не указан в заказе");
             return false;
         }
         
         if (order.getItems() == null || order.getItems().isEmpty()) {
-            System.out.println("Ошибка: список товаров в заказе пуст");
+            log.error("Ошибка: список товаров в заказе пуст");
             return false;
         }
         
-        // Сбрасываем соединение перед добавлением заказа
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
-        
-        // Добавляем заказ в базу данных
-        String sql = "INSERT INTO orders (user_id, order_date, delivery_date, total_cost, status) VALUES (?, ?, ?, ?, ?)";
-        Connection conn = null;
-        
-        try {
-            System.out.println("Получение соединения с базой данных для добавления заказа...");
-            conn = DatabaseManager.getConnection();
+        // Проверка позиций до обращения к базе
+        for (OrderItem item : order.getItems()) {
+            if (item == null) {
+                log.error("Ошибка: null-элемент в списке товаров заказа");
+                continue;
+            }
             
-            if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
+            if (item.getProduct() == null) {
+                log.error("Ошибка: товар не определен в элементе заказа");
+                return false;
+            }
+            
+            // Проверка на валидный ID товара
+            if (item.getProduct().getId() <= 0) {
+                log.error("Ошибка: неверный ID товара (" + item.getProduct().getId() + ") при добавлении в заказ");
                 return false;
             }
             
-            System.out.println("Соединение с базой данных получено успешно");
+            // Проверка на валидное количество товара
+            if (item.getQuantity() <= 0) {
+                log.error("Ошибка: неверное количество товара (" + item.getQuantity() + ") при добавлении в заказ");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Одна попытка записать заказ в отдельной транзакции; конфликты блокировок передаются вызывающему коду
+    private SubmitResult insertOrder(Order order) throws SQLException {
+        log.debug("Получение соединения с базой данных для добавления заказа...");
+        Connection conn = DatabaseManager.getConnection();
+        if (conn == null) {
+            log.error("Ошибка: не удалось получить соединение с базой данных");
+            return SubmitResult.FAILED;
+        }
+        
+        String sql = "INSERT INTO orders (user_id, order_date, delivery_date, total_cost, status, order_token) " +
+                     "VALUES (?, ?, ?, ?, ?, ?)";
+        List<OrderItem> items = validItems(order);
+        // Горячие товары резервируются в памяти (HotStock), их строки products в транзакции не трогаются
+        List<OrderItem> hotItems = HotStock.hotItems(items);
+        List<OrderItem> stockItems = items;
+        if (!hotItems.isEmpty()) {
+            stockItems = new ArrayList<>();
+            for (OrderItem item : items) {
+                if (!HotStock.isHot(item.getProduct().getId())) {
+                    stockItems.add(item);
+                }
+            }
+        }
+        boolean hotReserved = false;
+        boolean committed = false;
+        boolean commitSent = false;
+        
+        try {
+            if (!hotItems.isEmpty()) {
+                if (!HotStock.reserve(hotItems)) {
+                    return SubmitResult.REJECTED;
+                }
+                hotReserved = true;
+            }
             
             // Начинаем транзакцию
-            System.out.println("Начало транзакции...");
             conn.setAutoCommit(false);
             
+            // Сначала блокируем строки товаров, затем пишем заказ
+            if (LOCK_ROWS && !lockProducts(stockItems, conn)) {
+                conn.rollback();
+                return SubmitResult.REJECTED;
+            }
+            
             try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setInt(1, order.getUser().getId());
                 pstmt.setTimestamp(2, Timestamp.valueOf(order.getOrderDate()));
@@ -276,233 +381,238 @@ public class OrderDAO {
                 // getTotalCost для total_cost в БД
                 pstmt.setDouble(4, order.getTotalCost());
                 pstmt.setString(5, order.getStatus());
-
-                System.out.println("Выполнение SQL-запроса для добавления заказа");
-                
-                int affectedRows = pstmt.executeUpdate();
-                System.out.println("Затронуто строк при добавлении заказа: " + affectedRows);
+                pstmt.setString(6, order.getOrderToken());
                 
-                if (affectedRows > 0) {
-                    try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            int orderId = generatedKeys.getInt(1);
-                            order.setId(orderId);
-                            System.out.println("Заказ добавлен с ID: " + orderId);
-                            
-                            // Добавляем товары в заказ
-                            System.out.println("Добавление товаров в заказ...");
-                            boolean itemsAdded = addOrderItems(order, conn);
-                            
-                            if (itemsAdded) {
-                                // Если все успешно, фиксируем транзакцию
-                                System.out.println("Товары успешно добавлены в заказ, фиксация транзакции...");
-                                conn.commit();
-                                System.out.println("Транзакция успешно зафиксирована");
-                                return true;
-                            } else {
-                                // Если не удалось добавить товары, откатываем транзакцию
-                                System.out.println("Не удалось добавить товары в заказ, откат транзакции...");
-                                conn.rollback();
-                                System.out.println("Транзакция отменена: не удалось добавить товары в заказ");
-                                return false;
-                            }
-                        } else {
-                            // Если не удалось получить ID заказа, откатываем транзакцию
-                            System.out.println("Не удалось получить ID добавленного заказа, откат транзакции...");
-                            conn.rollback();
-                            System.out.println("Транзакция отменена: не удалось получить ID добавленного заказа");
-                            return false;
-                        }
-                    }
-                } else {
-                    // Если не удалось добавить заказ, откатываем транзакцию
-                    System.out.println("Не удалось добавить заказ, откат транзакции...");
-                    conn.rollback();
-                    System.out.println("Заказ не был добавлен");
-                    return false;
-                }
-            } catch (SQLException e) {
-                // В случае ошибки откатываем транзакцию
-                if (conn != null) {
-                    try {
+                pstmt.executeUpdate();
+                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                    if (!generatedKeys.next()) {
+                        log.warn("Не удалось получить ID добавленного заказа, откат транзакции...");
                         conn.rollback();
-                        System.out.println("Транзакция отменена из-за ошибки: " + e.getMessage());
-                    } catch (SQLException ex) {
-                        System.out.println("Ошибка при откате транзакции: " + ex.getMessage());
-                        ex.printStackTrace();
+                        return SubmitResult.FAILED;
                     }
+                    order.setId(generatedKeys.getInt(1));
                 }
-                
-                System.out.println("Ошибка при добавлении заказа: " + e.getMessage());
-                System.out.println("SQL State: " + e.getSQLState());
-                System.out.println("Error Code: " + e.getErrorCode());
-                e.printStackTrace();
+            }
+            log.debug(() -> "Заказ добавлен с ID: " + order.getId());
+            
+            if (!addOrderItems(order, items, stockItems, conn)) {
+                log.warn("Не удалось добавить товары в заказ, откат транзакции...");
+                conn.rollback();
+                order.setId(0);
+                return SubmitResult.REJECTED;
+            }
+            
+            // Сводка продаж по дням изменяется в той же транзакции
+            salesDAO.recordOrdersWithConnection(Collections.singletonList(order), conn);
+            
+            commitSent = true;
+            conn.commit();
+            committed = true;
+            log.debug("Транзакция успешно зафиксирована");
+            
+            // Остатки изменены в транзакции, кэш каталога обновляется только после фиксации
+            productDAO.stockReservationCommitted(items);
+            return SubmitResult.CREATED;
+        } catch (SQLException e) {
+            try {
+                conn.rollback();
+                log.debug(() -> "Транзакция отменена из-за ошибки: " + e.getMessage());
+            } catch (SQLException ex) {
+                log.error("Ошибка при откате транзакции: " + ex.getMessage(), ex);
+            }
+            throw e;
+        } finally {
+            // Если ошибка пришла в ответ на COMMIT, заказ мог быть зафиксирован на сервере: его позиции
+            // спишет поток HotStock, а повтор с тем же ключом пойдет по пути replayOrder без нового резерва.
+            // Поэтому резерв возвращается, только если заказа с этим ключом точно нет
+            if (hotReserved && !committed && (!commitSent || isOrderAbsent(order))) {
+                HotStock.release(hotItems);
+            }
+            // Восстанавливаем автоматическое подтверждение транзакций и возвращаем соединение в пул
+            try {
+                conn.setAutoCommit(true);
+                conn.close();
+            } catch (SQLException e) {
+                log.error("Ошибка при восстановлении autoCommit: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Блокировка строк товаров заказа и проверка остатков по заблокированным строкам
+    private boolean lockProducts(List<OrderItem> items, Connection conn) throws SQLException {
+        Map<Integer, Integer> required = new HashMap<>();
+        for (OrderItem item : items) {
+            required.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        
+        Map<Integer, Product> locked = new HashMap<>();
+        for (Product product : productDAO.lockProductsWithConnection(required.keySet(), conn)) {
+            locked.put(product.getId(), product);
+        }
+        
+        for (Map.Entry<Integer, Integer> entry : required.entrySet()) {
+            Product product = locked.get(entry.getKey());
+            if (product == null) {
+                log.error("Ошибка: товар с ID=" + entry.getKey() + " не найден в базе данных");
                 return false;
-            } finally {
-                // Восстанавливаем автоматическое подтверждение транзакций
-                if (conn != null) {
-                    try {
-                        conn.setAutoCommit(true);
-                        // Не закрываем соединение здесь, так как оно будет закрыто автоматически
-                    } catch (SQLException e) {
-                        System.out.println("Ошибка при восстановлении autoCommit: " + e.getMessage());
-                        e.printStackTrace();
+            }
+            if (product.getStockQuantity() < entry.getValue()) {
+                log.error("Ошибка: недостаточно товара на складе. ID=" + product.getId() + 
+                          ", Доступно=" + product.getStockQuantity() + 
+                          ", Требуется=" + entry.getValue());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // После ошибки COMMIT: true, только если заказа с ключом order точно нет в базе.
+    // Без ключа или без ответа базы исход неизвестен - резерв лучше оставить (товар временно недоступен),
+    // чем вернуть единицы, которые спишутся из журнала, и продать их второй раз
+    private boolean isOrderAbsent(Order order) {
+        if (order.getOrderToken() == null) {
+            log.warn("Исход фиксации заказа без ключа неизвестен, резерв горячих товаров не возвращается");
+            return false;
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.warn("Нет соединения для проверки заказа с ключом " + order.getOrderToken() +
+                         ", резерв горячих товаров не возвращается");
+                return false;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM orders WHERE order_token = ?")) {
+                pstmt.setString(1, order.getOrderToken());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        log.warn("Ошибка при фиксации, но заказ с ключом " + order.getOrderToken() + " записан (ID=" +
+                                 rs.getInt(1) + "), резерв горячих товаров сохранен");
+                        return false;
                     }
+                    return true;
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении соединения с базой данных: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при проверке заказа с ключом " + order.getOrderToken() + ": " + e.getMessage() +
+                      ", резерв горячих товаров не возвращается", e);
             return false;
         }
     }
 
-    //Добавить товары в заказ
-    //order заказ с товарами
-    //conn активное соединение с базой данных
-    //return true, если товары успешно добавлены, иначе false
-    private boolean addOrderItems(Order order, Connection conn) {
-        System.out.println("Добавление товаров для заказа ID=" + order.getId());
-        
-        // Проверка на null значения
-        if (order == null) {
-            System.out.println("Ошибка: передан null-заказ при добавлении товаров");
-            return false;
+    // Повтор заказа с уже записанным ключом: заказ не создается, order получает id существующего
+    private SubmitResult replayOrder(Order order) {
+        Order existing = getOrderByToken(order.getOrderToken());
+        if (existing == null) {
+            log.error("Заказ с ключом " + order.getOrderToken() + " уже записан, но не найден");
+            return SubmitResult.FAILED;
         }
-        
-        if (conn == null) {
-            System.out.println("Ошибка: передано null-соединение при добавлении товаров в заказ");
+        order.setId(existing.getId());
+        log.info("Повтор оформления заказа с ключом " + order.getOrderToken() + ", заказ ID=" + existing.getId() +
+                 " уже записан");
+        return SubmitResult.REPLAYED;
+    }
+
+    // 1062 - нарушение уникального индекса; для заказа это может быть только индекс ключа
+    private static boolean isDuplicateToken(SQLException e, Order order) {
+        return order.getOrderToken() != null && e.getErrorCode() == 1062 &&
+               (e.getMessage() == null || e.getMessage().contains("uk_orders_token"));
+    }
+
+    // 1213 - взаимная блокировка, 1205 - таймаут ожидания блокировки
+    static boolean isLockConflict(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (current.getErrorCode() == 1213 || current.getErrorCode() == 1205 ||
+                    "40001".equals(current.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Случайная пауза перед повтором, растущая с номером попытки; false, если поток прерван
+    static boolean pauseBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(5, 20) * attempt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
         }
+    }
+
+    //Добавить товары в заказ и списать их со склада
+    //order заказ с ID
+    //items позиции заказа без null-элементов
+    //conn соединение с открытой транзакцией
+    //return true, если товары успешно добавлены, иначе false
+    private boolean addOrderItems(Order order, List<OrderItem> items, List<OrderItem> stockItems, Connection conn)
+            throws SQLException {
+        log.debug(() -> "Добавление товаров для заказа ID=" + order.getId() + ", позиций: " + items.size());
         
-        // Проверка на валидный ID заказа
-        if (order.getId() <= 0) {
-            System.out.println("Ошибка: неверный ID заказа (" + order.getId() + ") при добавлении товаров");
+        // Списываем остатки одним пакетом условных UPDATE: база сама проверяет, хватает ли товара
+        if (!stockItems.isEmpty() && !productDAO.reserveStockWithConnection(stockItems, conn)) {
+            log.error("Ошибка: не удалось списать товары заказа ID=" + order.getId() + " со склада");
             return false;
         }
         
-        // Проверка на наличие товаров в заказе
-        if (order.getItems() == null || order.getItems().isEmpty()) {
-            System.out.println("Ошибка: список товаров в заказе пуст");
+        if (!insertOrderItems(Collections.singletonList(order), conn)) {
             return false;
         }
+        log.debug("Все товары успешно добавлены в заказ");
+        return true;
+    }
+
+    //Записать позиции заказов многострочными INSERT ... VALUES (...), (...) по ITEMS_INSERT_CHUNK строк
+    //Позиции разных заказов могут попасть в один INSERT (групповая запись OrderIngestor)
+    //orders заказы с ID
+    //conn соединение с открытой транзакцией
+    //return true, если записаны все позиции
+    static boolean insertOrderItems(List<Order> orders, Connection conn) throws SQLException {
+        List<OrderItem> rows = new ArrayList<>();
+        List<Integer> orderIds = new ArrayList<>();
+        for (Order order : orders) {
+            for (OrderItem item : validItems(order)) {
+                rows.add(item);
+                orderIds.add(order.getId());
+            }
+        }
         
-        System.out.println("Количество товаров в заказе: " + order.getItems().size());
-        
-        String sql = "INSERT INTO order_items (order_id, product_id, quantity, price_per_item) VALUES (?, ?, ?, ?)";
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            // Добавляем каждый товар в пакет запросов
-            for (OrderItem item : order.getItems()) {
-                // Проверка на null значения
-                if (item == null) {
-                    System.out.println("Ошибка: null-элемент в списке товаров заказа");
-                    continue;
-                }
-                
-                if (item.getProduct() == null) {
-                    System.out.println("Ошибка: товар не определен в элементе заказа");
-                    return false;
-                }
-                
-                // Проверка на валидный ID товара
-                if (item.getProduct().getId() <= 0) {
-                    System.out.println("Ошибка: неверный ID товара (" + item.getProduct().getId() + ") при добавлении в заказ");
-                    return false;
-                }
-                
-                // Проверка на валидное количество товара
-                if (item.getQuantity() <= 0) {
-                    System.out.println("Ошибка: неверное количество товара (" + item.getQuantity() + ") при добавлении в заказ");
-                    return false;
-                }
-                
-                // Получаем актуальную информацию о товаре из базы данных, используя то же соединение
-                Product freshProduct = productDAO.getProductByIdWithConnection(item.getProduct().getId(), conn);
-                if (freshProduct == null) {
-                    System.out.println("Ошибка: не удалось получить актуальную информацию о товаре с ID: " + item.getProduct().getId());
-                    return false;
-                }
-                
-                // Проверяем наличие на складе
-                if (freshProduct.getStockQuantity() < item.getQuantity()) {
-                    System.out.println("Ошибка: недостаточно товара на складе. ID=" + freshProduct.getId() + 
-                                      ", Доступно=" + freshProduct.getStockQuantity() + 
-                                      ", Требуется=" + item.getQuantity());
-                    return false;
-                }
-                
-                // Обновляем информацию о товаре в элементе заказа
-                item.setProduct(freshProduct);
-                
-                System.out.println("Подготовка добавления товара: ID=" + item.getProduct().getId() + 
-                                  ", Название=" + item.getProduct().getName() + 
-                                  ", Количество=" + item.getQuantity() + 
-                                  ", Цена=" + item.getPrice());
-                
-                // Устанавливаем параметры запроса
-                pstmt.setInt(1, order.getId());
-                pstmt.setInt(2, item.getProduct().getId());
-                pstmt.setInt(3, item.getQuantity());
-                pstmt.setDouble(4, item.getPrice());
-                pstmt.addBatch();
-                
-                System.out.println("Товар добавлен в пакет запросов: ID=" + item.getProduct().getId() + 
-                                  ", Название=" + item.getProduct().getName() + 
-                                  ", Количество=" + item.getQuantity() + 
-                                  ", Цена=" + item.getPrice());
-                
-                // Уменьшаем количество товара на складе
-                Product product = item.getProduct();
-                int newQuantity = product.getStockQuantity() - item.getQuantity();
-                
-                if (newQuantity < 0) {
-                    System.out.println("Ошибка: недостаточное количество товара на складе. ID=" + 
-                                      product.getId() + ", Доступно=" + product.getStockQuantity() + 
-                                      ", Требуется=" + item.getQuantity());
-                    return false;
+        for (int from = 0; from < rows.size(); from += ITEMS_INSERT_CHUNK) {
+            int to = Math.min(rows.size(), from + ITEMS_INSERT_CHUNK);
+            String sql = "INSERT INTO order_items (order_id, product_id, quantity, price_per_item, stock_applied) VALUES " +
+                         String.join(", ", Collections.nCopies(to - from, "(?, ?, ?, ?, ?)"));
+            
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                for (int i = from; i < to; i++) {
+                    OrderItem item = rows.get(i);
+                    pstmt.setInt(index++, orderIds.get(i));
+                    pstmt.setInt(index++, item.getProduct().getId());
+                    pstmt.setInt(index++, item.getQuantity());
+                    pstmt.setDouble(index++, item.getPrice());
+                    // Горячие товары списывает со склада HotStock после фиксации
+                    pstmt.setBoolean(index++, !HotStock.isHot(item.getProduct().getId()));
                 }
                 
-                // Обновляем количество товара на складе
-                boolean updated = productDAO.updateProductQuantityWithConnection(product.getId(), newQuantity, conn);
-                if (!updated) {
-                    System.out.println("Ошибка: не удалось обновить количество товара на складе. ID=" + product.getId());
+                int inserted = pstmt.executeUpdate();
+                log.debug(() -> "Добавлено позиций заказов: " + inserted);
+                if (inserted != to - from) {
+                    log.error("Ошибка: добавлено " + inserted + " позиций заказов из " + (to - from));
                     return false;
                 }
-                
-                // Обновляем количество в объекте товара в памяти
-                product.setStockQuantity(newQuantity);
-                System.out.println("Количество товара в памяти обновлено: ID=" + product.getId() + 
-                                  ", Новое количество=" + product.getStockQuantity());
-            }
-            
-            // Выполняем пакет запросов на добавление товаров
-            System.out.println("Выполнение пакета запросов на добавление товаров...");
-            int[] results = pstmt.executeBatch();
-            
-            // Проверяем результаты выполнения
-            boolean allSuccessful = true;
-            for (int i = 0; i < results.length; i++) {
-                if (results[i] <= 0 && results[i] != Statement.SUCCESS_NO_INFO) {
-                    allSuccessful = false;
-                    System.out.println("Ошибка при добавлении товара #" + (i+1) + " в заказ");
-                }
             }
-            
-            if (allSuccessful) {
-                System.out.println("Все товары успешно добавлены в заказ");
-                return true;
-            } else {
-                System.out.println("Ошибка: не все товары были добавлены в заказ");
-                return false;
+        }
+        return true;
+    }
+
+    // Позиции заказа без null-элементов
+    static List<OrderItem> validItems(Order order) {
+        List<OrderItem> items = new ArrayList<>(order.getItems().size());
+        for (OrderItem item : order.getItems()) {
+            if (item != null) {
+                items.add(item);
             }
-        } catch (SQLException e) {
-            System.out.println("Ошибка при добавлении товаров в заказ: " + e.getMessage());
-            System.out.println("SQL State: " + e.getSQLState());
-            System.out.println("Error Code: " + e.getErrorCode());
-            e.printStackTrace();
-            return false;
         }
+        return items;
     }
 
     //Обновить статус заказа
@@ -510,53 +620,80 @@ public class OrderDAO {
     //status новый статус заказа
     //return true, если статус успешно обновлен, иначе false
     public boolean updateOrderStatus(int id, String status) {
-        System.out.println("Обновление статуса заказа ID=" + id + " на " + status);
+        log.debug(() -> "Обновление статуса заказа ID=" + id + " на " + status);
         String sql = "UPDATE orders SET status = ? WHERE id = ?";
         
-        // Сбрасываем соединение перед выполнением запроса
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
-        
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных при обновлении статуса заказа");
+                log.error("Ошибка: не удалось получить соединение с базой данных при обновлении статуса заказа");
                 return false;
             }
             
-            pstmt.setString(1, status);
-            pstmt.setInt(2, id);
-            
-            System.out.println("Выполнение SQL-запроса: " + sql);
-            System.out.println("Параметры: 1=" + status + ", 2=" + id);
-            
-            int affectedRows = pstmt.executeUpdate();
-            System.out.println("Затронуто строк: " + affectedRows);
-            
-            return affectedRows > 0;
+            // Отмена и возврат из отмены меняют сводку продаж, поэтому статус меняется в транзакции
+            conn.setAutoCommit(false);
+            try {
+                String oldStatus = lockOrderStatus(id, conn);
+                if (oldStatus == null) {
+                    conn.rollback();
+                    log.debug(() -> "Заказ с ID=" + id + " не найден");
+                    return false;
+                }
+                
+                int affectedRows;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, status);
+                    pstmt.setInt(2, id);
+                    
+                    log.debug(() -> "Выполнение SQL-запроса: " + sql);
+                    log.debug(() -> "Параметры: 1=" + status + ", 2=" + id);
+                    
+                    affectedRows = pstmt.executeUpdate();
+                    log.debug(() -> "Затронуто строк: " + affectedRows);
+                }
+                
+                boolean wasCancelled = SalesDAO.CANCELLED_STATUS.equals(oldStatus);
+                boolean cancelled = SalesDAO.CANCELLED_STATUS.equals(status);
+                if (wasCancelled != cancelled) {
+                    salesDAO.recordStoredOrderWithConnection(id, cancelled ? -1 : 1, conn);
+                }
+                
+                conn.commit();
+                return affectedRows > 0;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            System.out.println("Ошибка при обновлении статуса заказа: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при обновлении статуса заказа: " + e.getMessage(), e);
             return false;
         }
     }
 
+    // Статус заказа с блокировкой строки до конца транзакции или null, если заказа нет
+    private String lockOrderStatus(int id, Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT status FROM orders WHERE id = ? FOR UPDATE")) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString("status") : null;
+            }
+        }
+    }
+
     //Обновить дату доставки заказа
     //id идентификатор заказа
     //deliveryDate новая дата доставки
     //return true, если дата успешно обновлена, иначе false
     public boolean updateDeliveryDate(int id, LocalDateTime deliveryDate) {
-        System.out.println("Обновление даты доставки заказа ID=" + id + " на " + deliveryDate);
+        log.debug(() -> "Обновление даты доставки заказа ID=" + id + " на " + deliveryDate);
         String sql = "UPDATE orders SET delivery_date = ? WHERE id = ?";
         
-        // Сбрасываем соединение перед выполнением запроса
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
-        
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных при обновлении даты доставки заказа");
+                log.error("Ошибка: не удалось получить соединение с базой данных при обновлении даты доставки заказа");
                 return false;
             }
             
@@ -567,16 +704,15 @@ public class OrderDAO {
             }
             pstmt.setInt(2, id);
             
-            System.out.println("Выполнение SQL-запроса: " + sql);
-            System.out.println("Параметры: 1=" + deliveryDate + ", 2=" + id);
+            log.debug(() -> "Выполнение SQL-запроса: " + sql);
+            log.debug(() -> "Параметры: 1=" + deliveryDate + ", 2=" + id);
             
             int affectedRows = pstmt.executeUpdate();
-            System.out.println("Затронуто строк: " + affectedRows);
+            log.debug(() -> "Затронуто строк: " + affectedRows);
             
             return affectedRows > 0;
         } catch (SQLException e) {
-            System.out.println("Ошибка при обновлении даты доставки заказа: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при обновлении даты доставки заказа: " + e.getMessage(), e);
             return false;
         }
     }
@@ -585,18 +721,25 @@ public class OrderDAO {
     //id идентификатор заказа для удаления
     //return true, если заказ успешно удален, иначе false
     public boolean deleteOrder(int id) {
-        System.out.println("Попытка удаления заказа с ID=" + id);
-        
-        // Сбрасываем соединение перед удалением
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+        log.debug(() -> "Попытка удаления заказа с ID=" + id);
         
         // Сначала удаляем товары из заказа (из-за внешнего ключа)
         String sqlItems = "DELETE FROM order_items WHERE order_id = ?";
         String sqlOrder = "DELETE FROM orders WHERE id = ?";
+        
+        // Несписанные позиции горячих товаров сначала списываются, иначе удаление вернуло бы их на склад
+        if (HotStock.isEnabled()) {
+            try {
+                HotStock.flush();
+            } catch (SQLException e) {
+                log.error("Ошибка при списании остатков горячих товаров перед удалением заказа: " + e.getMessage(), e);
+                return false;
+            }
+        }
 
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных при удалении заказа");
+                log.error("Ошибка: не удалось получить соединение с базой данных при удалении заказа");
                 return false;
             }
             
@@ -604,29 +747,35 @@ public class OrderDAO {
             conn.setAutoCommit(false);
             
             try {
+                // Продажи удаляемого заказа вычитаются из сводки, пока его позиции еще в базе
+                String oldStatus = lockOrderStatus(id, conn);
+                if (oldStatus != null && !SalesDAO.CANCELLED_STATUS.equals(oldStatus)) {
+                    salesDAO.recordStoredOrderWithConnection(id, -1, conn);
+                }
+                
                 // Удаляем товары заказа
                 try (PreparedStatement pstmtItems = conn.prepareStatement(sqlItems)) {
                     pstmtItems.setInt(1, id);
-                    System.out.println("Выполнение SQL-запроса: " + sqlItems + " с параметром order_id=" + id);
+                    log.debug(() -> "Выполнение SQL-запроса: " + sqlItems + " с параметром order_id=" + id);
                     int itemsDeleted = pstmtItems.executeUpdate();
-                    System.out.println("Удалено товаров заказа: " + itemsDeleted);
+                    log.debug(() -> "Удалено товаров заказа: " + itemsDeleted);
                 }
                 
                 // Удаляем сам заказ
                 try (PreparedStatement pstmtOrder = conn.prepareStatement(sqlOrder)) {
                     pstmtOrder.setInt(1, id);
-                    System.out.println("Выполнение SQL-запроса: " + sqlOrder + " с параметром id=" + id);
+                    log.debug(() -> "Выполнение SQL-запроса: " + sqlOrder + " с параметром id=" + id);
                     int result = pstmtOrder.executeUpdate();
                     
                     // Если заказ успешно удален, фиксируем транзакцию
                     if (result > 0) {
                         conn.commit();
-                        System.out.println("Заказ с ID=" + id + " успешно удален");
+                        log.debug(() -> "Заказ с ID=" + id + " успешно удален");
                         return true;
                     } else {
                         // Если заказ не найден, откатываем транзакцию
                         conn.rollback();
-                        System.out.println("Заказ с ID=" + id + " не найден");
+                        log.debug(() -> "Заказ с ID=" + id + " не найден");
                         return false;
                     }
                 }
@@ -635,63 +784,54 @@ public class OrderDAO {
                 try {
                     conn.rollback();
                 } catch (SQLException ex) {
-                    System.out.println("Ошибка при откате транзакции: " + ex.getMessage());
-                    ex.printStackTrace();
+                    log.error("Ошибка при откате транзакции: " + ex.getMessage(), ex);
                 }
-                System.out.println("Ошибка при удалении заказа с ID=" + id + ": " + e.getMessage());
-                e.printStackTrace();
+                log.error("Ошибка при удалении заказа с ID=" + id + ": " + e.getMessage(), e);
                 return false;
             } finally {
                 // Восстанавливаем автоматическую фиксацию транзакций
                 try {
                     conn.setAutoCommit(true);
                 } catch (SQLException e) {
-                    System.out.println("Ошибка при восстановлении автоматической фиксации транзакций: " + e.getMessage());
-                    e.printStackTrace();
+                    log.error("Ошибка при восстановлении автоматической фиксации транзакций: " + e.getMessage(), e);
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Ошибка при подключении к базе данных: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при подключении к базе данных: " + e.getMessage(), e);
             return false;
         }
     }
 
-    //Загрузить товары для заказа
-    //order заказ
-    private void loadOrderItems(Order order) {
-        System.out.println("Загрузка товаров для заказа ID=" + order.getId());
-        
-        if (order.getItems() == null) {
-            System.out.println("Инициализация списка товаров для заказа ID=" + order.getId());
+    //Загрузить товары для нескольких заказов
+    //Запросы идут порциями по ITEMS_IN_CHUNK заказов, товары раскладываются по заказам по order_id
+    //orders заказы, списки товаров которых заполняются
+    //conn активное соединение с базой данных
+    private void loadOrderItems(List<Order> orders, Connection conn) throws SQLException {
+        Map<Integer, Order> byId = new HashMap<>();
+        for (Order order : orders) {
             order.setItems(new ArrayList<>());
-        } else {
-            // Очищаем существующий список товаров
-            order.getItems().clear();
+            byId.put(order.getId(), order);
         }
         
-        // Используем оптимизированный запрос, который загружает все необходимые данные за один раз
-        String sql = "SELECT oi.*, p.* FROM order_items oi " +
-                     "JOIN products p ON oi.product_id = p.id " +
-                     "WHERE oi.order_id = ?";
-
-        // Сбрасываем соединение перед выполнением запроса
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
-        
-        try (Connection conn = DatabaseManager.getConnection()) {
-            if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных при загрузке товаров для заказа");
-                return;
-            }
+        List<Integer> ids = new ArrayList<>(byId.keySet());
+        for (int from = 0; from < ids.size(); from += ITEMS_IN_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + ITEMS_IN_CHUNK, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            String sql = "SELECT oi.order_id, oi.quantity, oi.price_per_item, " +
+                         "p.id AS product_id, p.name, p.price, p.unit, p.stock_quantity " +
+                         "FROM order_items oi " +
+                         "JOIN products p ON oi.product_id = p.id " +
+                         "WHERE oi.order_id IN (" + placeholders + ") " +
+                         "ORDER BY oi.order_id, oi.id";
             
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, order.getId());
-                System.out.println("Выполнение SQL-запроса для загрузки товаров заказа: " + sql + " с параметром order_id=" + order.getId());
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setInt(i + 1, chunk.get(i));
+                }
                 
                 try (ResultSet rs = pstmt.executeQuery()) {
-                    int itemCount = 0;
                     while (rs.next()) {
-                        // Создаем объект Product из данных ResultSet
+                        Order order = byId.get(rs.getInt("order_id"));
                         Product product = new Product(
                             rs.getInt("product_id"),
                             rs.getString("name"),
@@ -699,76 +839,72 @@ public class OrderDAO {
                             rs.getString("unit"),
                             rs.getInt("stock_quantity")
                         );
-                        
-                        // Создаем объект OrderItem
-                        OrderItem item = new OrderItem(
+                        order.getItems().add(new OrderItem(
                             order,
                             product,
                             rs.getInt("quantity"),
                             rs.getDouble("price_per_item")
-                        );
-                        
-                        // Добавляем товар в заказ
-                        order.getItems().add(item);
-                        itemCount++;
-                        
-                        System.out.println("Найден товар в заказе: ID=" + product.getId() + 
-                                          ", Название=" + product.getName() + 
-                                          ", Количество=" + item.getQuantity() + 
-                                          ", Цена=" + item.getPrice());
+                        ));
                     }
-                    System.out.println("Загружено товаров для заказа ID=" + order.getId() + ": " + itemCount);
                 }
             }
-        } catch (SQLException e) {
-            System.out.println("Ошибка при загрузке товаров для заказа ID=" + order.getId() + ": " + e.getMessage());
-            e.printStackTrace();
         }
-    }
-    
-    // Вспомогательный класс для хранения данных о товарах заказа
-    private static class OrderItemData {
-        int productId;
-        int quantity;
-        double price;
-        String productName;
-        String productUnit;
         
-        OrderItemData(int productId, int quantity, double price, String productName, String productUnit) {
-            this.productId = productId;
-            this.quantity = quantity;
-            this.price = price;
-            this.productName = productName;
-            this.productUnit = productUnit;
-        }
+        log.debug(() -> "Загружены товары для заказов: " + orders.size());
     }
 
-    //Извлечь заказ из результата запроса
+    //Извлечь заказ с пользователем и ролью из строки запроса ORDER_SELECT
     //rs результат запроса
-    //return заказ
-    //throws SQLException если произошла ошибка при работе с базой данных
-    private Order extractOrderFromResultSet(ResultSet rs) throws SQLException {
-        try {
-            int userId = rs.getInt("user_id");
-            
-            // Получаем пользователя
-            User user = userDAO.getUserById(userId);
-            
-            Order order = new Order(
-                    rs.getInt("id"),
-                    user,
-                    rs.getTimestamp("order_date").toLocalDateTime(),
-                    rs.getTimestamp("delivery_date") != null ? rs.getTimestamp("delivery_date").toLocalDateTime() : null,
-                    rs.getDouble("total_cost"),
-                    rs.getString("status"));
-            
-            // Инициализируем список товаров
-            order.setItems(new ArrayList<>());
+    //return заказ с пустым списком товаров
+    private Order mapOrder(ResultSet rs) throws SQLException {
+        return mapOrder(rs, null);
+    }
+
+    //knownUser уже созданный пользователь этого заказа или null
+    private Order mapOrder(ResultSet rs, User knownUser) throws SQLException {
+        User user = knownUser;
+        if (user == null || user.getId() != rs.getInt("user_id")) {
+            Role role = roleDAO.getRoleById(rs.getInt("role_id"));
             
-            return order;
-        } catch (SQLException e) {
-            System.out.println("Ошибка при извлечении заказа из ResultSet: " + e.getMessage());
-            throw e;
+            user = new User(
+                rs.getInt("user_id"),
+                rs.getString("login"),
+                "", // Пароль не загружаем из соображений безопасности
+                rs.getString("first_name"),
+                rs.getString("last_name"),
+                rs.getString("email"),
+                rs.getString("phone"),
+                rs.getDouble("discount"),
+                role
+            );
         }
+        
+        Timestamp deliveryDate = rs.getTimestamp("delivery_date");
+        Order order = new Order(
+            rs.getInt("id"),
+            user,
+            rs.getTimestamp("order_date").toLocalDateTime(),
+            deliveryDate != null ? deliveryDate.toLocalDateTime() : null,
+            rs.getDouble("total_cost"),
+            rs.getString("status")
+        );
+        
+        order.setOrderToken(rs.getString("order_token"));
+        
+        // Инициализируем пустой список товаров
+        order.setItems(new ArrayList<>());
+        return order;
+    }
+
+    //Результат записи заказа
+    public enum SubmitResult {
+        //Заказ записан
+        CREATED,
+        //Заказ с тем же ключом уже был записан раньше, новый не создан
+        REPLAYED,
+        //Заказ отклонен (неверные данные или недостаточно товара), повтор не поможет
+        REJECTED,
+        //Ошибка базы данных или соединения, попытку с тем же ключом можно повторить
+        FAILED
     }
-} 
\ No newline at end of file
+}
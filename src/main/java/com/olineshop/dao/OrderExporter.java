@@ -0,0 +1,100 @@
+package com.olineshop.dao;
+
+import com.olineshop.util.ChannelOutput;
+import com.olineshop.util.ColumnarExportSink;
+import com.olineshop.util.CsvExportSink;
+import com.olineshop.util.ExportSink;
+import com.olineshop.util.Log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+//Класс для выгрузки заказов и позиций заказов в файл
+//Строки читаются потоково (StreamingQuery.forEach) и сразу передаются в ExportSink, объекты Order/User
+//не создаются, поэтому память не зависит от числа строк: в отличие от getAllOrders, выгрузка миллионов
+//строк не держит их в памяти.
+
+public class OrderExporter {
+    private static final Log log = Log.get(OrderExporter.class);
+    // Строк в группе столбцового файла
+    private static final int GROUP_ROWS = Integer.getInteger("olineshop.export.groupRows", 65_536);
+    // Как часто писать в журнал о ходе выгрузки
+    private static final long PROGRESS_ROWS = 1_000_000;
+
+    //Что выгружать
+    public enum Dataset {
+        ORDERS("Заказы",
+                "SELECT o.id, o.user_id, u.login, o.order_date, o.delivery_date, o.status, o.total_cost, o.order_token " +
+                "FROM orders o LEFT JOIN users u ON u.id = o.user_id ORDER BY o.id"),
+        ORDER_ITEMS("Позиции заказов",
+                "SELECT oi.id, oi.order_id, oi.product_id, p.name AS product_name, oi.quantity, oi.price_per_item " +
+                "FROM order_items oi LEFT JOIN products p ON p.id = oi.product_id ORDER BY oi.id");
+
+        private final String title;
+        private final String sql;
+
+        Dataset(String title, String sql) {
+            this.title = title;
+            this.sql = sql;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    //Формат файла
+    public enum Format {
+        CSV,
+        // Двоичный столбцовый формат, описан в ColumnarExportSink
+        COLUMNAR
+    }
+
+    //Выгрузить набор данных в файл
+    //Файл появляется под именем target только после успешной выгрузки
+    //dataset что выгружать
+    //target файл
+    //format формат файла
+    //compress сжимать ли файл gzip
+    //return число выгруженных строк или -1 при ошибке
+    public long export(Dataset dataset, Path target, Format format, boolean compress) {
+        long start = System.nanoTime();
+        log.debug(() -> "Выгрузка " + dataset + " в " + target + " (" + format + (compress ? ", gzip" : "") + ")");
+
+        try (ChannelOutput out = new ChannelOutput(target, compress);
+             ExportSink sink = format == Format.CSV ? new CsvExportSink(out) : new ColumnarExportSink(out, GROUP_ROWS)) {
+            long rows = StreamingQuery.forEach(dataset.sql, StreamingQuery.NO_PARAMETERS, new StreamingQuery.RowHandler() {
+                private long read = 0;
+
+                @Override
+                public void begin(ResultSetMetaData meta) throws SQLException, IOException {
+                    sink.begin(meta);
+                }
+
+                @Override
+                public void row(ResultSet rs) throws SQLException, IOException {
+                    sink.row(rs);
+                    if (++read % PROGRESS_ROWS == 0) {
+                        log.info("Выгрузка " + dataset + ": " + read + " строк");
+                    }
+                }
+            });
+            sink.finish();
+            log.info("Выгрузка " + dataset + " в " + target + " завершена: строк " + rows + ", байт " +
+                     out.getBytesWritten() + (compress ? " до сжатия" : "") + ", " +
+                     (System.nanoTime() - start) / 1_000_000 + " мс");
+            return rows;
+        } catch (SQLException | IOException e) {
+            log.error("Ошибка при выгрузке " + dataset + ": " + e.getMessage(), e);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.olineshop.dao;
+
+import com.olineshop.model.Order;
+import com.olineshop.model.OrderItem;
+import com.olineshop.model.Product;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Очередь приема заказов с групповой фиксацией
+//Вместо отдельной транзакции на каждый заказ проверенные заказы ставятся в ограниченную очередь,
+//а один поток записи собирает до batchSize заказов (или сколько пришло за maxDelayMs) и записывает
+//их одной транзакцией: одна блокировка строк товаров, многострочные INSERT заказов и позиций,
+//один пакет списаний и одна фиксация на всю группу.
+//Отправитель получает CompletableFuture, который завершается после фиксации группы.
+//Заказ, которому не хватило товара, отклоняется (REJECTED), остальные заказы группы записываются.
+//Если группу записать не удалось, ее заказы записываются по одному через OrderDAO.submitOrder.
+//Когда очередь заполнена, submit ждет место не дольше offerTimeoutMs, затем отклоняет заказ.
+//Заказы с горячими товарами (HotStock) в очередь не попадают и записываются сразу через OrderDAO.submitOrder.
+//
+//Настройки (системные свойства):
+//olineshop.orders.groupCommit - true, чтобы включить очередь (по умолчанию выключена)
+//olineshop.orders.groupCommit.batchSize - максимум заказов в группе (по умолчанию 50)
+//olineshop.orders.groupCommit.maxDelayMs - сколько ждать следующих заказов для группы (по умолчанию 5)
+//olineshop.orders.groupCommit.queueCapacity - длина очереди (по умолчанию 1000)
+//olineshop.orders.groupCommit.offerTimeoutMs - сколько ждать места в полной очереди (по умолчанию 1000)
+
+public final class OrderIngestor {
+    private static final Log log = Log.get(OrderIngestor.class);
+
+    private static final boolean ENABLED = Boolean.getBoolean("olineshop.orders.groupCommit");
+    private static final int BATCH_SIZE =
+            Math.max(1, Math.min(1000, Integer.getInteger("olineshop.orders.groupCommit.batchSize", 50)));
+    private static final long MAX_DELAY_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("olineshop.orders.groupCommit.maxDelayMs", 5L));
+    private static final int QUEUE_CAPACITY =
+            Math.max(1, Integer.getInteger("olineshop.orders.groupCommit.queueCapacity", 1000));
+    private static final long OFFER_TIMEOUT_MS = Long.getLong("olineshop.orders.groupCommit.offerTimeoutMs", 1000L);
+
+    private static final BlockingQueue<PendingOrder> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final ProductDAO productDAO = new ProductDAO();
+    private static final SalesDAO salesDAO = new SalesDAO();
+    private static Thread writer;
+    private static volatile boolean stopping = false;
+
+    private static final AtomicLong groups = new AtomicLong();
+    private static final AtomicLong committedOrders = new AtomicLong();
+    private static final AtomicLong rejectedFull = new AtomicLong();
+    private static final AtomicLong fallbacks = new AtomicLong();
+
+    private OrderIngestor() {
+    }
+
+    //Включена ли групповая запись заказов
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    //Поставить заказ в очередь на запись
+    //order проверенный заказ (при повторе - с тем же orderToken)
+    //return результат записи после фиксации группы; при переполненной очереди - RejectedExecutionException
+    public static CompletableFuture<OrderDAO.SubmitResult> submit(Order order) {
+        CompletableFuture<OrderDAO.SubmitResult> future = new CompletableFuture<>();
+        if (!OrderDAO.isValidOrder(order)) {
+            future.complete(OrderDAO.SubmitResult.REJECTED);
+            return future;
+        }
+        // Горячие товары резервируются в памяти (HotStock), такие заказы пишутся сразу, без общей блокировки группы
+        if (!HotStock.hotItems(OrderDAO.validItems(order)).isEmpty()) {
+            future.complete(new OrderDAO().submitOrder(order));
+            return future;
+        }
+        ensureStarted();
+
+        try {
+            if (stopping || !queue.offer(new PendingOrder(order, future), OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                rejectedFull.incrementAndGet();
+                future.completeExceptionally(new RejectedExecutionException("Очередь заказов переполнена"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    //Статистика для журнала
+    public static String getStats() {
+        long groupCount = groups.get();
+        long orders = committedOrders.get();
+        return "групп: " + groupCount + ", заказов: " + orders +
+               ", в среднем в группе: " + (groupCount == 0 ? 0 : orders / groupCount) +
+               ", в очереди: " + queue.size() + ", отклонено при полной очереди: " + rejectedFull.get() +
+               ", групп, записанных по одному заказу: " + fallbacks.get();
+    }
+
+    //Дописать заказы из очереди и остановить поток записи (при завершении приложения)
+    public static void shutdown() {
+        Thread current;
+        synchronized (OrderIngestor.class) {
+            stopping = true;
+            current = writer;
+        }
+        if (current == null) {
+            return;
+        }
+        try {
+            current.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Заказы, попавшие в очередь одновременно с остановкой, не записаны - отправитель может повторить
+        List<PendingOrder> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (PendingOrder pending : left) {
+            pending.future.complete(OrderDAO.SubmitResult.FAILED);
+        }
+        log.info("Очередь заказов: " + getStats());
+    }
+
+    private static synchronized void ensureStarted() {
+        if (writer == null && !stopping) {
+            writer = new Thread(OrderIngestor::runWriter, "order-ingestor");
+            writer.setDaemon(true);
+            writer.start();
+            log.info("Групповая запись заказов: до " + BATCH_SIZE + " заказов или " +
+                     TimeUnit.NANOSECONDS.toMillis(MAX_DELAY_NANOS) + " мс, очередь " + QUEUE_CAPACITY);
+        }
+    }
+
+    // Сбор группы: первый заказ ждем сколько угодно, следующие - не дольше maxDelay от первого
+    private static void runWriter() {
+        List<PendingOrder> group = new ArrayList<>(BATCH_SIZE);
+        while (!stopping || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + MAX_DELAY_NANOS;
+                queue.drainTo(group, BATCH_SIZE - group.size());
+                while (group.size() < BATCH_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOrder next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    queue.drainTo(group, BATCH_SIZE - group.size());
+                }
+            } catch (InterruptedException e) {
+                // Остановка идет через stopping, а не через прерывание: собранная группа все равно записывается
+                log.debug("Поток записи заказов прерван");
+            }
+
+            if (!group.isEmpty()) {
+                writeGroup(group);
+                group.clear();
+            }
+        }
+    }
+
+    private static void writeGroup(List<PendingOrder> group) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                OrderDAO.SubmitResult[] results = commitGroup(group);
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).future.complete(results[i]);
+                }
+                return;
+            } catch (SQLException e) {
+                // Число повторов и паузы между ними те же, что у OrderDAO.submitOrder (olineshop.checkout.lockRetries)
+                if (OrderDAO.isLockConflict(e) && attempt <= OrderDAO.LOCK_RETRIES) {
+                    log.warn("Конфликт блокировок при групповой записи заказов (попытка " + attempt + ")");
+                    if (OrderDAO.pauseBeforeRetry(attempt)) {
+                        continue;
+                    }
+                }
+                log.warn("Групповая запись " + group.size() + " заказов не удалась, заказы записываются по одному: " +
+                         e.getMessage(), e);
+                writeOneByOne(group);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка при групповой записи заказов: " + e.getMessage(), e);
+                for (PendingOrder pending : group) {
+                    pending.future.completeExceptionally(e);
+                }
+                return;
+            }
+        }
+    }
+
+    // Запасной путь: отдельная транзакция на каждый заказ группы
+    private static void writeOneByOne(List<PendingOrder> group) {
+        fallbacks.incrementAndGet();
+        OrderDAO orderDAO = new OrderDAO();
+        for (PendingOrder pending : group) {
+            pending.order.setId(0);
+            try {
+                pending.future.complete(orderDAO.submitOrder(pending.order));
+            } catch (RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Одна транзакция на группу; результаты в порядке заказов группы
+    private static OrderDAO.SubmitResult[] commitGroup(List<PendingOrder> group) throws SQLException {
+        OrderDAO.SubmitResult[] results = new OrderDAO.SubmitResult[group.size()];
+        Connection conn = DatabaseManager.getConnection();
+        if (conn == null) {
+            log.error("Ошибка: не удалось получить соединение с базой данных для записи заказов");
+            Arrays.fill(results, OrderDAO.SubmitResult.FAILED);
+            return results;
+        }
+
+        List<Order> accepted = new ArrayList<>();
+        try {
+            conn.setAutoCommit(false);
+
+            // Заказы, уже записанные раньше с теми же ключами (повторные попытки)
+            Map<String, Integer> existing = findExistingTokens(group, conn);
+
+            // Строки всех товаров группы блокируются одним запросом в порядке id
+            Set<Integer> productIds = new TreeSet<>();
+            for (PendingOrder pending : group) {
+                for (OrderItem item : OrderDAO.validItems(pending.order)) {
+                    productIds.add(item.getProduct().getId());
+                }
+            }
+            Map<Integer, Integer> stock = new HashMap<>();
+            for (Product product : productDAO.lockProductsWithConnection(productIds, conn)) {
+                stock.put(product.getId(), product.getStockQuantity());
+            }
+
+            // Распределение остатков между заказами в порядке поступления
+            Map<String, Order> tokensInGroup = new HashMap<>();
+            for (int i = 0; i < group.size(); i++) {
+                Order order = group.get(i).order;
+                order.setId(0);
+                String token = order.getOrderToken();
+                if (token != null && existing.containsKey(token)) {
+                    order.setId(existing.get(token));
+                    results[i] = OrderDAO.SubmitResult.REPLAYED;
+                } else if (token != null && tokensInGroup.containsKey(token)) {
+                    results[i] = OrderDAO.SubmitResult.REPLAYED;
+                } else if (allocate(order, stock)) {
+                    accepted.add(order);
+                    if (token != null) {
+                        tokensInGroup.put(token, order);
+                    }
+                    results[i] = OrderDAO.SubmitResult.CREATED;
+                } else {
+                    log.warn("Заказ отклонен при групповой записи: недостаточно товара на складе");
+                    results[i] = OrderDAO.SubmitResult.REJECTED;
+                }
+            }
+
+            List<OrderItem> items = new ArrayList<>();
+            if (!accepted.isEmpty()) {
+                insertOrders(accepted, conn);
+                for (Order order : accepted) {
+                    items.addAll(OrderDAO.validItems(order));
+                }
+                // Остатки проверены по заблокированным строкам, поэтому условные UPDATE должны пройти все
+                if (!productDAO.reserveStockWithConnection(items, conn)) {
+                    throw new SQLException("Остатки товаров не совпали с заблокированными строками");
+                }
+                if (!OrderDAO.insertOrderItems(accepted, conn)) {
+                    throw new SQLException("Позиции заказов группы записаны не полностью");
+                }
+                salesDAO.recordOrdersWithConnection(accepted, conn);
+            }
+            conn.commit();
+
+            for (int i = 0; i < group.size(); i++) {
+                Order order = group.get(i).order;
+                if (results[i] == OrderDAO.SubmitResult.REPLAYED && order.getId() == 0) {
+                    order.setId(tokensInGroup.get(order.getOrderToken()).getId());
+                }
+            }
+            groups.incrementAndGet();
+            committedOrders.addAndGet(accepted.size());
+            log.debug(() -> "Группа заказов записана: " + group.size() + ", новых: " + accepted.size());
+            if (!items.isEmpty()) {
+                productDAO.stockReservationCommitted(items);
+            }
+            return results;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException ex) {
+                log.error("Ошибка при откате транзакции: " + ex.getMessage(), ex);
+            }
+            for (Order order : accepted) {
+                order.setId(0);
+            }
+            throw e;
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+                conn.close();
+            } catch (SQLException e) {
+                log.error("Ошибка при восстановлении autoCommit: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Списать позиции заказа с остатков группы, если хватает всех товаров
+    private static boolean allocate(Order order, Map<Integer, Integer> stock) {
+        Map<Integer, Integer> required = new HashMap<>();
+        for (OrderItem item : OrderDAO.validItems(order)) {
+            required.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        for (Map.Entry<Integer, Integer> entry : required.entrySet()) {
+            if (stock.getOrDefault(entry.getKey(), -1) < entry.getValue()) {
+                return false;
+            }
+        }
+        for (Map.Entry<Integer, Integer> entry : required.entrySet()) {
+            stock.merge(entry.getKey(), -entry.getValue(), Integer::sum);
+        }
+        return true;
+    }
+
+    private static Map<String, Integer> findExistingTokens(List<PendingOrder> group, Connection conn)
+            throws SQLException {
+        List<String> tokens = new ArrayList<>();
+        for (PendingOrder pending : group) {
+            if (pending.order.getOrderToken() != null) {
+                tokens.add(pending.order.getOrderToken());
+            }
+        }
+        Map<String, Integer> existing = new HashMap<>();
+        if (tokens.isEmpty()) {
+            return existing;
+        }
+
+        String sql = "SELECT order_token, id FROM orders WHERE order_token IN (" +
+                     String.join(", ", Collections.nCopies(tokens.size(), "?")) + ")";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < tokens.size(); i++) {
+                pstmt.setString(i + 1, tokens.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+        return existing;
+    }
+
+    // Заголовки всех заказов группы одним многострочным INSERT; id присваиваются по порядку строк
+    private static void insertOrders(List<Order> orders, Connection conn) throws SQLException {
+        String sql = "INSERT INTO orders (user_id, order_date, delivery_date, total_cost, status, order_token) VALUES " +
+                     String.join(", ", Collections.nCopies(orders.size(), "(?, ?, ?, ?, ?, ?)"));
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            int index = 1;
+            for (Order order : orders) {
+                pstmt.setInt(index++, order.getUser().getId());
+                pstmt.setTimestamp(index++, Timestamp.valueOf(order.getOrderDate()));
+                if (order.getDeliveryDate() != null) {
+                    pstmt.setTimestamp(index++, Timestamp.valueOf(order.getDeliveryDate()));
+                } else {
+                    pstmt.setNull(index++, Types.TIMESTAMP);
+                }
+                pstmt.setDouble(index++, order.getTotalCost());
+                pstmt.setString(index++, order.getStatus());
+                pstmt.setString(index++, order.getOrderToken());
+            }
+            pstmt.executeUpdate();
+
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                for (Order order : orders) {
+                    if (!keys.next()) {
+                        throw new SQLException("Получено меньше ID заказов, чем записано строк");
+                    }
+                    order.setId(keys.getInt(1));
+                }
+            }
+        }
+    }
+
+    // Заказ в очереди и ожидающий его результат отправитель
+    private static class PendingOrder {
+        final Order order;
+        final CompletableFuture<OrderDAO.SubmitResult> future;
+
+        PendingOrder(Order order, CompletableFuture<OrderDAO.SubmitResult> future) {
+            this.order = order;
+            this.future = future;
+        }
+    }
+}
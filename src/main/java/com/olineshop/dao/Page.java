@@ -0,0 +1,40 @@
+package com.olineshop.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+//Страница результатов постраничного запроса
+//Следующая страница запрашивается по последнему элементу текущей (keyset-пагинация),
+//поэтому время запроса не зависит от того, насколько далеко пролистана таблица.
+
+public final class Page<T> {
+    private final List<T> items;
+    private final boolean hasMore;
+
+    Page(List<T> items, boolean hasMore) {
+        this.items = Collections.unmodifiableList(items);
+        this.hasMore = hasMore;
+    }
+
+    //Собрать страницу из строк, прочитанных с запасом в одну строку
+    //rows строки, прочитанные запросом с LIMIT pageSize + 1
+    //pageSize размер страницы
+    static <T> Page<T> of(List<T> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        return new Page<>(hasMore ? rows.subList(0, pageSize) : rows, hasMore);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    //Последний элемент страницы (ключ для запроса следующей) или null для пустой страницы
+    public T getLast() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+
+    //true, если после этой страницы есть еще строки
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,308 @@
+package com.olineshop.dao;
+
+import com.olineshop.model.Product;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Кэш каталога товаров для ProductDAO
+//Изменения, сделанные через ProductDAO, сразу записываются в кэш (write-through) и увеличивают
+//счетчик в таблице catalog_version. Перед чтением кэш не чаще раза в checkIntervalMs сверяет
+//свою версию со счетчиком: если каталог менял кто-то еще (другая копия приложения), кэш сбрасывается.
+//Счетчик увеличивают только правки каталога (добавление, изменение, удаление товара, остаток из
+//администрирования, импорт). Списание по заказам и приход товара меняют остаток в кэше на величину
+//(adjustStock) без счетчика, поэтому в кэше другой копии такой остаток может быть устаревшим:
+//при оформлении заказа остаток все равно проверяется в базе условным UPDATE.
+//Число товаров в кэше ограничено; если каталог больше, полный список читается из базы.
+//Наружу отдаются только копии объектов Product.
+//
+//Настройки (системные свойства):
+//olineshop.cache.products.enabled - false, чтобы отключить кэш (по умолчанию true)
+//olineshop.cache.products.maxEntries - максимум товаров в кэше (по умолчанию 10000)
+//olineshop.cache.products.checkIntervalMs - как часто сверять версию каталога (по умолчанию 500)
+
+class ProductCache {
+    private static final Log log = Log.get(ProductCache.class);
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long checkIntervalNanos;
+
+    // Товары в порядке последнего обращения; самые старые вытесняются при переполнении
+    private final LinkedHashMap<Integer, Product> entries;
+    // true, если в кэше лежит весь каталог и getAllProducts можно отдать из памяти
+    private boolean complete = false;
+    private long knownVersion = -1;
+    private long lastCheckNanos;
+    private boolean versionChecked = false;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    ProductCache(boolean enabled, int maxEntries, long checkIntervalMs) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.checkIntervalNanos = checkIntervalMs * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Product> eldest) {
+                if (size() > ProductCache.this.maxEntries) {
+                    complete = false;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    static ProductCache fromSystemProperties() {
+        return new ProductCache(
+                Boolean.parseBoolean(System.getProperty("olineshop.cache.products.enabled", "true")),
+                Integer.getInteger("olineshop.cache.products.maxEntries", 10_000),
+                Long.getLong("olineshop.cache.products.checkIntervalMs", 500L));
+    }
+
+    //Весь каталог (копии, по убыванию id) или null, если каталога в кэше нет
+    List<Product> getAll() {
+        if (!enabled) {
+            return null;
+        }
+        validate();
+        List<Product> products;
+        synchronized (this) {
+            if (!complete) {
+                misses.incrementAndGet();
+                return null;
+            }
+            products = copies(entries.values());
+        }
+        hits.incrementAndGet();
+        products.sort(Comparator.comparingInt(Product::getId).reversed());
+        return products;
+    }
+
+    //Товар из кэша (копия) или null при промахе
+    Product get(int id) {
+        if (!enabled) {
+            return null;
+        }
+        validate();
+        synchronized (this) {
+            Product product = entries.get(id);
+            if (product == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return copy(product);
+        }
+    }
+
+    //Товар, которого нет в базе, если кэш содержит весь каталог (тогда запрос не нужен)
+    synchronized boolean isKnownMissing(int id) {
+        return enabled && complete && !entries.containsKey(id);
+    }
+
+    //Заполнить кэш полным каталогом, прочитанным из базы
+    //version версия каталога, прочитанная до запроса товаров
+    synchronized void putAll(List<Product> products, long version) {
+        if (!enabled) {
+            return;
+        }
+        entries.clear();
+        complete = products.size() <= maxEntries;
+        for (Product product : products) {
+            entries.put(product.getId(), copy(product));
+        }
+        if (!complete) {
+            log.debug(() -> "Каталог (" + products.size() + " товаров) больше лимита кэша " + maxEntries);
+        }
+        knownVersion = version;
+        versionChecked = true;
+        lastCheckNanos = System.nanoTime();
+    }
+
+    //Записать в кэш товар, прочитанный из базы или измененный через ProductDAO
+    synchronized void put(Product product) {
+        if (enabled && product != null) {
+            entries.put(product.getId(), copy(product));
+        }
+    }
+
+    //Изменить остаток товара в кэше
+    synchronized void updateStock(int id, int stockQuantity) {
+        if (!enabled) {
+            return;
+        }
+        Product product = entries.get(id);
+        if (product != null) {
+            product.setStockQuantity(stockQuantity);
+        }
+    }
+
+    //Изменить остаток товара в кэше на величину (остаток в базе изменен относительным UPDATE)
+    synchronized void adjustStock(int id, int delta) {
+        if (!enabled) {
+            return;
+        }
+        Product product = entries.get(id);
+        if (product != null) {
+            product.setStockQuantity(product.getStockQuantity() + delta);
+        }
+    }
+
+    synchronized void remove(int id) {
+        if (enabled) {
+            entries.remove(id);
+        }
+    }
+
+    //Сбросить кэш полностью
+    synchronized void invalidate() {
+        entries.clear();
+        complete = false;
+        knownVersion = -1;
+        invalidations.incrementAndGet();
+    }
+
+    //Текущая версия каталога в базе или -1, если ее не удалось прочитать
+    long readVersion() {
+        if (!enabled) {
+            return -1;
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                return -1;
+            }
+            return readVersion(conn);
+        } catch (SQLException e) {
+            log.error("Ошибка при чтении версии каталога: " + e.getMessage(), e);
+            return -1;
+        }
+    }
+
+    //Отметить изменение каталога, уже записанное в кэш
+    //Счетчик увеличивается отдельным коротким запросом, чтобы строка catalog_version не блокировалась
+    //на время транзакции. Если счетчик вырос больше чем на 1, каталог менял кто-то еще и кэш сбрасывается.
+    void publishChange() {
+        if (!enabled) {
+            return;
+        }
+        long newVersion = -1;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn != null) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("UPDATE catalog_version SET version = LAST_INSERT_ID(version + 1) WHERE id = 1");
+                    try (ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                        if (rs.next()) {
+                            newVersion = rs.getLong(1);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка при обновлении версии каталога: " + e.getMessage(), e);
+        }
+
+        synchronized (this) {
+            if (newVersion > 0 && knownVersion >= 0 && newVersion == knownVersion + 1) {
+                knownVersion = newVersion;
+            } else if (knownVersion >= 0) {
+                invalidate();
+            }
+        }
+    }
+
+    //Статистика кэша для журнала
+    synchronized String getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return "товаров в кэше: " + entries.size() + "/" + maxEntries + (complete ? " (весь каталог)" : "") +
+               ", попаданий: " + hitCount + ", промахов: " + misses.get() +
+               ", доля попаданий: " + (total == 0 ? 0 : hitCount * 100 / total) + "%" +
+               ", сбросов: " + invalidations.get();
+    }
+
+    //Максимум товаров в кэше
+    int getMaxEntries() {
+        return maxEntries;
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    // Сверка с catalog_version не чаще раза в checkIntervalNanos
+    // Версия читается из базы без блокировки кэша: остальные потоки в это время работают с кэшем как есть.
+    // Результат применяется, только если за время запроса кэш не был заполнен заново (putAll)
+    // и его версия не менялась (publishChange, invalidate) - иначе прочитанная версия уже устарела.
+    private void validate() {
+        long checkedAt;
+        long checkedVersion;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (versionChecked && now - lastCheckNanos < checkIntervalNanos) {
+                return;
+            }
+            versionChecked = true;
+            lastCheckNanos = now;
+            checkedAt = now;
+            checkedVersion = knownVersion;
+        }
+
+        long version = readVersion();
+        synchronized (this) {
+            if (lastCheckNanos != checkedAt || knownVersion != checkedVersion) {
+                return;
+            }
+            if (version < 0 || version != knownVersion) {
+                if (knownVersion >= 0) {
+                    log.debug(() -> "Каталог изменен (версия " + version + ", в кэше " + knownVersion + "), кэш сброшен");
+                    invalidate();
+                } else {
+                    // Записи, добавленные без известной версии, не проверены - начинаем с пустого кэша
+                    entries.clear();
+                    complete = false;
+                }
+                knownVersion = version;
+            }
+        }
+    }
+
+    private static long readVersion(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT version FROM catalog_version WHERE id = 1");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    private static List<Product> copies(Collection<Product> products) {
+        List<Product> result = new ArrayList<>(products.size());
+        for (Product product : products) {
+            result.add(copy(product));
+        }
+        return result;
+    }
+
+    private static Product copy(Product product) {
+        return new Product(product.getId(), product.getName(), product.getPrice(), product.getUnit(),
+                product.getStockQuantity());
+    }
+}
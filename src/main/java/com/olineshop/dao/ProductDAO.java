@@ -1,7 +1,9 @@
 package com.olineshop.dao;
 
+import com.olineshop.model.OrderItem;
 import com.olineshop.model.Product;
 import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -9,53 +11,267 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 //Класс для работы с товарами в базе данных
 
 public class ProductDAO {
+    private static final Log log = Log.get(ProductDAO.class);
+    // Кэш каталога, общий для всех экземпляров ProductDAO
+    private static final ProductCache cache = ProductCache.fromSystemProperties();
+    private static final String ALL_PRODUCTS_SQL = "SELECT * FROM products ORDER BY id DESC";
+
+    //Статистика кэша товаров (попадания, промахи, сбросы)
+    public static String getCacheStats() {
+        return cache.getStats();
+    }
+
+    //Сколько товаров помещается в кэш каталога
+    public static int getCacheCapacity() {
+        return cache.getMaxEntries();
+    }
 
-    //Получить все товары из базы данных
+    //Каталог изменен массово в обход ProductDAO (импорт): сбросить кэш и увеличить версию каталога,
+    //чтобы другие копии приложения тоже сбросили свои кэши
+    static void catalogChanged() {
+        cache.invalidate();
+        cache.publishChange();
+    }
+
+    //Получить все товары (из кэша, если в нем весь каталог)
     //return список товаров
     public List<Product> getAllProducts() {
-        List<Product> products = new ArrayList<>();
-        String sql = "SELECT * FROM products ORDER BY id DESC";
-        System.out.println("Получение всех товаров из базы данных");
+        List<Product> cached = cache.getAll();
+        if (cached != null) {
+            log.debug(() -> "Товары получены из кэша: " + cached.size());
+            return cached;
+        }
         
-        // Сбрасываем соединение перед выполнением запроса
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+        // Версия читается до товаров: изменение между запросами приведет к сбросу кэша, а не к потере
+        long version = cache.readVersion();
+        log.debug("Получение всех товаров из базы данных");
+
+        // Запрос открывается здесь, а не через streamAllProducts: при ошибке кэш не должен получить пустой каталог
+        try (Stream<Product> stream = StreamingQuery.stream(ALL_PRODUCTS_SQL, StreamingQuery.NO_PARAMETERS,
+                this::extractProductFromResultSet)) {
+            List<Product> products = stream.collect(Collectors.toCollection(ArrayList::new));
+            log.debug(() -> "Всего найдено товаров: " + products.size());
+            if (version >= 0) {
+                cache.putAll(products, version);
+            }
+            return products;
+        } catch (SQLException | StreamingQuery.ReadException e) {
+            log.error("Ошибка при получении всех товаров: " + e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    //Получить все товары, если их не больше maxCount
+    //Товары читаются одним запросом с LIMIT maxCount + 1, поэтому большой каталог не загружается целиком,
+    //а размер и содержимое берутся из одного чтения. Полный каталог попадает в кэш, как в getAllProducts.
+    //maxCount максимум товаров
+    //return список товаров или null, если товаров больше maxCount
+    //Ошибка базы данных передается вызывающему коду: пустой список означал бы пустой каталог
+    public List<Product> getAllProducts(int maxCount) throws SQLException {
+        List<Product> cached = cache.getAll();
+        if (cached != null && cached.size() <= maxCount) {
+            log.debug(() -> "Товары получены из кэша: " + cached.size());
+            return cached;
+        }
+
+        long version = cache.readVersion();
+        String sql = ALL_PRODUCTS_SQL + " LIMIT ?";
+        List<Product> products;
+        try (Stream<Product> stream = StreamingQuery.stream(sql, pstmt -> pstmt.setInt(1, maxCount + 1),
+                this::extractProductFromResultSet)) {
+            products = stream.collect(Collectors.toCollection(ArrayList::new));
+        } catch (StreamingQuery.ReadException e) {
+            throw e.getCause();
+        }
+        if (products.size() > maxCount) {
+            log.debug(() -> "Товаров больше " + maxCount + ", каталог не загружается");
+            return null;
+        }
+        log.debug(() -> "Всего найдено товаров: " + products.size());
+        if (version >= 0) {
+            cache.putAll(products, version);
+        }
+        return products;
+    }
+
+    //Получить все товары потоком из базы данных (без кэша), по убыванию id
+    //Строки читаются по мере обхода потока, в памяти только текущий товар.
+    //Поток занимает соединение до закрытия - используйте try-with-resources.
+    //Ошибка при чтении строк передается как StreamingQuery.ReadException
+    //return поток товаров (пустой, если запрос не выполнился)
+    public Stream<Product> streamAllProducts() {
+        log.debug(() -> "Выполнение SQL-запроса: " + ALL_PRODUCTS_SQL);
+        try {
+            return StreamingQuery.stream(ALL_PRODUCTS_SQL, StreamingQuery.NO_PARAMETERS,
+                    this::extractProductFromResultSet);
+        } catch (SQLException e) {
+            log.error("Ошибка при получении всех товаров: " + e.getMessage(), e);
+            return Stream.empty();
+        }
+    }
+
+    //Получить страницу товаров в порядке убывания id
+    //after последний товар предыдущей страницы или null для первой страницы
+    //pageSize размер страницы
+    //return страница товаров
+    public Page<Product> getProductsPage(Product after, int pageSize) {
+        String sql = after == null
+                ? "SELECT * FROM products ORDER BY id DESC LIMIT ?"
+                : "SELECT * FROM products WHERE id < ? ORDER BY id DESC LIMIT ?";
+        List<Product> products = new ArrayList<>();
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.error("Ошибка: соединение с базой данных не установлено");
+                return Page.of(products, pageSize);
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                if (after != null) {
+                    pstmt.setInt(index++, after.getId());
+                }
+                pstmt.setInt(index, pageSize + 1);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        products.add(extractProductFromResultSet(rs));
+                    }
+                }
+            }
+            log.debug(() -> "Загружена страница товаров: " + products.size());
+        } catch (SQLException e) {
+            log.error("Ошибка при получении страницы товаров: " + e.getMessage(), e);
+        }
+        return Page.of(products, pageSize);
+    }
 
+    //Найти товары по названию
+    //Запросы от двух символов ищутся по полнотекстовому индексу ft_products_name (ngram),
+    //более короткие - по префиксу названия через обычный индекс. Пустой запрос возвращает последние товары.
+    //query текст запроса
+    //filter дополнительные условия или null
+    //limit максимальное количество результатов
+    //return найденные товары (сначала наиболее подходящие)
+    public List<Product> searchProducts(String query, ProductSearchFilter filter, int limit) {
+        List<Product> products = new ArrayList<>();
+        String text = query == null ? "" : query.trim();
+        String booleanQuery = toBooleanQuery(text);
+        
+        StringBuilder sql = new StringBuilder("SELECT * FROM products WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        String orderBy;
+        if (!booleanQuery.isEmpty()) {
+            sql.append(" AND MATCH(name) AGAINST (? IN BOOLEAN MODE)");
+            params.add(booleanQuery);
+            orderBy = " ORDER BY MATCH(name) AGAINST (? IN BOOLEAN MODE) DESC, id DESC";
+        } else if (!text.isEmpty()) {
+            sql.append(" AND name LIKE ?");
+            params.add(escapeLike(text) + "%");
+            orderBy = " ORDER BY name";
+        } else {
+            orderBy = " ORDER BY id DESC";
+        }
+        
+        if (filter != null) {
+            if (filter.getMinPrice() != null) {
+                sql.append(" AND price >= ?");
+                params.add(filter.getMinPrice());
+            }
+            if (filter.getMaxPrice() != null) {
+                sql.append(" AND price <= ?");
+                params.add(filter.getMaxPrice());
+            }
+            if (filter.getUnit() != null && !filter.getUnit().isBlank()) {
+                sql.append(" AND unit = ?");
+                params.add(filter.getUnit());
+            }
+            if (filter.isInStockOnly()) {
+                sql.append(" AND stock_quantity > 0");
+            }
+        }
+        
+        sql.append(orderBy);
+        if (!booleanQuery.isEmpty()) {
+            params.add(booleanQuery);
+        }
+        sql.append(" LIMIT ?");
+        params.add(limit);
+        
+        long start = System.nanoTime();
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: соединение с базой данных не установлено");
+                log.error("Ошибка: соединение с базой данных не установлено");
                 return products;
             }
             
-            // Устанавливаем ограничение на количество возвращаемых строк для улучшения производительности
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setFetchSize(100); // Оптимизация для больших наборов данных
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
+                }
                 
-                System.out.println("Выполнение SQL-запроса: " + sql);
                 try (ResultSet rs = pstmt.executeQuery()) {
                     while (rs.next()) {
                         products.add(extractProductFromResultSet(rs));
                     }
                 }
             }
-            System.out.println("Всего найдено товаров: " + products.size());
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            log.debug(() -> "Поиск товаров '" + text + "': найдено " + products.size() + " за " + elapsed + " мс");
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении всех товаров: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при поиске товаров: " + e.getMessage(), e);
         }
         return products;
     }
 
+    // Запрос для MATCH ... IN BOOLEAN MODE: каждое слово обязательно и ищется как фраза.
+    // Слова короче двух символов (минимальная длина n-граммы) в полнотекстовом поиске не участвуют;
+    // если других слов нет, возвращается пустая строка и используется поиск по префиксу
+    private static String toBooleanQuery(String text) {
+        StringBuilder result = new StringBuilder();
+        for (String word : text.split("\\s+")) {
+            String clean = word.replaceAll("[+\\-<>()~*\"@]", "");
+            if (clean.length() < 2) {
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append("+\"").append(clean).append('"');
+        }
+        return result.toString();
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     //Получить все товары, которые есть в наличии
     //return список товаров в наличии
     public List<Product> getAvailableProducts() {
+        List<Product> cached = cache.getAll();
+        if (cached != null) {
+            cached.removeIf(product -> !product.isInStock());
+            return cached;
+        }
+        
         List<Product> products = new ArrayList<>();
         String sql = "SELECT * FROM products WHERE stock_quantity > 0";
-        System.out.println("Получение доступных товаров");
+        log.debug("Получение доступных товаров");
 
         try (Connection conn = DatabaseManager.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql);
@@ -64,10 +280,9 @@ public class ProductDAO {
             while (rs.next()) {
                 products.add(extractProductFromResultSet(rs));
             }
-            System.out.println("Найдено доступных товаров: " + products.size());
+            log.debug(() -> "Найдено доступных товаров: " + products.size());
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении доступных товаров: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при получении доступных товаров: " + e.getMessage(), e);
         }
         return products;
     }
@@ -76,35 +291,37 @@ public class ProductDAO {
     //id идентификатор товара
     //return товар или null, если товар не найден
     public Product getProductById(int id) {
-        String sql = "SELECT * FROM products WHERE id = ?";
-        System.out.println("Получение товара по ID: " + id);
+        Product cached = cache.get(id);
+        if (cached != null || cache.isKnownMissing(id)) {
+            return cached;
+        }
         
-        // Сбрасываем соединение перед выполнением запроса
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+        String sql = "SELECT * FROM products WHERE id = ?";
+        log.debug(() -> "Получение товара по ID: " + id);
 
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных при получении товара по ID");
+                log.error("Ошибка: не удалось получить соединение с базой данных при получении товара по ID");
                 return null;
             }
             
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, id);
-                System.out.println("Выполнение SQL-запроса: " + sql + " с параметром id=" + id);
+                log.debug(() -> "Выполнение SQL-запроса: " + sql + " с параметром id=" + id);
                 
                 try (ResultSet rs = pstmt.executeQuery()) {
                     if (rs.next()) {
                         Product product = extractProductFromResultSet(rs);
-                        System.out.println("Товар найден: ID=" + product.getId() + ", Название=" + product.getName());
+                        log.debug(() -> "Товар найден: ID=" + product.getId() + ", Название=" + product.getName());
+                        cache.put(product);
                         return product;
                     } else {
-                        System.out.println("Товар с ID=" + id + " не найден");
+                        log.debug(() -> "Товар с ID=" + id + " не найден");
                     }
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении товара по ID=" + id + ": " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при получении товара по ID=" + id + ": " + e.getMessage(), e);
         }
         return null;
     }
@@ -115,7 +332,7 @@ public class ProductDAO {
     //return товар или null, если товар не найден
     public Product getProductByIdWithConnection(int id, Connection conn) {
         if (conn == null) {
-            System.out.println("Ошибка: передано null-соединение при получении товара по ID");
+            log.error("Ошибка: передано null-соединение при получении товара по ID");
             return null;
         }
         
@@ -129,8 +346,7 @@ public class ProductDAO {
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении товара по ID: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при получении товара по ID: " + e.getMessage(), e);
         }
         return null;
     }
@@ -140,183 +356,53 @@ public class ProductDAO {
     //return true, если товар успешно добавлен, иначе false
     public boolean addProduct(Product product) {
         String sql = "INSERT INTO products (name, price, unit, stock_quantity) VALUES (?, ?, ?, ?)";
-        System.out.println("Добавление товара: " + product.getName() + ", Цена: " + product.getPrice() + 
+        log.debug(() -> "Добавление товара: " + product.getName() + ", Цена: " + product.getPrice() + 
                           ", Ед.изм.: " + product.getUnit() + ", Количество: " + product.getStockQuantity());
-
-        // Сбрасываем соединение перед добавлением товара
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
         
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: соединение с базой данных не установлено");
+                log.error("Ошибка: соединение с базой данных не установлено");
                 return false;
             }
 
-            // Проверка метаданных соединения
-            System.out.println("URL подключения: " + conn.getMetaData().getURL());
-            System.out.println("Пользователь БД: " + conn.getMetaData().getUserName());
-            System.out.println("Версия БД: " + conn.getMetaData().getDatabaseProductVersion());
-            
-            // Проверяем структуру таблицы products
-            if (!checkProductsTableStructure(conn)) {
-                System.out.println("Ошибка структуры таблицы products");
-                return false;
-            }
-            
-            // Проверяем существование таблицы products
-            try (ResultSet tables = conn.getMetaData().getTables(null, null, "products", null)) {
-                if (!tables.next()) {
-                    System.out.println("Ошибка: таблица 'products' не существует в базе данных");
-                    return false;
-                }
-            }
-
             try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setString(1, product.getName());
                 pstmt.setDouble(2, product.getPrice());
                 pstmt.setString(3, product.getUnit());
                 pstmt.setInt(4, product.getStockQuantity());
 
-                System.out.println("Выполнение SQL-запроса: " + sql);
-                System.out.println("Параметры: 1=" + product.getName() + ", 2=" + product.getPrice() + 
+                log.debug(() -> "Выполнение SQL-запроса: " + sql);
+                log.debug(() -> "Параметры: 1=" + product.getName() + ", 2=" + product.getPrice() + 
                                   ", 3=" + product.getUnit() + ", 4=" + product.getStockQuantity());
                 
                 // Добавляем дополнительную проверку
                 try {
                     int affectedRows = pstmt.executeUpdate();
-                    System.out.println("Затронуто строк: " + affectedRows);
+                    log.debug(() -> "Затронуто строк: " + affectedRows);
                     
                     if (affectedRows > 0) {
                         try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                             if (generatedKeys.next()) {
                                 int id = generatedKeys.getInt(1);
                                 product.setId(id);
-                                System.out.println("Товар успешно добавлен с ID: " + id);
+                                log.debug(() -> "Товар успешно добавлен с ID: " + id);
+                                cache.put(product);
+                                cache.publishChange();
                                 return true;
                             } else {
-                                System.out.println("Не удалось получить ID добавленного товара");
+                                log.warn("Не удалось получить ID добавленного товара");
                             }
                         }
                     }
-                    System.out.println("Товар не был добавлен");
+                    log.debug("Товар не был добавлен");
                     return false;
                 } catch (SQLException e) {
-                    System.out.println("Ошибка при выполнении запроса: " + e.getMessage());
-                    System.out.println("SQL State: " + e.getSQLState());
-                    System.out.println("Error Code: " + e.getErrorCode());
-                    e.printStackTrace();
+                    log.error("Ошибка при выполнении запроса: " + e.getMessage(), e);
                     return false;
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Ошибка при добавлении товара: " + e.getMessage());
-            System.out.println("SQL State: " + e.getSQLState());
-            System.out.println("Error Code: " + e.getErrorCode());
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    // Метод для проверки структуры таблицы products
-    private boolean checkProductsTableStructure(Connection conn) {
-        try {
-            System.out.println("Проверка структуры таблицы products...");
-            
-            // Проверяем существование таблицы
-            try (ResultSet tables = conn.getMetaData().getTables(null, null, "products", null)) {
-                if (!tables.next()) {
-                    System.out.println("Таблица 'products' не существует в базе данных");
-                    
-                    // Попробуем создать таблицу
-                    try (Statement stmt = conn.createStatement()) {
-                        String createTableSQL = "CREATE TABLE IF NOT EXISTS `products` (" +
-                                              "`id` INT AUTO_INCREMENT PRIMARY KEY," +
-                                              "`name` VARCHAR(100) NOT NULL," +
-                                              "`price` DECIMAL(10, 2) NOT NULL," +
-                                              "`unit` VARCHAR(20) NOT NULL DEFAULT 'шт'," +
-                                              "`stock_quantity` INT NOT NULL DEFAULT 0)";
-                        System.out.println("Создание таблицы products: " + createTableSQL);
-                        stmt.execute(createTableSQL);
-                        System.out.println("Таблица products создана");
-                    }
-                    return true;
-                } else {
-                    System.out.println("Таблица 'products' существует в базе данных");
-                }
-            }
-            
-            // Проверяем структуру таблицы
-            try (ResultSet columns = conn.getMetaData().getColumns(null, null, "products", null)) {
-                boolean hasId = false;
-                boolean hasName = false;
-                boolean hasPrice = false;
-                boolean hasUnit = false;
-                boolean hasStockQuantity = false;
-                
-                while (columns.next()) {
-                    String columnName = columns.getString("COLUMN_NAME");
-                    String columnType = columns.getString("TYPE_NAME");
-                    int columnSize = columns.getInt("COLUMN_SIZE");
-                    
-                    System.out.println("Колонка: " + columnName + ", Тип: " + columnType + ", Размер: " + columnSize);
-                    
-                    switch (columnName.toLowerCase()) {
-                        case "id":
-                            hasId = true;
-                            break;
-                        case "name":
-                            hasName = true;
-                            break;
-                        case "price":
-                            hasPrice = true;
-                            break;
-                        case "unit":
-                            hasUnit = true;
-                            break;
-                        case "stock_quantity":
-                            hasStockQuantity = true;
-                            break;
-                    }
-                }
-                
-                // Проверяем, все ли необходимые колонки присутствуют
-                if (!hasId || !hasName || !hasPrice || !hasUnit || !hasStockQuantity) {
-                    System.out.println("Структура таблицы products некорректна. Отсутствуют колонки:");
-                    if (!hasId) System.out.println("- id");
-                    if (!hasName) System.out.println("- name");
-                    if (!hasPrice) System.out.println("- price");
-                    if (!hasUnit) System.out.println("- unit");
-                    if (!hasStockQuantity) System.out.println("- stock_quantity");
-                    
-                    // Пробуем пересоздать таблицу
-                    try (Statement stmt = conn.createStatement()) {
-                        // Сначала удаляем таблицу, если она существует
-                        String dropTableSQL = "DROP TABLE IF EXISTS products";
-                        System.out.println("Удаление таблицы products: " + dropTableSQL);
-                        stmt.execute(dropTableSQL);
-                        
-                        // Затем создаем таблицу заново
-                        String createTableSQL = "CREATE TABLE `products` (" +
-                                              "`id` INT AUTO_INCREMENT PRIMARY KEY," +
-                                              "`name` VARCHAR(100) NOT NULL," +
-                                              "`price` DECIMAL(10, 2) NOT NULL," +
-                                              "`unit` VARCHAR(20) NOT NULL DEFAULT 'шт'," +
-                                              "`stock_quantity` INT NOT NULL DEFAULT 0)";
-                        System.out.println("Пересоздание таблицы products: " + createTableSQL);
-                        stmt.execute(createTableSQL);
-                        System.out.println("Таблица products пересоздана");
-                    }
-                    return true;
-                }
-                
-                System.out.println("Структура таблицы products корректна");
-                return true;
-            }
-        } catch (SQLException e) {
-            System.out.println("Ошибка при проверке структуры таблицы products: " + e.getMessage());
-            System.out.println("SQL State: " + e.getSQLState());
-            System.out.println("Error Code: " + e.getErrorCode());
-            e.printStackTrace();
+            log.error("Ошибка при добавлении товара: " + e.getMessage(), e);
             return false;
         }
     }
@@ -326,7 +412,7 @@ public class ProductDAO {
     //return true, если товар успешно обновлен, иначе false
     public boolean updateProduct(Product product) {
         String sql = "UPDATE products SET name = ?, price = ?, unit = ?, stock_quantity = ? WHERE id = ?";
-        System.out.println("Обновление товара: ID=" + product.getId() + ", Название=" + product.getName() + 
+        log.debug(() -> "Обновление товара: ID=" + product.getId() + ", Название=" + product.getName() + 
                           ", Цена=" + product.getPrice() + ", Ед.изм.=" + product.getUnit() + 
                           ", Количество=" + product.getStockQuantity());
 
@@ -334,7 +420,7 @@ public class ProductDAO {
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             if (conn == null) {
-                System.out.println("Ошибка: соединение с базой данных не установлено");
+                log.error("Ошибка: соединение с базой данных не установлено");
                 return false;
             }
 
@@ -344,17 +430,20 @@ public class ProductDAO {
             pstmt.setInt(4, product.getStockQuantity());
             pstmt.setInt(5, product.getId());
 
-            System.out.println("Выполнение SQL-запроса: " + sql);
-            System.out.println("Параметры: 1=" + product.getName() + ", 2=" + product.getPrice() + 
+            log.debug(() -> "Выполнение SQL-запроса: " + sql);
+            log.debug(() -> "Параметры: 1=" + product.getName() + ", 2=" + product.getPrice() + 
                               ", 3=" + product.getUnit() + ", 4=" + product.getStockQuantity() + 
                               ", 5=" + product.getId());
-            int affectedRows = pstmt.executeUpdate();
-            System.out.println("Затронуто строк: " + affectedRows);
+            int affectedRows = executeStockWrite(pstmt, conn, product.getId(), product.getStockQuantity());
+            log.debug(() -> "Затронуто строк: " + affectedRows);
             
+            if (affectedRows > 0) {
+                cache.put(product);
+                cache.publishChange();
+            }
             return affectedRows > 0;
         } catch (SQLException e) {
-            System.out.println("Ошибка при обновлении товара: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при обновлении товара: " + e.getMessage(), e);
             return false;
         }
     }
@@ -365,32 +454,71 @@ public class ProductDAO {
     //return true, если количество успешно обновлено, иначе false
     public boolean updateProductQuantity(int productId, int newQuantity) {
         String sql = "UPDATE products SET stock_quantity = ? WHERE id = ?";
-        System.out.println("Обновление количества товара: ID=" + productId + ", Новое количество=" + newQuantity);
+        log.debug(() -> "Обновление количества товара: ID=" + productId + ", Новое количество=" + newQuantity);
 
         try (Connection conn = DatabaseManager.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             if (conn == null) {
-                System.out.println("Ошибка: соединение с базой данных не установлено");
+                log.error("Ошибка: соединение с базой данных не установлено");
                 return false;
             }
 
             pstmt.setInt(1, newQuantity);
             pstmt.setInt(2, productId);
 
-            System.out.println("Выполнение SQL-запроса: " + sql);
-            System.out.println("Параметры: 1=" + newQuantity + ", 2=" + productId);
-            int affectedRows = pstmt.executeUpdate();
-            System.out.println("Затронуто строк: " + affectedRows);
+            log.debug(() -> "Выполнение SQL-запроса: " + sql);
+            log.debug(() -> "Параметры: 1=" + newQuantity + ", 2=" + productId);
+            int affectedRows = executeStockWrite(pstmt, conn, productId, newQuantity);
+            log.debug(() -> "Затронуто строк: " + affectedRows);
             
+            if (affectedRows > 0) {
+                cache.updateStock(productId, newQuantity);
+                cache.publishChange();
+            }
             return affectedRows > 0;
         } catch (SQLException e) {
-            System.out.println("Ошибка при обновлении количества товара: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при обновлении количества товара: " + e.getMessage(), e);
             return false;
         }
     }
 
+    // Запись остатка товара. Для горячего товара (HotStock) сначала списываются зафиксированные позиции
+    // журнала - иначе списание после записи увело бы новый остаток в минус; затем прежний остаток читается
+    // под блокировкой строки в той же транзакции, и счетчик в памяти после фиксации сдвигается на разницу:
+    // текущие резервы остаются учтенными
+    private int executeStockWrite(PreparedStatement pstmt, Connection conn, int productId, int newQuantity)
+            throws SQLException {
+        if (!HotStock.isHot(productId)) {
+            return pstmt.executeUpdate();
+        }
+        HotStock.flush();
+        conn.setAutoCommit(false);
+        try {
+            Integer before = null;
+            try (PreparedStatement lock = conn.prepareStatement(
+                    "SELECT stock_quantity FROM products WHERE id = ? FOR UPDATE")) {
+                lock.setInt(1, productId);
+                try (ResultSet rs = lock.executeQuery()) {
+                    if (rs.next()) {
+                        before = rs.getInt(1);
+                    }
+                }
+            }
+            int affectedRows = pstmt.executeUpdate();
+            conn.commit();
+            if (affectedRows > 0 && before != null) {
+                HotStock.stockChanged(productId, newQuantity - before);
+            }
+            return affectedRows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
     //Обновить количество товара на складе с использованием существующего соединения
     //productId идентификатор товара
     //newQuantity новое количество товара
@@ -398,19 +526,19 @@ public class ProductDAO {
     //return true, если количество успешно обновлено, иначе false
     public boolean updateProductQuantityWithConnection(int productId, int newQuantity, Connection conn) {
         if (conn == null) {
-            System.out.println("Ошибка: передано null-соединение при обновлении количества товара");
+            log.error("Ошибка: передано null-соединение при обновлении количества товара");
             return false;
         }
         
         // Проверка на валидный ID товара
         if (productId <= 0) {
-            System.out.println("Ошибка: неверный ID товара (" + productId + ") при обновлении количества");
+            log.error("Ошибка: неверный ID товара (" + productId + ") при обновлении количества");
             return false;
         }
         
         // Проверка на валидное количество товара
         if (newQuantity < 0) {
-            System.out.println("Ошибка: отрицательное количество товара (" + newQuantity + ") при обновлении");
+            log.error("Ошибка: отрицательное количество товара (" + newQuantity + ") при обновлении");
             return false;
         }
         
@@ -420,41 +548,35 @@ public class ProductDAO {
             checkStmt.setInt(1, productId);
             try (ResultSet rs = checkStmt.executeQuery()) {
                 if (!rs.next()) {
-                    System.out.println("Ошибка: товар с ID=" + productId + " не найден в базе данных");
+                    log.error("Ошибка: товар с ID=" + productId + " не найден в базе данных");
                     return false;
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Ошибка при проверке существования товара: " + e.getMessage());
-            System.out.println("SQL State: " + e.getSQLState());
-            System.out.println("Error Code: " + e.getErrorCode());
-            e.printStackTrace();
+            log.error("Ошибка при проверке существования товара: " + e.getMessage(), e);
             return false;
         }
         
         String sql = "UPDATE products SET stock_quantity = ? WHERE id = ?";
-        System.out.println("Обновление количества товара с существующим соединением: ID=" + productId + ", Новое количество=" + newQuantity);
+        log.debug(() -> "Обновление количества товара с существующим соединением: ID=" + productId + ", Новое количество=" + newQuantity);
 
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, newQuantity);
             pstmt.setInt(2, productId);
 
-            System.out.println("Выполнение SQL-запроса: " + sql);
-            System.out.println("Параметры: 1=" + newQuantity + ", 2=" + productId);
+            log.debug(() -> "Выполнение SQL-запроса: " + sql);
+            log.debug(() -> "Параметры: 1=" + newQuantity + ", 2=" + productId);
             int affectedRows = pstmt.executeUpdate();
-            System.out.println("Затронуто строк: " + affectedRows);
+            log.debug(() -> "Затронуто строк: " + affectedRows);
             
             if (affectedRows == 0) {
-                System.out.println("Предупреждение: не обновлено ни одной строки при обновлении количества товара с ID=" + productId);
+                log.warn("Предупреждение: не обновлено ни одной строки при обновлении количества товара с ID=" + productId);
                 return false;
             }
             
             return true;
         } catch (SQLException e) {
-            System.out.println("Ошибка при обновлении количества товара: " + e.getMessage());
-            System.out.println("SQL State: " + e.getSQLState());
-            System.out.println("Error Code: " + e.getErrorCode());
-            e.printStackTrace();
+            log.error("Ошибка при обновлении количества товара: " + e.getMessage(), e);
             return false;
         }
     }
@@ -464,33 +586,31 @@ public class ProductDAO {
     //return true, если товар успешно удален, иначе false
     public boolean deleteProduct(int id) {
         String sql = "DELETE FROM products WHERE id = ?";
-        System.out.println("Удаление товара с ID=" + id);
-        
-        // Сбрасываем соединение перед удалением
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+        log.debug(() -> "Удаление товара с ID=" + id);
 
         try (Connection conn = DatabaseManager.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             if (conn == null) {
-                System.out.println("Ошибка: соединение с базой данных не установлено");
+                log.error("Ошибка: соединение с базой данных не установлено");
                 return false;
             }
 
             pstmt.setInt(1, id);
             
-            System.out.println("Выполнение SQL-запроса: " + sql);
-            System.out.println("Параметр: id=" + id);
+            log.debug(() -> "Выполнение SQL-запроса: " + sql);
+            log.debug(() -> "Параметр: id=" + id);
             
             int affectedRows = pstmt.executeUpdate();
-            System.out.println("Затронуто строк: " + affectedRows);
+            log.debug(() -> "Затронуто строк: " + affectedRows);
             
+            if (affectedRows > 0) {
+                cache.remove(id);
+                cache.publishChange();
+            }
             return affectedRows > 0;
         } catch (SQLException e) {
-            System.out.println("Ошибка при удалении товара: " + e.getMessage());
-            System.out.println("SQL State: " + e.getSQLState());
-            System.out.println("Error Code: " + e.getErrorCode());
-            e.printStackTrace();
+            log.error("Ошибка при удалении товара: " + e.getMessage(), e);
             return false;
         }
     }
@@ -506,13 +626,14 @@ public class ProductDAO {
         String unit = rs.getString("unit");
         int stockQuantity = rs.getInt("stock_quantity");
         
-        System.out.println("Извлечен товар: ID=" + id + ", Название=" + name + 
+        log.debug(() -> "Извлечен товар: ID=" + id + ", Название=" + name + 
                           ", Цена=" + price + ", Ед.изм.=" + unit + ", Количество=" + stockQuantity);
         
         return new Product(id, name, price, unit, stockQuantity);
     }
 
     //Получить список товаров по их идентификаторам
+    //Товары из кэша не запрашиваются, остальные читаются одним запросом
     //productIds список идентификаторов товаров
     //return список найденных товаров
     public List<Product> getProductsByIds(List<Integer> productIds) {
@@ -521,42 +642,179 @@ public class ProductDAO {
             return products;
         }
         
-        // Создаем SQL запрос с параметрами IN
-        StringBuilder sql = new StringBuilder("SELECT * FROM products WHERE id IN (");
-        for (int i = 0; i < productIds.size(); i++) {
-            sql.append("?");
-            if (i < productIds.size() - 1) {
-                sql.append(",");
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : productIds) {
+            Product cached = cache.get(id);
+            if (cached != null) {
+                products.add(cached);
+            } else if (!cache.isKnownMissing(id)) {
+                missing.add(id);
             }
         }
-        sql.append(")");
+        if (missing.isEmpty()) {
+            return products;
+        }
+        
+        // Создаем SQL запрос с параметрами IN
+        String placeholders = String.join(",", Collections.nCopies(missing.size(), "?"));
+        String sql = "SELECT * FROM products WHERE id IN (" + placeholders + ")";
         
-        System.out.println("Получение товаров по ID: " + productIds);
+        log.debug(() -> "Получение товаров по ID: " + missing);
         
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             // Устанавливаем параметры запроса
-            for (int i = 0; i < productIds.size(); i++) {
-                pstmt.setInt(i + 1, productIds.get(i));
+            for (int i = 0; i < missing.size(); i++) {
+                pstmt.setInt(i + 1, missing.get(i));
             }
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
                     Product product = extractProductFromResultSet(rs);
                     products.add(product);
-                    System.out.println("Найден товар: ID=" + product.getId() + 
+                    cache.put(product);
+                    log.debug(() -> "Найден товар: ID=" + product.getId() + 
                                       ", Название=" + product.getName() + 
                                       ", Количество=" + product.getStockQuantity());
                 }
             }
             
-            System.out.println("Всего найдено товаров: " + products.size());
+            log.debug(() -> "Всего найдено товаров: " + products.size());
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении товаров по ID: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при получении товаров по ID: " + e.getMessage(), e);
+        }
+        
+        return products;
+    }
+
+    //Заблокировать строки товаров до конца транзакции вызывающего кода
+    //Строки блокируются одним SELECT ... FOR UPDATE по возрастанию id: транзакции, которые блокируют
+    //общие товары в одном порядке, ждут друг друга, но не блокируют друг друга взаимно.
+    //ids идентификаторы товаров
+    //conn соединение с открытой транзакцией
+    //return найденные товары (отсутствующих в базе в списке нет)
+    public List<Product> lockProductsWithConnection(Collection<Integer> ids, Connection conn) throws SQLException {
+        List<Product> products = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return products;
         }
         
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT * FROM products WHERE id IN (" + placeholders + ") ORDER BY id FOR UPDATE";
+        
+        List<Integer> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < sorted.size(); i++) {
+                pstmt.setInt(i + 1, sorted.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(extractProductFromResultSet(rs));
+                }
+            }
+        }
+        log.debug(() -> "Заблокировано строк товаров: " + products.size() + " из " + sorted.size());
         return products;
     }
-} 
\ No newline at end of file
+
+    //Списать товары заказа со склада в транзакции вызывающего кода
+    //Для каждой позиции выполняется UPDATE ... SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?,
+    //все позиции отправляются одним пакетом. Остаток проверяет и уменьшает сама база, поэтому параллельные
+    //заказы не перезаписывают изменения друг друга и не уводят остаток в минус.
+    //Позиции сортируются по id товара, чтобы параллельные транзакции блокировали строки в одном порядке.
+    //Ошибки SQL (в том числе взаимная блокировка) передаются вызывающему коду, который откатывает транзакцию.
+    //items позиции заказа
+    //conn соединение с открытой транзакцией
+    //return true, если списаны все позиции; при false транзакцию нужно откатить
+    public boolean reserveStockWithConnection(List<OrderItem> items, Connection conn) throws SQLException {
+        if (conn == null) {
+            log.error("Ошибка: передано null-соединение при списании товаров");
+            return false;
+        }
+        
+        List<OrderItem> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingInt(item -> item.getProduct().getId()));
+        
+        String sql = "UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (OrderItem item : sorted) {
+                pstmt.setInt(1, item.getQuantity());
+                pstmt.setInt(2, item.getProduct().getId());
+                pstmt.setInt(3, item.getQuantity());
+                pstmt.addBatch();
+            }
+            
+            int[] results = pstmt.executeBatch();
+            
+            // Нулевой результат: товара нет или на складе меньше, чем в заказе.
+            // SUCCESS_NO_INFO тоже считается ошибкой - без числа строк списание нельзя подтвердить.
+            boolean allReserved = true;
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] != 1) {
+                    OrderItem item = sorted.get(i);
+                    log.warn("Недостаточно товара на складе или товар не найден: ID=" + item.getProduct().getId() +
+                             ", Требуется=" + item.getQuantity());
+                    allReserved = false;
+                }
+            }
+            log.debug(() -> "Списание остатков: позиций " + results.length);
+            return allReserved;
+        }
+    }
+
+    //Оприходовать товары в транзакции вызывающего кода
+    //Для каждого товара выполняется UPDATE ... SET stock_quantity = stock_quantity + ? WHERE id = ?,
+    //все товары отправляются одним пакетом. Изменение относительное, поэтому не затирает списания
+    //параллельных заказов; строки блокируются в порядке id, как при списании.
+    //deltas id товара -> сколько единиц добавить, по возрастанию id
+    //conn соединение с открытой транзакцией
+    //return id товаров, которых нет в базе (остальные оприходованы)
+    public Set<Integer> receiveStockWithConnection(SortedMap<Integer, Integer> deltas, Connection conn)
+            throws SQLException {
+        Set<Integer> missing = new HashSet<>();
+        if (deltas.isEmpty()) {
+            return missing;
+        }
+        
+        String sql = "UPDATE products SET stock_quantity = stock_quantity + ? WHERE id = ?";
+        
+        List<Integer> ids = new ArrayList<>(deltas.keySet());
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<Integer, Integer> delta : deltas.entrySet()) {
+                pstmt.setInt(1, delta.getValue());
+                pstmt.setInt(2, delta.getKey());
+                pstmt.addBatch();
+            }
+            
+            int[] results = pstmt.executeBatch();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == 0) {
+                    missing.add(ids.get(i));
+                }
+            }
+        }
+        log.debug(() -> "Приход товара: товаров " + deltas.size() + ", не найдено " + missing.size());
+        return missing;
+    }
+
+    //Увеличить остатки в кэше после фиксации транзакции, в которой товары оприходованы receiveStockWithConnection
+    //Версия каталога не меняется: приход меняет только остатки (см. ProductCache)
+    //deltas id товара -> сколько единиц добавлено
+    void stockReceiptCommitted(Map<Integer, Integer> deltas) {
+        for (Map.Entry<Integer, Integer> delta : deltas.entrySet()) {
+            cache.adjustStock(delta.getKey(), delta.getValue());
+        }
+    }
+
+    //Уменьшить остатки в кэше после фиксации транзакции, в которой товары списаны reserveStockWithConnection
+    //Версия каталога не меняется: иначе каждый заказ сбрасывал бы кэши всех копий приложения
+    //items позиции зафиксированного заказа
+    void stockReservationCommitted(List<OrderItem> items) {
+        for (OrderItem item : items) {
+            cache.adjustStock(item.getProduct().getId(), -item.getQuantity());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.olineshop.dao;
+
+import com.olineshop.model.ImportResult;
+import com.olineshop.util.CsvReader;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+//Класс для импорта каталога товаров из CSV
+//Файл читается потоково, строки проверяются и копятся в блоки по olineshop.import.batchRows (по умолчанию 1000).
+//Блок записывается одним пакетом INSERT ... ON DUPLICATE KEY UPDATE по уникальному названию товара
+//(новые товары добавляются, существующие обновляются) и фиксируется отдельной транзакцией.
+//Если блок не записался, его строки повторяются по одной, чтобы отклонить только ошибочные.
+//
+//Первая строка файла - заголовок. Столбцы (регистр не важен):
+//name / название / наименование - обязательно
+//price / цена - обязательно
+//unit / ед.изм. / единица - если столбца нет, у новых товаров "шт", у существующих не меняется
+//stock_quantity / quantity / количество / остаток - если столбца нет, у новых товаров 0, у существующих не меняется
+
+public class ProductImporter {
+    private static final Log log = Log.get(ProductImporter.class);
+    private static final int BATCH_ROWS = Math.max(1, Integer.getInteger("olineshop.import.batchRows", 1000));
+    // Ограничения столбцов таблицы products
+    private static final int MAX_NAME_LENGTH = 100;
+    private static final int MAX_UNIT_LENGTH = 20;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+    private static final String DEFAULT_UNIT = "шт";
+
+    private static final int NAME = 0;
+    private static final int PRICE = 1;
+    private static final int UNIT = 2;
+    private static final int STOCK = 3;
+    private static final Map<String, Integer> HEADERS = new HashMap<>();
+
+    static {
+        for (String header : new String[] {"name", "название", "наименование", "товар"}) {
+            HEADERS.put(header, NAME);
+        }
+        for (String header : new String[] {"price", "цена"}) {
+            HEADERS.put(header, PRICE);
+        }
+        for (String header : new String[] {"unit", "ед.изм.", "ед. изм.", "единица"}) {
+            HEADERS.put(header, UNIT);
+        }
+        for (String header : new String[] {"stock_quantity", "quantity", "stock", "количество", "остаток"}) {
+            HEADERS.put(header, STOCK);
+        }
+    }
+
+    //Импортировать товары из файла
+    //path файл CSV в UTF-8
+    //progress получает число прочитанных строк после записи каждого блока (может быть null)
+    //return итог импорта; при ошибке чтения файла или базы данных импорт останавливается,
+    //блоки, записанные до ошибки, остаются в каталоге
+    public ImportResult importCsv(Path path, LongConsumer progress) {
+        long start = System.nanoTime();
+        ImportResult result = new ImportResult();
+        log.info("Импорт каталога из " + path);
+
+        try (CsvReader reader = CsvReader.open(path);
+             Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.error("Ошибка: не удалось получить соединение с базой данных");
+                result.setError("Нет соединения с базой данных");
+                return result;
+            }
+
+            int[] columns = readHeader(reader.next());
+            if (columns[NAME] < 0 || columns[PRICE] < 0) {
+                result.setError("В заголовке файла нет столбцов с названием и ценой товара");
+                return result;
+            }
+
+            Upsert upsert = new Upsert(columns[UNIT] >= 0, columns[STOCK] >= 0);
+            Map<String, Row> chunk = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            long rowsRead = 0;
+            List<String> values;
+            while ((values = reader.next()) != null) {
+                result.setRowsRead(++rowsRead);
+                Row row = parse(values, columns, reader.getRecordLine(), result);
+                // Повтор названия внутри блока заменяет прежнюю строку: в базу попадает последнее значение,
+                // а замененная строка считается записанной
+                if (row != null && chunk.put(row.name, row) != null) {
+                    result.addImported(1);
+                }
+                if (chunk.size() >= BATCH_ROWS) {
+                    if (!write(chunk, upsert, conn, result)) {
+                        break;
+                    }
+                    if (progress != null) {
+                        progress.accept(rowsRead);
+                    }
+                }
+            }
+            if (result.isCompleted()) {
+                write(chunk, upsert, conn, result);
+            }
+            if (progress != null) {
+                progress.accept(rowsRead);
+            }
+        } catch (IOException e) {
+            log.error("Ошибка при чтении файла импорта: " + e.getMessage(), e);
+            result.setError("Ошибка чтения файла: " + e.getMessage());
+        } catch (SQLException e) {
+            log.error("Ошибка при импорте каталога: " + e.getMessage(), e);
+            result.setError("Ошибка базы данных: " + e.getMessage());
+        } finally {
+            if (result.getImported() > 0) {
+                ProductDAO.catalogChanged();
+            }
+        }
+
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("Импорт каталога из " + path + ": строк " + result.getRowsRead() + ", записано " +
+                 result.getImported() + ", отклонено " + result.getRejected() + ", " + result.getElapsedMillis() +
+                 " мс" + (result.isCompleted() ? "" : ", остановлен: " + result.getError()));
+        return result;
+    }
+
+    // Номера столбцов NAME, PRICE, UNIT, STOCK в файле (-1, если столбца нет)
+    private static int[] readHeader(List<String> header) {
+        int[] columns = {-1, -1, -1, -1};
+        if (header == null) {
+            return columns;
+        }
+        for (int i = 0; i < header.size(); i++) {
+            Integer column = HEADERS.get(header.get(i).trim().toLowerCase(Locale.ROOT));
+            if (column != null && columns[column] < 0) {
+                columns[column] = i;
+            }
+        }
+        return columns;
+    }
+
+    // Проверка строки файла; null, если строка отклонена
+    private static Row parse(List<String> values, int[] columns, long line, ImportResult result) {
+        String name = value(values, columns[NAME]);
+        if (name.isEmpty()) {
+            result.reject(line, "не указано название");
+            return null;
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            result.reject(line, "название длиннее " + MAX_NAME_LENGTH + " символов");
+            return null;
+        }
+
+        BigDecimal price;
+        try {
+            price = new BigDecimal(number(value(values, columns[PRICE])).replace(',', '.'))
+                    .setScale(2, RoundingMode.HALF_UP);
+        } catch (NumberFormatException e) {
+            result.reject(line, "некорректная цена \"" + value(values, columns[PRICE]) + "\"");
+            return null;
+        }
+        if (price.signum() < 0 || price.compareTo(MAX_PRICE) > 0) {
+            result.reject(line, "цена вне допустимого диапазона: " + price);
+            return null;
+        }
+
+        String unit = value(values, columns[UNIT]);
+        if (unit.isEmpty()) {
+            unit = DEFAULT_UNIT;
+        } else if (unit.length() > MAX_UNIT_LENGTH) {
+            result.reject(line, "единица измерения длиннее " + MAX_UNIT_LENGTH + " символов");
+            return null;
+        }
+
+        int stock = 0;
+        if (columns[STOCK] >= 0) {
+            String text = value(values, columns[STOCK]);
+            try {
+                stock = Integer.parseInt(number(text));
+            } catch (NumberFormatException e) {
+                result.reject(line, "некорректное количество \"" + text + "\"");
+                return null;
+            }
+            if (stock < 0) {
+                result.reject(line, "отрицательное количество: " + stock);
+                return null;
+            }
+        }
+        return new Row(line, name, price, unit, stock);
+    }
+
+    private static String value(List<String> values, int column) {
+        return column >= 0 && column < values.size() ? values.get(column).trim() : "";
+    }
+
+    // Число без пробелов-разделителей разрядов ("1 250,50")
+    private static String number(String text) {
+        return text.replace(" ", "").replace("\u00A0", "");
+    }
+
+    // Записать блок одной транзакцией; при ошибке повторить строки по одной.
+    // Возвращает false, если импорт нужно остановить (соединение потеряно)
+    private static boolean write(Map<String, Row> chunk, Upsert upsert, Connection conn, ImportResult result)
+            throws SQLException {
+        if (chunk.isEmpty()) {
+            return true;
+        }
+        try {
+            upsert.execute(chunk.values(), conn);
+            result.addImported(chunk.size());
+        } catch (SQLException e) {
+            log.warn("Блок из " + chunk.size() + " строк не записан (" + e.getMessage() + "), строки повторяются по одной");
+            for (Row row : chunk.values()) {
+                try {
+                    upsert.execute(Collections.singletonList(row), conn);
+                    result.addImported(1);
+                } catch (SQLException rowError) {
+                    if (!conn.isValid(2)) {
+                        log.error("Соединение с базой данных потеряно: " + rowError.getMessage(), rowError);
+                        result.setError("Соединение с базой данных потеряно");
+                        chunk.clear();
+                        return false;
+                    }
+                    result.reject(row.line, rowError.getMessage());
+                }
+            }
+        }
+        chunk.clear();
+        return true;
+    }
+
+    // Строка файла, прошедшая проверку
+    private static final class Row {
+        final long line;
+        final String name;
+        final BigDecimal price;
+        final String unit;
+        final int stock;
+
+        Row(long line, String name, BigDecimal price, String unit, int stock) {
+            this.line = line;
+            this.name = name;
+            this.price = price;
+            this.unit = unit;
+            this.stock = stock;
+        }
+    }
+
+    // Пакетная запись блока строк; какие столбцы обновляются у существующих товаров, зависит от столбцов файла
+    private static final class Upsert {
+        private final boolean updateStock;
+        private final String sql;
+
+        Upsert(boolean updateUnit, boolean updateStock) {
+            this.updateStock = updateStock;
+            this.sql = "INSERT INTO products (name, price, unit, stock_quantity) VALUES (?, ?, ?, ?) " +
+                       "ON DUPLICATE KEY UPDATE price = VALUES(price)" +
+                       (updateUnit ? ", unit = VALUES(unit)" : "") +
+                       (updateStock ? ", stock_quantity = VALUES(stock_quantity)" : "");
+        }
+
+        // Строки идут по названию (порядку уникального индекса), поэтому параллельные импорты
+        // блокируют общие строки в одном порядке
+        void execute(Iterable<Row> rows, Connection conn) throws SQLException {
+            conn.setAutoCommit(false);
+            try {
+                Map<Integer, Integer> hotDeltas = updateStock ? lockHotStock(rows, conn) : Collections.emptyMap();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (Row row : rows) {
+                        pstmt.setString(1, row.name);
+                        pstmt.setBigDecimal(2, row.price);
+                        pstmt.setString(3, row.unit);
+                        pstmt.setInt(4, row.stock);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                conn.commit();
+
+                // Счетчики горячих товаров сдвигаются на разницу, как при изменении остатка администратором
+                for (Map.Entry<Integer, Integer> hot : hotDeltas.entrySet()) {
+                    HotStock.stockChanged(hot.getKey(), hot.getValue());
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        // Для горячих товаров (HotStock) прежний остаток читается под блокировкой строки.
+        // Зафиксированные позиции журнала списываются до этого, как при изменении остатка администратором.
+        // Возвращает id товара -> изменение остатка (новое значение минус прежнее)
+        private static Map<Integer, Integer> lockHotStock(Iterable<Row> rows, Connection conn) throws SQLException {
+            if (!HotStock.isEnabled()) {
+                return Collections.emptyMap();
+            }
+            HotStock.flush();
+            Map<String, Integer> stockByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Row row : rows) {
+                stockByName.put(row.name, row.stock);
+            }
+            String sql = "SELECT id, name, stock_quantity FROM products WHERE name IN (" +
+                         String.join(", ", Collections.nCopies(stockByName.size(), "?")) + ") FOR UPDATE";
+            Map<Integer, Integer> deltas = new HashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                for (String name : stockByName.keySet()) {
+                    pstmt.setString(index++, name);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt("id");
+                        Integer stock = stockByName.get(rs.getString("name"));
+                        if (HotStock.isHot(id) && stock != null) {
+                            deltas.put(id, stock - rs.getInt("stock_quantity"));
+                        }
+                    }
+                }
+            }
+            return deltas;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.olineshop.dao;
+
+//Дополнительные условия поиска товаров (пустые условия не применяются)
+
+public class ProductSearchFilter {
+    private Double minPrice;
+    private Double maxPrice;
+    private String unit;
+    private boolean inStockOnly;
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public ProductSearchFilter setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+        return this;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public ProductSearchFilter setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+        return this;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public ProductSearchFilter setUnit(String unit) {
+        this.unit = unit;
+        return this;
+    }
+
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+    public ProductSearchFilter setInStockOnly(boolean inStockOnly) {
+        this.inStockOnly = inStockOnly;
+        return this;
+    }
+}
@@ -2,223 +2,146 @@ package com.olineshop.dao;
 
 import com.olineshop.model.Role;
 import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
 
 //Класс для работы с ролями в базе данных
 
 public class RoleDAO {
+    private static final Log log = Log.get(RoleDAO.class);
+    // Не перечитывать таблицу ролей при промахе чаще, чем раз в секунду
+    private static final long RELOAD_ON_MISS_INTERVAL_NS = 1_000_000_000L;
 
-    // Флаг createDefaultRoles
-    private static boolean isCreatingDefaultRoles = false;
+    // Снимок таблицы ролей, общий для всех экземпляров RoleDAO.
+    // Снимок не изменяется; после добавления, изменения или удаления роли он сбрасывается и загружается заново
+    private static volatile RoleCache cache;
+    private static volatile long lastLoadNanos;
 
-    //Получить все роли из базы данных
+    //Получить все роли
     //return список ролей
     public List<Role> getAllRoles() {
-        List<Role> roles = new ArrayList<>();
-        String sql = "SELECT * FROM roles";
-        System.out.println("Получение всех ролей из базы данных");
-
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
+        List<Role> roles = snapshot().all;
         
-        try {
-            conn = DatabaseManager.getConnection();
-            if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
-                return roles;
-            }
-            
-            pstmt = conn.prepareStatement(sql);
-            rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                Role role = new Role(
-                        rs.getInt("id"),
-                        rs.getString("name"));
-                roles.add(role);
-                System.out.println("Найдена роль: ID=" + role.getId() + ", Название=" + role.getName());
-            }
-        } catch (SQLException e) {
-            System.out.println("Ошибка при получении ролей: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-
-            } catch (SQLException e) {
-                System.out.println("Ошибка при закрытии ресурсов: " + e.getMessage());
-                e.printStackTrace();
+        if (roles.isEmpty()) {
+            log.debug("Роли не найдены. Создаем стандартные роли.");
+            if (createDefaultRoles()) {
+                roles = snapshot().all;
             }
         }
         
-       
-        if (roles.isEmpty() && !isCreatingDefaultRoles) {
-            System.out.println("Роли не найдены. Создаем стандартные роли.");
-            isCreatingDefaultRoles = true;
-            boolean created = createDefaultRoles();
-            if (created) {
-                // Повторно получаем роли
-                List<Role> newRoles = new ArrayList<>();
-                try {
-                    conn = DatabaseManager.getConnection();
-                    if (conn == null) {
-                        System.out.println("Ошибка: не удалось получить соединение с базой данных");
-                        isCreatingDefaultRoles = false;
-                        return newRoles;
-                    }
-                    
-                    pstmt = conn.prepareStatement(sql);
-                    rs = pstmt.executeQuery();
-                    
-                    while (rs.next()) {
-                        Role role = new Role(
-                                rs.getInt("id"),
-                                rs.getString("name"));
-                        newRoles.add(role);
-                        System.out.println("Найдена роль после создания: ID=" + role.getId() + ", Название=" + role.getName());
-                    }
-                } catch (SQLException e) {
-                    System.out.println("Ошибка при повторном получении ролей: " + e.getMessage());
-                    e.printStackTrace();
-                } finally {
-                    try {
-                        if (rs != null) rs.close();
-                        if (pstmt != null) pstmt.close();
-                    } catch (SQLException e) {
-                        System.out.println("Ошибка при закрытии ресурсов: " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                    isCreatingDefaultRoles = false;
-                }
-                return newRoles;
-            }
-            isCreatingDefaultRoles = false;
-        }
-        
-        System.out.println("Всего найдено ролей: " + roles.size());
-        return roles;
+        log.debug(() -> "Всего найдено ролей: " + snapshot().all.size());
+        return new ArrayList<>(roles);
     }
 
-    //Получить роль по идентификатору
+    //Получить роль по идентификатору (из кэша, без запроса к базе)
     //id идентификатор роли
     //return роль или null, если роль не найдена
     public Role getRoleById(int id) {
-        String sql = "SELECT * FROM roles WHERE id = ?";
-        System.out.println("Получение роли по ID: " + id);
+        Role role = snapshot().byId.get(id);
+        if (role == null && reloadAfterMiss()) {
+            role = snapshot().byId.get(id);
+        }
+        if (role == null) {
+            log.debug(() -> "Роль с ID=" + id + " не найдена");
+        }
+        return role;
+    }
 
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
+    //Получить роль по названию (без учета регистра, из кэша)
+    //Если точного совпадения нет, ищется роль, название которой содержит name
+    //name название роли
+    //return роль или null, если роль не найдена
+    public Role getRoleByName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String key = name.toLowerCase(Locale.ROOT);
         
-        try {
-            conn = DatabaseManager.getConnection();
-            if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
-                return null;
-            }
-            
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, id);
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                Role role = new Role(
-                        rs.getInt("id"),
-                        rs.getString("name"));
-                System.out.println("Найдена роль: ID=" + role.getId() + ", Название=" + role.getName());
-                return role;
-            } else {
-                System.out.println("Роль с ID=" + id + " не найдена");
-            }
-        } catch (SQLException e) {
-            System.out.println("Ошибка при получении роли по ID: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-                // Не закрываем соединение, так как оно управляется DatabaseManager
-            } catch (SQLException e) {
-                System.out.println("Ошибка при закрытии ресурсов: " + e.getMessage());
-                e.printStackTrace();
+        RoleCache current = snapshot();
+        Role role = current.byName.get(key);
+        if (role == null && reloadAfterMiss()) {
+            current = snapshot();
+            role = current.byName.get(key);
+        }
+        if (role != null) {
+            return role;
+        }
+        
+        log.debug(() -> "Роль с названием '" + name + "' не найдена");
+        for (Role candidate : current.all) {
+            if (candidate.getName() != null && candidate.getName().toLowerCase(Locale.ROOT).contains(key)) {
+                log.debug(() -> "Найдена похожая роль: ID=" + candidate.getId() + ", Название=" + candidate.getName());
+                return candidate;
             }
         }
         return null;
     }
 
-    //Получить роль по названию
-    //name название роли
-    //return роль или null, если роль не найдена
-    public Role getRoleByName(String name) {
-        String sql = "SELECT * FROM roles WHERE LOWER(name) = LOWER(?)";
-        System.out.println("Получение роли по названию: " + name);
+    //Сбросить кэш ролей (следующее обращение перечитает таблицу)
+    public static void invalidateCache() {
+        cache = null;
+    }
 
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
+    private static RoleCache snapshot() {
+        RoleCache current = cache;
+        if (current != null) {
+            return current;
+        }
+        synchronized (RoleDAO.class) {
+            if (cache == null) {
+                RoleCache loaded = loadRoles();
+                // Пустой снимок при недоступной базе не сохраняется, чтобы повторить загрузку позже
+                if (loaded != null) {
+                    cache = loaded;
+                }
+                lastLoadNanos = System.nanoTime();
+                return loaded != null ? loaded : RoleCache.EMPTY;
+            }
+            return cache;
+        }
+    }
+
+    // Роль могла быть добавлена другой копией приложения
+    private static boolean reloadAfterMiss() {
+        if (System.nanoTime() - lastLoadNanos < RELOAD_ON_MISS_INTERVAL_NS) {
+            return false;
+        }
+        invalidateCache();
+        return true;
+    }
+
+    private static RoleCache loadRoles() {
+        String sql = "SELECT id, name FROM roles ORDER BY id";
+        log.debug("Загрузка ролей из базы данных");
         
-        try {
-            conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
+                log.error("Ошибка: не удалось получить соединение с базой данных");
                 return null;
             }
             
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, name);
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                Role role = new Role(
-                        rs.getInt("id"),
-                        rs.getString("name"));
-                System.out.println("Найдена роль: ID=" + role.getId() + ", Название=" + role.getName());
-                return role;
-            } else {
-                System.out.println("Роль с названием '" + name + "' не найдена");
-                
-                // Если точное совпадение не найдено, пробуем найти по частичному совпадению
-                String fuzzySQL = "SELECT * FROM roles WHERE LOWER(name) LIKE LOWER(?)";
-                try (PreparedStatement fuzzyStmt = conn.prepareStatement(fuzzySQL)) {
-                    fuzzyStmt.setString(1, "%" + name + "%");
-                    try (ResultSet fuzzyRs = fuzzyStmt.executeQuery()) {
-                        if (fuzzyRs.next()) {
-                            Role role = new Role(
-                                    fuzzyRs.getInt("id"),
-                                    fuzzyRs.getString("name"));
-                            System.out.println("Найдена похожая роль: ID=" + role.getId() + ", Название=" + role.getName());
-                            return role;
-                        }
-                    }
+            List<Role> roles = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    roles.add(new Role(rs.getInt("id"), rs.getString("name")));
                 }
             }
+            log.debug(() -> "Загружено ролей: " + roles.size());
+            return new RoleCache(roles);
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении роли по названию: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-                // Не закрываем соединение, так как оно управляется DatabaseManager
-            } catch (SQLException e) {
-                System.out.println("Ошибка при закрытии ресурсов: " + e.getMessage());
-                e.printStackTrace();
-            }
+            log.error("Ошибка при получении ролей: " + e.getMessage(), e);
+            return null;
         }
-        return null;
     }
 
     //Добавить новую роль в базу данных
@@ -232,9 +155,10 @@ public class RoleDAO {
 
             pstmt.setString(1, role.getName());
             int affectedRows = pstmt.executeUpdate();
+            invalidateCache();
             return affectedRows > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при добавлении роли: " + e.getMessage(), e);
             return false;
         }
     }
@@ -251,9 +175,10 @@ public class RoleDAO {
             pstmt.setString(1, role.getName());
             pstmt.setInt(2, role.getId());
             int affectedRows = pstmt.executeUpdate();
+            invalidateCache();
             return affectedRows > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при обновлении роли: " + e.getMessage(), e);
             return false;
         }
     }
@@ -269,108 +194,60 @@ public class RoleDAO {
 
             pstmt.setInt(1, id);
             int affectedRows = pstmt.executeUpdate();
+            invalidateCache();
             return affectedRows > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при удалении роли: " + e.getMessage(), e);
             return false;
         }
     }
     
 
+    //Добавить стандартные роли, если их нет (таблица создается миграциями схемы)
+    //return true, если роли существуют или были добавлены, иначе false
     public boolean createDefaultRoles() {
-        System.out.println("Создание стандартных ролей в базе данных");
-        
+        String sql = "INSERT IGNORE INTO roles (id, name) VALUES (1, 'Администратор'), (2, 'Клиент')";
+        log.debug("Создание стандартных ролей в базе данных");
+
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
+                log.error("Ошибка: не удалось получить соединение с базой данных");
                 return false;
             }
-            
-            
-            try {
-                executeSqlFromFile(conn);
-                System.out.println("Инициализация базы данных из SQL-файла выполнена успешно");
-                return true;
-            } catch (Exception e) {
-                System.out.println("Ошибка при инициализации из SQL-файла: " + e.getMessage());
-                System.out.println("Пробуем создать роли вручную...");
-            }
 
-            String createTableSQL = "CREATE TABLE IF NOT EXISTS `roles` (" +
-                                   "`id` INT AUTO_INCREMENT PRIMARY KEY," +
-                                   "`name` VARCHAR(50) NOT NULL UNIQUE)";
-            
-            try (PreparedStatement pstmt = conn.prepareStatement(createTableSQL)) {
-                pstmt.executeUpdate();
-                System.out.println("Таблица ролей создана или уже существует");
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int affectedRows = pstmt.executeUpdate();
+                log.debug(() -> "Добавлено стандартных ролей: " + affectedRows);
             }
-            
-            // Проверяем, существует ли уже роль "Администратор"
-            String checkAdminSQL = "SELECT COUNT(*) FROM roles WHERE name = 'Администратор'";
-            boolean adminExists = false;
-            try (PreparedStatement pstmt = conn.prepareStatement(checkAdminSQL);
-                 ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next() && rs.getInt(1) > 0) {
-                    adminExists = true;
-                    System.out.println("Роль 'Администратор' уже существует");
-                }
-            }
-            
-            if (!adminExists) {
-                Role adminRole = new Role();
-                adminRole.setName("Администратор");
-                addRole(adminRole);
-                System.out.println("Роль 'Администратор' добавлена");
-            }
-            
-            // Проверяем, существует ли уже роль "Клиент"
-            String checkClientSQL = "SELECT COUNT(*) FROM roles WHERE name = 'Клиент'";
-            boolean clientExists = false;
-            try (PreparedStatement pstmt = conn.prepareStatement(checkClientSQL);
-                 ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next() && rs.getInt(1) > 0) {
-                    clientExists = true;
-                    System.out.println("Роль 'Клиент' уже существует");
-                }
-            }
-            
-            if (!clientExists) {
-                Role clientRole = new Role();
-                clientRole.setName("Клиент");
-                addRole(clientRole);
-                System.out.println("Роль 'Клиент' добавлена");
-            }
-            
+            invalidateCache();
             return true;
         } catch (SQLException e) {
-            System.out.println("Ошибка при создании стандартных ролей: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при создании стандартных ролей: " + e.getMessage(), e);
             return false;
         }
     }
-    
-
-    private void executeSqlFromFile(Connection conn) throws Exception {
-        System.out.println("Выполнение SQL из файла schema.sql");
-        
-
-        InputStream inputStream = getClass().getClassLoader().getResourceAsStream("db/schema.sql");
-        if (inputStream == null) {
-            throw new Exception("Не удалось найти файл schema.sql в ресурсах");
-        }
-        
-        String sql = new BufferedReader(new InputStreamReader(inputStream))
-                .lines().collect(Collectors.joining("\n"));
-        
-        String[] sqlCommands = sql.split(";");
 
-        try (Statement stmt = conn.createStatement()) {
-            for (String command : sqlCommands) {
-                if (!command.trim().isEmpty()) {
-                    System.out.println("Выполнение SQL-команды: " + command);
-                    stmt.execute(command);
+    // Неизменяемый снимок таблицы ролей с индексами по идентификатору и названию.
+    // Объекты Role общие для всех пользователей и заказов, изменять их нельзя
+    private static class RoleCache {
+        static final RoleCache EMPTY = new RoleCache(List.of());
+
+        final List<Role> all;
+        final Map<Integer, Role> byId;
+        final Map<String, Role> byName;
+
+        RoleCache(List<Role> roles) {
+            Map<Integer, Role> ids = new HashMap<>();
+            Map<String, Role> names = new HashMap<>();
+            for (Role role : roles) {
+                ids.put(role.getId(), role);
+                if (role.getName() != null) {
+                    names.putIfAbsent(role.getName().toLowerCase(Locale.ROOT), role);
                 }
             }
+            this.all = List.copyOf(roles);
+            this.byId = Map.copyOf(ids);
+            this.byName = Map.copyOf(names);
         }
     }
-} 
\ No newline at end of file
+}
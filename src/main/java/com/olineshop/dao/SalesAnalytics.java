@@ -0,0 +1,365 @@
+package com.olineshop.dao;
+
+import com.olineshop.model.AnalyticsReport;
+import com.olineshop.model.CustomerSpend;
+import com.olineshop.model.Product;
+import com.olineshop.model.SalesSummary;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.IntKeyedTotals;
+import com.olineshop.util.Log;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+//Расчет отчетов по продажам за произвольный период в памяти
+//Позиции заказов читаются одним запросом order_items JOIN orders через StreamingQuery.forEach
+//(строки приходят с сервера по мере чтения, результат целиком в памяти не хранится) и складываются
+//в столбцы (массивы int/double) блоками по CHUNK_ROWS строк, без объектов Order и OrderItem.
+//Каждый заполненный блок сразу отдается в ForkJoinPool: пока поток читает следующий блок,
+//ядра считают предыдущие. Блоков в очереди пула не больше MAX_IN_FLIGHT: если подсчет отстает от чтения,
+//поток чтения ждет, пока освободится место, и память не растет с размером периода.
+//Каждый поток пула прибавляет блоки к своим частичным суммам в IntKeyedTotals
+//(ключи - id товара, id клиента, день/неделя/месяц), поэтому частичных сумм столько, сколько потоков,
+//а не блоков. В конце они объединяются попарно задачами fork/join.
+//Суммы заказа (total_cost, с учетом скидки) учитываются один раз - по первой прочитанной позиции заказа.
+//Отмененные заказы в отчет не входят.
+//
+//Настройки (системные свойства):
+//olineshop.analytics.inFlightChunks - сколько блоков может ждать подсчета или считаться одновременно
+//(по умолчанию вдвое больше числа потоков ForkJoinPool.commonPool)
+
+public class SalesAnalytics {
+    private static final Log log = Log.get(SalesAnalytics.class);
+    // Строк в блоке, который считается одной задачей
+    private static final int CHUNK_ROWS = 65_536;
+    // Блоков, отправленных на подсчет и еще не посчитанных (каждый блок около 2 МБ)
+    private static final int MAX_IN_FLIGHT = Math.max(1, Integer.getInteger("olineshop.analytics.inFlightChunks",
+            2 * ForkJoinPool.getCommonPoolParallelism()));
+    // TO_DAYS('1970-01-01'): переводит TO_DAYS в номер дня от 1970-01-01, как LocalDate.toEpochDay
+    private static final int EPOCH_TO_DAYS = 719_528;
+
+    private final ProductDAO productDAO = new ProductDAO();
+
+    //Построить отчет
+    //from первый день периода
+    //to последний день периода
+    //period шаг группировки выручки по времени
+    //topLimit сколько товаров и клиентов включать в рейтинги
+    //return отчет или null при ошибке базы данных
+    public AnalyticsReport buildReport(LocalDate from, LocalDate to, AnalyticsReport.Period period, int topLimit) {
+        long start = System.nanoTime();
+        String sql = "SELECT oi.order_id, o.user_id, TO_DAYS(o.order_date) - " + EPOCH_TO_DAYS + ", " +
+                     "EXTRACT(YEAR_MONTH FROM o.order_date), o.total_cost, oi.product_id, oi.quantity, oi.price_per_item " +
+                     "FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+                     "WHERE o.status <> ? AND o.order_date >= ? AND o.order_date < ?";
+        log.debug(() -> "Построение отчета по продажам с " + from + " по " + to + ", " + period);
+
+        RollupPipeline pipeline = new RollupPipeline(period);
+        try {
+            StreamingQuery.forEach(sql, pstmt -> {
+                pstmt.setString(1, SalesDAO.CANCELLED_STATUS);
+                pstmt.setTimestamp(2, Timestamp.valueOf(from.atStartOfDay()));
+                pstmt.setTimestamp(3, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            }, rs -> pipeline.addRow(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getDouble(5),
+                    rs.getInt(6), rs.getInt(7), rs.getDouble(8)));
+        } catch (SQLException | IOException e) {
+            pipeline.cancel();
+            log.error("Ошибка при построении отчета по продажам: " + e.getMessage(), e);
+            return null;
+        }
+
+        Rollup total = pipeline.finish();
+        AnalyticsReport report = toReport(total, from, to, period, topLimit);
+        report.setRowsScanned(pipeline.rows);
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("Отчет по продажам с " + from + " по " + to + ": позиций " + pipeline.rows + ", заказов " +
+                 total.orders + ", блоков " + pipeline.chunks + ", " + report.getElapsedMillis() + " мс");
+        return report;
+    }
+
+    private AnalyticsReport toReport(Rollup total, LocalDate from, LocalDate to, AnalyticsReport.Period period,
+                                     int topLimit) {
+        AnalyticsReport report = new AnalyticsReport(from, to, period);
+        report.setOrderCount(total.orders);
+        report.setLineCount(total.lines);
+        report.setUnits(total.units);
+        report.setRevenue(total.revenue);
+
+        List<SalesSummary> periods = new ArrayList<>();
+        for (int key : total.periods.sortedKeys()) {
+            periods.add(new SalesSummary(periodStart(key, period), 0, null, total.periods.amount(key),
+                    (int) total.periods.count(key), (int) total.periods.units(key)));
+        }
+        report.setRevenueByPeriod(periods);
+
+        // Названия только для товаров и клиентов, попавших в рейтинг
+        int[] topProducts = total.products.topKeysByAmount(topLimit);
+        Map<Integer, String> productNames = new HashMap<>();
+        List<Integer> productIds = new ArrayList<>();
+        for (int id : topProducts) {
+            productIds.add(id);
+        }
+        for (Product product : productDAO.getProductsByIds(productIds)) {
+            productNames.put(product.getId(), product.getName());
+        }
+        List<SalesSummary> products = new ArrayList<>();
+        for (int id : topProducts) {
+            products.add(new SalesSummary(null, id, productNames.getOrDefault(id, "Удаленный товар (ID=" + id + ")"),
+                    total.products.amount(id), (int) total.products.count(id), (int) total.products.units(id)));
+        }
+        report.setTopProducts(products);
+
+        int[] topCustomers = total.customers.topKeysByAmount(topLimit);
+        Map<Integer, String> customerNames = loadCustomerNames(topCustomers);
+        List<CustomerSpend> customers = new ArrayList<>();
+        for (int id : topCustomers) {
+            customers.add(new CustomerSpend(id, customerNames.getOrDefault(id, "ID=" + id),
+                    total.customers.amount(id), (int) total.customers.count(id)));
+        }
+        report.setTopCustomers(customers);
+        return report;
+    }
+
+    private Map<Integer, String> loadCustomerNames(int[] ids) {
+        Map<Integer, String> names = new HashMap<>();
+        if (ids.length == 0) {
+            return names;
+        }
+        String sql = "SELECT id, first_name, last_name FROM users WHERE id IN (" +
+                     String.join(", ", Collections.nCopies(ids.length, "?")) + ")";
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.error("Ошибка: не удалось получить соединение с базой данных");
+                return names;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < ids.length; i++) {
+                    pstmt.setInt(i + 1, ids[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        names.put(rs.getInt("id"), rs.getString("first_name") + " " + rs.getString("last_name"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка при получении имен клиентов: " + e.getMessage(), e);
+        }
+        return names;
+    }
+
+    // Ключ периода: номер дня, номер понедельника недели или год*100+месяц
+    static int periodKey(AnalyticsReport.Period period, int epochDay, int yearMonth) {
+        switch (period) {
+            case WEEK:
+                // 1970-01-01 - четверг, поэтому понедельник - день, для которого (день + 3) делится на 7
+                return epochDay - Math.floorMod(epochDay + 3, 7);
+            case MONTH:
+                return yearMonth;
+            default:
+                return epochDay;
+        }
+    }
+
+    private static LocalDate periodStart(int key, AnalyticsReport.Period period) {
+        return period == AnalyticsReport.Period.MONTH
+                ? LocalDate.of(key / 100, key % 100, 1)
+                : LocalDate.ofEpochDay(key);
+    }
+
+    // Прием строк из потока результата: блоки по CHUNK_ROWS строк отправляются на подсчет по мере заполнения
+    static final class RollupPipeline {
+        private final AnalyticsReport.Period period;
+        // Заказы, суммы которых уже учтены (по первой позиции)
+        private final BitSet seenOrders = new BitSet();
+        // Разрешения на блоки в подсчете: поток чтения берет одно на блок, задача возвращает его по завершении
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private volatile boolean cancelled = false;
+        // Частичные суммы потоков пула: поток считает блоки по одному, поэтому свои суммы без блокировок
+        private final Map<Thread, Rollup> accumulators = new ConcurrentHashMap<>();
+        private Chunk chunk = new Chunk(CHUNK_ROWS);
+        long rows = 0;
+        int chunks = 0;
+
+        RollupPipeline(AnalyticsReport.Period period) {
+            this.period = period;
+        }
+
+        void addRow(int orderId, int userId, int epochDay, int yearMonth, double totalCost,
+                    int productId, int quantity, double price) {
+            Chunk current = chunk;
+            int i = current.size++;
+            boolean first = !seenOrders.get(orderId);
+            if (first) {
+                seenOrders.set(orderId);
+            }
+            current.firstRow[i] = first;
+            current.userIds[i] = userId;
+            current.periodKeys[i] = periodKey(period, epochDay, yearMonth);
+            current.totalCosts[i] = totalCost;
+            current.productIds[i] = productId;
+            current.quantities[i] = quantity;
+            current.prices[i] = price;
+            rows++;
+            if (current.size == CHUNK_ROWS) {
+                submit();
+            }
+        }
+
+        //Дождаться подсчета всех блоков и объединить частичные суммы
+        Rollup finish() {
+            if (chunk.size > 0) {
+                submit();
+            }
+            // Все разрешения свободны - значит, все блоки посчитаны
+            inFlight.acquireUninterruptibly(MAX_IN_FLIGHT);
+            inFlight.release(MAX_IN_FLIGHT);
+            Throwable error = failure.get();
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            if (error != null) {
+                throw (RuntimeException) error;
+            }
+            List<Rollup> results = new ArrayList<>(accumulators.values());
+            if (results.isEmpty()) {
+                return new Rollup();
+            }
+            return ForkJoinPool.commonPool().invoke(new MergeTask(results, 0, results.size()));
+        }
+
+        // Блоки, еще не взятые пулом, пропускаются
+        void cancel() {
+            cancelled = true;
+        }
+
+        private void submit() {
+            Chunk full = chunk;
+            inFlight.acquireUninterruptibly();
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    if (!cancelled && failure.get() == null) {
+                        accumulators.computeIfAbsent(Thread.currentThread(), thread -> new Rollup()).add(full);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+            chunks++;
+            chunk = new Chunk(CHUNK_ROWS);
+        }
+    }
+
+    // Блок строк по столбцам
+    static final class Chunk {
+        final boolean[] firstRow;
+        final int[] userIds;
+        final int[] periodKeys;
+        final double[] totalCosts;
+        final int[] productIds;
+        final int[] quantities;
+        final double[] prices;
+        int size = 0;
+
+        Chunk(int capacity) {
+            firstRow = new boolean[capacity];
+            userIds = new int[capacity];
+            periodKeys = new int[capacity];
+            totalCosts = new double[capacity];
+            productIds = new int[capacity];
+            quantities = new int[capacity];
+            prices = new double[capacity];
+        }
+    }
+
+    // Частичные суммы
+    static final class Rollup {
+        // Товар: выручка по позициям, единицы, число позиций
+        final IntKeyedTotals products = new IntKeyedTotals(1024);
+        // Период: выручка по заказам, единицы, число заказов
+        final IntKeyedTotals periods = new IntKeyedTotals(64);
+        // Клиент: сумма заказов, единицы, число заказов
+        final IntKeyedTotals customers = new IntKeyedTotals(1024);
+        long orders = 0;
+        long lines = 0;
+        long units = 0;
+        double revenue = 0;
+
+        void add(Chunk chunk) {
+            for (int i = 0; i < chunk.size; i++) {
+                int quantity = chunk.quantities[i];
+                products.add(chunk.productIds[i], quantity * chunk.prices[i], quantity, 1);
+                if (chunk.firstRow[i]) {
+                    double totalCost = chunk.totalCosts[i];
+                    periods.add(chunk.periodKeys[i], totalCost, quantity, 1);
+                    customers.add(chunk.userIds[i], totalCost, quantity, 1);
+                    orders++;
+                    revenue += totalCost;
+                } else {
+                    periods.add(chunk.periodKeys[i], 0, quantity, 0);
+                    customers.add(chunk.userIds[i], 0, quantity, 0);
+                }
+                units += quantity;
+            }
+            lines += chunk.size;
+        }
+
+        void addAll(Rollup other) {
+            products.addAll(other.products);
+            periods.addAll(other.periods);
+            customers.addAll(other.customers);
+            orders += other.orders;
+            lines += other.lines;
+            units += other.units;
+            revenue += other.revenue;
+        }
+    }
+
+    // Попарное объединение частичных сумм
+    private static final class MergeTask extends RecursiveTask<Rollup> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Rollup> parts;
+        private final int from;
+        private final int to;
+
+        MergeTask(List<Rollup> parts, int from, int to) {
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Rollup compute() {
+            if (to - from == 1) {
+                return parts.get(from);
+            }
+            int middle = (from + to) >>> 1;
+            MergeTask left = new MergeTask(parts, from, middle);
+            left.fork();
+            Rollup right = new MergeTask(parts, middle, to).compute();
+            Rollup result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.olineshop.dao;
+
+import com.olineshop.model.Order;
+import com.olineshop.model.OrderItem;
+import com.olineshop.model.SalesSummary;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Класс для работы со сводкой продаж по дням (таблица sales_daily)
+//Сводка изменяется только в транзакциях заказов (запись, отмена, удаление) через методы ...WithConnection,
+//поэтому всегда совпадает с заказами. Чтение зависит от длины выбранного периода, а не от объема истории.
+//Каждая транзакция прибавляет свои суммы к строкам одного случайного слота из olineshop.sales.slots (по умолчанию 8):
+//параллельные заказы одного дня обновляют разные строки итога и не ждут друг друга.
+
+public class SalesDAO {
+    private static final Log log = Log.get(SalesDAO.class);
+    // Статус отмененного заказа: такие заказы в сводку не входят
+    static final String CANCELLED_STATUS = "Отменен";
+    private static final int SLOTS = Math.max(1, Math.min(100, Integer.getInteger("olineshop.sales.slots", 8)));
+
+    //Продажи по дням за период (итог по всем заказам)
+    //from первый день периода
+    //to последний день периода
+    //return продажи по дням, в которые были заказы, по возрастанию даты
+    public List<SalesSummary> getDailyTotals(LocalDate from, LocalDate to) {
+        List<SalesSummary> days = new ArrayList<>();
+        String sql = "SELECT sale_date, SUM(revenue) AS revenue, SUM(order_count) AS order_count, SUM(units) AS units " +
+                     "FROM sales_daily WHERE product_id = 0 AND sale_date BETWEEN ? AND ? " +
+                     "GROUP BY sale_date ORDER BY sale_date";
+        log.debug(() -> "Получение продаж по дням с " + from + " по " + to);
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.error("Ошибка: не удалось получить соединение с базой данных");
+                return days;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setDate(1, Date.valueOf(from));
+                pstmt.setDate(2, Date.valueOf(to));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        days.add(new SalesSummary(rs.getDate("sale_date").toLocalDate(), 0, null,
+                                rs.getDouble("revenue"), rs.getInt("order_count"), rs.getInt("units")));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка при получении продаж по дням: " + e.getMessage(), e);
+        }
+        return days;
+    }
+
+    //Самые продаваемые товары за период по выручке
+    //from первый день периода
+    //to последний день периода
+    //limit количество товаров
+    //return продажи товаров за период (date = null)
+    public List<SalesSummary> getTopProducts(LocalDate from, LocalDate to, int limit) {
+        List<SalesSummary> products = new ArrayList<>();
+        String sql = "SELECT s.product_id, p.name, SUM(s.revenue) AS revenue, SUM(s.order_count) AS order_count, " +
+                     "SUM(s.units) AS units " +
+                     "FROM sales_daily s LEFT JOIN products p ON p.id = s.product_id " +
+                     "WHERE s.sale_date BETWEEN ? AND ? AND s.product_id <> 0 " +
+                     "GROUP BY s.product_id, p.name ORDER BY revenue DESC LIMIT ?";
+        log.debug(() -> "Получение самых продаваемых товаров с " + from + " по " + to);
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.error("Ошибка: не удалось получить соединение с базой данных");
+                return products;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setDate(1, Date.valueOf(from));
+                pstmt.setDate(2, Date.valueOf(to));
+                pstmt.setInt(3, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String name = rs.getString("name");
+                        int productId = rs.getInt("product_id");
+                        products.add(new SalesSummary(null, productId,
+                                name != null ? name : "Удаленный товар (ID=" + productId + ")",
+                                rs.getDouble("revenue"), rs.getInt("order_count"), rs.getInt("units")));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Ошибка при получении самых продаваемых товаров: " + e.getMessage(), e);
+        }
+        return products;
+    }
+
+    //Учесть новые заказы в сводке в транзакции вызывающего кода
+    //orders записанные заказы с датой, суммой и позициями (отмененные пропускаются)
+    //conn соединение с открытой транзакцией
+    void recordOrdersWithConnection(List<Order> orders, Connection conn) throws SQLException {
+        Map<RowKey, Totals> rows = new TreeMap<>();
+        for (Order order : orders) {
+            if (CANCELLED_STATUS.equals(order.getStatus())) {
+                continue;
+            }
+            Map<Integer, Totals> lines = new TreeMap<>();
+            for (OrderItem item : OrderDAO.validItems(order)) {
+                lines.computeIfAbsent(item.getProduct().getId(), id -> new Totals())
+                     .add(item.getQuantity() * item.getPrice(), 0, item.getQuantity());
+            }
+            addOrder(rows, order.getOrderDate().toLocalDate(), order.getTotalCost(), lines);
+        }
+        upsert(rows, 1, conn);
+    }
+
+    //Учесть или вычесть записанный заказ в транзакции вызывающего кода (отмена, возврат из отмены, удаление)
+    //Заказ и позиции читаются из базы, поэтому вызывать нужно до удаления позиций
+    //orderId заказ
+    //sign 1 - прибавить продажи заказа, -1 - вычесть
+    //conn соединение с открытой транзакцией
+    void recordStoredOrderWithConnection(int orderId, int sign, Connection conn) throws SQLException {
+        LocalDate day;
+        double totalCost;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT order_date, total_cost FROM orders WHERE id = ?")) {
+            pstmt.setInt(1, orderId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                day = rs.getTimestamp("order_date").toLocalDateTime().toLocalDate();
+                totalCost = rs.getDouble("total_cost");
+            }
+        }
+
+        Map<Integer, Totals> lines = new TreeMap<>();
+        String itemsSql = "SELECT product_id, SUM(quantity * price_per_item) AS revenue, SUM(quantity) AS units " +
+                          "FROM order_items WHERE order_id = ? GROUP BY product_id";
+        try (PreparedStatement pstmt = conn.prepareStatement(itemsSql)) {
+            pstmt.setInt(1, orderId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    lines.computeIfAbsent(rs.getInt("product_id"), id -> new Totals())
+                         .add(rs.getDouble("revenue"), 0, rs.getInt("units"));
+                }
+            }
+        }
+
+        Map<RowKey, Totals> rows = new TreeMap<>();
+        addOrder(rows, day, totalCost, lines);
+        upsert(rows, sign, conn);
+    }
+
+    // Строка итога дня и строки товаров заказа; каждый товар считается в одном заказе один раз
+    private static void addOrder(Map<RowKey, Totals> rows, LocalDate day, double totalCost,
+                                 Map<Integer, Totals> lines) {
+        int units = 0;
+        for (Map.Entry<Integer, Totals> line : lines.entrySet()) {
+            Totals totals = line.getValue();
+            rows.computeIfAbsent(new RowKey(day, line.getKey()), key -> new Totals())
+                .add(totals.revenue, 1, totals.units);
+            units += totals.units;
+        }
+        rows.computeIfAbsent(new RowKey(day, 0), key -> new Totals()).add(totalCost, 1, units);
+    }
+
+    // Один многострочный INSERT ... ON DUPLICATE KEY UPDATE; строки идут в порядке первичного ключа,
+    // поэтому транзакции с одним слотом блокируют общие строки в одном порядке
+    private static void upsert(Map<RowKey, Totals> rows, int sign, Connection conn) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO sales_daily (sale_date, product_id, slot, revenue, order_count, units) VALUES " +
+                     String.join(", ", Collections.nCopies(rows.size(), "(?, ?, ?, ?, ?, ?)")) +
+                     " ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), " +
+                     "order_count = order_count + VALUES(order_count), units = units + VALUES(units)";
+        int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Map.Entry<RowKey, Totals> row : rows.entrySet()) {
+                Totals totals = row.getValue();
+                pstmt.setDate(index++, Date.valueOf(row.getKey().day));
+                pstmt.setInt(index++, row.getKey().productId);
+                pstmt.setInt(index++, slot);
+                pstmt.setDouble(index++, sign * Math.round(totals.revenue * 100) / 100.0);
+                pstmt.setInt(index++, sign * totals.orders);
+                pstmt.setInt(index++, sign * totals.units);
+            }
+            pstmt.executeUpdate();
+        }
+        log.debug(() -> "Сводка продаж обновлена: строк " + rows.size() + ", слот " + slot);
+    }
+
+    // Ключ строки сводки в порядке первичного ключа (без слота - он один на транзакцию)
+    private static final class RowKey implements Comparable<RowKey> {
+        final LocalDate day;
+        final int productId;
+
+        RowKey(LocalDate day, int productId) {
+            this.day = day;
+            this.productId = productId;
+        }
+
+        @Override
+        public int compareTo(RowKey other) {
+            int byDay = day.compareTo(other.day);
+            return byDay != 0 ? byDay : Integer.compare(productId, other.productId);
+        }
+    }
+
+    private static final class Totals {
+        double revenue;
+        int orders;
+        int units;
+
+        void add(double revenue, int orders, int units) {
+            this.revenue += revenue;
+            this.orders += orders;
+            this.units += units;
+        }
+    }
+}
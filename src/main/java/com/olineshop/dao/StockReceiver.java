@@ -0,0 +1,273 @@
+package com.olineshop.dao;
+
+import com.olineshop.model.ImportResult;
+import com.olineshop.util.CsvReader;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+//Класс для прихода товара на склад из файла поставки (CSV)
+//Каждая строка файла - товар и сколько единиц пришло. Строки читаются потоково и копятся в блоки
+//по olineshop.receipt.batchRows (по умолчанию 500); количества одного товара в блоке складываются.
+//Блок записывается одним пакетом относительных UPDATE (stock_quantity = stock_quantity + ?) в порядке id
+//и фиксируется отдельной короткой транзакцией: блокировки строк держатся недолго и берутся в том же
+//порядке, что и при списании заказов, поэтому приход не задерживает оформление заказов.
+//
+//Первая строка файла - заголовок. Столбцы (регистр не важен):
+//id / product_id - id товара, или name / название / товар - название товара (нужен один из двух)
+//quantity / количество / приход - сколько единиц пришло (целое больше 0)
+
+public class StockReceiver {
+    private static final Log log = Log.get(StockReceiver.class);
+    private static final int BATCH_ROWS = Math.max(1, Integer.getInteger("olineshop.receipt.batchRows", 500));
+
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int QUANTITY = 2;
+    private static final Map<String, Integer> HEADERS = new HashMap<>();
+
+    static {
+        for (String header : new String[] {"id", "product_id", "id товара"}) {
+            HEADERS.put(header, ID);
+        }
+        for (String header : new String[] {"name", "название", "наименование", "товар"}) {
+            HEADERS.put(header, NAME);
+        }
+        for (String header : new String[] {"quantity", "qty", "количество", "приход"}) {
+            HEADERS.put(header, QUANTITY);
+        }
+    }
+
+    private final ProductDAO productDAO = new ProductDAO();
+
+    //Оприходовать товары из файла поставки
+    //path файл CSV в UTF-8
+    //progress получает число прочитанных строк после записи каждого блока (может быть null)
+    //return итог прихода; при ошибке чтения файла или базы данных приход останавливается,
+    //блоки, записанные до ошибки, остаются оприходованными
+    public ImportResult receive(Path path, LongConsumer progress) {
+        long start = System.nanoTime();
+        ImportResult result = new ImportResult();
+        log.info("Приход товара из " + path);
+
+        try (CsvReader reader = CsvReader.open(path);
+             Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.error("Ошибка: не удалось получить соединение с базой данных");
+                result.setError("Нет соединения с базой данных");
+                return result;
+            }
+
+            int[] columns = readHeader(reader.next());
+            if ((columns[ID] < 0 && columns[NAME] < 0) || columns[QUANTITY] < 0) {
+                result.setError("В заголовке файла нет столбцов с товаром (id или название) и количеством");
+                return result;
+            }
+
+            List<Line> chunk = new ArrayList<>();
+            long rowsRead = 0;
+            List<String> values;
+            while ((values = reader.next()) != null) {
+                result.setRowsRead(++rowsRead);
+                Line line = parse(values, columns, reader.getRecordLine(), result);
+                if (line != null) {
+                    chunk.add(line);
+                }
+                if (chunk.size() >= BATCH_ROWS) {
+                    write(chunk, conn, result);
+                    if (progress != null) {
+                        progress.accept(rowsRead);
+                    }
+                }
+            }
+            write(chunk, conn, result);
+            if (progress != null) {
+                progress.accept(rowsRead);
+            }
+        } catch (IOException e) {
+            log.error("Ошибка при чтении файла поставки: " + e.getMessage(), e);
+            result.setError("Ошибка чтения файла: " + e.getMessage());
+        } catch (SQLException e) {
+            log.error("Ошибка при приходе товара: " + e.getMessage(), e);
+            result.setError("Ошибка базы данных: " + e.getMessage());
+        }
+
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("Приход товара из " + path + ": строк " + result.getRowsRead() + ", принято " +
+                 result.getImported() + " (" + result.getQuantity() + " ед.), отклонено " + result.getRejected() +
+                 ", " + result.getElapsedMillis() + " мс" +
+                 (result.isCompleted() ? "" : ", остановлен: " + result.getError()));
+        return result;
+    }
+
+    // Номера столбцов ID, NAME, QUANTITY в файле (-1, если столбца нет)
+    private static int[] readHeader(List<String> header) {
+        int[] columns = {-1, -1, -1};
+        if (header == null) {
+            return columns;
+        }
+        for (int i = 0; i < header.size(); i++) {
+            Integer column = HEADERS.get(header.get(i).trim().toLowerCase(Locale.ROOT));
+            if (column != null && columns[column] < 0) {
+                columns[column] = i;
+            }
+        }
+        return columns;
+    }
+
+    // Проверка строки файла; null, если строка отклонена
+    private static Line parse(List<String> values, int[] columns, long lineNumber, ImportResult result) {
+        String idText = value(values, columns[ID]);
+        String name = value(values, columns[NAME]);
+        int productId = 0;
+        if (!idText.isEmpty()) {
+            try {
+                productId = Integer.parseInt(idText);
+            } catch (NumberFormatException e) {
+                productId = 0;
+            }
+            if (productId <= 0) {
+                result.reject(lineNumber, "некорректный id товара \"" + idText + "\"");
+                return null;
+            }
+        } else if (name.isEmpty()) {
+            result.reject(lineNumber, "не указан товар");
+            return null;
+        }
+
+        String quantityText = value(values, columns[QUANTITY]);
+        int quantity;
+        try {
+            quantity = Integer.parseInt(quantityText.replace(" ", "").replace("\u00A0", ""));
+        } catch (NumberFormatException e) {
+            result.reject(lineNumber, "некорректное количество \"" + quantityText + "\"");
+            return null;
+        }
+        if (quantity <= 0) {
+            result.reject(lineNumber, "количество должно быть больше 0: " + quantity);
+            return null;
+        }
+        return new Line(lineNumber, productId, productId > 0 ? null : name, quantity);
+    }
+
+    private static String value(List<String> values, int column) {
+        return column >= 0 && column < values.size() ? values.get(column).trim() : "";
+    }
+
+    // Записать блок строк одной транзакцией
+    private void write(List<Line> chunk, Connection conn, ImportResult result) throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        resolveNames(chunk, conn);
+
+        // Количества одного товара складываются; порядок id - порядок блокировки строк
+        SortedMap<Integer, Integer> deltas = new TreeMap<>();
+        List<Line> accepted = new ArrayList<>();
+        for (Line line : chunk) {
+            if (line.productId <= 0) {
+                result.reject(line.number, "товар \"" + line.name + "\" не найден");
+                continue;
+            }
+            long total = (long) deltas.getOrDefault(line.productId, 0) + line.quantity;
+            if (total > Integer.MAX_VALUE) {
+                result.reject(line.number, "слишком большое количество для товара ID=" + line.productId);
+                continue;
+            }
+            deltas.put(line.productId, (int) total);
+            accepted.add(line);
+        }
+
+        Set<Integer> missing;
+        conn.setAutoCommit(false);
+        try {
+            missing = productDAO.receiveStockWithConnection(deltas, conn);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        for (Line line : accepted) {
+            if (missing.contains(line.productId)) {
+                result.reject(line.number, "товар ID=" + line.productId + " не найден");
+            } else {
+                result.addImported(1);
+                result.addQuantity(line.quantity);
+            }
+        }
+        deltas.keySet().removeAll(missing);
+        productDAO.stockReceiptCommitted(deltas);
+        for (Map.Entry<Integer, Integer> delta : deltas.entrySet()) {
+            if (HotStock.isHot(delta.getKey())) {
+                HotStock.stockChanged(delta.getKey(), delta.getValue());
+            }
+        }
+        chunk.clear();
+    }
+
+    // id товаров, указанных в файле названием: один запрос на блок
+    private static void resolveNames(List<Line> chunk, Connection conn) throws SQLException {
+        Map<String, Integer> ids = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Line line : chunk) {
+            if (line.name != null) {
+                ids.put(line.name, 0);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        String sql = "SELECT id, name FROM products WHERE name IN (" +
+                     String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String name : ids.keySet()) {
+                pstmt.setString(index++, name);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(rs.getString("name"), rs.getInt("id"));
+                }
+            }
+        }
+        for (Line line : chunk) {
+            if (line.name != null) {
+                line.productId = ids.get(line.name);
+            }
+        }
+    }
+
+    // Строка файла поставки, прошедшая проверку
+    private static final class Line {
+        final long number;
+        int productId;
+        final String name;
+        final int quantity;
+
+        Line(long number, int productId, String name, int quantity) {
+            this.number = number;
+            this.productId = productId;
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+}
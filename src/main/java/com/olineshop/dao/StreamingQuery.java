@@ -0,0 +1,190 @@
+package com.olineshop.dao;
+
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//Потоковое чтение больших результатов запросов для DAO
+//Запрос выполняется с ResultSet только вперед и setFetchSize(Integer.MIN_VALUE): MySQL Connector/J
+//передает строки по одной по мере чтения, а не загружает весь результат в память до первого next().
+//Память не зависит от числа строк, обработка начинается с первой строки.
+//Пока результат не дочитан или не закрыт, соединение занято им: другие запросы нужно выполнять
+//через другие соединения. Закрытие недочитанного результата дочитывает оставшиеся строки в драйвере.
+//
+//Два вида чтения:
+//forEach - обработчик получает каждую строку ResultSet (для отчетов и выгрузок, без объекта на строку)
+//stream - строки как Stream<T>; поток держит соединение и должен закрываться (try-with-resources)
+
+public final class StreamingQuery {
+    private static final Log log = Log.get(StreamingQuery.class);
+
+    //Установка параметров запроса
+    @FunctionalInterface
+    public interface Parameters {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
+
+    //Обработчик строк для forEach
+    @FunctionalInterface
+    public interface RowHandler {
+        //Вызывается один раз до первой строки (и при пустом результате)
+        default void begin(ResultSetMetaData meta) throws SQLException, IOException {
+        }
+
+        //Вызывается для каждой строки; значения читаются из текущей строки rs
+        void row(ResultSet rs) throws SQLException, IOException;
+    }
+
+    //Преобразование текущей строки в объект для stream
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    //Ошибка базы данных при чтении потока stream (Stream не пропускает проверяемые исключения)
+    public static final class ReadException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ReadException(SQLException cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    static final Parameters NO_PARAMETERS = pstmt -> {
+    };
+
+    private StreamingQuery() {
+    }
+
+    //Прочитать все строки запроса обработчиком
+    //sql запрос
+    //parameters параметры запроса
+    //handler обработчик строк
+    //return число прочитанных строк
+    static long forEach(String sql, Parameters parameters, RowHandler handler) throws SQLException, IOException {
+        try (Connection conn = connect();
+             PreparedStatement pstmt = prepare(conn, sql)) {
+            parameters.bind(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                handler.begin(rs.getMetaData());
+                long rows = 0;
+                while (rs.next()) {
+                    handler.row(rs);
+                    rows++;
+                }
+                return rows;
+            }
+        }
+    }
+
+    //Открыть запрос как поток объектов
+    //Запрос выполняется сразу (ошибка запроса - SQLException здесь), строки читаются по мере обхода потока.
+    //Ресурсы освобождаются при закрытии потока или после последней строки.
+    //Ошибка при чтении строк передается как ReadException.
+    //sql запрос
+    //parameters параметры запроса
+    //mapper преобразование строки в объект
+    //return поток объектов, который нужно закрыть
+    static <T> Stream<T> stream(String sql, Parameters parameters, RowMapper<T> mapper) throws SQLException {
+        Connection conn = connect();
+        PreparedStatement pstmt = null;
+        ResultSet rs;
+        try {
+            pstmt = prepare(conn, sql);
+            parameters.bind(pstmt);
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            close(null, pstmt, conn);
+            throw e;
+        }
+
+        Cursor<T> cursor = new Cursor<>(conn, pstmt, rs, mapper);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    private static Connection connect() throws SQLException {
+        Connection conn = DatabaseManager.getConnection();
+        if (conn == null) {
+            throw new SQLException("Не удалось получить соединение с базой данных");
+        }
+        return conn;
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // Integer.MIN_VALUE включает построчную передачу в MySQL Connector/J
+        pstmt.setFetchSize(Integer.MIN_VALUE);
+        return pstmt;
+    }
+
+    private static void close(ResultSet rs, PreparedStatement pstmt, Connection conn) {
+        for (AutoCloseable resource : new AutoCloseable[] {rs, pstmt, conn}) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Ошибка при закрытии потокового запроса: " + e.getMessage());
+            }
+        }
+    }
+
+    // Обход ResultSet для Stream; закрывается один раз - после последней строки или при закрытии потока
+    private static final class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection conn;
+        private final PreparedStatement pstmt;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean closed = false;
+
+        Cursor(Connection conn, PreparedStatement pstmt, ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.pstmt = pstmt;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapper.map(rs));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new ReadException(e);
+            }
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                StreamingQuery.close(rs, pstmt, conn);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.olineshop.dao;
 import com.olineshop.model.Role;
 import com.olineshop.model.User;
 import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -11,63 +12,81 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 //Класс для работы с пользователями в базе данных
 
 public class UserDAO {
-    private RoleDAO roleDAO = new RoleDAO();
+    private static final Log log = Log.get(UserDAO.class);
+    private final RoleDAO roleDAO = new RoleDAO();
 
     //Получить всех пользователей из базы данных
+    //Пользователи читаются потоком (streamAllUsers), поэтому в памяти не хранится вторая копия результата в драйвере
     //return список пользователей
     public List<User> getAllUsers() {
-        List<User> users = new ArrayList<>();
-        String sql = "SELECT u.*, r.name as role_name FROM users u JOIN roles r ON u.role_id = r.id ORDER BY u.id";
-        System.out.println("Получение всех пользователей из базы данных");
+        log.debug("Получение всех пользователей из базы данных");
+        try (Stream<User> stream = streamAllUsers()) {
+            List<User> users = stream.collect(Collectors.toCollection(ArrayList::new));
+            log.debug(() -> "Всего найдено пользователей: " + users.size());
+            return users;
+        } catch (StreamingQuery.ReadException e) {
+            log.error("Ошибка при получении всех пользователей: " + e.getMessage(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    //Получить всех пользователей потоком, по возрастанию id
+    //Строки читаются из базы по мере обхода потока, в памяти только текущий пользователь.
+    //Поток занимает соединение до закрытия - используйте try-with-resources.
+    //Ошибка при чтении строк передается как StreamingQuery.ReadException
+    //return поток пользователей (пустой, если запрос не выполнился)
+    public Stream<User> streamAllUsers() {
+        String sql = "SELECT * FROM users ORDER BY id";
+        log.debug(() -> "Выполнение SQL-запроса: " + sql);
+        try {
+            // Роль берется из кэша ролей, без отдельного запроса
+            return StreamingQuery.stream(sql, StreamingQuery.NO_PARAMETERS, this::extractUserFromResultSet);
+        } catch (SQLException e) {
+            log.error("Ошибка при получении всех пользователей: " + e.getMessage(), e);
+            return Stream.empty();
+        }
+    }
 
-        // Сбрасываем соединение перед выполнением запроса
-        com.olineshop.util.DatabaseManager.resetConnectionStatus();
+    //Получить страницу пользователей в порядке возрастания id
+    //after последний пользователь предыдущей страницы или null для первой страницы
+    //pageSize размер страницы
+    //return страница пользователей
+    public Page<User> getUsersPage(User after, int pageSize) {
+        String sql = after == null
+                ? "SELECT * FROM users ORDER BY id LIMIT ?"
+                : "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        List<User> users = new ArrayList<>();
 
         try (Connection conn = DatabaseManager.getConnection()) {
             if (conn == null) {
-                System.out.println("Ошибка: не удалось получить соединение с базой данных");
-                return users;
+                log.error("Ошибка: не удалось получить соединение с базой данных");
+                return Page.of(users, pageSize);
             }
 
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setFetchSize(100); // Оптимизация для больших наборов данных
-                
-                System.out.println("Выполнение SQL-запроса: " + sql);
+                int index = 1;
+                if (after != null) {
+                    pstmt.setInt(index++, after.getId());
+                }
+                pstmt.setInt(index, pageSize + 1);
+
                 try (ResultSet rs = pstmt.executeQuery()) {
                     while (rs.next()) {
-                        // Создаем объект Role
-                        Role role = new Role(
-                            rs.getInt("role_id"),
-                            rs.getString("role_name")
-                        );
-                        
-                        // Создаем объект User
-                        User user = new User(
-                            rs.getInt("id"),
-                            rs.getString("login"),
-                            rs.getString("password_hash"),
-                            rs.getString("first_name"),
-                            rs.getString("last_name"),
-                            rs.getString("email"),
-                            rs.getString("phone"),
-                            rs.getDouble("discount"),
-                            role
-                        );
-                        
-                        users.add(user);
+                        users.add(extractUserFromResultSet(rs));
                     }
                 }
             }
-            System.out.println("Всего найдено пользователей: " + users.size());
+            log.debug(() -> "Загружена страница пользователей: " + users.size());
         } catch (SQLException e) {
-            System.out.println("Ошибка при получении всех пользователей: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Ошибка при получении страницы пользователей: " + e.getMessage(), e);
         }
-        return users;
+        return Page.of(users, pageSize);
     }
 
     //Получить пользователя по идентификатору
@@ -86,7 +105,7 @@ public class UserDAO {
                 }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при получении пользователя по ID: " + e.getMessage(), e);
         }
         return null;
     }
@@ -107,7 +126,7 @@ public class UserDAO {
                 }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при получении пользователя по логину: " + e.getMessage(), e);
         }
         return null;
     }
@@ -130,7 +149,7 @@ public class UserDAO {
                 }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при аутентификации пользователя: " + e.getMessage(), e);
         }
         return null;
     }
@@ -166,7 +185,7 @@ public class UserDAO {
             }
             return false;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при добавлении пользователя: " + e.getMessage(), e);
             return false;
         }
     }
@@ -194,7 +213,7 @@ public class UserDAO {
             int affectedRows = pstmt.executeUpdate();
             return affectedRows > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при обновлении пользователя: " + e.getMessage(), e);
             return false;
         }
     }
@@ -215,7 +234,7 @@ public class UserDAO {
             int affectedRows = pstmt.executeUpdate();
             return affectedRows > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при обновлении скидки пользователя: " + e.getMessage(), e);
             return false;
         }
     }
@@ -233,7 +252,7 @@ public class UserDAO {
             int affectedRows = pstmt.executeUpdate();
             return affectedRows > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Ошибка при удалении пользователя: " + e.getMessage(), e);
             return false;
         }
     }
@@ -0,0 +1,161 @@
+package com.olineshop.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+//Отчет по продажам за период: итоги, выручка по дням/неделям/месяцам, товары и клиенты
+public class AnalyticsReport {
+    //Шаг группировки выручки по времени
+    public enum Period {
+        DAY("По дням"),
+        WEEK("По неделям"),
+        MONTH("По месяцам");
+
+        private final String title;
+
+        Period(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    private LocalDate from;
+    private LocalDate to;
+    private Period period;
+    private long orderCount;
+    private long lineCount;
+    private long units;
+    private double revenue;
+    private List<SalesSummary> revenueByPeriod = new ArrayList<>();
+    private List<SalesSummary> topProducts = new ArrayList<>();
+    private List<CustomerSpend> topCustomers = new ArrayList<>();
+    // Сколько строк позиций прочитано и сколько занял расчет
+    private long rowsScanned;
+    private long elapsedMillis;
+
+    public AnalyticsReport() {
+    }
+
+    public AnalyticsReport(LocalDate from, LocalDate to, Period period) {
+        this.from = from;
+        this.to = to;
+        this.period = period;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public Period getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(Period period) {
+        this.period = period;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(long lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    // Выручка по суммам заказов (с учетом скидок)
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    // Средняя сумма заказа
+    public double getAverageOrderValue() {
+        return orderCount == 0 ? 0 : revenue / orderCount;
+    }
+
+    // Среднее количество единиц товара в заказе
+    public double getAverageUnitsPerOrder() {
+        return orderCount == 0 ? 0 : (double) units / orderCount;
+    }
+
+    // Среднее количество позиций в заказе
+    public double getAverageLinesPerOrder() {
+        return orderCount == 0 ? 0 : (double) lineCount / orderCount;
+    }
+
+    public List<SalesSummary> getRevenueByPeriod() {
+        return revenueByPeriod;
+    }
+
+    public void setRevenueByPeriod(List<SalesSummary> revenueByPeriod) {
+        this.revenueByPeriod = revenueByPeriod;
+    }
+
+    public List<SalesSummary> getTopProducts() {
+        return topProducts;
+    }
+
+    public void setTopProducts(List<SalesSummary> topProducts) {
+        this.topProducts = topProducts;
+    }
+
+    public List<CustomerSpend> getTopCustomers() {
+        return topCustomers;
+    }
+
+    public void setTopCustomers(List<CustomerSpend> topCustomers) {
+        this.topCustomers = topCustomers;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public void setRowsScanned(long rowsScanned) {
+        this.rowsScanned = rowsScanned;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
@@ -0,0 +1,56 @@
+package com.olineshop.model;
+
+//Покупки одного клиента за период
+public class CustomerSpend {
+    private int userId;
+    private String name;
+    private double spend;
+    private int orderCount;
+
+    public CustomerSpend() {
+    }
+
+    public CustomerSpend(int userId, String name, double spend, int orderCount) {
+        this.userId = userId;
+        this.name = name;
+        this.spend = spend;
+        this.orderCount = orderCount;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getSpend() {
+        return spend;
+    }
+
+    public void setSpend(double spend) {
+        this.spend = spend;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(int orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    // Средняя сумма заказа клиента
+    public double getAverageOrder() {
+        return orderCount == 0 ? 0 : spend / orderCount;
+    }
+}
@@ -0,0 +1,86 @@
+package com.olineshop.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Итог загрузки файла CSV (импорт каталога товаров, приход товара)
+public class ImportResult {
+    // Сколько отклоненных строк описывать подробно; остальные только считаются
+    public static final int MAX_REJECTIONS = 1000;
+
+    private long rowsRead;
+    private long imported;
+    private long rejected;
+    private long quantity;
+    private final List<String> rejections = new ArrayList<>();
+    private String error;
+    private long elapsedMillis;
+
+    // Строк данных прочитано из файла (без заголовка)
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    // Строк записано в базу (товаров добавлено или обновлено, строк прихода принято)
+    public long getImported() {
+        return imported;
+    }
+
+    public void addImported(long count) {
+        imported += count;
+    }
+
+    // Сколько единиц товара принято (для прихода товара)
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void addQuantity(long quantity) {
+        this.quantity += quantity;
+    }
+
+    // Строк отклонено
+    public long getRejected() {
+        return rejected;
+    }
+
+    //Отклонить строку файла
+    //line номер строки в файле
+    //reason причина
+    public void reject(long line, String reason) {
+        rejected++;
+        if (rejections.size() < MAX_REJECTIONS) {
+            rejections.add("Строка " + line + ": " + reason);
+        }
+    }
+
+    // Описания первых MAX_REJECTIONS отклоненных строк
+    public List<String> getRejections() {
+        return rejections;
+    }
+
+    // Ошибка, из-за которой загрузка остановлена (null, если файл обработан до конца)
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public boolean isCompleted() {
+        return error == null;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
@@ -12,6 +12,8 @@ public class Order {
     private double totalCost;
     private String status;
     private List<OrderItem> items;
+    // Ключ идемпотентности: одинаковый для всех попыток оформить один и тот же заказ
+    private String orderToken;
 
     public Order() {
         this.items = new ArrayList<>();
@@ -87,6 +89,14 @@ public class Order {
         this.items = items;
     }
 
+    public String getOrderToken() {
+        return orderToken;
+    }
+
+    public void setOrderToken(String orderToken) {
+        this.orderToken = orderToken;
+    }
+
     public void addItem(OrderItem item) {
         items.add(item);
         recalculateTotalCost();
@@ -0,0 +1,75 @@
+package com.olineshop.model;
+
+import java.time.LocalDate;
+
+//Продажи за день или за период: итог по всем заказам или по одному товару
+public class SalesSummary {
+    private LocalDate date;
+    private int productId;
+    private String productName;
+    private double revenue;
+    private int orderCount;
+    private int units;
+
+    public SalesSummary() {
+    }
+
+    public SalesSummary(LocalDate date, int productId, String productName, double revenue, int orderCount, int units) {
+        this.date = date;
+        this.productId = productId;
+        this.productName = productName;
+        this.revenue = revenue;
+        this.orderCount = orderCount;
+        this.units = units;
+    }
+
+    // День продаж (null для итога за период)
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    // Товар (0 для итога по всем заказам)
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(int orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public int getUnits() {
+        return units;
+    }
+
+    public void setUnits(int units) {
+        this.units = units;
+    }
+}
@@ -0,0 +1,152 @@
+package com.olineshop.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+//Буферизованная запись в файл через FileChannel
+//Данные копятся в одном буфере фиксированного размера и уходят в канал, когда буфер заполнен,
+//поэтому память не зависит от размера файла. При сжатии между буфером и файлом стоит gzip.
+//Запись идет во временный файл рядом с целевым (имя + ".part"); commit переименовывает его в целевой,
+//а close без commit удаляет, поэтому недописанный файл не остается под целевым именем.
+//Числа пишутся в порядке байтов big-endian (как DataOutputStream).
+
+public class ChannelOutput implements Closeable {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel file;
+    private final WritableByteChannel channel;
+    private final GZIPOutputStream gzip;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long written = 0;
+    private boolean committed = false;
+
+    //target итоговый файл
+    //compress сжимать ли данные gzip
+    public ChannelOutput(Path target, boolean compress) throws IOException {
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".part");
+        this.file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        if (compress) {
+            this.gzip = new GZIPOutputStream(Channels.newOutputStream(file), BUFFER_SIZE);
+            this.channel = Channels.newChannel(gzip);
+        } else {
+            this.gzip = null;
+            this.channel = file;
+        }
+    }
+
+    public ChannelOutput putByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+        return this;
+    }
+
+    public ChannelOutput putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    public ChannelOutput putLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    public ChannelOutput putDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+        return this;
+    }
+
+    public ChannelOutput putBytes(byte[] bytes) throws IOException {
+        return putBytes(bytes, 0, bytes.length);
+    }
+
+    public ChannelOutput putBytes(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int part = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, part);
+            offset += part;
+            length -= part;
+        }
+        return this;
+    }
+
+    //Записать строку в UTF-8 без длины
+    public ChannelOutput putUtf8(String text) throws IOException {
+        return putBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //Записать длину (int) и строку в UTF-8
+    public ChannelOutput putString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        return putBytes(bytes);
+    }
+
+    //Сколько байт передано в канал (до сжатия)
+    public long getBytesWritten() {
+        return written + buffer.position();
+    }
+
+    //Дописать данные и переименовать временный файл в целевой
+    public void commit() throws IOException {
+        flush();
+        if (gzip != null) {
+            gzip.finish();
+        }
+        file.force(false);
+        file.close();
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (committed) {
+            return;
+        }
+        try {
+            file.close();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        written += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
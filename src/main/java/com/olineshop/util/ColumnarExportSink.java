@@ -0,0 +1,220 @@
+package com.olineshop.util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+//Выгрузка в компактный двоичный файл по столбцам
+//Строки копятся в группы по groupRows строк, группа записывается столбец за столбцом: однотипные значения
+//подряд хорошо сжимаются и читаются выборочно. Память ограничена одной группой.
+//
+//Формат (числа big-endian):
+//  заголовок: "OLCF" (4 байта), версия (int = 1), число столбцов (int),
+//             для каждого столбца: тип (byte), имя (int длина + UTF-8), у DECIMAL еще масштаб (byte)
+//  группа:    число строк n (int > 0), затем для каждого столбца:
+//             битовая карта NULL (ceil(n / 8) байт, бит i в байте i / 8 (младший бит первым) - строка i равна NULL),
+//             n значений: INT64 - long, FLOAT64 - double, DECIMAL - long, значение * 10^масштаб (точно,
+//             для денежных сумм), TIMESTAMP - long, миллисекунды локального времени базы, записанного как UTC,
+//             STRING - int длина + UTF-8; у NULL значение 0 или пустая строка
+//  конец:     группа с n = 0
+
+public class ColumnarExportSink implements ExportSink {
+    public static final byte TYPE_INT64 = 1;
+    public static final byte TYPE_FLOAT64 = 2;
+    public static final byte TYPE_TIMESTAMP = 3;
+    public static final byte TYPE_STRING = 4;
+    public static final byte TYPE_DECIMAL = 5;
+    private static final int VERSION = 1;
+
+    private final ChannelOutput out;
+    private final int groupRows;
+    private byte[] types;
+    private int[] scales;
+    private long[][] longs;
+    private double[][] doubles;
+    private byte[][] strings;
+    private int[][] stringLengths;
+    private int[] stringBytes;
+    private boolean[][] nulls;
+    private int rows = 0;
+
+    public ColumnarExportSink(ChannelOutput out, int groupRows) {
+        this.out = out;
+        this.groupRows = Math.max(1, groupRows);
+    }
+
+    @Override
+    public void begin(ResultSetMetaData meta) throws SQLException, IOException {
+        int columns = meta.getColumnCount();
+        types = new byte[columns];
+        scales = new int[columns];
+        longs = new long[columns][];
+        doubles = new double[columns][];
+        strings = new byte[columns][];
+        stringLengths = new int[columns][];
+        stringBytes = new int[columns];
+        nulls = new boolean[columns][groupRows];
+
+        out.putBytes("OLCF".getBytes(StandardCharsets.US_ASCII)).putInt(VERSION).putInt(columns);
+        for (int c = 0; c < columns; c++) {
+            types[c] = typeOf(meta.getColumnType(c + 1), meta.getPrecision(c + 1));
+            scales[c] = meta.getScale(c + 1);
+            switch (types[c]) {
+                case TYPE_INT64:
+                case TYPE_DECIMAL:
+                case TYPE_TIMESTAMP:
+                    longs[c] = new long[groupRows];
+                    break;
+                case TYPE_FLOAT64:
+                    doubles[c] = new double[groupRows];
+                    break;
+                default:
+                    strings[c] = new byte[groupRows * 16];
+                    stringLengths[c] = new int[groupRows];
+            }
+            out.putByte(types[c]).putString(meta.getColumnLabel(c + 1));
+            if (types[c] == TYPE_DECIMAL) {
+                out.putByte(scales[c]);
+            }
+        }
+    }
+
+    @Override
+    public void row(ResultSet rs) throws SQLException, IOException {
+        for (int c = 0; c < types.length; c++) {
+            int column = c + 1;
+            boolean isNull;
+            switch (types[c]) {
+                case TYPE_INT64:
+                    longs[c][rows] = rs.getLong(column);
+                    isNull = rs.wasNull();
+                    break;
+                case TYPE_FLOAT64:
+                    doubles[c][rows] = rs.getDouble(column);
+                    isNull = rs.wasNull();
+                    break;
+                case TYPE_DECIMAL:
+                    BigDecimal decimal = rs.getBigDecimal(column);
+                    isNull = decimal == null;
+                    longs[c][rows] = isNull ? 0
+                            : decimal.setScale(scales[c], RoundingMode.HALF_UP).unscaledValue().longValue();
+                    break;
+                case TYPE_TIMESTAMP:
+                    Timestamp timestamp = rs.getTimestamp(column);
+                    isNull = timestamp == null;
+                    longs[c][rows] = isNull ? 0
+                            : timestamp.toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+                    break;
+                default:
+                    String value = rs.getString(column);
+                    isNull = value == null;
+                    appendString(c, isNull ? "" : value);
+            }
+            nulls[c][rows] = isNull;
+        }
+        if (++rows == groupRows) {
+            writeGroup();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rows > 0) {
+            writeGroup();
+        }
+        out.putInt(0);
+        out.commit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void appendString(int c, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int needed = stringBytes[c] + bytes.length;
+        if (needed > strings[c].length) {
+            strings[c] = Arrays.copyOf(strings[c], Math.max(needed, strings[c].length * 2));
+        }
+        System.arraycopy(bytes, 0, strings[c], stringBytes[c], bytes.length);
+        stringBytes[c] = needed;
+        stringLengths[c][rows] = bytes.length;
+    }
+
+    private void writeGroup() throws IOException {
+        out.putInt(rows);
+        for (int c = 0; c < types.length; c++) {
+            writeNulls(nulls[c]);
+            switch (types[c]) {
+                case TYPE_INT64:
+                case TYPE_DECIMAL:
+                case TYPE_TIMESTAMP:
+                    for (int i = 0; i < rows; i++) {
+                        out.putLong(longs[c][i]);
+                    }
+                    break;
+                case TYPE_FLOAT64:
+                    for (int i = 0; i < rows; i++) {
+                        out.putDouble(doubles[c][i]);
+                    }
+                    break;
+                default:
+                    int offset = 0;
+                    for (int i = 0; i < rows; i++) {
+                        int length = stringLengths[c][i];
+                        out.putInt(length).putBytes(strings[c], offset, length);
+                        offset += length;
+                    }
+                    stringBytes[c] = 0;
+            }
+        }
+        rows = 0;
+    }
+
+    private void writeNulls(boolean[] columnNulls) throws IOException {
+        for (int i = 0; i < rows; i += 8) {
+            int bits = 0;
+            for (int bit = 0; bit < 8 && i + bit < rows; bit++) {
+                if (columnNulls[i + bit]) {
+                    bits |= 1 << bit;
+                }
+            }
+            out.putByte(bits);
+        }
+    }
+
+    // DECIMAL до 18 знаков помещается в long без потерь, более длинные выгружаются строкой
+    private static byte typeOf(int sqlType, int precision) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return TYPE_INT64;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return precision > 0 && precision <= 18 ? TYPE_DECIMAL : TYPE_STRING;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+                return TYPE_FLOAT64;
+            case Types.DATE:
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return TYPE_TIMESTAMP;
+            default:
+                return TYPE_STRING;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.olineshop.util;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+//Пул соединений с базой данных
+//Соединение, полученное через getConnection(), при close() возвращается в пул, а не закрывается
+
+public class ConnectionPool implements DataSource {
+    private static final Log log = Log.get(ConnectionPool.class);
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+
+    // Свободные соединения (LIFO, чтобы чаще использовались "теплые" соединения)
+    private final Deque<PooledEntry> idle = new ArrayDeque<>();
+    // Ограничение на общее количество выданных соединений
+    private final Semaphore permits;
+    private final ScheduledExecutorService evictor;
+
+    private int totalCount = 0;
+    private volatile boolean closed = false;
+    private PrintWriter logWriter;
+    private int loginTimeout;
+
+    //url адрес базы данных
+    //minSize минимальное количество соединений, которое держится открытым
+    //maxSize максимальное количество одновременно выданных соединений
+    //idleTimeoutMillis время простоя, после которого лишнее соединение закрывается
+    //borrowTimeoutMillis максимальное время ожидания свободного соединения
+    //validationIntervalMillis соединение, простоявшее дольше, проверяется перед выдачей
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis,
+                          long validationIntervalMillis, int validationTimeoutSeconds) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Некорректный размер пула: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    //Открыть минимальное количество соединений заранее
+    public void fill() throws SQLException {
+        List<PooledEntry> created = new ArrayList<>();
+        synchronized (this) {
+            while (totalCount + created.size() < minSize) {
+                created.add(new PooledEntry(openPhysical()));
+            }
+            totalCount += created.size();
+            for (PooledEntry entry : created) {
+                idle.push(entry);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт");
+        }
+
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Не удалось получить соединение из пула за " + borrowTimeoutMillis +
+                                       " мс (выдано " + getActiveCount() + " из " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения из пула прервано", e);
+        }
+
+        try {
+            PooledEntry entry = takeValidEntry();
+            return wrap(entry);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Берем свободное соединение или открываем новое
+    private PooledEntry takeValidEntry() throws SQLException {
+        while (true) {
+            PooledEntry entry;
+            synchronized (this) {
+                entry = idle.poll();
+                if (entry == null) {
+                    totalCount++;
+                }
+            }
+
+            if (entry == null) {
+                try {
+                    return new PooledEntry(openPhysical());
+                } catch (SQLException e) {
+                    synchronized (this) {
+                        totalCount--;
+                    }
+                    throw e;
+                }
+            }
+
+            // Проверяем только соединения, которые долго простаивали
+            long idleFor = System.currentTimeMillis() - entry.lastUsed;
+            if (idleFor < validationIntervalMillis || isUsable(entry.physical)) {
+                return entry;
+            }
+
+            log.warn("Соединение из пула недействительно, закрываем его");
+            discard(entry);
+        }
+    }
+
+    private boolean isUsable(Connection physical) {
+        try {
+            return !physical.isClosed() && physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private Connection wrap(PooledEntry entry) {
+        PooledHandler handler = new PooledHandler(entry);
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                handler);
+    }
+
+    // Возврат соединения в пул
+    private void release(PooledEntry entry, List<Statement> openStatements) {
+        try {
+            boolean reusable = !closed && resetState(entry.physical, openStatements);
+            if (reusable) {
+                entry.lastUsed = System.currentTimeMillis();
+                synchronized (this) {
+                    idle.push(entry);
+                }
+            } else {
+                discard(entry);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Приводим соединение в исходное состояние перед повторной выдачей
+    private boolean resetState(Connection physical, List<Statement> openStatements) {
+        for (Statement statement : openStatements) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Закрываем остальные
+            }
+        }
+
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            log.warn("Ошибка при возврате соединения в пул: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void discard(PooledEntry entry) {
+        synchronized (this) {
+            totalCount--;
+        }
+        try {
+            entry.physical.close();
+        } catch (SQLException ignored) {
+            // Соединение уже недоступно
+        }
+    }
+
+    // Закрываем соединения, простоявшие дольше idleTimeout, оставляя minSize
+    private void evictIdle() {
+        List<PooledEntry> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<PooledEntry> it = idle.descendingIterator();
+            while (it.hasNext() && totalCount - expired.size() > minSize) {
+                PooledEntry entry = it.next();
+                if (now - entry.lastUsed >= idleTimeoutMillis) {
+                    it.remove();
+                    expired.add(entry);
+                }
+            }
+        }
+        for (PooledEntry entry : expired) {
+            discard(entry);
+        }
+        if (!expired.isEmpty()) {
+            log.debug(() -> "Закрыто простаивающих соединений: " + expired.size() +
+                               ", осталось в пуле: " + getTotalCount());
+        }
+    }
+
+    //Закрыть пул и все свободные соединения
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        List<PooledEntry> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (PooledEntry entry : toClose) {
+            discard(entry);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    //Количество соединений, выданных в данный момент
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public synchronized int getTotalCount() {
+        return totalCount;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Пул работает с одной учетной записью");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Пул не является " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    // Физическое соединение и время его последнего использования
+    private static class PooledEntry {
+        final Connection physical;
+        volatile long lastUsed;
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    // Обертка над соединением: close() возвращает соединение в пул
+    private class PooledHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private final List<Statement> openStatements = new ArrayList<>();
+        private boolean returned = false;
+
+        PooledHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(entry, openStatements);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + (returned ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Соединение уже возвращено в пул");
+            }
+
+            try {
+                Object result = method.invoke(entry.physical, args);
+                if (result instanceof Statement) {
+                    openStatements.add((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
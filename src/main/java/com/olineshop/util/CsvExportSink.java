@@ -0,0 +1,75 @@
+package com.olineshop.util;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+//Выгрузка в CSV (RFC 4180): первая строка - имена столбцов, разделитель - запятая, строки через \r\n.
+//Значение в кавычках, если в нем есть запятая, кавычка или перевод строки; кавычки удваиваются.
+//NULL выгружается пустым значением. Текст в UTF-8.
+
+public class CsvExportSink implements ExportSink {
+    private final ChannelOutput out;
+    private int columns;
+
+    public CsvExportSink(ChannelOutput out) {
+        this.out = out;
+    }
+
+    @Override
+    public void begin(ResultSetMetaData meta) throws SQLException, IOException {
+        columns = meta.getColumnCount();
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) {
+                out.putByte(',');
+            }
+            putValue(meta.getColumnLabel(i));
+        }
+        out.putByte('\r').putByte('\n');
+    }
+
+    @Override
+    public void row(ResultSet rs) throws SQLException, IOException {
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) {
+                out.putByte(',');
+            }
+            String value = rs.getString(i);
+            if (value != null) {
+                putValue(value);
+            }
+        }
+        out.putByte('\r').putByte('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.commit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void putValue(String value) throws IOException {
+        if (!needsQuotes(value)) {
+            out.putUtf8(value);
+            return;
+        }
+        out.putByte('"');
+        out.putUtf8(value.replace("\"", "\"\""));
+        out.putByte('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
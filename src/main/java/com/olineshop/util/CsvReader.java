@@ -0,0 +1,165 @@
+package com.olineshop.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+//Потоковое чтение CSV (RFC 4180): записи читаются по одной, файл целиком в память не загружается
+//Поддерживаются поля в кавычках (с разделителями, переводами строк и удвоенными кавычками внутри),
+//концы строк \r\n и \n, метка BOM в начале файла. Разделитель - запятая или точка с запятой
+//(так сохраняет CSV русская версия Excel); open определяет его по первой строке.
+
+public class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private final StringBuilder field = new StringBuilder();
+    private long line = 1;
+    private long recordLine = 0;
+
+    //reader источник текста
+    //delimiter разделитель полей
+    public CsvReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    //Открыть файл в UTF-8 и определить разделитель по первой строке
+    //path файл CSV
+    //return читатель, стоящий в начале файла
+    public static CsvReader open(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            reader.mark(BUFFER_SIZE);
+            String first = reader.readLine();
+            reader.reset();
+            char delimiter = ',';
+            if (first != null && count(first, ';') > count(first, ',')) {
+                delimiter = ';';
+            }
+            return new CsvReader(reader, delimiter);
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    //Прочитать следующую запись
+    //Пустые строки пропускаются
+    //return значения полей или null в конце файла
+    public List<String> next() throws IOException {
+        List<String> values = new ArrayList<>();
+        int c;
+        do {
+            c = read();
+            if (c == -1) {
+                return null;
+            }
+        } while (c == '\r' || c == '\n' || (c == '\uFEFF' && line == 1 && recordLine == 0));
+        recordLine = line;
+
+        field.setLength(0);
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Незакрытая кавычка в записи, начатой в строке " + recordLine);
+                }
+                if (c == '"') {
+                    int nextChar = peek();
+                    if (nextChar == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == delimiter) {
+                values.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                values.add(field.toString());
+                return values;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    //Номер строки файла, с которой началась последняя прочитанная запись (с 1)
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    //Разделитель полей
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private static int count(String text, char c) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,20 @@
+package com.olineshop.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+//Получатель строк выгрузки
+//Значения читаются прямо из текущей строки ResultSet, без промежуточных объектов на строку:
+//begin - один раз по описанию столбцов, row - для каждой строки, finish - после последней строки.
+//close без finish отменяет выгрузку (недописанный файл удаляется).
+
+public interface ExportSink extends Closeable {
+    void begin(ResultSetMetaData meta) throws SQLException, IOException;
+
+    void row(ResultSet rs) throws SQLException, IOException;
+
+    void finish() throws IOException;
+}
@@ -0,0 +1,207 @@
+package com.olineshop.util;
+
+import java.util.Arrays;
+
+//Суммы по целочисленному ключу без упаковки в Integer/Double
+//Для каждого ключа хранятся сумма (например, выручка), количество единиц и счетчик (например, число заказов).
+//Открытая адресация с линейным пробированием: ключи и суммы лежат в параллельных массивах,
+//поэтому добавление строки не создает объектов. Класс не синхронизирован: каждый поток заполняет
+//свой экземпляр, затем экземпляры объединяются addAll.
+
+public class IntKeyedTotals {
+    // Значение ключа, которое означает пустую ячейку (сам этот ключ хранить нельзя)
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private double[] amounts;
+    private long[] units;
+    private long[] counts;
+    private int size = 0;
+    private int mask;
+
+    public IntKeyedTotals() {
+        this(16);
+    }
+
+    //expected ожидаемое число ключей
+    public IntKeyedTotals(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    //Прибавить значения к ключу
+    //key ключ (любое int, кроме Integer.MIN_VALUE)
+    //amount сумма
+    //unitCount количество единиц
+    //count счетчик
+    public void add(int key, double amount, long unitCount, long count) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Ключ " + key + " не поддерживается");
+        }
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (++size * 4 > keys.length * 3) {
+                grow();
+                slot = find(key);
+            }
+        }
+        amounts[slot] += amount;
+        units[slot] += unitCount;
+        counts[slot] += count;
+    }
+
+    //Прибавить все суммы другого экземпляра
+    public void addAll(IntKeyedTotals other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != EMPTY) {
+                add(other.keys[slot], other.amounts[slot], other.units[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    //Количество ключей
+    public int size() {
+        return size;
+    }
+
+    //Сумма по ключу (0, если ключа нет)
+    public double amount(int key) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? 0 : amounts[slot];
+    }
+
+    //Количество единиц по ключу (0, если ключа нет)
+    public long units(int key) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? 0 : units[slot];
+    }
+
+    //Счетчик по ключу (0, если ключа нет)
+    public long count(int key) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    //Все ключи по возрастанию
+    public int[] sortedKeys() {
+        int[] result = new int[size];
+        int count = 0;
+        for (int key : keys) {
+            if (key != EMPTY) {
+                result[count++] = key;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    //Ключи с наибольшими суммами
+    //limit сколько ключей вернуть
+    //return ключи по убыванию суммы
+    public int[] topKeysByAmount(int limit) {
+        int n = Math.min(limit, size);
+        // Мини-куча номеров ячеек: в вершине - наименьшая сумма среди отобранных
+        int[] heap = new int[n];
+        int heapSize = 0;
+        if (n == 0) {
+            return heap;
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == EMPTY) {
+                continue;
+            }
+            if (heapSize < n) {
+                heap[heapSize++] = slot;
+                siftUp(heap, heapSize - 1);
+            } else if (amounts[slot] > amounts[heap[0]]) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        int[] result = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            result[i] = keys[heap[0]];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        return result;
+    }
+
+    private int find(int key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldAmounts = amounts;
+        long[] oldUnits = units;
+        long[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                amounts[slot] = oldAmounts[i];
+                units[slot] = oldUnits[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        amounts = new double[capacity];
+        units = new long[capacity];
+        counts = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (amounts[heap[parent]] <= amounts[heap[index]]) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (true) {
+            int left = index * 2 + 1;
+            int smallest = index;
+            if (left < heapSize && amounts[heap[left]] < amounts[heap[smallest]]) {
+                smallest = left;
+            }
+            if (left + 1 < heapSize && amounts[heap[left + 1]] < amounts[heap[smallest]]) {
+                smallest = left + 1;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    // Перемешивание битов, чтобы последовательные id не шли в соседние ячейки цепочкой
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,136 @@
+package com.olineshop.util;
+
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+//Журнал приложения
+//Использование: private static final Log log = Log.get(MyClass.class);
+//Сообщения ниже текущего уровня отбрасываются сразу, до построения строки,
+//поэтому на горячих путях сообщения передаются через Supplier: log.debug(() -> "..." + value).
+//Запись в файл и консоль выполняет отдельный поток (см. LogAppender).
+//
+//Настройки (системные свойства):
+//olineshop.log.level - TRACE, DEBUG, INFO, WARN, ERROR (по умолчанию INFO)
+//olineshop.log.dir, olineshop.log.maxFileSizeMb, olineshop.log.maxFiles, olineshop.log.bufferSize,
+//olineshop.log.console - см. LogAppender
+
+public final class Log {
+
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR
+    }
+
+    private static volatile Level threshold = parseLevel(System.getProperty("olineshop.log.level"), Level.INFO);
+    private static final LogAppender APPENDER = LogAppender.fromSystemProperties();
+
+    private final String name;
+
+    private Log(String name) {
+        this.name = name;
+    }
+
+    //Получить журнал для класса
+    public static Log get(Class<?> type) {
+        return new Log(type.getSimpleName());
+    }
+
+    //Изменить уровень журнала во время работы
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    public static Level getLevel() {
+        return threshold;
+    }
+
+    //Дописать накопленные сообщения и остановить поток записи (при завершении приложения)
+    public static void shutdown() {
+        APPENDER.close();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold.ordinal();
+    }
+
+    public boolean isTraceEnabled() {
+        return isEnabled(Level.TRACE);
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public void trace(Supplier<String> message) {
+        if (isEnabled(Level.TRACE)) {
+            APPENDER.append(Level.TRACE, name, message.get(), null);
+        }
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            APPENDER.append(Level.DEBUG, name, message, null);
+        }
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            APPENDER.append(Level.DEBUG, name, message.get(), null);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            APPENDER.append(Level.INFO, name, message, null);
+        }
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            APPENDER.append(Level.INFO, name, message.get(), null);
+        }
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            APPENDER.append(Level.WARN, name, message, null);
+        }
+    }
+
+    public void warn(String message, Throwable error) {
+        if (isEnabled(Level.WARN)) {
+            APPENDER.append(Level.WARN, name, withSqlDetails(message, error), error);
+        }
+    }
+
+    public void error(String message) {
+        if (isEnabled(Level.ERROR)) {
+            APPENDER.append(Level.ERROR, name, message, null);
+        }
+    }
+
+    //Для SQLException к сообщению добавляются SQL State и код ошибки
+    public void error(String message, Throwable error) {
+        if (isEnabled(Level.ERROR)) {
+            APPENDER.append(Level.ERROR, name, withSqlDetails(message, error), error);
+        }
+    }
+
+    private static String withSqlDetails(String message, Throwable error) {
+        if (error instanceof SQLException) {
+            SQLException sqlError = (SQLException) error;
+            return message + " (SQL State: " + sqlError.getSQLState() + ", Error Code: " + sqlError.getErrorCode() + ")";
+        }
+        return message;
+    }
+
+    static Level parseLevel(String value, Level defaultLevel) {
+        if (value == null || value.isBlank()) {
+            return defaultLevel;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.olineshop.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Асинхронная запись журнала
+//Сообщения складываются в кольцевой буфер фиксированного размера, а отдельный поток
+//форматирует их и пишет в файл (с ротацией по размеру) и, при необходимости, в консоль.
+//Когда буфер заполнен, сообщения DEBUG/TRACE/INFO отбрасываются (с подсчетом),
+//а WARN и ERROR ждут освобождения места.
+
+class LogAppender {
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final int DRAIN_LIMIT = 256;
+
+    private final LogEvent[] ring;
+    private long head = 0;
+    private long tail = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Path directory;
+    private final String fileName;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final boolean console;
+
+    private BufferedWriter writer;
+    private long currentFileSize;
+    private volatile boolean closed = false;
+    private final Thread worker;
+
+    LogAppender(int bufferSize, Path directory, String fileName, long maxFileSize, int maxFiles, boolean console) {
+        this.ring = new LogEvent[Math.max(16, bufferSize)];
+        this.directory = directory;
+        this.fileName = fileName;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.console = console;
+
+        this.worker = new Thread(this::runWorker, "log-writer");
+        worker.setDaemon(true);
+        worker.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "log-shutdown"));
+    }
+
+    static LogAppender fromSystemProperties() {
+        return new LogAppender(
+                Integer.getInteger("olineshop.log.bufferSize", 8192),
+                Paths.get(System.getProperty("olineshop.log.dir", "logs")),
+                "olineshop.log",
+                Long.getLong("olineshop.log.maxFileSizeMb", 10L) * 1024 * 1024,
+                Integer.getInteger("olineshop.log.maxFiles", 5),
+                Boolean.parseBoolean(System.getProperty("olineshop.log.console", "true")));
+    }
+
+    // Вызывается потоками приложения: только кладет событие в буфер
+    void append(Log.Level level, String logger, String message, Throwable error) {
+        LogEvent event = new LogEvent(System.currentTimeMillis(), level, Thread.currentThread().getName(),
+                logger, message, error);
+        lock.lock();
+        try {
+            while (tail - head == ring.length) {
+                if (closed || level.ordinal() < Log.Level.WARN.ordinal()) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                notFull.awaitUninterruptibly();
+            }
+            ring[(int) (tail % ring.length)] = event;
+            tail++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWorker() {
+        List<LogEvent> batch = new ArrayList<>(DRAIN_LIMIT);
+        while (true) {
+            lock.lock();
+            try {
+                while (head == tail && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (head == tail && closed) {
+                    break;
+                }
+                while (head < tail && batch.size() < DRAIN_LIMIT) {
+                    int index = (int) (head % ring.length);
+                    batch.add(ring[index]);
+                    ring[index] = null;
+                    head++;
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            write(batch);
+            batch.clear();
+        }
+        closeFile();
+    }
+
+    private void write(List<LogEvent> batch) {
+        StringBuilder text = new StringBuilder(batch.size() * 120);
+        long droppedCount = dropped.getAndSet(0);
+        if (droppedCount > 0) {
+            text.append(TIME_FORMAT.format(Instant.now())).append(" WARN  [log-writer] LogAppender - ")
+                .append("Буфер журнала переполнен, пропущено сообщений: ").append(droppedCount)
+                .append(System.lineSeparator());
+        }
+        for (LogEvent event : batch) {
+            format(event, text);
+        }
+
+        String output = text.toString();
+        if (console) {
+            System.out.print(output);
+        }
+        writeToFile(output);
+    }
+
+    private static void format(LogEvent event, StringBuilder text) {
+        text.append(TIME_FORMAT.format(Instant.ofEpochMilli(event.timestamp))).append(' ')
+            .append(String.format("%-5s", event.level)).append(" [").append(event.thread).append("] ")
+            .append(event.logger).append(" - ").append(event.message).append(System.lineSeparator());
+        if (event.error != null) {
+            StringWriter trace = new StringWriter();
+            event.error.printStackTrace(new PrintWriter(trace));
+            text.append(trace);
+        }
+    }
+
+    private void writeToFile(String output) {
+        try {
+            if (writer == null) {
+                openFile();
+            }
+            byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+            if (currentFileSize > 0 && currentFileSize + bytes.length > maxFileSize) {
+                rotate();
+            }
+            writer.write(output);
+            writer.flush();
+            currentFileSize += bytes.length;
+        } catch (IOException e) {
+            // Файл недоступен: сообщения остаются только в консоли
+            if (!console) {
+                System.out.print(output);
+            }
+        }
+    }
+
+    private void openFile() throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(fileName);
+        currentFileSize = Files.exists(file) ? Files.size(file) : 0;
+        writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                StandardCharsets.UTF_8));
+    }
+
+    // olineshop.log -> olineshop.log.1 -> ... -> olineshop.log.N (самый старый удаляется)
+    private void rotate() throws IOException {
+        closeFile();
+        Files.deleteIfExists(directory.resolve(fileName + "." + maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = directory.resolve(fileName + "." + i);
+            if (Files.exists(source)) {
+                Files.move(source, directory.resolve(fileName + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(directory.resolve(fileName), directory.resolve(fileName + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        openFile();
+    }
+
+    private void closeFile() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // Файл уже недоступен
+            }
+            writer = null;
+        }
+    }
+
+    private static class LogEvent {
+        final long timestamp;
+        final Log.Level level;
+        final String thread;
+        final String logger;
+        final String message;
+        final Throwable error;
+
+        LogEvent(long timestamp, Log.Level level, String thread, String logger, String message, Throwable error) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.thread = thread;
+            this.logger = logger;
+            this.message = message;
+            this.error = error;
+        }
+    }
+}
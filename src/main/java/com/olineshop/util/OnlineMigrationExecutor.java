@@ -0,0 +1,536 @@
+package com.olineshop.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Изменение структуры больших таблиц без блокировки записи
+//Сначала пробуется ALTER TABLE ... ALGORITHM=INPLACE, LOCK=NONE.
+//Если сервер не может выполнить изменение на месте, таблица перестраивается в теневую копию:
+//данные копируются порциями по диапазонам первичного ключа, новые изменения переносятся триггерами,
+//а в конце таблицы атомарно меняются местами через RENAME TABLE.
+//Прогресс копирования хранится в таблице online_migration_progress, поэтому прерванная
+//перестройка продолжается с последнего скопированного ключа.
+//Так же порциями выполняется заполнение данных (backfill): запросы повторяются по диапазонам
+//первичного ключа исходной таблицы, и каждая порция фиксируется вместе с точкой возобновления.
+//Если изменение добавляет внешние ключи, строки без родительской записи ищутся заранее: при их наличии
+//изменение не выполняется ни одним способом, а в ошибке перечисляются найденные строки. Проверка ключей
+//не отключается, и при копировании строки не отбрасываются, поэтому оба способа дают одинаковый результат.
+
+public class OnlineMigrationExecutor {
+    private static final Log log = Log.get(OnlineMigrationExecutor.class);
+    // Коды ошибок MySQL: операция не поддерживает ALGORITHM/LOCK
+    private static final int ER_ALTER_OPERATION_NOT_SUPPORTED = 1845;
+    private static final int ER_ALTER_OPERATION_NOT_SUPPORTED_REASON = 1846;
+
+    private static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("olineshop.migration.chunkSize", 1000);
+    private static final long DEFAULT_THROTTLE_MS = Long.getLong("olineshop.migration.throttleMs", 50L);
+    // Желаемое время копирования одной порции; размер порции подстраивается под него
+    private static final long TARGET_CHUNK_MS = 500;
+    private static final int MAX_CHUNK_SIZE = 50_000;
+    // Сколько ключей строк без родительской записи показывать в ошибке
+    private static final int ORPHAN_SAMPLE = 20;
+    private static final Pattern FOREIGN_KEY = Pattern.compile(
+            "FOREIGN\\s+KEY\\s*\\(\\s*`?(\\w+)`?\\s*\\)\\s*REFERENCES\\s+`?(\\w+)`?\\s*\\(\\s*`?(\\w+)`?\\s*\\)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Connection conn;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private long throttleMillis = DEFAULT_THROTTLE_MS;
+
+    public OnlineMigrationExecutor(Connection conn) {
+        this.conn = conn;
+    }
+
+    public OnlineMigrationExecutor setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+        return this;
+    }
+
+    public OnlineMigrationExecutor setThrottleMillis(long throttleMillis) {
+        this.throttleMillis = Math.max(0, throttleMillis);
+        return this;
+    }
+
+    //Изменить таблицу
+    //name уникальное имя изменения (ключ точки возобновления)
+    //table имя таблицы
+    //alterClauses изменения для ALTER TABLE, например "ADD CONSTRAINT ... FOREIGN KEY ..."
+    //shadowDdl CREATE TABLE для перестройки, вместо имени таблицы указывается %s
+    public void alterTable(String name, String table, String alterClauses, String shadowDdl) throws SQLException {
+        createProgressTable();
+
+        checkForeignKeys(table, alterClauses);
+
+        String shadowTable = shadowName(table);
+        Long resumeFrom = loadResumePoint(name);
+        if (resumeFrom != null) {
+            if (tableExists(shadowTable)) {
+                log.info("Продолжаем перестройку таблицы " + table + " с ключа " + resumeFrom);
+                rebuild(name, table, shadowTable, shadowDdl, resumeFrom);
+                return;
+            }
+            // Теневой таблицы нет: прошлая перестройка уже завершила замену таблиц
+            deleteResumePoint(name);
+        }
+
+        if (tryInPlace(table, alterClauses)) {
+            return;
+        }
+
+        rebuild(name, table, shadowTable, shadowDdl, null);
+    }
+
+    //Заполнить данные порциями по диапазонам первичного ключа таблицы
+    //Каждая порция выполняется одной транзакцией вместе с записью точки возобновления, поэтому прерванное
+    //заполнение продолжается со следующей порции и ни одна порция не применяется дважды. Точка возобновления
+    //остается и после завершения: повторный вызов ничего не добавит к уже заполненным данным.
+    //name уникальное имя заполнения (ключ точки возобновления)
+    //table таблица, по первичному ключу которой делятся порции
+    //statements запросы порции; параметры (?) - пары границ ключа: нижняя (не включая), верхняя (включая);
+    //других знаков ? в тексте запросов быть не должно
+    //return количество строк таблицы, обработанных этим вызовом
+    public long backfill(String name, String table, String... statements) throws SQLException {
+        createProgressTable();
+        String primaryKey = findIntegerPrimaryKey(table);
+        if (primaryKey == null) {
+            throw new SQLException("Таблица " + table + " не имеет целочисленного первичного ключа, " +
+                                   "заполнение порциями невозможно");
+        }
+
+        Long resumeFrom = loadResumePoint(name);
+        long lastKey = resumeFrom != null ? resumeFrom : Long.MIN_VALUE;
+        if (resumeFrom != null) {
+            log.info("Продолжаем заполнение " + name + " с ключа " + resumeFrom);
+        }
+        String boundarySql = "SELECT MAX(`" + primaryKey + "`), COUNT(*) FROM (SELECT `" + primaryKey + "` FROM `" +
+                             table + "` WHERE `" + primaryKey + "` > ? ORDER BY `" + primaryKey + "` LIMIT ?) chunk";
+
+        long estimatedRows = estimateRows(table);
+        long done = loadCopiedRows(name);
+        long processed = 0;
+        int currentChunk = chunkSize;
+        boolean autoCommit = conn.getAutoCommit();
+        try (PreparedStatement boundary = conn.prepareStatement(boundarySql)) {
+            while (true) {
+                boundary.setLong(1, lastKey);
+                boundary.setInt(2, currentChunk);
+                long upperKey;
+                long rows;
+                try (ResultSet rs = boundary.executeQuery()) {
+                    if (!rs.next()) {
+                        break;
+                    }
+                    upperKey = rs.getLong(1);
+                    if (rs.wasNull()) {
+                        break;
+                    }
+                    rows = rs.getLong(2);
+                }
+
+                long start = System.currentTimeMillis();
+                conn.setAutoCommit(false);
+                try {
+                    for (String sql : statements) {
+                        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                            int parameters = (int) sql.chars().filter(c -> c == '?').count();
+                            for (int i = 1; i <= parameters; i++) {
+                                pstmt.setLong(i, i % 2 == 1 ? lastKey : upperKey);
+                            }
+                            pstmt.executeUpdate();
+                        }
+                    }
+                    saveResumePoint(name, table, upperKey, done + rows);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+                long elapsed = System.currentTimeMillis() - start;
+
+                lastKey = upperKey;
+                done += rows;
+                processed += rows;
+                if (estimatedRows > 0) {
+                    log.info("Заполнение " + name + ": " + done + " из ~" + estimatedRows + " строк " + table + " (" +
+                                       Math.min(100, done * 100 / estimatedRows) + "%)");
+                } else {
+                    log.info("Заполнение " + name + ": " + done + " строк " + table);
+                }
+
+                if (elapsed > TARGET_CHUNK_MS * 2 && currentChunk > 1) {
+                    currentChunk = Math.max(1, currentChunk / 2);
+                } else if (elapsed < TARGET_CHUNK_MS / 2) {
+                    currentChunk = Math.min(MAX_CHUNK_SIZE, currentChunk * 2);
+                }
+
+                throttle();
+            }
+        }
+        if (resumeFrom == null && processed == 0) {
+            // Пустая таблица: точка возобновления все равно нужна, чтобы повторный вызов не заполнил заново
+            saveResumePoint(name, table, lastKey, 0);
+        }
+        return processed;
+    }
+
+    // Строки без родительской записи для каждого добавляемого внешнего ключа; при наличии - ошибка с отчетом
+    private void checkForeignKeys(String table, String alterClauses) throws SQLException {
+        String primaryKey = null;
+        List<String> problems = new ArrayList<>();
+        Matcher matcher = FOREIGN_KEY.matcher(alterClauses);
+        while (matcher.find()) {
+            String column = matcher.group(1);
+            String parentTable = matcher.group(2);
+            String parentColumn = matcher.group(3);
+            if (primaryKey == null) {
+                primaryKey = findIntegerPrimaryKey(table);
+            }
+            String key = primaryKey != null ? primaryKey : column;
+
+            String from = " FROM `" + table + "` c " +
+                          "LEFT JOIN `" + parentTable + "` p ON p.`" + parentColumn + "` = c.`" + column + "` " +
+                          "WHERE c.`" + column + "` IS NOT NULL AND p.`" + parentColumn + "` IS NULL";
+            long count = 0;
+            List<String> sample = new ArrayList<>();
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*)" + from)) {
+                    count = rs.next() ? rs.getLong(1) : 0;
+                }
+                if (count > 0) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT c.`" + key + "`, c.`" + column + "`" + from +
+                                                          " ORDER BY c.`" + key + "` LIMIT " + ORPHAN_SAMPLE)) {
+                        while (rs.next()) {
+                            sample.add(key + "=" + rs.getString(1) + " (" + column + "=" + rs.getString(2) + ")");
+                        }
+                    }
+                }
+            }
+            if (count > 0) {
+                String problem = table + "." + column + " -> " + parentTable + "." + parentColumn + ": " + count +
+                                 " строк без родительской записи, например " + String.join(", ", sample);
+                log.error("Внешний ключ не может быть добавлен: " + problem);
+                problems.add(problem);
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new SQLException("В таблице " + table + " есть строки без родительской записи, изменение " +
+                                   "не выполнено. Удалите или исправьте их и запустите миграцию снова: " +
+                                   String.join("; ", problems));
+        }
+    }
+
+    // Изменение на месте без копирования таблицы и без блокировки записи
+    // Проверка внешних ключей не отключается: если сервер может добавить ключ только без нее,
+    // изменение выполняется перестройкой
+    private boolean tryInPlace(String table, String alterClauses) throws SQLException {
+        String sql = "ALTER TABLE `" + table + "` " + alterClauses + ", ALGORITHM=INPLACE, LOCK=NONE";
+
+        long start = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement()) {
+            log.info("Изменение таблицы " + table + " на месте: " + sql);
+            stmt.execute(sql);
+            log.info("Таблица " + table + " изменена на месте за " +
+                               (System.currentTimeMillis() - start) + " мс");
+            return true;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_ALTER_OPERATION_NOT_SUPPORTED ||
+                e.getErrorCode() == ER_ALTER_OPERATION_NOT_SUPPORTED_REASON) {
+                log.info("Изменение на месте невозможно (" + e.getMessage() +
+                                   "), выполняем перестройку порциями");
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    // Перестройка через теневую таблицу с копированием порциями
+    private void rebuild(String name, String table, String shadowTable, String shadowDdl, Long resumeFrom)
+            throws SQLException {
+        String primaryKey = findIntegerPrimaryKey(table);
+        if (primaryKey == null) {
+            throw new SQLException("Таблица " + table + " не имеет целочисленного первичного ключа, " +
+                                   "перестройка порциями невозможна");
+        }
+
+        if (resumeFrom == null) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS `" + shadowTable + "`");
+                stmt.execute(String.format(shadowDdl, "`" + shadowTable + "`"));
+            }
+            saveResumePoint(name, table, Long.MIN_VALUE, 0);
+        }
+
+        List<String> columns = commonColumns(table, shadowTable);
+        createTriggers(table, shadowTable, primaryKey, columns);
+
+        long copied = copyChunks(name, table, shadowTable, primaryKey, columns,
+                resumeFrom != null ? resumeFrom : Long.MIN_VALUE);
+
+        // Атомарная замена таблицы, затем удаление старой копии и триггеров
+        String oldTable = "_" + table + "_old";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS `" + oldTable + "`");
+            stmt.execute("RENAME TABLE `" + table + "` TO `" + oldTable + "`, `" +
+                         shadowTable + "` TO `" + table + "`");
+            dropTriggers(stmt, table);
+            stmt.execute("DROP TABLE IF EXISTS `" + oldTable + "`");
+        }
+        deleteResumePoint(name);
+        log.info("Таблица " + table + " перестроена, скопировано строк: " + copied);
+    }
+
+    private long copyChunks(String name, String table, String shadowTable, String primaryKey,
+                            List<String> columns, long fromKey) throws SQLException {
+        String columnList = "`" + String.join("`, `", columns) + "`";
+        String boundarySql = "SELECT MAX(`" + primaryKey + "`) FROM (SELECT `" + primaryKey + "` FROM `" + table +
+                             "` WHERE `" + primaryKey + "` > ? ORDER BY `" + primaryKey + "` LIMIT ?) chunk";
+        // Строку, уже перенесенную триггером, не перезаписываем; другие ошибки (в том числе внешних ключей)
+        // не подавляются, как это сделал бы INSERT IGNORE
+        String copySql = "INSERT INTO `" + shadowTable + "` (" + columnList + ") SELECT " + columnList +
+                         " FROM `" + table + "` WHERE `" + primaryKey + "` > ? AND `" + primaryKey + "` <= ?" +
+                         " LOCK IN SHARE MODE" +
+                         " ON DUPLICATE KEY UPDATE `" + primaryKey + "` = `" + shadowTable + "`.`" + primaryKey + "`";
+
+        long estimatedRows = estimateRows(table);
+        long copied = loadCopiedRows(name);
+        long lastKey = fromKey;
+        int currentChunk = chunkSize;
+
+        try (PreparedStatement boundary = conn.prepareStatement(boundarySql);
+             PreparedStatement copy = conn.prepareStatement(copySql)) {
+            while (true) {
+                boundary.setLong(1, lastKey);
+                boundary.setInt(2, currentChunk);
+                long upperKey;
+                try (ResultSet rs = boundary.executeQuery()) {
+                    if (!rs.next()) {
+                        break;
+                    }
+                    upperKey = rs.getLong(1);
+                    if (rs.wasNull()) {
+                        break;
+                    }
+                }
+
+                long start = System.currentTimeMillis();
+                copy.setLong(1, lastKey);
+                copy.setLong(2, upperKey);
+                copied += copy.executeUpdate();
+                long elapsed = System.currentTimeMillis() - start;
+
+                lastKey = upperKey;
+                saveResumePoint(name, table, lastKey, copied);
+
+                if (estimatedRows > 0) {
+                    log.info("Копирование " + table + ": " + copied + " из ~" + estimatedRows + " строк (" +
+                                       Math.min(100, copied * 100 / estimatedRows) + "%)");
+                } else {
+                    log.info("Копирование " + table + ": " + copied + " строк");
+                }
+
+                // Подстраиваем размер порции, чтобы одна порция не держала блокировки слишком долго
+                if (elapsed > TARGET_CHUNK_MS * 2 && currentChunk > 1) {
+                    currentChunk = Math.max(1, currentChunk / 2);
+                } else if (elapsed < TARGET_CHUNK_MS / 2) {
+                    currentChunk = Math.min(MAX_CHUNK_SIZE, currentChunk * 2);
+                }
+
+                throttle();
+            }
+        }
+        return copied;
+    }
+
+    private void throttle() throws SQLException {
+        if (throttleMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(throttleMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Перестройка таблицы прервана", e);
+        }
+    }
+
+    // Триггеры переносят в теневую таблицу изменения, сделанные во время копирования
+    private void createTriggers(String table, String shadowTable, String primaryKey, List<String> columns)
+            throws SQLException {
+        String columnList = "`" + String.join("`, `", columns) + "`";
+        List<String> newValues = new ArrayList<>();
+        for (String column : columns) {
+            newValues.add("NEW.`" + column + "`");
+        }
+        String valueList = String.join(", ", newValues);
+
+        // При возобновлении триггеры уже созданы; пересоздавать их нельзя, чтобы не потерять изменения
+        if (countTriggers(table) == 3) {
+            return;
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            dropTriggers(stmt, table);
+            stmt.execute("CREATE TRIGGER `" + triggerName(table, "ins") + "` AFTER INSERT ON `" + table +
+                         "` FOR EACH ROW REPLACE INTO `" + shadowTable + "` (" + columnList + ") VALUES (" +
+                         valueList + ")");
+            stmt.execute("CREATE TRIGGER `" + triggerName(table, "upd") + "` AFTER UPDATE ON `" + table +
+                         "` FOR EACH ROW BEGIN " +
+                         "DELETE IGNORE FROM `" + shadowTable + "` WHERE `" + primaryKey + "` = OLD.`" + primaryKey + "`; " +
+                         "REPLACE INTO `" + shadowTable + "` (" + columnList + ") VALUES (" + valueList + "); " +
+                         "END");
+            stmt.execute("CREATE TRIGGER `" + triggerName(table, "del") + "` AFTER DELETE ON `" + table +
+                         "` FOR EACH ROW DELETE IGNORE FROM `" + shadowTable + "` WHERE `" + primaryKey +
+                         "` = OLD.`" + primaryKey + "`");
+        }
+    }
+
+    private void dropTriggers(Statement stmt, String table) throws SQLException {
+        stmt.execute("DROP TRIGGER IF EXISTS `" + triggerName(table, "ins") + "`");
+        stmt.execute("DROP TRIGGER IF EXISTS `" + triggerName(table, "upd") + "`");
+        stmt.execute("DROP TRIGGER IF EXISTS `" + triggerName(table, "del") + "`");
+    }
+
+    private int countTriggers(String table) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.triggers WHERE trigger_schema = DATABASE() " +
+                     "AND event_object_table = ? AND trigger_name LIKE ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, "\\_" + table + "\\_omx\\_%");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private static String triggerName(String table, String action) {
+        return "_" + table + "_omx_" + action;
+    }
+
+    private static String shadowName(String table) {
+        return "_" + table + "_new";
+    }
+
+    private String findIntegerPrimaryKey(String table) throws SQLException {
+        String sql = "SELECT k.column_name, c.data_type FROM information_schema.key_column_usage k " +
+                     "JOIN information_schema.columns c ON c.table_schema = k.table_schema " +
+                     "AND c.table_name = k.table_name AND c.column_name = k.column_name " +
+                     "WHERE k.table_schema = DATABASE() AND k.table_name = ? AND k.constraint_name = 'PRIMARY'";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                String column = rs.getString(1);
+                String type = rs.getString(2).toLowerCase();
+                // Составной ключ или нецелочисленный ключ не подходят для диапазонов
+                if (rs.next() || !type.endsWith("int")) {
+                    return null;
+                }
+                return column;
+            }
+        }
+    }
+
+    // Столбцы, которые есть и в исходной, и в теневой таблице
+    private List<String> commonColumns(String table, String shadowTable) throws SQLException {
+        String sql = "SELECT c.column_name FROM information_schema.columns c " +
+                     "JOIN information_schema.columns s ON s.table_schema = c.table_schema " +
+                     "AND s.table_name = ? AND s.column_name = c.column_name " +
+                     "WHERE c.table_schema = DATABASE() AND c.table_name = ? ORDER BY c.ordinal_position";
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, shadowTable);
+            pstmt.setString(2, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            throw new SQLException("У таблиц " + table + " и " + shadowTable + " нет общих столбцов");
+        }
+        return columns;
+    }
+
+    private boolean tableExists(String table) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    // Оценка количества строк по статистике (без COUNT(*) по всей таблице)
+    private long estimateRows(String table) throws SQLException {
+        String sql = "SELECT table_rows FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private void createProgressTable() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS `online_migration_progress` (" +
+                         "`name` VARCHAR(100) PRIMARY KEY," +
+                         "`table_name` VARCHAR(64) NOT NULL," +
+                         "`last_key` BIGINT NOT NULL," +
+                         "`rows_copied` BIGINT NOT NULL DEFAULT 0," +
+                         "`updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)");
+        }
+    }
+
+    private Long loadResumePoint(String name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT last_key FROM online_migration_progress WHERE name = ?")) {
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    private long loadCopiedRows(String name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT rows_copied FROM online_migration_progress WHERE name = ?")) {
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private void saveResumePoint(String name, String table, long lastKey, long rowsCopied) throws SQLException {
+        String sql = "INSERT INTO online_migration_progress (name, table_name, last_key, rows_copied) VALUES (?, ?, ?, ?) " +
+                     "ON DUPLICATE KEY UPDATE last_key = VALUES(last_key), rows_copied = VALUES(rows_copied)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, name);
+            pstmt.setString(2, table);
+            pstmt.setLong(3, lastKey);
+            pstmt.setLong(4, rowsCopied);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void deleteResumePoint(String name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM online_migration_progress WHERE name = ?")) {
+            pstmt.setString(1, name);
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.olineshop.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+//Версионные миграции схемы базы данных
+//Примененные миграции записываются в таблицу schema_version, поэтому каждая выполняется один раз
+//SQL-миграции лежат в ресурсах db/migration и называются V<версия>__<описание>.sql
+
+public class SchemaMigrator {
+    private static final Log log = Log.get(SchemaMigrator.class);
+    private static final String MIGRATION_DIR = "db/migration/";
+    private static final String LOCK_NAME = "online_store_db.schema_migration";
+    private static final int LOCK_TIMEOUT_S = 60;
+
+    // Миграции в порядке применения. Новые миграции добавляются только в конец списка
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.script("V1__baseline_schema.sql"),
+            Migration.script("V2__default_admin.sql"),
+            Migration.script("V3__legacy_column_names.sql"),
+            Migration.code(4, "order items foreign keys", SchemaMigrator::ensureOrderItemsForeignKeys),
+            Migration.script("V5__catalog_version.sql"),
+            Migration.script("V6__pagination_indexes.sql"),
+            Migration.script("V7__product_name_fulltext.sql"),
+            Migration.script("V8__order_token.sql"),
+            Migration.script("V9__order_items_stock_applied.sql"),
+            Migration.code(10, "sales daily", SchemaMigrator::createSalesDaily)
+    );
+
+    private SchemaMigrator() {
+    }
+
+    //Применить все миграции, которых еще нет в таблице schema_version
+    //conn соединение с базой данных магазина
+    //return количество примененных миграций
+    public static int migrate(Connection conn) throws SQLException {
+        long start = System.currentTimeMillis();
+
+        // Блокировка нужна, если одновременно запускается несколько копий приложения
+        acquireLock(conn);
+        try {
+            createVersionTable(conn);
+            Map<Integer, Long> applied = loadAppliedVersions(conn);
+
+            int count = 0;
+            for (Migration migration : MIGRATIONS) {
+                if (applied.containsKey(migration.version)) {
+                    Long storedChecksum = applied.get(migration.version);
+                    Long actualChecksum = migration.checksum();
+                    if (storedChecksum != null && actualChecksum != null && !storedChecksum.equals(actualChecksum)) {
+                        log.warn("Внимание: миграция V" + migration.version + " (" + migration.description +
+                                           ") изменена после применения, контрольные суммы не совпадают");
+                    }
+                    continue;
+                }
+
+                apply(conn, migration);
+                count++;
+            }
+
+            log.info("Схема базы данных актуальна (версия " + latestVersion() + "), применено миграций: " +
+                               count + ", время: " + (System.currentTimeMillis() - start) + " мс");
+            return count;
+        } finally {
+            releaseLock(conn);
+        }
+    }
+
+    //Последняя известная приложению версия схемы
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        log.info("Применение миграции V" + migration.version + ": " + migration.description);
+        long start = System.currentTimeMillis();
+
+        try {
+            migration.step.apply(conn);
+        } catch (SQLException e) {
+            log.error("Ошибка при применении миграции V" + migration.version + ": " + e.getMessage(), e);
+            throw e;
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        String sql = "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, migration.version);
+            pstmt.setString(2, migration.description);
+            Long checksum = migration.checksum();
+            if (checksum != null) {
+                pstmt.setLong(3, checksum);
+            } else {
+                pstmt.setNull(3, java.sql.Types.BIGINT);
+            }
+            pstmt.setLong(4, elapsed);
+            pstmt.executeUpdate();
+        }
+        log.info("Миграция V" + migration.version + " применена за " + elapsed + " мс");
+    }
+
+    private static void createVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS `schema_version` (" +
+                         "`version` INT PRIMARY KEY," +
+                         "`description` VARCHAR(200) NOT NULL," +
+                         "`checksum` BIGINT NULL," +
+                         "`installed_on` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+                         "`execution_ms` BIGINT NOT NULL DEFAULT 0)");
+        }
+    }
+
+    private static Map<Integer, Long> loadAppliedVersions(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                long checksum = rs.getLong("checksum");
+                applied.put(rs.getInt("version"), rs.wasNull() ? null : checksum);
+            }
+        }
+        return applied;
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_S);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Не удалось получить блокировку миграций за " + LOCK_TIMEOUT_S + " с");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            log.error("Ошибка при снятии блокировки миграций: " + e.getMessage());
+        }
+    }
+
+    // V4: внешние ключи order_items с каскадным удалением
+    private static void ensureOrderItemsForeignKeys(Connection conn) throws SQLException {
+        boolean hasOrderFk = false;
+        boolean hasProductFk = false;
+
+        try (ResultSet fks = conn.getMetaData().getImportedKeys(null, null, "order_items")) {
+            while (fks.next()) {
+                String pkTableName = fks.getString("PKTABLE_NAME");
+                String fkColumnName = fks.getString("FKCOLUMN_NAME");
+
+                if ("orders".equals(pkTableName) && "order_id".equals(fkColumnName)) {
+                    hasOrderFk = true;
+                }
+                if ("products".equals(pkTableName) && "product_id".equals(fkColumnName)) {
+                    hasProductFk = true;
+                }
+            }
+        }
+
+        if (hasOrderFk && hasProductFk) {
+            log.info("Внешние ключи таблицы order_items уже существуют");
+            return;
+        }
+
+        // Добавляем только недостающие ключи; таблица не копируется, если сервер может изменить ее на месте
+        StringBuilder clauses = new StringBuilder();
+        if (!hasOrderFk) {
+            clauses.append("ADD CONSTRAINT `fk_order_items_order` FOREIGN KEY (`order_id`) " +
+                           "REFERENCES `orders`(`id`) ON DELETE CASCADE");
+        }
+        if (!hasProductFk) {
+            if (clauses.length() > 0) {
+                clauses.append(", ");
+            }
+            clauses.append("ADD CONSTRAINT `fk_order_items_product` FOREIGN KEY (`product_id`) " +
+                           "REFERENCES `products`(`id`) ON DELETE CASCADE");
+        }
+
+        String shadowDdl = "CREATE TABLE %s (" +
+                           "`id` INT AUTO_INCREMENT PRIMARY KEY," +
+                           "`order_id` INT NOT NULL," +
+                           "`product_id` INT NOT NULL," +
+                           "`quantity` INT NOT NULL," +
+                           "`price_per_item` DECIMAL(10, 2) NOT NULL," +
+                           "FOREIGN KEY (`order_id`) REFERENCES `orders`(`id`) ON DELETE CASCADE," +
+                           "FOREIGN KEY (`product_id`) REFERENCES `products`(`id`) ON DELETE CASCADE)";
+
+        new OnlineMigrationExecutor(conn).alterTable("V4_order_items_fk", "order_items", clauses.toString(), shadowDdl);
+        log.info("Внешние ключи таблицы order_items добавлены");
+    }
+
+    // V10: сводка продаж по дням. Таблица создается скриптом, строки по уже записанным заказам заполняются
+    // порциями по id заказа: каждая порция прибавляет свои суммы к строкам slot = 0 и фиксируется вместе
+    // с точкой возобновления, поэтому большая история заказов не блокируется одним запросом целиком.
+    private static void createSalesDaily(Connection conn) throws SQLException {
+        DatabaseManager.executeSqlScript(conn, MIGRATION_DIR + "V10__sales_daily.sql");
+
+        String dayTotals =
+                "INSERT INTO `sales_daily` (`sale_date`, `product_id`, `slot`, `revenue`, `order_count`, `units`) " +
+                "SELECT DATE(o.`order_date`), 0, 0, SUM(o.`total_cost`), COUNT(*), COALESCE(SUM(i.`units`), 0) " +
+                "FROM `orders` o " +
+                "LEFT JOIN (SELECT `order_id`, SUM(`quantity`) AS `units` FROM `order_items` " +
+                "WHERE `order_id` > ? AND `order_id` <= ? GROUP BY `order_id`) i ON i.`order_id` = o.`id` " +
+                "WHERE o.`id` > ? AND o.`id` <= ? AND o.`status` <> 'Отменен' " +
+                "GROUP BY DATE(o.`order_date`) " +
+                "ON DUPLICATE KEY UPDATE `revenue` = `revenue` + VALUES(`revenue`), " +
+                "`order_count` = `order_count` + VALUES(`order_count`), `units` = `units` + VALUES(`units`)";
+        String productTotals =
+                "INSERT INTO `sales_daily` (`sale_date`, `product_id`, `slot`, `revenue`, `order_count`, `units`) " +
+                "SELECT DATE(o.`order_date`), oi.`product_id`, 0, SUM(oi.`quantity` * oi.`price_per_item`), " +
+                "COUNT(DISTINCT o.`id`), SUM(oi.`quantity`) " +
+                "FROM `orders` o JOIN `order_items` oi ON oi.`order_id` = o.`id` " +
+                "WHERE o.`id` > ? AND o.`id` <= ? AND o.`status` <> 'Отменен' " +
+                "GROUP BY DATE(o.`order_date`), oi.`product_id` " +
+                "ON DUPLICATE KEY UPDATE `revenue` = `revenue` + VALUES(`revenue`), " +
+                "`order_count` = `order_count` + VALUES(`order_count`), `units` = `units` + VALUES(`units`)";
+
+        long orders = new OnlineMigrationExecutor(conn).backfill("V10_sales_daily", "orders", dayTotals, productTotals);
+        log.info("Сводка продаж заполнена, обработано заказов: " + orders);
+    }
+
+    private static String readResource(String resourcePath) {
+        try (InputStream inputStream = SchemaMigrator.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Не удалось найти миграцию " + resourcePath + " в ресурсах");
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            inputStream.transferTo(buffer);
+            return buffer.toString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Ошибка чтения миграции " + resourcePath + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Шаг миграции, выполняемый на соединении
+    @FunctionalInterface
+    interface MigrationStep {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    // Миграция: версия, описание и способ применения
+    private static class Migration {
+        final int version;
+        final String description;
+        final String resourcePath;
+        final MigrationStep step;
+
+        private Migration(int version, String description, String resourcePath, MigrationStep step) {
+            this.version = version;
+            this.description = description;
+            this.resourcePath = resourcePath;
+            this.step = step;
+        }
+
+        // SQL-миграция из ресурсов, версия и описание берутся из имени файла
+        static Migration script(String fileName) {
+            int separator = fileName.indexOf("__");
+            if (!fileName.startsWith("V") || separator < 0 || !fileName.endsWith(".sql")) {
+                throw new IllegalArgumentException("Некорректное имя миграции: " + fileName);
+            }
+            int version = Integer.parseInt(fileName.substring(1, separator));
+            String description = fileName.substring(separator + 2, fileName.length() - 4).replace('_', ' ');
+            String resourcePath = MIGRATION_DIR + fileName;
+            return new Migration(version, description, resourcePath,
+                    conn -> DatabaseManager.executeSqlScript(conn, resourcePath));
+        }
+
+        // Миграция, выполняемая кодом (когда нужна логика, которую неудобно писать на SQL)
+        static Migration code(int version, String description, MigrationStep step) {
+            return new Migration(version, description, null, step);
+        }
+
+        // Контрольная сумма текста SQL-миграции (для миграций в коде не считается)
+        Long checksum() {
+            if (resourcePath == null) {
+                return null;
+            }
+            String text = readResource(resourcePath).replace("\r\n", "\n");
+            CRC32 crc = new CRC32();
+            crc.update(text.getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
+    }
+}
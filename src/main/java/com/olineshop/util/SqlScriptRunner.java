@@ -0,0 +1,377 @@
+package com.olineshop.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Выполнение SQL-скриптов
+//Скрипт читается построчно и разбирается на команды с учетом строк в кавычках, комментариев и DELIMITER.
+//Подряд идущие команды INSERT/UPDATE/DELETE/REPLACE отправляются пакетами через addBatch/executeBatch,
+//весь скрипт выполняется в одной транзакции (DDL-команды MySQL фиксирует неявно).
+
+public class SqlScriptRunner {
+    private static final Log log = Log.get(SqlScriptRunner.class);
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final Pattern DELIMITER_COMMAND = Pattern.compile("^\\s*DELIMITER\\s+(\\S+)\\s*$",
+            Pattern.CASE_INSENSITIVE);
+    // Сколько самых медленных команд выводить в итоге
+    private static final int SLOWEST_TO_REPORT = 5;
+
+    private final Connection conn;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean transactional = true;
+
+    public SqlScriptRunner(Connection conn) {
+        this.conn = conn;
+    }
+
+    public SqlScriptRunner setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    public SqlScriptRunner setTransactional(boolean transactional) {
+        this.transactional = transactional;
+        return this;
+    }
+
+    //Выполнить скрипт из ресурсов
+    //resourcePath путь к скрипту в ресурсах
+    public Result runResource(String resourcePath) throws SQLException {
+        InputStream inputStream = SqlScriptRunner.class.getClassLoader().getResourceAsStream(resourcePath);
+        if (inputStream == null) {
+            throw new SQLException("Не удалось найти файл " + resourcePath + " в ресурсах");
+        }
+
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            log.info("Выполнение SQL-скрипта: " + resourcePath);
+            Result result = run(reader);
+            log.info("SQL-скрипт " + resourcePath + " выполнен: " + result);
+            return result;
+        } catch (IOException e) {
+            throw new SQLException("Ошибка чтения файла " + resourcePath + ": " + e.getMessage(), e);
+        }
+    }
+
+    //Выполнить скрипт
+    //reader источник текста скрипта (читается потоково)
+    public Result run(Reader reader) throws SQLException, IOException {
+        Result result = new Result();
+        long start = System.currentTimeMillis();
+
+        boolean previousAutoCommit = conn.getAutoCommit();
+        if (transactional) {
+            conn.setAutoCommit(false);
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            StatementReader statements = new StatementReader(reader);
+            List<String> batch = new ArrayList<>();
+            String sql;
+
+            while ((sql = statements.next()) != null) {
+                if (isBatchable(sql)) {
+                    stmt.addBatch(sql);
+                    batch.add(sql);
+                    if (batch.size() >= batchSize) {
+                        executeBatch(stmt, batch, result);
+                    }
+                } else {
+                    executeBatch(stmt, batch, result);
+                    executeSingle(stmt, sql, result);
+                }
+            }
+            executeBatch(stmt, batch, result);
+
+            if (transactional) {
+                conn.commit();
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            if (transactional) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    log.error("Ошибка при откате транзакции скрипта: " + ex.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            if (transactional) {
+                conn.setAutoCommit(previousAutoCommit);
+            }
+        }
+
+        result.totalMillis = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    private void executeSingle(Statement stmt, String sql, Result result) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            log.error("Ошибка в команде скрипта: " + abbreviate(sql));
+            throw e;
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        result.statementCount++;
+        result.timings.add(new StatementTiming(abbreviate(sql), 1, elapsed));
+        log.debug(() -> "  [" + elapsed + " мс] " + abbreviate(sql));
+    }
+
+    private void executeBatch(Statement stmt, List<String> batch, Result result) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            log.error("Ошибка в пакете из " + batch.size() + " команд, первая: " + abbreviate(batch.get(0)));
+            throw e;
+        } finally {
+            stmt.clearBatch();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        String label = "пакет из " + batch.size() + " команд: " + abbreviate(batch.get(0));
+        result.statementCount += batch.size();
+        result.batchCount++;
+        result.timings.add(new StatementTiming(label, batch.size(), elapsed));
+        log.debug(() -> "  [" + elapsed + " мс] " + label);
+        batch.clear();
+    }
+
+    // В пакет попадают только команды изменения данных
+    private static boolean isBatchable(String sql) {
+        String keyword = firstKeyword(sql);
+        return keyword.equals("INSERT") || keyword.equals("UPDATE") ||
+               keyword.equals("DELETE") || keyword.equals("REPLACE");
+    }
+
+    private static String firstKeyword(String sql) {
+        int i = 0;
+        while (i < sql.length() && !Character.isLetter(sql.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        while (i < sql.length() && Character.isLetter(sql.charAt(i))) {
+            i++;
+        }
+        return sql.substring(start, i).toUpperCase(Locale.ROOT);
+    }
+
+    private static String abbreviate(String sql) {
+        String oneLine = sql.replaceAll("\\s+", " ").trim();
+        return oneLine.length() > 100 ? oneLine.substring(0, 100) + "..." : oneLine;
+    }
+
+    //Итог выполнения скрипта
+    public static class Result {
+        private int statementCount;
+        private int batchCount;
+        private long totalMillis;
+        private final List<StatementTiming> timings = new ArrayList<>();
+
+        public int getStatementCount() {
+            return statementCount;
+        }
+
+        public int getBatchCount() {
+            return batchCount;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        //Время выполнения отдельных команд и пакетов в порядке выполнения
+        public List<StatementTiming> getTimings() {
+            return Collections.unmodifiableList(timings);
+        }
+
+        @Override
+        public String toString() {
+            List<StatementTiming> slowest = new ArrayList<>(timings);
+            slowest.sort(Comparator.comparingLong(StatementTiming::getMillis).reversed());
+            StringBuilder sb = new StringBuilder();
+            sb.append(statementCount).append(" команд, пакетов: ").append(batchCount)
+              .append(", время: ").append(totalMillis).append(" мс");
+            if (!slowest.isEmpty()) {
+                sb.append(", самые медленные:");
+                for (StatementTiming timing : slowest.subList(0, Math.min(SLOWEST_TO_REPORT, slowest.size()))) {
+                    sb.append("\n    ").append(timing);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    //Время выполнения команды или пакета команд
+    public static class StatementTiming {
+        private final String sql;
+        private final int statementCount;
+        private final long millis;
+
+        StatementTiming(String sql, int statementCount, long millis) {
+            this.sql = sql;
+            this.statementCount = statementCount;
+            this.millis = millis;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int getStatementCount() {
+            return statementCount;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return millis + " мс - " + sql;
+        }
+    }
+
+    // Разбор скрипта на команды без чтения всего текста в память
+    static class StatementReader {
+        private final BufferedReader reader;
+        private String delimiter = ";";
+        private final StringBuilder current = new StringBuilder();
+
+        // Состояние разбора, сохраняемое между строками
+        private char quote = 0;
+        private boolean inBlockComment = false;
+        // Остаток строки после разделителя, который еще не разобран
+        private String pending;
+
+        StatementReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        }
+
+        //Следующая команда без завершающего разделителя или null в конце скрипта
+        String next() throws IOException {
+            while (true) {
+                String text;
+                if (pending != null) {
+                    text = pending;
+                    pending = null;
+                } else {
+                    text = reader.readLine();
+                    if (text == null) {
+                        break;
+                    }
+                    // DELIMITER - команда клиента mysql, на сервер она не отправляется
+                    if (quote == 0 && !inBlockComment && current.toString().isBlank()) {
+                        Matcher matcher = DELIMITER_COMMAND.matcher(text);
+                        if (matcher.matches()) {
+                            delimiter = matcher.group(1);
+                            current.setLength(0);
+                            continue;
+                        }
+                    }
+                }
+
+                String statement = scan(text);
+                if (statement != null) {
+                    return statement;
+                }
+            }
+
+            String rest = current.toString().trim();
+            current.setLength(0);
+            return rest.isEmpty() ? null : rest;
+        }
+
+        private String scan(String text) {
+            int i = 0;
+
+            while (i < text.length()) {
+                char c = text.charAt(i);
+
+                if (inBlockComment) {
+                    if (c == '*' && i + 1 < text.length() && text.charAt(i + 1) == '/') {
+                        inBlockComment = false;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                    continue;
+                }
+
+                if (quote != 0) {
+                    current.append(c);
+                    if (c == '\\' && quote != '`' && i + 1 < text.length()) {
+                        current.append(text.charAt(i + 1));
+                        i += 2;
+                        continue;
+                    }
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                    i++;
+                    continue;
+                }
+
+                if (text.startsWith(delimiter, i)) {
+                    String statement = current.toString().trim();
+                    current.setLength(0);
+                    i += delimiter.length();
+                    if (!statement.isEmpty()) {
+                        String rest = text.substring(i);
+                        if (!rest.isBlank()) {
+                            pending = rest;
+                        }
+                        return statement;
+                    }
+                    continue;
+                }
+
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                    current.append(c);
+                    i++;
+                    continue;
+                }
+
+                // Комментарии до конца строки: "-- " и "#"
+                if (c == '#' || (c == '-' && text.startsWith("--", i)
+                        && (i + 2 == text.length() || Character.isWhitespace(text.charAt(i + 2))))) {
+                    break;
+                }
+
+                // Обычный блочный комментарий пропускаем, /*! ... */ и подсказки /*+ ... */ оставляем
+                if (c == '/' && i + 1 < text.length() && text.charAt(i + 1) == '*'
+                        && (i + 2 >= text.length() || (text.charAt(i + 2) != '!' && text.charAt(i + 2) != '+'))) {
+                    inBlockComment = true;
+                    i += 2;
+                    continue;
+                }
+
+                current.append(c);
+                i++;
+            }
+
+            current.append('\n');
+            return null;
+        }
+    }
+}
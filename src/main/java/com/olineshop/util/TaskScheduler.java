@@ -0,0 +1,340 @@
+package com.olineshop.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Supplier;
+
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+
+//Общий планировщик фоновых задач для контроллеров
+//Вместо new Thread(task) на каждое действие пользователя задачи ставятся в одну из двух очередей:
+//INTERACTIVE - то, чего ждет пользователь (загрузка таблиц, сохранение, удаление),
+//BACKGROUND - служебная работа, которая не должна задерживать интерактивные задачи.
+//У каждой очереди ограничено число потоков и длина очереди, поэтому частые нажатия кнопок
+//не создают лишних потоков и не занимают все соединения пула.
+//
+//Настройки (системные свойства):
+//olineshop.tasks.virtual - true, чтобы выполнять задачи в виртуальных потоках (если их поддерживает JVM)
+//olineshop.tasks.interactiveThreads, olineshop.tasks.backgroundThreads - число одновременно выполняемых задач
+//olineshop.tasks.queueCapacity - максимальная длина очереди каждой линии
+
+public final class TaskScheduler {
+    private static final Log log = Log.get(TaskScheduler.class);
+
+    public enum Lane {
+        INTERACTIVE("ui-task"),
+        BACKGROUND("bg-task");
+
+        private final String threadPrefix;
+
+        Lane(String threadPrefix) {
+            this.threadPrefix = threadPrefix;
+        }
+    }
+
+    private static final boolean VIRTUAL = Boolean.getBoolean("olineshop.tasks.virtual");
+    private static final int QUEUE_CAPACITY = Integer.getInteger("olineshop.tasks.queueCapacity", 100);
+
+    private static final LaneExecutor INTERACTIVE = new LaneExecutor(Lane.INTERACTIVE,
+            Integer.getInteger("olineshop.tasks.interactiveThreads", 4));
+    private static final LaneExecutor BACKGROUND = new LaneExecutor(Lane.BACKGROUND,
+            Integer.getInteger("olineshop.tasks.backgroundThreads", 2));
+
+    private TaskScheduler() {
+    }
+
+    //Поставить задачу в очередь
+    //lane линия выполнения
+    //task задача (в том числе javafx.concurrent.Task)
+    public static void execute(Lane lane, Runnable task) {
+        executor(lane).execute(task);
+    }
+
+    //Причина неудачи задачи для обработчика onFailed
+    //Отклоненная очередью javafx.concurrent.Task завершается отменой и исключения не имеет,
+    //поэтому для нее возвращается RejectedExecutionException
+    public static Throwable failureOf(Worker<?> task) {
+        Throwable e = task.getException();
+        if (e == null) {
+            e = new RejectedExecutionException("Задача не выполнена: очередь задач переполнена");
+        }
+        return e;
+    }
+
+    //Выполнить вычисление в фоне и получить результат через CompletableFuture
+    //lane линия выполнения
+    //supplier вычисление
+    public static <T> CompletableFuture<T> supply(Lane lane, Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor(lane).execute(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "supply:" + supplier;
+            }
+        }, future);
+        return future;
+    }
+
+    //Текущее состояние линии: очередь, активные задачи, время ожидания и выполнения
+    public static Stats getStats(Lane lane) {
+        return executor(lane).stats();
+    }
+
+    //Остановить планировщик (при завершении приложения)
+    public static void shutdown() {
+        log.info("Планировщик задач: " + getStats(Lane.INTERACTIVE) + "; " + getStats(Lane.BACKGROUND));
+        INTERACTIVE.pool.shutdownNow();
+        BACKGROUND.pool.shutdownNow();
+    }
+
+    private static LaneExecutor executor(Lane lane) {
+        return lane == Lane.INTERACTIVE ? INTERACTIVE : BACKGROUND;
+    }
+
+    // Фабрика виртуальных потоков, если JVM их поддерживает (Java 21+), иначе null
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Пул одной линии с ограниченным числом потоков и очередью фиксированной длины
+    private static class LaneExecutor {
+        private final Lane lane;
+        private final ThreadPoolExecutor pool;
+        private final boolean virtual;
+
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+        private final LongAccumulator maxRunNanos = new LongAccumulator(Math::max, 0);
+
+        LaneExecutor(Lane lane, int threads) {
+            this.lane = lane;
+            int size = Math.max(1, threads);
+
+            ThreadFactory factory = VIRTUAL ? virtualThreadFactory(lane.threadPrefix) : null;
+            if (VIRTUAL && factory == null) {
+                log.warn("Виртуальные потоки недоступны в этой версии Java, линия " + lane +
+                         " использует обычные потоки");
+            }
+            this.virtual = factory != null;
+            if (factory == null) {
+                factory = platformThreadFactory(lane.threadPrefix);
+            }
+
+            // Даже виртуальные потоки ограничены числом воркеров: задачи работают с пулом соединений
+            this.pool = new ThreadPoolExecutor(size, size, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(Math.max(1, QUEUE_CAPACITY)), factory, this::reject);
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        void execute(Runnable task) {
+            execute(task, task instanceof Future ? (Future<?>) task : null);
+        }
+
+        void execute(Runnable task, Future<?> handle) {
+            submitted.incrementAndGet();
+            pool.execute(new TimedTask(task, handle));
+        }
+
+        // Очередь заполнена или планировщик остановлен: задача отменяется, а не выполняется в потоке JavaFX
+        // Исключение в javafx.concurrent.Task снаружи не установить, поэтому отмена отклоненной задачи
+        // передается ее обработчику onFailed: он снимает индикатор загрузки и флаги контроллера
+        private void reject(Runnable runnable, ThreadPoolExecutor executor) {
+            rejected.incrementAndGet();
+            TimedTask timed = (TimedTask) runnable;
+            log.warn("Очередь задач " + lane + " переполнена (" + executor.getQueue().size() +
+                     "), задача отклонена: " + timed.task);
+            if (timed.handle instanceof CompletableFuture) {
+                ((CompletableFuture<?>) timed.handle).completeExceptionally(
+                        new RejectedExecutionException("Очередь задач " + lane + " переполнена"));
+            } else if (timed.handle instanceof Task) {
+                Task<?> task = (Task<?>) timed.handle;
+                if (task.getOnCancelled() == null) {
+                    task.setOnCancelled(task.getOnFailed());
+                }
+                task.cancel(false);
+            } else if (timed.handle != null) {
+                timed.handle.cancel(false);
+            }
+        }
+
+        Stats stats() {
+            long done = completed.get();
+            return new Stats(lane, virtual, pool.getQueue().size(), pool.getActiveCount(), pool.getMaximumPoolSize(),
+                    submitted.get(), done, failed.get(), rejected.get(),
+                    done == 0 ? 0 : totalWaitNanos.get() / done / 1_000_000, maxWaitNanos.get() / 1_000_000,
+                    done == 0 ? 0 : totalRunNanos.get() / done / 1_000_000, maxRunNanos.get() / 1_000_000);
+        }
+
+        // Обертка задачи, измеряющая время в очереди и время выполнения
+        private class TimedTask implements Runnable {
+            final Runnable task;
+            final Future<?> handle;
+            final long enqueuedAt = System.nanoTime();
+
+            TimedTask(Runnable task, Future<?> handle) {
+                this.task = task;
+                this.handle = handle;
+            }
+
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                long wait = start - enqueuedAt;
+                totalWaitNanos.addAndGet(wait);
+                maxWaitNanos.accumulate(wait);
+                try {
+                    task.run();
+                } catch (RuntimeException | Error e) {
+                    failed.incrementAndGet();
+                    log.error("Ошибка в фоновой задаче " + lane + ": " + e.getMessage(), e);
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    totalRunNanos.addAndGet(elapsed);
+                    maxRunNanos.accumulate(elapsed);
+                    completed.incrementAndGet();
+                    log.debug(() -> lane + ": ожидание " + wait / 1_000_000 + " мс, выполнение " +
+                                    elapsed / 1_000_000 + " мс, в очереди " + pool.getQueue().size());
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    //Снимок метрик линии (время в миллисекундах)
+    public static class Stats {
+        private final Lane lane;
+        private final boolean virtual;
+        private final int queueDepth;
+        private final int activeCount;
+        private final int maxThreads;
+        private final long submitted;
+        private final long completed;
+        private final long failed;
+        private final long rejected;
+        private final long avgWaitMs;
+        private final long maxWaitMs;
+        private final long avgRunMs;
+        private final long maxRunMs;
+
+        Stats(Lane lane, boolean virtual, int queueDepth, int activeCount, int maxThreads, long submitted,
+              long completed, long failed, long rejected, long avgWaitMs, long maxWaitMs, long avgRunMs, long maxRunMs) {
+            this.lane = lane;
+            this.virtual = virtual;
+            this.queueDepth = queueDepth;
+            this.activeCount = activeCount;
+            this.maxThreads = maxThreads;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.rejected = rejected;
+            this.avgWaitMs = avgWaitMs;
+            this.maxWaitMs = maxWaitMs;
+            this.avgRunMs = avgRunMs;
+            this.maxRunMs = maxRunMs;
+        }
+
+        public Lane getLane() {
+            return lane;
+        }
+
+        public boolean isVirtual() {
+            return virtual;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        public int getMaxThreads() {
+            return maxThreads;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getAvgWaitMs() {
+            return avgWaitMs;
+        }
+
+        public long getMaxWaitMs() {
+            return maxWaitMs;
+        }
+
+        public long getAvgRunMs() {
+            return avgRunMs;
+        }
+
+        public long getMaxRunMs() {
+            return maxRunMs;
+        }
+
+        @Override
+        public String toString() {
+            return lane + (virtual ? " (виртуальные потоки)" : "") +
+                   ": в очереди " + queueDepth + ", активно " + activeCount + "/" + maxThreads +
+                   ", выполнено " + completed + " из " + submitted + ", ошибок " + failed + ", отклонено " + rejected +
+                   ", ожидание ср/макс " + avgWaitMs + "/" + maxWaitMs + " мс" +
+                   ", выполнение ср/макс " + avgRunMs + "/" + maxRunMs + " мс";
+        }
+    }
+}
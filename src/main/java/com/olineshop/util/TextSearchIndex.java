@@ -0,0 +1,366 @@
+package com.olineshop.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+//Индекс для мгновенного поиска по коротким текстам (например, названиям товаров) в памяти
+//Каждая запись - числовой ключ и текст. Для каждого слова текста индексируются:
+//  начало слова из 1 и 2 символов ("^а", "^ар") - для коротких запросов по префиксу;
+//  все триграммы слова - для поиска подстроки от 3 символов.
+//Списки записей по каждой n-грамме хранятся в массивах int по возрастанию номера записи,
+//поэтому запрос - это пересечение нескольких отсортированных массивов и проверка найденных текстов.
+//Поиск читает неизменяемый снимок из volatile-поля без блокировок и никогда не ждет обновления.
+//Изменение обновляет индекс частично: новая версия записи получает следующий номер, и в новом снимке
+//заменяются только списки n-грамм старого и нового текста измененных записей; остальные списки общие
+//со старым снимком. Массивы ключей и текстов только дописываются, поэтому старый снимок их не видит
+//изменяющимися. Когда устаревших номеров становится больше половины, индекс строится заново.
+//Изменения выполняются по одному (методы синхронизированы), обычно в фоновом потоке.
+
+public class TextSearchIndex {
+    private static final char WORD_START = '^';
+    // Меньше устаревших номеров индекс не перестраивается
+    private static final int COMPACT_MIN = 1024;
+
+    // Состояние для изменений (только под блокировкой): записи по номерам, номер действующей записи по ключу
+    private int[] keys = new int[16];
+    private String[] texts = new String[16];
+    private int slots = 0;
+    private final Map<Integer, Integer> slotByKey = new HashMap<>();
+
+    private volatile Snapshot snapshot = new Snapshot(keys, texts, Collections.emptyMap(), 0);
+
+    //Добавить или заменить запись
+    //key ключ (например, id товара)
+    //text индексируемый текст
+    public synchronized void put(int key, String text) {
+        String normalized = normalize(text);
+        Integer existing = slotByKey.get(key);
+        if (existing == null || !texts[existing].equals(normalized)) {
+            apply(Collections.singletonMap(key, normalized), Collections.emptyList());
+        }
+    }
+
+    //Удалить запись
+    public synchronized void remove(int key) {
+        if (slotByKey.containsKey(key)) {
+            apply(Collections.emptyMap(), Collections.singletonList(key));
+        }
+    }
+
+    //Оставить в индексе только переданные записи (добавить новые, обновить измененные, удалить лишние)
+    //Новый снимок строится в вызывающем потоке; до его публикации поиск работает по прежнему
+    //entries ключи и тексты всех актуальных записей
+    //return количество добавленных, измененных и удаленных записей
+    public synchronized int sync(Map<Integer, String> entries) {
+        Map<Integer, String> changed = new HashMap<>();
+        for (Map.Entry<Integer, String> entry : entries.entrySet()) {
+            String text = normalize(entry.getValue());
+            Integer existing = slotByKey.get(entry.getKey());
+            if (existing == null || !texts[existing].equals(text)) {
+                changed.put(entry.getKey(), text);
+            }
+        }
+        List<Integer> removed = new ArrayList<>();
+        for (Integer key : slotByKey.keySet()) {
+            if (!entries.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            apply(changed, removed);
+        }
+        return changed.size() + removed.size();
+    }
+
+    //Найти записи, текст которых содержит все слова запроса
+    //Слова из 1-2 символов ищутся как начало слова, более длинные - как подстрока
+    //query запрос
+    //return множество ключей найденных записей или null для пустого запроса (подходит все)
+    public BitSet search(String query) {
+        Snapshot current = snapshot;
+        String[] words = normalize(query).split(" ");
+        int[] candidates = null;
+        boolean hasWords = false;
+        // Слова до 3 символов совпадают со своей n-граммой точно, длинные надо проверять по тексту
+        boolean verify = false;
+
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            hasWords = true;
+            verify |= word.length() > 3;
+            for (String gram : queryGrams(word)) {
+                int[] list = current.postings.get(gram);
+                if (list == null) {
+                    return new BitSet();
+                }
+                // Снимок неизменяем, поэтому первый список можно использовать без копирования
+                candidates = candidates == null ? list : intersect(candidates, list);
+                if (candidates.length == 0) {
+                    return new BitSet();
+                }
+            }
+        }
+        if (!hasWords) {
+            return null;
+        }
+
+        // Триграммы могут совпасть в разных местах слова, поэтому длинные слова проверяются по тексту
+        BitSet result = new BitSet();
+        for (int slot : candidates) {
+            if (!verify || matchesAll(current.texts[slot], words)) {
+                result.set(current.keys[slot]);
+            }
+        }
+        return result;
+    }
+
+    //Количество записей
+    public int size() {
+        return snapshot.size;
+    }
+
+    // Применить изменения и опубликовать новый снимок
+    // changed ключ -> нормализованный текст новой версии записи; removed удаляемые ключи
+    private void apply(Map<Integer, String> changed, List<Integer> removed) {
+        // По каждой затронутой n-грамме: номера, которые уходят, и номера, которые добавляются
+        Map<String, GramChange> changes = new HashMap<>();
+        for (Integer key : removed) {
+            retire(slotByKey.remove(key), changes);
+        }
+        for (Map.Entry<Integer, String> entry : changed.entrySet()) {
+            Integer existing = slotByKey.get(entry.getKey());
+            if (existing != null) {
+                retire(existing, changes);
+            }
+            int slot = append(entry.getKey(), entry.getValue());
+            for (String gram : grams(entry.getValue())) {
+                changes.computeIfAbsent(gram, g -> new GramChange()).added.add(slot);
+            }
+        }
+
+        int retired = slots - slotByKey.size();
+        if (retired >= COMPACT_MIN && retired * 2 >= slots) {
+            rebuild();
+            return;
+        }
+
+        Map<String, int[]> postings = new HashMap<>(snapshot.postings);
+        for (Map.Entry<String, GramChange> entry : changes.entrySet()) {
+            int[] updated = entry.getValue().applyTo(postings.get(entry.getKey()));
+            if (updated.length == 0) {
+                postings.remove(entry.getKey());
+            } else {
+                postings.put(entry.getKey(), updated);
+            }
+        }
+        snapshot = new Snapshot(keys, texts, postings, slotByKey.size());
+    }
+
+    // Номер устаревшей версии записи убирается из списков ее n-грамм; текст остается для старых снимков
+    private void retire(int slot, Map<String, GramChange> changes) {
+        for (String gram : grams(texts[slot])) {
+            changes.computeIfAbsent(gram, g -> new GramChange()).removed.add(slot);
+        }
+    }
+
+    // Записать версию записи под следующим номером; при нехватке места массивы заменяются копиями
+    private int append(int key, String normalized) {
+        if (slots == keys.length) {
+            keys = Arrays.copyOf(keys, slots * 2);
+            texts = Arrays.copyOf(texts, slots * 2);
+        }
+        int slot = slots++;
+        keys[slot] = key;
+        texts[slot] = normalized;
+        slotByKey.put(key, slot);
+        return slot;
+    }
+
+    // Построение индекса заново только из действующих записей (в порядке их номеров)
+    private void rebuild() {
+        int[] live = new int[slotByKey.size()];
+        int count = 0;
+        for (int slot : slotByKey.values()) {
+            live[count++] = slot;
+        }
+        Arrays.sort(live);
+        int[] oldKeys = keys;
+        String[] oldTexts = texts;
+
+        keys = new int[Math.max(16, live.length * 2)];
+        texts = new String[keys.length];
+        slots = 0;
+        slotByKey.clear();
+        Map<String, IntList> lists = new HashMap<>();
+        for (int oldSlot : live) {
+            int slot = append(oldKeys[oldSlot], oldTexts[oldSlot]);
+            for (String gram : grams(texts[slot])) {
+                lists.computeIfAbsent(gram, g -> new IntList()).add(slot);
+            }
+        }
+        Map<String, int[]> postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<String, IntList> entry : lists.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().toArray());
+        }
+        snapshot = new Snapshot(keys, texts, postings, slotByKey.size());
+    }
+
+    // Индексируемые n-граммы нормализованного текста, без повторов
+    private static Set<String> grams(String normalized) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            grams.add(WORD_START + word.substring(0, 1));
+            if (word.length() >= 2) {
+                grams.add(WORD_START + word.substring(0, 2));
+            }
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                grams.add(word.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+
+    private static String[] queryGrams(String word) {
+        if (word.length() <= 2) {
+            return new String[] {WORD_START + word};
+        }
+        String[] grams = new String[word.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = word.substring(i, i + 3);
+        }
+        return grams;
+    }
+
+    private static boolean matchesAll(String text, String[] words) {
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (word.length() <= 2) {
+                if (!text.startsWith(word) && !text.contains(" " + word)) {
+                    return false;
+                }
+            } else if (!text.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Пересечение отсортированных списков; короткий список ищется в длинном двоичным поиском
+    private static int[] intersect(int[] candidates, int[] list) {
+        int[] result = new int[Math.min(candidates.length, list.length)];
+        int count = 0;
+        int from = 0;
+        for (int value : candidates) {
+            int pos = Arrays.binarySearch(list, from, list.length, value);
+            if (pos >= 0) {
+                result[count++] = value;
+                from = pos + 1;
+            } else {
+                from = -pos - 1;
+                if (from >= list.length) {
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Нижний регистр, буквы и цифры, слова разделены одним пробелом
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        StringBuilder result = new StringBuilder(lower.length());
+        boolean space = true;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                result.append(c);
+                space = false;
+            } else if (!space) {
+                result.append(' ');
+                space = true;
+            }
+        }
+        int length = result.length();
+        if (length > 0 && result.charAt(length - 1) == ' ') {
+            result.setLength(length - 1);
+        }
+        return result.toString();
+    }
+
+    // Неизменяемый снимок индекса: номер записи - позиция в массивах keys и texts.
+    // Массивы общие с изменяющимся индексом, но снимок обращается только к номерам из своих списков,
+    // а они уже не меняются
+    private static final class Snapshot {
+        final int[] keys;
+        // Тексты в нормализованном виде
+        final String[] texts;
+        // Номера записей по n-граммам, по возрастанию
+        final Map<String, int[]> postings;
+        final int size;
+
+        Snapshot(int[] keys, String[] texts, Map<String, int[]> postings, int size) {
+            this.keys = keys;
+            this.texts = texts;
+            this.postings = postings;
+            this.size = size;
+        }
+    }
+
+    // Изменение списка одной n-граммы
+    private static final class GramChange {
+        final IntList removed = new IntList();
+        // Новые номера больше всех номеров в списках и добавляются по возрастанию
+        final IntList added = new IntList();
+
+        // Новый список вместо list (list не меняется, он может использоваться старым снимком)
+        int[] applyTo(int[] list) {
+            int[] current = list != null ? list : new int[0];
+            int[] gone = removed.toArray();
+            Arrays.sort(gone);
+            int[] result = new int[current.length + added.size];
+            int count = 0;
+            for (int slot : current) {
+                if (Arrays.binarySearch(gone, slot) < 0) {
+                    result[count++] = slot;
+                }
+            }
+            System.arraycopy(added.values, 0, result, count, added.size);
+            return Arrays.copyOf(result, count + added.size);
+        }
+    }
+
+    // Растущий массив int без упаковки в Integer
+    private static class IntList {
+        int[] values = new int[4];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
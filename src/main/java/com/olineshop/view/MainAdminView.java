@@ -1,9 +1,16 @@
 package com.olineshop.view;
 
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.effect.DropShadow;
@@ -17,18 +24,39 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import com.olineshop.controller.AdminController;
+import com.olineshop.model.AnalyticsReport;
+import com.olineshop.model.CustomerSpend;
 import com.olineshop.model.Order;
 import com.olineshop.model.Product;
+import com.olineshop.model.ImportResult;
+import com.olineshop.model.SalesSummary;
 import com.olineshop.model.User;
+import com.olineshop.util.Log;
 import javafx.scene.control.ProgressIndicator;
 
 //Класс представления главного окна административной части приложения
 public class MainAdminView {
+    private static final Log log = Log.get(MainAdminView.class);
     private AdminController controller;
     private TableView<Product> productTable;
     private TableView<User> userTable;
     private TableView<Order> orderTable;
+    private TableView<SalesSummary> topProductsTable;
+    private BarChart<String, Number> salesChart;
+    private ComboBox<Integer> salesPeriodComboBox;
+    private Label salesTotalsLabel;
+    private Label analyticsSummaryLabel;
+    private TableView<SalesSummary> analyticsPeriodTable;
+    private TableView<SalesSummary> analyticsProductTable;
+    private TableView<CustomerSpend> analyticsCustomerTable;
+    private Button buildReportButton;
+    private Button importProductsButton;
+    private Button receiveStockButton;
+    private Label productImportLabel;
     private ProgressIndicator loadingIndicator;
     
     // Цвета и стили
@@ -79,7 +107,15 @@ public class MainAdminView {
         VBox ordersBox = createOrdersTab();
         ordersTab.setContent(ordersBox);
         
-        tabPane.getTabs().addAll(productsTab, usersTab, ordersTab);
+        Tab salesTab = createTab("Продажи", "\uf080"); // иконка диаграммы
+        VBox salesBox = createSalesTab();
+        salesTab.setContent(salesBox);
+        
+        Tab analyticsTab = createTab("Аналитика", "\uf201"); // иконка графика
+        VBox analyticsBox = createAnalyticsTab();
+        analyticsTab.setContent(analyticsBox);
+        
+        tabPane.getTabs().addAll(productsTab, usersTab, ordersTab, salesTab, analyticsTab);
         
         // Добавляем обработчик события переключения вкладок
         tabPane.getSelectionModel().selectedItemProperty().addListener((observable, oldTab, newTab) -> {
@@ -89,6 +125,8 @@ public class MainAdminView {
                 controller.loadUsers();
             } else if (newTab == ordersTab) {
                 controller.loadOrders();
+            } else if (newTab == salesTab) {
+                controller.loadSales(salesPeriodComboBox.getValue());
             }
         });
         
@@ -205,6 +243,7 @@ public class MainAdminView {
         stockColumn.setMaxWidth(100);
         
         productTable.getColumns().addAll(idColumn, nameColumn, priceColumn, unitColumn, stockColumn);
+        loadMoreOnScroll(productTable, () -> controller.loadMoreProducts());
         
         // Панель с кнопками
         HBox buttonPanel = new HBox(10);
@@ -218,14 +257,21 @@ public class MainAdminView {
                     controller.deleteProduct(selectedProduct.getId());
                 } catch (Exception ex) {
                     showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при удалении товара: " + ex.getMessage());
-                    ex.printStackTrace();
+                    log.error("Ошибка при удалении товара: " + ex.getMessage(), ex);
                 }
             } else {
                 showAlert(Alert.AlertType.WARNING, "Предупреждение", "Выберите товар для удаления");
             }
         });
         
-        buttonPanel.getChildren().add(deleteButton);
+        // Импорт каталога и приход товара из CSV; ход загрузки показывается слева от кнопок
+        productImportLabel = new Label();
+        importProductsButton = createStyledButton("Импорт из CSV...", BUTTON_STYLE, BUTTON_HOVER_STYLE);
+        importProductsButton.setOnAction(e -> controller.importProducts());
+        receiveStockButton = createStyledButton("Приход товара...", BUTTON_STYLE, BUTTON_HOVER_STYLE);
+        receiveStockButton.setOnAction(e -> controller.receiveStock());
+        
+        buttonPanel.getChildren().addAll(productImportLabel, importProductsButton, receiveStockButton, deleteButton);
         
         vbox.getChildren().addAll(titleBox, productTable, buttonPanel);
         
@@ -293,6 +339,7 @@ public class MainAdminView {
         
         userTable.getColumns().addAll(idColumn, loginColumn, firstNameColumn, lastNameColumn, 
                 emailColumn, phoneColumn, discountColumn, roleColumn);
+        loadMoreOnScroll(userTable, () -> controller.loadMoreUsers());
         
         vbox.getChildren().addAll(titleBox, userTable);
         
@@ -313,7 +360,13 @@ public class MainAdminView {
         title.setFont(Font.font("Segoe UI", FontWeight.BOLD, 20));
         title.setFill(Color.web(PRIMARY_COLOR));
         
-        titleBox.getChildren().add(title);
+        HBox titleSpacer = new HBox();
+        HBox.setHgrow(titleSpacer, javafx.scene.layout.Priority.ALWAYS);
+        
+        Button exportButton = createStyledButton("Экспорт...", BUTTON_STYLE, BUTTON_HOVER_STYLE);
+        exportButton.setOnAction(event -> controller.exportOrders());
+        
+        titleBox.getChildren().addAll(title, titleSpacer, exportButton);
         
         // Создаем таблицу заказов с современным стилем
         orderTable = new TableView<>();
@@ -397,12 +450,238 @@ public class MainAdminView {
         });
         
         orderTable.getColumns().addAll(idColumn, userColumn, orderDateColumn, deliveryDateColumn, totalCostColumn, statusColumn, actionsColumn);
+        loadMoreOnScroll(orderTable, () -> controller.loadMoreOrders());
         
         vbox.getChildren().addAll(titleBox, orderTable);
         
         return vbox;
     }
     
+    // Создание вкладки сводки продаж (данные из таблицы sales_daily)
+    private VBox createSalesTab() {
+        VBox vbox = new VBox(15);
+        vbox.setPadding(new Insets(20));
+        vbox.setAlignment(Pos.TOP_CENTER);
+        
+        HBox titleBox = new HBox(15);
+        titleBox.setAlignment(Pos.CENTER_LEFT);
+        
+        Text title = new Text("Продажи");
+        title.setFont(Font.font("Segoe UI", FontWeight.BOLD, 20));
+        title.setFill(Color.web(PRIMARY_COLOR));
+        
+        // Период в днях, включая сегодняшний
+        salesPeriodComboBox = new ComboBox<>();
+        salesPeriodComboBox.getItems().addAll(7, 30, 90, 365);
+        salesPeriodComboBox.setValue(30);
+        salesPeriodComboBox.setConverter(new javafx.util.StringConverter<>() {
+            @Override
+            public String toString(Integer days) {
+                return days == null ? "" : "За " + days + " дн.";
+            }
+            
+            @Override
+            public Integer fromString(String text) {
+                return null;
+            }
+        });
+        salesPeriodComboBox.setOnAction(event -> controller.loadSales(salesPeriodComboBox.getValue()));
+        
+        Button refreshButton = createStyledButton("Обновить", BUTTON_STYLE, BUTTON_HOVER_STYLE);
+        refreshButton.setOnAction(event -> controller.loadSales(salesPeriodComboBox.getValue()));
+        
+        titleBox.getChildren().addAll(title, salesPeriodComboBox, refreshButton);
+        
+        salesTotalsLabel = new Label();
+        salesTotalsLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 14));
+        salesTotalsLabel.setTextFill(Color.web(PRIMARY_COLOR));
+        
+        CategoryAxis dayAxis = new CategoryAxis();
+        NumberAxis revenueAxis = new NumberAxis();
+        revenueAxis.setLabel("Выручка (руб.)");
+        salesChart = new BarChart<>(dayAxis, revenueAxis);
+        salesChart.setLegendVisible(false);
+        salesChart.setAnimated(false);
+        salesChart.setPrefHeight(280);
+        
+        Text topTitle = new Text("Самые продаваемые товары");
+        topTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 16));
+        topTitle.setFill(Color.web(PRIMARY_COLOR));
+        
+        topProductsTable = new TableView<>();
+        topProductsTable.setStyle(TABLE_STYLE);
+        topProductsTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        
+        TableColumn<SalesSummary, String> nameColumn = new TableColumn<>("Товар");
+        nameColumn.setCellValueFactory(new PropertyValueFactory<>("productName"));
+        
+        TableColumn<SalesSummary, Integer> unitsColumn = new TableColumn<>("Продано");
+        unitsColumn.setCellValueFactory(new PropertyValueFactory<>("units"));
+        
+        TableColumn<SalesSummary, Integer> ordersColumn = new TableColumn<>("Заказов");
+        ordersColumn.setCellValueFactory(new PropertyValueFactory<>("orderCount"));
+        
+        TableColumn<SalesSummary, String> revenueColumn = new TableColumn<>("Выручка (руб.)");
+        revenueColumn.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(
+                String.format("%.2f", cellData.getValue().getRevenue())));
+        
+        topProductsTable.getColumns().addAll(nameColumn, unitsColumn, ordersColumn, revenueColumn);
+        
+        vbox.getChildren().addAll(titleBox, salesTotalsLabel, salesChart, topTitle, topProductsTable);
+        
+        return vbox;
+    }
+    
+    // Создание вкладки аналитики: отчет строится по кнопке, потому что читает все заказы периода
+    private VBox createAnalyticsTab() {
+        VBox vbox = new VBox(15);
+        vbox.setPadding(new Insets(20));
+        vbox.setAlignment(Pos.TOP_CENTER);
+        
+        HBox titleBox = new HBox(10);
+        titleBox.setAlignment(Pos.CENTER_LEFT);
+        
+        Text title = new Text("Аналитика");
+        title.setFont(Font.font("Segoe UI", FontWeight.BOLD, 20));
+        title.setFill(Color.web(PRIMARY_COLOR));
+        
+        DatePicker fromPicker = new DatePicker(LocalDate.now().minusYears(1).plusDays(1));
+        DatePicker toPicker = new DatePicker(LocalDate.now());
+        ComboBox<AnalyticsReport.Period> periodComboBox = new ComboBox<>();
+        periodComboBox.getItems().addAll(AnalyticsReport.Period.values());
+        periodComboBox.setValue(AnalyticsReport.Period.MONTH);
+        
+        buildReportButton = createStyledButton("Построить отчет", BUTTON_STYLE, BUTTON_HOVER_STYLE);
+        buildReportButton.setOnAction(event ->
+                controller.buildAnalyticsReport(fromPicker.getValue(), toPicker.getValue(), periodComboBox.getValue()));
+        
+        titleBox.getChildren().addAll(title, new Label("с"), fromPicker, new Label("по"), toPicker,
+                periodComboBox, buildReportButton);
+        
+        analyticsSummaryLabel = new Label("Выберите период и нажмите \"Построить отчет\"");
+        analyticsSummaryLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 14));
+        analyticsSummaryLabel.setTextFill(Color.web(PRIMARY_COLOR));
+        analyticsSummaryLabel.setWrapText(true);
+        
+        // Выручка по периодам
+        analyticsPeriodTable = new TableView<>();
+        analyticsPeriodTable.setStyle(TABLE_STYLE);
+        analyticsPeriodTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        TableColumn<SalesSummary, String> periodColumn = new TableColumn<>("Период с");
+        periodColumn.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(
+                cellData.getValue().getDate().format(DateTimeFormatter.ofPattern("dd.MM.yyyy"))));
+        TableColumn<SalesSummary, Integer> periodOrdersColumn = new TableColumn<>("Заказов");
+        periodOrdersColumn.setCellValueFactory(new PropertyValueFactory<>("orderCount"));
+        TableColumn<SalesSummary, String> periodRevenueColumn = new TableColumn<>("Выручка (руб.)");
+        periodRevenueColumn.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(
+                String.format("%.2f", cellData.getValue().getRevenue())));
+        analyticsPeriodTable.getColumns().addAll(periodColumn, periodOrdersColumn, periodRevenueColumn);
+        
+        // Товары по выручке
+        analyticsProductTable = new TableView<>();
+        analyticsProductTable.setStyle(TABLE_STYLE);
+        analyticsProductTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        TableColumn<SalesSummary, String> productColumn = new TableColumn<>("Товар");
+        productColumn.setCellValueFactory(new PropertyValueFactory<>("productName"));
+        TableColumn<SalesSummary, Integer> productUnitsColumn = new TableColumn<>("Продано");
+        productUnitsColumn.setCellValueFactory(new PropertyValueFactory<>("units"));
+        TableColumn<SalesSummary, String> productRevenueColumn = new TableColumn<>("Выручка (руб.)");
+        productRevenueColumn.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(
+                String.format("%.2f", cellData.getValue().getRevenue())));
+        analyticsProductTable.getColumns().addAll(productColumn, productUnitsColumn, productRevenueColumn);
+        
+        // Клиенты по сумме покупок
+        analyticsCustomerTable = new TableView<>();
+        analyticsCustomerTable.setStyle(TABLE_STYLE);
+        analyticsCustomerTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        TableColumn<CustomerSpend, String> customerColumn = new TableColumn<>("Клиент");
+        customerColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
+        TableColumn<CustomerSpend, Integer> customerOrdersColumn = new TableColumn<>("Заказов");
+        customerOrdersColumn.setCellValueFactory(new PropertyValueFactory<>("orderCount"));
+        TableColumn<CustomerSpend, String> customerSpendColumn = new TableColumn<>("Сумма (руб.)");
+        customerSpendColumn.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(
+                String.format("%.2f", cellData.getValue().getSpend())));
+        TableColumn<CustomerSpend, String> customerAverageColumn = new TableColumn<>("Средний чек");
+        customerAverageColumn.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(
+                String.format("%.2f", cellData.getValue().getAverageOrder())));
+        analyticsCustomerTable.getColumns().addAll(customerColumn, customerOrdersColumn, customerSpendColumn,
+                customerAverageColumn);
+        
+        HBox tablesBox = new HBox(15);
+        for (TableView<?> table : List.of(analyticsPeriodTable, analyticsProductTable, analyticsCustomerTable)) {
+            HBox.setHgrow(table, javafx.scene.layout.Priority.ALWAYS);
+        }
+        tablesBox.getChildren().addAll(analyticsPeriodTable, analyticsProductTable, analyticsCustomerTable);
+        VBox.setVgrow(tablesBox, javafx.scene.layout.Priority.ALWAYS);
+        
+        vbox.getChildren().addAll(titleBox, analyticsSummaryLabel, tablesBox);
+        
+        return vbox;
+    }
+    
+    // Подгрузка следующей страницы, когда таблица прокручена почти до конца
+    // Пока загруженные строки помещаются в таблицу, полосы прокрутки нет и прокручивать нечего,
+    // поэтому после каждой раскладки с новыми строками следующая страница запрашивается сразу
+    private void loadMoreOnScroll(TableView<?> table, Runnable loadMore) {
+        table.skinProperty().addListener((observable, oldSkin, newSkin) -> {
+            for (Node node : table.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                    ScrollBar scrollBar = (ScrollBar) node;
+                    scrollBar.valueProperty().addListener((obs, oldValue, newValue) -> {
+                        if (newValue.doubleValue() >= scrollBar.getMax() * 0.95) {
+                            loadMore.run();
+                        }
+                    });
+                    fillViewport(table, scrollBar, loadMore);
+                }
+            }
+        });
+    }
+    
+    // Запрос следующей страницы, пока строки таблицы не выходят за ее высоту
+    private void fillViewport(TableView<?> table, ScrollBar scrollBar, Runnable loadMore) {
+        Scene scene = table.getScene();
+        if (scene == null) {
+            return;
+        }
+        // Видимость полосы прокрутки известна только после раскладки, поэтому проверка идет после нее
+        boolean[] pending = {true};
+        ListChangeListener<Object> itemsChanged = change -> pending[0] = true;
+        if (table.getItems() != null) {
+            table.getItems().addListener(itemsChanged);
+        }
+        table.itemsProperty().addListener((obs, oldItems, newItems) -> {
+            if (oldItems != null) {
+                oldItems.removeListener(itemsChanged);
+            }
+            if (newItems != null) {
+                newItems.addListener(itemsChanged);
+            }
+            pending[0] = true;
+        });
+        scene.addPostLayoutPulseListener(() -> {
+            // На скрытой вкладке проверка откладывается до ее показа
+            if (!pending[0] || !isShowing(table)) {
+                return;
+            }
+            pending[0] = false;
+            if (!scrollBar.isVisible() && table.getItems() != null
+                    && !table.getItems().isEmpty()) {
+                loadMore.run();
+            }
+        });
+    }
+    
+    // Узел и все его родители видимы (таблица на неактивной вкладке скрыта вместе с ее содержимым)
+    private static boolean isShowing(Node node) {
+        for (Node current = node; current != null; current = current.getParent()) {
+            if (!current.isVisible()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     // Создание стилизованной кнопки
     private Button createStyledButton(String text, String style, String hoverStyle) {
         Button button = new Button(text);
@@ -434,6 +713,97 @@ public class MainAdminView {
         orderTable.setItems(orders);
     }
 
+    //Обновить сводку продаж
+    //days продажи по дням (только дни с заказами)
+    //topProducts самые продаваемые товары за период
+    public void updateSalesDashboard(List<SalesSummary> days, List<SalesSummary> topProducts) {
+        double revenue = 0;
+        int orders = 0;
+        int units = 0;
+        XYChart.Series<String, Number> series = new XYChart.Series<>();
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("dd.MM");
+        for (SalesSummary day : days) {
+            revenue += day.getRevenue();
+            orders += day.getOrderCount();
+            units += day.getUnits();
+            series.getData().add(new XYChart.Data<>(day.getDate().format(format), day.getRevenue()));
+        }
+        
+        salesTotalsLabel.setText(String.format("Выручка: %.2f руб.   Заказов: %d   Продано единиц: %d   Средний чек: %.2f руб.",
+                revenue, orders, units, orders == 0 ? 0.0 : revenue / orders));
+        salesChart.getData().setAll(List.of(series));
+        topProductsTable.getItems().setAll(topProducts);
+    }
+
+    //Показать, что отчет аналитики строится (кнопка недоступна до результата)
+    public void showAnalyticsInProgress() {
+        buildReportButton.setDisable(true);
+        analyticsSummaryLabel.setText("Построение отчета...");
+    }
+
+    //Показать отчет аналитики
+    //report отчет или null, если построить его не удалось
+    public void updateAnalytics(AnalyticsReport report) {
+        buildReportButton.setDisable(false);
+        if (report == null) {
+            analyticsSummaryLabel.setText("Не удалось построить отчет");
+            return;
+        }
+        analyticsSummaryLabel.setText(String.format(
+                "Выручка: %.2f руб.   Заказов: %d   Средний чек: %.2f руб.   " +
+                "Товаров в заказе: %.1f ед. (%.1f поз.)   Обработано позиций: %d за %d мс",
+                report.getRevenue(), report.getOrderCount(), report.getAverageOrderValue(),
+                report.getAverageUnitsPerOrder(), report.getAverageLinesPerOrder(),
+                report.getRowsScanned(), report.getElapsedMillis()));
+        analyticsPeriodTable.getItems().setAll(report.getRevenueByPeriod());
+        analyticsProductTable.getItems().setAll(report.getTopProducts());
+        analyticsCustomerTable.getItems().setAll(report.getTopCustomers());
+    }
+
+    //Показать ход загрузки файла на вкладке товаров (кнопки загрузки недоступны до конца)
+    //title что загружается
+    //rowsRead сколько строк файла уже обработано
+    public void showProductFileProgress(String title, long rowsRead) {
+        importProductsButton.setDisable(true);
+        receiveStockButton.setDisable(true);
+        productImportLabel.setText(title + ": обработано строк " + rowsRead + "...");
+    }
+
+    //Показать итог загрузки файла (импорт каталога, приход товара)
+    //Отклоненные строки перечисляются в раскрывающемся списке диалога
+    //title что загружалось
+    //result итог загрузки
+    public void showImportResult(String title, ImportResult result) {
+        importProductsButton.setDisable(false);
+        receiveStockButton.setDisable(false);
+        productImportLabel.setText("");
+        
+        Alert alert = new Alert(result.isCompleted() ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(result.isCompleted() ? "Загрузка завершена" : "Загрузка остановлена: " + result.getError());
+        String units = result.getQuantity() > 0 ? String.format("%nПринято единиц товара: %d", result.getQuantity()) : "";
+        alert.setContentText(String.format("Строк в файле: %d%nЗаписано строк: %d%s%nОтклонено строк: %d%nВремя: %.1f с",
+                result.getRowsRead(), result.getImported(), units, result.getRejected(),
+                result.getElapsedMillis() / 1000.0));
+        
+        if (!result.getRejections().isEmpty()) {
+            StringBuilder text = new StringBuilder();
+            for (String rejection : result.getRejections()) {
+                text.append(rejection).append('\n');
+            }
+            if (result.getRejected() > result.getRejections().size()) {
+                text.append("... и еще ").append(result.getRejected() - result.getRejections().size()).append('\n');
+            }
+            TextArea rejections = new TextArea(text.toString());
+            rejections.setEditable(false);
+            rejections.setWrapText(true);
+            rejections.setPrefRowCount(12);
+            alert.getDialogPane().setExpandableContent(new VBox(5, new Label("Отклоненные строки:"), rejections));
+        }
+        alert.getDialogPane().setStyle("-fx-background-color: white; -fx-border-color: #dddddd; -fx-border-width: 1;");
+        alert.showAndWait();
+    }
+
     //Показать диалоговое окно с сообщением
     public void showAlert(Alert.AlertType alertType, String title, String message) {
         Alert alert = new Alert(alertType);
@@ -1,7 +1,9 @@
 package com.olineshop.view;
 
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -18,6 +20,7 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import com.olineshop.controller.ClientController;
 import com.olineshop.model.Order;
 import com.olineshop.model.OrderItem;
@@ -25,17 +28,26 @@ import com.olineshop.model.Product;
 import com.olineshop.model.User;
 
 import java.time.LocalDateTime;
+import java.util.function.Predicate;
 
 //Класс представления главного окна клиентской части приложения
 public class MainClientView {
     private ClientController controller;
     private User currentUser;
     private TableView<Product> productTable;
+    private FilteredList<Product> filteredProducts;
     private TableView<OrderItem> cartTable;
     private TableView<Order> orderHistoryTable;
     private Label totalPriceLabel;
+    private Label checkoutStatusLabel;
+    private Button checkoutButton;
+    private Button addToCartButton;
+    private Button removeFromCartButton;
     private ProgressIndicator loadingIndicator;
     
+    // Пауза в наборе текста, после которой выполняется поиск
+    private static final int SEARCH_DELAY_MS = 250;
+    
     // Цвета и стили
     private final String PRIMARY_COLOR = "#2c3e50";
     private final String ACCENT_COLOR = "#3498db";
@@ -196,6 +208,39 @@ public class MainClientView {
         
         titleBox.getChildren().add(title);
         
+        // Поиск по названию и единице измерения: загруженный в память каталог фильтруется на каждое
+        // нажатие клавиши, а запрос к базе (для больших каталогов) отправляется после паузы в наборе
+        HBox searchBox = new HBox(10);
+        searchBox.setAlignment(Pos.CENTER_LEFT);
+        
+        TextField searchField = new TextField();
+        searchField.setPromptText("Поиск товара по названию...");
+        searchField.setPrefWidth(350);
+        searchField.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 14));
+        
+        CheckBox inStockBox = new CheckBox("Только в наличии");
+        inStockBox.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 14));
+        
+        PauseTransition searchDelay = new PauseTransition(Duration.millis(SEARCH_DELAY_MS));
+        searchDelay.setOnFinished(e -> controller.searchProducts(searchField.getText(), inStockBox.isSelected()));
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (controller.filterProducts(newValue, inStockBox.isSelected())) {
+                searchDelay.stop();
+            } else {
+                searchDelay.playFromStart();
+            }
+        });
+        searchField.setOnAction(e -> {
+            searchDelay.stop();
+            controller.searchProducts(searchField.getText(), inStockBox.isSelected());
+        });
+        inStockBox.setOnAction(e -> {
+            searchDelay.stop();
+            controller.searchProducts(searchField.getText(), inStockBox.isSelected());
+        });
+        
+        searchBox.getChildren().addAll(searchField, inStockBox);
+        
         // Создаем таблицу товаров с современным стилем
         productTable = new TableView<>();
         productTable.setStyle(TABLE_STYLE);
@@ -236,7 +281,7 @@ public class MainClientView {
         quantitySpinner.setPrefWidth(100);
         quantitySpinner.getEditor().setStyle("-fx-font-size: 14px;");
         
-        Button addToCartButton = createStyledButton("Добавить в корзину", BUTTON_STYLE, BUTTON_HOVER_STYLE);
+        addToCartButton = createStyledButton("Добавить в корзину", BUTTON_STYLE, BUTTON_HOVER_STYLE);
         addToCartButton.setOnAction(e -> {
             Product selectedProduct = productTable.getSelectionModel().getSelectedItem();
             if (selectedProduct != null) {
@@ -249,7 +294,7 @@ public class MainClientView {
         
         controlPanel.getChildren().addAll(quantityLabel, quantitySpinner, addToCartButton);
         
-        vbox.getChildren().addAll(titleBox, productTable, controlPanel);
+        vbox.getChildren().addAll(titleBox, searchBox, productTable, controlPanel);
         
         return vbox;
     }
@@ -312,7 +357,7 @@ public class MainClientView {
         spacer.setMaxWidth(Double.MAX_VALUE);
         HBox.setHgrow(spacer, Priority.ALWAYS);
         
-        Button removeFromCartButton = createStyledButton("Удалить из корзины", 
+        removeFromCartButton = createStyledButton("Удалить из корзины", 
             "-fx-background-color: #e74c3c; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 5;", 
             "-fx-background-color: #c0392b; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 5;");
         
@@ -325,13 +370,18 @@ public class MainClientView {
             }
         });
         
-        Button checkoutButton = createStyledButton("Оформить заказ", 
+        checkoutButton = createStyledButton("Оформить заказ", 
             "-fx-background-color: #27ae60; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 5;", 
             "-fx-background-color: #2ecc71; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 5;");
         
         checkoutButton.setOnAction(e -> controller.checkout());
         
-        bottomPanel.getChildren().addAll(totalPriceLabel, spacer, removeFromCartButton, checkoutButton);
+        // Текущий этап оформления заказа
+        checkoutStatusLabel = new Label();
+        checkoutStatusLabel.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 13));
+        checkoutStatusLabel.setTextFill(Color.web(PRIMARY_COLOR));
+        
+        bottomPanel.getChildren().addAll(totalPriceLabel, spacer, checkoutStatusLabel, removeFromCartButton, checkoutButton);
         
         vbox.getChildren().addAll(titleBox, cartTable, bottomPanel);
         
@@ -474,7 +524,18 @@ public class MainClientView {
     //Обновить таблицу товаров
     //products список товаров
     public void updateProductTable(ObservableList<Product> products) {
-        productTable.setItems(products);
+        if (filteredProducts == null || filteredProducts.getSource() != products) {
+            filteredProducts = new FilteredList<>(products, filteredProducts == null ? null : filteredProducts.getPredicate());
+            productTable.setItems(filteredProducts);
+        }
+    }
+
+    //Отфильтровать таблицу товаров без повторной загрузки
+    //filter условие отбора (null - показывать все товары)
+    public void setProductFilter(Predicate<Product> filter) {
+        if (filteredProducts != null) {
+            filteredProducts.setPredicate(filter);
+        }
     }
 
     //Обновить таблицу корзины
@@ -527,4 +588,25 @@ public class MainClientView {
             loadingIndicator.setVisible(show);
         }
     }
-} 
\ No newline at end of file
+    
+    //Показать этап оформления заказа (оформление и изменение корзины недоступны до завершения)
+    //stage описание текущего этапа
+    public void showCheckoutProgress(String stage) {
+        checkoutStatusLabel.setText(stage);
+        setCartLocked(true);
+        showLoadingIndicator(true);
+    }
+    
+    //Скрыть индикатор оформления заказа
+    public void hideCheckoutProgress() {
+        checkoutStatusLabel.setText("");
+        setCartLocked(false);
+        showLoadingIndicator(false);
+    }
+    
+    private void setCartLocked(boolean locked) {
+        checkoutButton.setDisable(locked);
+        addToCartButton.setDisable(locked);
+        removeFromCartButton.setDisable(locked);
+    }
+}
@@ -0,0 +1,19 @@
+-- Продажи по дням: выручка, число заказов и проданные единицы за день по каждому товару.
+-- Строка с product_id = 0 - итог дня по всем заказам (выручка по total_cost заказа, с учетом скидки).
+-- Таблица обновляется в транзакциях записи, отмены и удаления заказа, поэтому сводка для администратора
+-- читает несколько строк за нужные дни, а не группирует всю историю заказов.
+-- Каждая транзакция пишет в одну из нескольких строк (slot) дня, чтобы параллельные заказы
+-- не ждали друг друга на одной строке итога; при чтении строки дня суммируются.
+-- Отмененные заказы в сводку не входят.
+-- Строки по уже записанным заказам заполняет SchemaMigrator порциями после создания таблицы.
+
+CREATE TABLE IF NOT EXISTS `sales_daily` (
+  `sale_date` DATE NOT NULL,
+  `product_id` INT NOT NULL,
+  `slot` TINYINT NOT NULL DEFAULT 0,
+  `revenue` DECIMAL(14, 2) NOT NULL DEFAULT 0,
+  `order_count` INT NOT NULL DEFAULT 0,
+  `units` INT NOT NULL DEFAULT 0,
+  PRIMARY KEY (`sale_date`, `product_id`, `slot`),
+  KEY `idx_sales_daily_product` (`product_id`, `sale_date`)
+);
@@ -1,5 +1,4 @@
-CREATE DATABASE IF NOT EXISTS online_store_db;
-USE online_store_db;
+-- Базовая схема магазина (таблицы, роли, администратор, стартовые товары)
 
 CREATE TABLE IF NOT EXISTS `roles` (
   `id` INT AUTO_INCREMENT PRIMARY KEY,
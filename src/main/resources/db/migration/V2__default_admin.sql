@@ -1,5 +1,3 @@
-USE `online_store_db`;
-
 -- Проверяем, существует ли уже администратор
 SET @admin_exists = (SELECT COUNT(*) FROM `users` WHERE `login` = 'admin');
 
@@ -0,0 +1,19 @@
+-- Переименование столбцов из старых версий схемы (total_price -> total_cost, price -> price_per_item)
+
+SET @has_total_price = (SELECT COUNT(*) FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'orders' AND column_name = 'total_price');
+SET @rename_sql = IF(@has_total_price > 0,
+    'ALTER TABLE `orders` CHANGE COLUMN `total_price` `total_cost` DECIMAL(10, 2) NOT NULL',
+    'DO 0');
+PREPARE rename_stmt FROM @rename_sql;
+EXECUTE rename_stmt;
+DEALLOCATE PREPARE rename_stmt;
+
+SET @has_price = (SELECT COUNT(*) FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'order_items' AND column_name = 'price');
+SET @rename_sql = IF(@has_price > 0,
+    'ALTER TABLE `order_items` CHANGE COLUMN `price` `price_per_item` DECIMAL(10, 2) NOT NULL',
+    'DO 0');
+PREPARE rename_stmt FROM @rename_sql;
+EXECUTE rename_stmt;
+DEALLOCATE PREPARE rename_stmt;
@@ -0,0 +1,8 @@
+-- Счетчик изменений каталога товаров: по нему кэш товаров проверяет, не изменили ли каталог другие копии приложения
+
+CREATE TABLE IF NOT EXISTS `catalog_version` (
+  `id` TINYINT PRIMARY KEY,
+  `version` BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT IGNORE INTO `catalog_version` (`id`, `version`) VALUES (1, 0);
@@ -0,0 +1,10 @@
+-- Индекс для постраничного просмотра заказов по (order_date, id) без сортировки всей таблицы
+
+SET @has_index = (SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'orders' AND index_name = 'idx_orders_date_id');
+SET @index_sql = IF(@has_index = 0,
+    'ALTER TABLE `orders` ADD INDEX `idx_orders_date_id` (`order_date`, `id`), ALGORITHM=INPLACE, LOCK=NONE',
+    'DO 0');
+PREPARE index_stmt FROM @index_sql;
+EXECUTE index_stmt;
+DEALLOCATE PREPARE index_stmt;
@@ -0,0 +1,12 @@
+-- Полнотекстовый индекс по названию товара для поиска в каталоге
+-- Парсер ngram находит совпадения внутри слов (в том числе в русских названиях);
+-- короткие запросы ищутся по префиксу через уникальный индекс по name
+
+SET @has_index = (SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'products' AND index_name = 'ft_products_name');
+SET @index_sql = IF(@has_index = 0,
+    'ALTER TABLE `products` ADD FULLTEXT INDEX `ft_products_name` (`name`) WITH PARSER ngram',
+    'DO 0');
+PREPARE index_stmt FROM @index_sql;
+EXECUTE index_stmt;
+DEALLOCATE PREPARE index_stmt;
@@ -0,0 +1,20 @@
+-- Ключ идемпотентности заказа: клиент генерирует его один раз на оформление и передает при каждой попытке,
+-- уникальный индекс не дает записать один и тот же заказ дважды
+
+SET @has_column = (SELECT COUNT(*) FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'orders' AND column_name = 'order_token');
+SET @column_sql = IF(@has_column = 0,
+    'ALTER TABLE `orders` ADD COLUMN `order_token` CHAR(36) NULL, ALGORITHM=INPLACE, LOCK=NONE',
+    'DO 0');
+PREPARE column_stmt FROM @column_sql;
+EXECUTE column_stmt;
+DEALLOCATE PREPARE column_stmt;
+
+SET @has_index = (SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'orders' AND index_name = 'uk_orders_token');
+SET @index_sql = IF(@has_index = 0,
+    'ALTER TABLE `orders` ADD UNIQUE INDEX `uk_orders_token` (`order_token`), ALGORITHM=INPLACE, LOCK=NONE',
+    'DO 0');
+PREPARE index_stmt FROM @index_sql;
+EXECUTE index_stmt;
+DEALLOCATE PREPARE index_stmt;
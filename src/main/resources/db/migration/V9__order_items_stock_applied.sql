@@ -0,0 +1,21 @@
+-- Признак списания позиции со склада. Позиции "горячих" товаров (HotStock) записываются с 0
+-- и списываются из products фоновым потоком; остальные списываются в транзакции заказа и сразу получают 1.
+-- Индекс нужен, чтобы поток списания находил несписанные позиции без просмотра всей таблицы.
+
+SET @has_column = (SELECT COUNT(*) FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'order_items' AND column_name = 'stock_applied');
+SET @column_sql = IF(@has_column = 0,
+    'ALTER TABLE `order_items` ADD COLUMN `stock_applied` TINYINT(1) NOT NULL DEFAULT 1, ALGORITHM=INPLACE, LOCK=NONE',
+    'DO 0');
+PREPARE column_stmt FROM @column_sql;
+EXECUTE column_stmt;
+DEALLOCATE PREPARE column_stmt;
+
+SET @has_index = (SELECT COUNT(*) FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'order_items' AND index_name = 'idx_order_items_stock_applied');
+SET @index_sql = IF(@has_index = 0,
+    'ALTER TABLE `order_items` ADD INDEX `idx_order_items_stock_applied` (`stock_applied`), ALGORITHM=INPLACE, LOCK=NONE',
+    'DO 0');
+PREPARE index_stmt FROM @index_sql;
+EXECUTE index_stmt;
+DEALLOCATE PREPARE index_stmt;
@@ -0,0 +1,120 @@
+package com.olineshop.bench;
+
+import com.olineshop.dao.OrderDAO;
+import com.olineshop.dao.ProductDAO;
+import com.olineshop.dao.UserDAO;
+import com.olineshop.model.Order;
+import com.olineshop.model.OrderItem;
+import com.olineshop.model.Product;
+import com.olineshop.model.User;
+import com.olineshop.util.DatabaseManager;
+import com.olineshop.util.Log;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+//Общие действия нагрузочных тестов: тестовые товары, заказы, уборка и процентили времени
+
+final class BenchSupport {
+    private static final Log log = Log.get(BenchSupport.class);
+
+    private BenchSupport() {
+    }
+
+    //Проверить, что тест подключен к отдельной базе для нагрузочных тестов
+    //Тесты создают и удаляют товары и заказы, поэтому в имени базы (olineshop.db.name) должно быть "bench"
+    //return true, если базу можно использовать
+    static boolean isBenchDatabase() {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (conn == null) {
+                log.error("Не удалось подключиться к базе данных для нагрузочного теста");
+                return false;
+            }
+            String catalog = conn.getCatalog();
+            if (catalog == null || !catalog.toLowerCase(Locale.ROOT).contains("bench")) {
+                log.error("Нагрузочный тест не запущен: база " + catalog + " не предназначена для тестов. " +
+                          "Укажите отдельную базу, например -Dolineshop.db.name=online_store_bench");
+                return false;
+            }
+            return true;
+        } catch (SQLException e) {
+            log.error("Ошибка при проверке базы для нагрузочного теста: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    //Пользователь, от имени которого оформляются тестовые заказы (olineshop.bench.login, по умолчанию admin)
+    static User buyer() {
+        return new UserDAO().getUserByLogin(System.getProperty("olineshop.bench.login", "admin"));
+    }
+
+    //Создать тестовые товары с большим остатком
+    //return товары с id или null, если создать не удалось
+    static List<Product> createProducts(String prefix, int count) {
+        ProductDAO productDAO = new ProductDAO();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Product product = new Product(0, prefix + i, 1.0, "шт", 1_000_000);
+            if (!productDAO.addProduct(product)) {
+                deleteProducts(products);
+                return null;
+            }
+            products.add(product);
+        }
+        return products;
+    }
+
+    //Заказ из переданных товаров, по одной штуке каждого
+    static Order order(User buyer, List<Product> products) {
+        Order order = new Order();
+        order.setUser(buyer);
+        order.setOrderDate(LocalDateTime.now());
+        order.setStatus("Новый");
+        List<OrderItem> items = new ArrayList<>();
+        double total = 0;
+        for (Product product : products) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setQuantity(1);
+            item.setPrice(product.getPrice());
+            items.add(item);
+            total += product.getPrice();
+        }
+        order.setItems(items);
+        order.setTotalCost(total);
+        return order;
+    }
+
+    //Удалить тестовые заказы и товары
+    static void cleanup(Collection<Integer> orderIds, List<Product> products) {
+        OrderDAO orderDAO = new OrderDAO();
+        for (int id : orderIds) {
+            orderDAO.deleteOrder(id);
+        }
+        deleteProducts(products);
+    }
+
+    //Процентиль времени в миллисекундах (два знака после запятой)
+    //sortedNanos времена в наносекундах по возрастанию
+    static double percentileMs(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        long nanos = sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, index))];
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    private static void deleteProducts(List<Product> products) {
+        ProductDAO productDAO = new ProductDAO();
+        for (Product product : products) {
+            productDAO.deleteProduct(product.getId());
+        }
+    }
+}
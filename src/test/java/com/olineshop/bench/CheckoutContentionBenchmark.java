@@ -0,0 +1,167 @@
+package com.olineshop.bench;
+
+import com.olineshop.dao.HotStock;
+import com.olineshop.dao.OrderDAO;
+import com.olineshop.dao.OrderIngestor;
+import com.olineshop.model.Order;
+import com.olineshop.model.Product;
+import com.olineshop.model.User;
+import com.olineshop.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Нагрузочный тест оформления заказов на небольшом наборе "горячих" товаров
+//Покупатели одновременно оформляют заказы из нескольких товаров, взятых в случайном порядке,
+//поэтому без упорядоченной блокировки строк транзакции блокируют друг друга взаимно.
+//В конце выводятся доля транзакций, отмененных из-за конфликта блокировок, и время оформления (p50/p95/p99).
+//Тест создает товары "bench-hot-N" и заказы от имени пользователя, после завершения удаляет их
+//(olineshop.bench.cleanup=false - оставить). Поэтому он запускается только на отдельной базе, в имени
+//которой есть "bench"; классы тестов лежат в src/test и в собранное приложение не попадают.
+//
+//Запуск: mvn -q test-compile exec:java -Dexec.classpathScope=test -Dolineshop.db.name=online_store_bench
+//        -Dexec.mainClass=com.olineshop.bench.CheckoutContentionBenchmark
+//Для сравнения с записью без предварительной блокировки: -Dolineshop.checkout.lockRows=false
+//С групповой фиксацией заказов (OrderIngestor): -Dolineshop.orders.groupCommit=true
+//С остатками тестовых товаров в памяти (HotStock): -Dolineshop.bench.hotInMemory=true
+//
+//Настройки (системные свойства):
+//olineshop.bench.buyers - число одновременных покупателей (по умолчанию 64)
+//olineshop.bench.hotSkus - число горячих товаров (по умолчанию 10)
+//olineshop.bench.ordersPerBuyer - заказов на покупателя (по умолчанию 50)
+//olineshop.bench.itemsPerOrder - позиций в заказе (по умолчанию 3)
+//olineshop.bench.login - от чьего имени оформляются заказы (по умолчанию admin)
+
+public class CheckoutContentionBenchmark {
+    private static final Log log = Log.get(CheckoutContentionBenchmark.class);
+
+    public static void main(String[] args) throws InterruptedException {
+        int buyers = Integer.getInteger("olineshop.bench.buyers", 64);
+        int hotSkus = Integer.getInteger("olineshop.bench.hotSkus", 10);
+        int ordersPerBuyer = Integer.getInteger("olineshop.bench.ordersPerBuyer", 50);
+        int itemsPerOrder = Math.min(hotSkus, Integer.getInteger("olineshop.bench.itemsPerOrder", 3));
+        boolean cleanup = Boolean.parseBoolean(System.getProperty("olineshop.bench.cleanup", "true"));
+
+        // Каждому покупателю свое соединение, иначе тест измеряет ожидание пула, а не блокировки
+        if (System.getProperty("olineshop.db.pool.maxSize") == null) {
+            System.setProperty("olineshop.db.pool.maxSize", String.valueOf(buyers + 2));
+        }
+        if (!BenchSupport.isBenchDatabase()) {
+            Log.shutdown();
+            return;
+        }
+
+        User buyer = BenchSupport.buyer();
+        if (buyer == null) {
+            log.error("Пользователь для тестовых заказов не найден");
+            Log.shutdown();
+            return;
+        }
+
+        List<Product> products = BenchSupport.createProducts("bench-hot-", hotSkus);
+        if (products == null) {
+            log.error("Не удалось создать тестовые товары");
+            Log.shutdown();
+            return;
+        }
+
+        // Id тестовых товаров известны только после создания, HotStock читает список при первом обращении
+        if (Boolean.getBoolean("olineshop.bench.hotInMemory")) {
+            StringBuilder ids = new StringBuilder();
+            for (Product product : products) {
+                ids.append(ids.length() == 0 ? "" : ",").append(product.getId());
+            }
+            System.setProperty("olineshop.stock.hotSkus", ids.toString());
+        }
+
+        log.info("Покупателей: " + buyers + ", горячих товаров: " + hotSkus + ", заказов на покупателя: " +
+                 ordersPerBuyer + ", позиций в заказе: " + itemsPerOrder +
+                 ", блокировка строк: " + System.getProperty("olineshop.checkout.lockRows", "true"));
+
+        long[][] latencies = new long[buyers][ordersPerBuyer];
+        List<Integer> createdOrders = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failed = new AtomicInteger();
+        long conflictsBefore = OrderDAO.getLockConflictCount();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(buyers);
+
+        for (int b = 0; b < buyers; b++) {
+            int buyerIndex = b;
+            pool.execute(() -> {
+                OrderDAO orderDAO = new OrderDAO();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int n = 0; n < ordersPerBuyer; n++) {
+                    Order order = randomOrder(buyer, products, itemsPerOrder);
+                    long begin = System.nanoTime();
+                    boolean added = OrderIngestor.isEnabled() ? submitToIngestor(order) : orderDAO.addOrder(order);
+                    latencies[buyerIndex][n] = System.nanoTime() - begin;
+                    if (added) {
+                        createdOrders.add(order.getId());
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        long elapsedMs = (System.nanoTime() - begin) / 1_000_000;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        long conflicts = OrderDAO.getLockConflictCount() - conflictsBefore;
+        log.info("Заказов: " + all.length + ", не оформлено: " + failed.get() +
+                 ", за " + elapsedMs + " мс (" + (elapsedMs == 0 ? 0 : all.length * 1000L / elapsedMs) + " заказов/с)");
+        log.info("Конфликтов блокировок: " + conflicts + " (" +
+                 String.format("%.2f", conflicts * 100.0 / Math.max(1, all.length)) + "% заказов)");
+        log.info("Время оформления, мс: p50 " + BenchSupport.percentileMs(all, 50) +
+                 ", p95 " + BenchSupport.percentileMs(all, 95) +
+                 ", p99 " + BenchSupport.percentileMs(all, 99) +
+                 ", максимум " + BenchSupport.percentileMs(all, 100));
+
+        if (OrderIngestor.isEnabled()) {
+            OrderIngestor.shutdown();
+            log.info("Групповая запись: " + OrderIngestor.getStats());
+        }
+        if (HotStock.isEnabled()) {
+            HotStock.shutdown();
+            log.info("Горячие товары: " + HotStock.getStats());
+        }
+        if (cleanup) {
+            BenchSupport.cleanup(createdOrders, products);
+        }
+        Log.shutdown();
+    }
+
+    // Запись через очередь групповой фиксации (-Dolineshop.orders.groupCommit=true)
+    private static boolean submitToIngestor(Order order) {
+        try {
+            OrderDAO.SubmitResult result = OrderIngestor.submit(order).join();
+            return result == OrderDAO.SubmitResult.CREATED || result == OrderDAO.SubmitResult.REPLAYED;
+        } catch (CompletionException e) {
+            return false;
+        }
+    }
+
+    // Заказ из разных товаров в случайном порядке
+    private static Order randomOrder(User buyer, List<Product> products, int items) {
+        List<Product> shuffled = new ArrayList<>(products);
+        Collections.shuffle(shuffled, ThreadLocalRandom.current());
+        return BenchSupport.order(buyer, shuffled.subList(0, items));
+    }
+}
@@ -0,0 +1,93 @@
+package com.olineshop.bench;
+
+import com.olineshop.dao.OrderDAO;
+import com.olineshop.model.Order;
+import com.olineshop.model.Product;
+import com.olineshop.model.User;
+import com.olineshop.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Время записи одного заказа в зависимости от числа позиций (1, 10 и 100 по умолчанию)
+//Заказы оформляются последовательно в одном потоке, поэтому результат показывает число обменов
+//с сервером на заказ, а не конкуренцию за блокировки (для нее - CheckoutContentionBenchmark).
+//Тест создает товары "bench-line-N" и заказы, после завершения удаляет их, поэтому запускается только
+//на отдельной базе, в имени которой есть "bench".
+//
+//Запуск: mvn -q test-compile exec:java -Dexec.classpathScope=test -Dolineshop.db.name=online_store_bench
+//        -Dexec.mainClass=com.olineshop.bench.OrderWriteBenchmark
+//Размер многострочного INSERT позиций: -Dolineshop.checkout.itemsChunk=...
+//
+//Настройки (системные свойства):
+//olineshop.bench.lineCounts - размеры заказов через запятую (по умолчанию 1,10,100)
+//olineshop.bench.orders - заказов каждого размера (по умолчанию 200)
+//olineshop.bench.warmup - заказов для прогрева перед замером (по умолчанию 20)
+//olineshop.bench.login - от чьего имени оформляются заказы (по умолчанию admin)
+
+public class OrderWriteBenchmark {
+    private static final Log log = Log.get(OrderWriteBenchmark.class);
+
+    public static void main(String[] args) {
+        int[] lineCounts = Arrays.stream(System.getProperty("olineshop.bench.lineCounts", "1,10,100").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int orders = Integer.getInteger("olineshop.bench.orders", 200);
+        int warmup = Integer.getInteger("olineshop.bench.warmup", 20);
+        if (!BenchSupport.isBenchDatabase()) {
+            Log.shutdown();
+            return;
+        }
+
+        User buyer = BenchSupport.buyer();
+        if (buyer == null) {
+            log.error("Пользователь для тестовых заказов не найден");
+            Log.shutdown();
+            return;
+        }
+
+        int maxLines = Arrays.stream(lineCounts).max().orElse(1);
+        List<Product> products = BenchSupport.createProducts("bench-line-", maxLines);
+        if (products == null) {
+            log.error("Не удалось создать тестовые товары");
+            Log.shutdown();
+            return;
+        }
+
+        OrderDAO orderDAO = new OrderDAO();
+        List<Integer> createdOrders = new ArrayList<>();
+        for (int lines : lineCounts) {
+            List<Product> orderProducts = products.subList(0, lines);
+            long[] latencies = new long[orders];
+            int failed = 0;
+
+            for (int n = -warmup; n < orders; n++) {
+                Order order = BenchSupport.order(buyer, orderProducts);
+                long begin = System.nanoTime();
+                boolean added = orderDAO.addOrder(order);
+                long elapsed = System.nanoTime() - begin;
+                if (added) {
+                    createdOrders.add(order.getId());
+                } else {
+                    failed++;
+                }
+                if (n >= 0) {
+                    latencies[n] = elapsed;
+                }
+            }
+
+            Arrays.sort(latencies);
+            long totalNanos = Arrays.stream(latencies).sum();
+            log.info("Позиций в заказе: " + lines + ", заказов: " + orders + ", не оформлено: " + failed +
+                     ", мс на заказ: среднее " + Math.round(totalNanos / 10_000.0 / Math.max(1, orders)) / 100.0 +
+                     ", p50 " + BenchSupport.percentileMs(latencies, 50) +
+                     ", p99 " + BenchSupport.percentileMs(latencies, 99) +
+                     ", позиций/с: " + (totalNanos == 0 ? 0 : (long) lines * orders * 1_000_000_000L / totalNanos));
+        }
+
+        BenchSupport.cleanup(createdOrders, products);
+        Log.shutdown();
+    }
+}